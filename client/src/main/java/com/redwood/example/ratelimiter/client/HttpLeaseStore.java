@@ -0,0 +1,141 @@
+package com.redwood.example.ratelimiter.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The service's {@code /api/lease} endpoints as a {@link TokenStore}: every bucket is the one governing a
+ * path (its {@link Bucket#name()}) for this client's key. Calls block on HTTP; the limiters make them from
+ * their background refills only.
+ * The service takes returns only against the lease that granted the tokens, so the leases of every bucket
+ * are kept until returned or expired and unused tokens go back against the newest first.
+ */
+final class HttpLeaseStore implements TokenStore {
+
+    /** Mirror of the service's lease terms. */
+    record LeaseTerms(long capacity, double refillPerSecond, long ttlMs) {}
+
+    /** Mirror of the service's lease grant. */
+    record LeaseGrant(String leaseId, long granted, long remaining, long ttlMs) {}
+
+    /** A grant not yet returned in full; the service keeps it returnable for two TTLs. */
+    private record Lease(String id, long tokens, long expiresNs) {}
+
+    /** Open leases of one bucket, oldest first, and the bucket's remaining tokens at the last call. */
+    private static final class Leases {
+        final Deque<Lease> open = new ArrayDeque<>();
+        long remaining;
+    }
+
+    private final ObjectMapper json = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final HttpClient http;
+    private final URI lease;
+    private final String key;
+    private final Duration timeout;
+    private final Map<String, Leases> leases = new ConcurrentHashMap<>();
+
+    HttpLeaseStore(URI service, String key, Duration timeout) {
+        this.lease = Objects.requireNonNull(service).resolve("/api/lease");
+        this.key = key;
+        this.timeout = Objects.requireNonNull(timeout);
+        this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    LeaseTerms terms(String path) throws IOException {
+        String query = "?path=" + encode(path) + (key == null ? "" : "&key=" + encode(key));
+        return send(HttpRequest.newBuilder(URI.create(lease + query)).GET(), LeaseTerms.class);
+    }
+
+    @Override
+    public Grant take(Bucket bucket, long max) throws IOException {
+        Map<String, Object> body = key == null ? Map.of("path", bucket.name(), "tokens", max)
+                : Map.of("path", bucket.name(), "key", key, "tokens", max);
+        LeaseGrant grant = send(post(lease, body), LeaseGrant.class);
+        Leases open = leases.computeIfAbsent(bucket.name(), n -> new Leases());
+        long now = System.nanoTime();
+        synchronized (open) {
+            while (!open.open.isEmpty() && now - open.open.peekFirst().expiresNs() >= 0) open.open.pollFirst();
+            if (grant.granted() > 0 && grant.leaseId() != null)
+                open.open.addLast(new Lease(grant.leaseId(), grant.granted(), now + TimeUnit.MILLISECONDS.toNanos(2 * grant.ttlMs())));
+            open.remaining = grant.remaining();
+        }
+        return new Grant(grant.granted(), grant.remaining());
+    }
+
+    /** Returns {@code tokens} lease by lease, newest first; what expired leases would take back stays spent. */
+    @Override
+    public Grant giveBack(Bucket bucket, long tokens) throws IOException {
+        Leases open = leases.computeIfAbsent(bucket.name(), n -> new Leases());
+        long left = tokens;
+        while (left > 0) {
+            Lease newest;
+            synchronized (open) {
+                newest = open.open.pollLast();
+            }
+            if (newest == null) break;
+            if (System.nanoTime() - newest.expiresNs() >= 0) continue;
+            long back = Math.min(left, newest.tokens());
+            HttpResponse<byte[]> response = exchange(post(URI.create(lease + "/return"), Map.of("leaseId", newest.id(), "tokens", back)));
+            if (response.statusCode() == 404) continue;
+            LeaseGrant grant = read(response, LeaseGrant.class);
+            left -= back;
+            synchronized (open) {
+                if (back < newest.tokens()) open.open.addLast(new Lease(newest.id(), newest.tokens() - back, newest.expiresNs()));
+                open.remaining = grant.remaining();
+            }
+        }
+        synchronized (open) {
+            return new Grant(0, open.remaining);
+        }
+    }
+
+    private HttpRequest.Builder post(URI uri, Map<String, Object> body) throws IOException {
+        return HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+    }
+
+    private <T> T send(HttpRequest.Builder request, Class<T> type) throws IOException {
+        return read(exchange(request), type);
+    }
+
+    private HttpResponse<byte[]> exchange(HttpRequest.Builder request) throws IOException {
+        try {
+            return http.send(request.timeout(timeout).build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling " + lease, e);
+        }
+    }
+
+    private <T> T read(HttpResponse<byte[]> response, Class<T> type) throws IOException {
+        if (response.statusCode() != 200)
+            throw new IOException("Lease call to " + response.uri() + " failed with HTTP " + response.statusCode());
+        return json.readValue(response.body(), type);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        http.close();
+    }
+}
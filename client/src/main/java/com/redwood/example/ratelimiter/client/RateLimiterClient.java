@@ -0,0 +1,101 @@
+package com.redwood.example.ratelimiter.client;
+
+import com.redwood.example.ratelimiter.client.HttpLeaseStore.LeaseTerms;
+import com.redwood.example.ratelimiter.ratelimit.LeasedRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Embeddable rate-limit client: checks are answered in-process from token leases taken from the service,
+ * so most requests cost a CAS instead of a network hop to {@code /api/check}.
+ * <pre>
+ * try (RateLimiterClient limits = RateLimiterClient.newBuilder(URI.create("http://ratelimiter:8080")).key("acme").build()) {
+ *     if (!limits.limiter("/api/v1/users").tryAcquire()) return tooManyRequests();
+ * }
+ * </pre>
+ * - Every path gets a {@link LeasedRateLimiter} over the service's {@code /api/lease} endpoints: it spends a
+ *   local lease and takes the next one in the background when half of it is used, so callers never wait on
+ *   the service after the first lease.
+ * - Leases are debited from the path's bucket on the service before they are spent, so all clients and
+ *   {@code /api/check} callers together stay within the limit. A lease not topped up within the TTL the
+ *   service grants it for is handed back, as is every lease on {@link #close()}, which bounds how many
+ *   tokens idle clients keep from the others.
+ * - While the service is unreachable a path admits its {@code fallbackShare} of the limit locally
+ *   (a {@link LocalTokenBucketRateLimiter}), or denies once the lease is spent.
+ */
+public final class RateLimiterClient implements Closeable {
+
+    private final HttpLeaseStore store;
+    private final long leaseSize;
+    private final double fallbackShare;
+    private final Map<String, LeasedRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    private RateLimiterClient(Builder b) {
+        this.store = new HttpLeaseStore(b.service, b.key, b.timeout);
+        this.leaseSize = b.leaseSize;
+        this.fallbackShare = b.fallbackShare;
+    }
+
+    public static Builder newBuilder(URI service) { return new Builder(service); }
+
+    /**
+     * Limiter for the bucket governing {@code path} (null or empty: the global limit). The first call per path
+     * asks the service for the bucket's limits and takes the first lease.
+     */
+    public RateLimiter limiter(String path) throws IOException {
+        String name = path == null ? "" : path;
+        LeasedRateLimiter limiter = limiters.get(name);
+        if (limiter != null) return limiter;
+
+        LeaseTerms terms = store.terms(name);
+        LocalTokenBucketRateLimiter.Config cfg = LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(terms.capacity()).refillTokensPerSecond(terms.refillPerSecond()).build();
+        long lease = leaseSize > 0 ? Math.min(leaseSize, terms.capacity()) : Math.max(1, terms.capacity() / 10);
+        LeasedRateLimiter created = new LeasedRateLimiter(cfg, store, name, lease, 0, fallbackShare,
+                TimeUnit.MILLISECONDS.toNanos(terms.ttlMs()));
+
+        LeasedRateLimiter raced = limiters.putIfAbsent(name, created);
+        if (raced == null) return created;
+        created.release();
+        return raced;
+    }
+
+    /** Hands every lease back to the service. */
+    @Override
+    public void close() {
+        limiters.values().forEach(RateLimiter::release);
+        limiters.clear();
+        store.close();
+    }
+
+    /** Fluent builder for readability. */
+    public static final class Builder {
+        private final URI service;
+        private String key;
+        private long leaseSize;
+        private double fallbackShare;
+        private Duration timeout = Duration.ofSeconds(2);
+
+        private Builder(URI service) { this.service = Objects.requireNonNull(service); }
+
+        /** Client key (tenant, API key) selecting this client's buckets on per-key rules. */
+        public Builder key(String k) { this.key = k; return this; }
+        /** Tokens taken per lease; 0 (default) means a tenth of the bucket. */
+        public Builder leaseSize(long n) { this.leaseSize = n; return this; }
+        /** Share of each limit enforced locally while the service is unreachable; 0 (default) denies. */
+        public Builder fallbackShare(double s) { this.fallbackShare = s; return this; }
+        /** Connect and request timeout of lease calls. */
+        public Builder timeout(Duration t) { this.timeout = t; return this; }
+        public RateLimiterClient build() { return new RateLimiterClient(this); }
+    }
+}
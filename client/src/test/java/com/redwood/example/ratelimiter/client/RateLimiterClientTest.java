@@ -0,0 +1,143 @@
+package com.redwood.example.ratelimiter.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The client against a stand-in for the service's lease endpoints, backed by one bucket of 100 tokens
+ * refilling at 1 per second. Like the service, it takes returns only against open leases, capped at what
+ * they granted.
+ */
+class RateLimiterClientTest {
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final LocalTokenBucketRateLimiter bucket = new LocalTokenBucketRateLimiter(
+            LocalTokenBucketRateLimiter.Config.newBuilder().capacity(100).refillTokensPerSecond(1).build());
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Map<String, Long> leases = new ConcurrentHashMap<>();
+    private final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    private long ttlMs = 5_000;
+
+    RateLimiterClientTest() throws IOException {
+        server.createContext("/api/lease", this::lease);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private void lease(HttpExchange exchange) throws IOException {
+        calls.incrementAndGet();
+        Map<String, Object> reply = new HashMap<>();
+        int status = 200;
+        if (exchange.getRequestMethod().equals("GET")) {
+            reply = Map.of("capacity", bucket.capacity(), "refillPerSecond", bucket.refillPerSecond(), "ttlMs", ttlMs);
+        } else {
+            JsonNode request = json.readTree(exchange.getRequestBody());
+            int tokens = request.get("tokens").asInt();
+            long granted = 0;
+            if (exchange.getRequestURI().getPath().endsWith("/return")) {
+                String id = request.get("leaseId").asText();
+                Long open = leases.remove(id);
+                if (open == null) status = 404;
+                else {
+                    long back = Math.min(tokens, open);
+                    bucket.refund((int) back);
+                    if (back < open) leases.put(id, open - back);
+                    granted = -back;
+                }
+            } else if (bucket.tryAcquire(tokens)) {
+                granted = tokens;
+                String id = "lease-" + calls.get();
+                leases.put(id, granted);
+                reply.put("leaseId", id);
+            }
+            reply.putAll(Map.of("granted", granted, "remaining", bucket.remaining(), "ttlMs", ttlMs));
+        }
+        byte[] body = json.writeValueAsBytes(reply);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private RateLimiterClient client() {
+        return RateLimiterClient.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort())).key("acme").build();
+    }
+
+    /** Checks are answered from the lease; the service sees a few lease calls, not one per check. */
+    @Test
+    void answersChecksLocallyFromLeases() throws Exception {
+        try (RateLimiterClient client = client()) {
+            RateLimiter users = client.limiter("/api/v1/users");
+            assertSame(users, client.limiter("/api/v1/users"));
+
+            long start = System.nanoTime();
+            int allowed = 0;
+            while (allowed < 90 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                if (users.tryAcquire()) allowed++;
+                else Thread.sleep(1); // give the background refill a moment
+            }
+            assertEquals(90, allowed);
+            assertTrue(calls.get() <= 12, "lease calls " + calls.get());
+
+            for (int i = 0; i < 100; i++) if (users.tryAcquire()) allowed++;
+            long refilled = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + 1;
+            assertTrue(allowed <= 100 + refilled, "never more than the service's bucket: " + allowed);
+        }
+    }
+
+    /** Unused leases go back to the service on close, and when their TTL runs out. */
+    @Test
+    void unusedLeasesAreReturned() throws Exception {
+        try (RateLimiterClient client = client()) {
+            client.limiter("/a");
+            await(() -> bucket.remaining() <= 90, "first lease taken");
+        }
+        assertTrue(bucket.remaining() >= 99, "returned on close: " + bucket.remaining());
+        assertTrue(leases.isEmpty(), "returned against its lease: " + leases);
+
+        ttlMs = 100;
+        try (RateLimiterClient client = client()) {
+            client.limiter("/a");
+            await(() -> bucket.remaining() <= 90, "first lease taken");
+            await(() -> bucket.remaining() >= 99, "lease returned after its TTL");
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for: " + what);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void unreachableServiceFailsTheFirstLookup() {
+        server.stop(0);
+        try (RateLimiterClient client = client()) {
+            assertThrows(IOException.class, () -> client.limiter("/a"));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.util.Objects;
+
+
+/**
+ * Token bucket whose refill rate can be changed while it serves, within {@code [minRate, maxRate]}; a control
+ * loop sets it from downstream latency and errors.
+ * - The bucket is a {@link PackedTokenBucketRateLimiter} refilling at its initial rate on a clock that runs
+ *   {@code rate / initialRate} times as fast as real time. A rate change starts a new segment of that clock
+ *   where the previous one ended, so tokens already in the bucket are kept and only the refill from then on
+ *   follows the new rate.
+ * - An acquire reads the clock's current segment with one volatile read; it never waits for a rate change.
+ * - Waits ({@link #reserve}, {@link #waitNanos}) are converted back to real time at the current rate.
+ */
+public final class AdaptiveRateLimiter extends PackedTokenBucketRateLimiter {
+
+    private final ScaledClock clock;
+    private final double initialRate;
+    private final double minRate;
+    private final double maxRate;
+
+    /** Starts at {@code cfg}'s refill rate, clamped to the bounds. */
+    public AdaptiveRateLimiter(Config cfg, double minRate, double maxRate) {
+        this(cfg, new ScaledClock(cfg.clock()), minRate, maxRate);
+    }
+
+    private AdaptiveRateLimiter(Config cfg, ScaledClock clock, double minRate, double maxRate) {
+        super(cfg.capacity(), cfg.refillPerSecond(), clock);
+        if (minRate <= 0 || maxRate < minRate)
+            throw new IllegalArgumentException("Rate bounds must satisfy 0 < min <= max");
+        this.clock = clock;
+        this.initialRate = cfg.refillPerSecond();
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        setRefillPerSecond(initialRate);
+    }
+
+    /** Current refill rate. */
+    @Override
+    public double refillPerSecond() { return initialRate * clock.speed(); }
+
+    /** Changes the refill rate from now on, clamped to the bounds; returns the rate applied. */
+    public double setRefillPerSecond(double rate) {
+        double clamped = Math.max(minRate, Math.min(maxRate, rate));
+        clock.speed(clamped / initialRate);
+        return clamped;
+    }
+
+    public double minRefillPerSecond() { return minRate; }
+
+    public double maxRefillPerSecond() { return maxRate; }
+
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        double speed = clock.speed();
+        long wait = super.reserve(permits, (long) Math.min(Long.MAX_VALUE, maxWaitNanos * speed));
+        return wait <= 0 ? wait : (long) Math.ceil(wait / speed);
+    }
+
+    @Override
+    public long waitNanos(int permits) {
+        long wait = super.waitNanos(permits);
+        return wait == 0 || wait == Long.MAX_VALUE ? wait : (long) Math.ceil(wait / clock.speed());
+    }
+
+    /** Real clock scaled piecewise: each segment runs at a fixed speed from where the previous one ended. */
+    private static final class ScaledClock implements NanoClock {
+
+        private record Segment(long realStart, long scaledStart, double speed) {}
+
+        private final NanoClock real;
+        private volatile Segment segment;
+
+        ScaledClock(NanoClock real) {
+            this.real = Objects.requireNonNull(real);
+            long now = real.nanoTime();
+            this.segment = new Segment(now, now, 1);
+        }
+
+        @Override
+        public long nanoTime() {
+            Segment s = segment;
+            return s.scaledStart + (long) ((real.nanoTime() - s.realStart) * s.speed);
+        }
+
+        double speed() { return segment.speed; }
+
+        synchronized void speed(double speed) {
+            long now = real.nanoTime();
+            Segment s = segment;
+            segment = new Segment(now, s.scaledStart + (long) ((now - s.realStart) * s.speed), speed);
+        }
+    }
+}
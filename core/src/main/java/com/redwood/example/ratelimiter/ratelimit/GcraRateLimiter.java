@@ -0,0 +1,160 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Generic Cell Rate Algorithm (the "virtual scheduling" form of a leaky bucket).
+ * - The only state is one {@code long}: the theoretical arrival time (TAT) of the next conforming request.
+ *   Every permit pushes it forward by the emission interval {@code T = 1 / rate}; a request conforms
+ *   while the pushed TAT stays within the burst tolerance {@code capacity * T} of now.
+ * - Decisions use integer nanosecond arithmetic only, one CAS per acquire and no allocation.
+ * - Admits the same traffic as a token bucket of {@code capacity} refilled at {@code rate}; compared to
+ *   {@link LocalTokenBucketRateLimiter} (a double and a long in an object swapped per acquire) the
+ *   footprint is a single long, which is what makes it attractive per client key.
+ * - The emission interval is rounded to whole nanoseconds, so rates above 10^9 per second are rejected.
+ */
+public final class GcraRateLimiter implements RateLimiter {
+
+    private static final VarHandle TAT;
+    static {
+        try {
+            TAT = MethodHandles.lookup().findVarHandle(GcraRateLimiter.class, "tatNs", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long capacity;
+    private final long emissionNs;
+    private final long toleranceNs;
+    private final NanoClock clock;
+
+    /** Only touched after a failed CAS, so uncontended acquires never pay for it. */
+    private final LongAdder casRetries = new LongAdder();
+
+    /** Theoretical arrival time; at or before now means a full bucket. Only updated through {@link #TAT}. */
+    @SuppressWarnings("unused")
+    private volatile long tatNs;
+
+    public GcraRateLimiter(Config cfg) {
+        this.capacity = cfg.capacity();
+        this.emissionNs = Math.round(1_000_000_000d / cfg.refillPerSecond());
+        if (emissionNs <= 0) throw new IllegalArgumentException("GCRA supports at most 10^9 tokens per second");
+        this.toleranceNs = Math.multiplyExact(capacity, emissionNs);
+        this.clock = cfg.clock();
+        this.tatNs = clock.nanoTime();
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    /** More than the capacity is denied up front, before {@code permits * emissionNs} can overflow. */
+    @Override
+    public boolean tryAcquire(int permits) {
+        if (permits > capacity) return false;
+        return advance(permits * emissionNs);
+    }
+
+    /**
+     * Fractional permits push the TAT by the same fraction of the emission interval. More than the capacity
+     * is denied before scaling: {@code Math.round} would saturate and the TAT wrap around.
+     */
+    @Override
+    public boolean tryAcquire(double permits) {
+        if (!(permits <= capacity)) return false;
+        return advance(Math.round(permits * emissionNs));
+    }
+
+    private boolean advance(long increment) {
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) TAT.getVolatile(this);
+            long updated = Math.max(current, now) + increment;
+            if (updated - now > toleranceNs) return false;
+            if (TAT.compareAndSet(this, current, updated)) return true;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Lends up to {@code maxWaitNanos} ahead by pushing the TAT past the tolerance;
+     * acquires are denied until the clock has caught up with it.
+     */
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        if (permits > capacity) return -1;
+        long increment = permits * emissionNs;
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) TAT.getVolatile(this);
+            long updated = Math.max(current, now) + increment;
+            long wait = Math.max(0, updated - now - toleranceNs);
+            if (wait > maxWaitNanos) return -1;
+            if (TAT.compareAndSet(this, current, updated)) return wait;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public long waitNanos(int permits) {
+        if (permits > capacity) return Long.MAX_VALUE;
+        long now = clock.nanoTime();
+        return Math.max(0, Math.max((long) TAT.getVolatile(this), now) + permits * emissionNs - now - toleranceNs);
+    }
+
+    /** Tolerance not yet used up by the TAT, in nanoseconds. */
+    private long slackNs(long now) {
+        return toleranceNs - (Math.max((long) TAT.getVolatile(this), now) - now);
+    }
+
+    @Override
+    public long remaining() {
+        return Math.max(0, slackNs(clock.nanoTime()) / emissionNs);
+    }
+
+    @Override
+    public double available() {
+        return Math.max(0d, (double) slackNs(clock.nanoTime()) / emissionNs);
+    }
+
+    @Override
+    public void setAvailable(double tokens) {
+        double clamped = Math.max(0d, Math.min(capacity, tokens));
+        TAT.setVolatile(this, clock.nanoTime() + Math.round((capacity - clamped) * emissionNs));
+    }
+
+    /** Pulls the TAT back; a TAT before now already means a full bucket, so over-refunds bank nothing. */
+    @Override
+    public void refund(int permits) { refund((double) permits); }
+
+    @Override
+    public void rollback(double permits) { refund(permits); }
+
+    @Override
+    public void refund(double permits) {
+        long decrement = Math.round(Math.min(permits, capacity) * emissionNs); // more than a full refill cannot wrap
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) TAT.getVolatile(this);
+            if (TAT.compareAndSet(this, current, Math.max(current - decrement, now))) return;
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public long casRetries() { return casRetries.sum(); }
+
+    @Override
+    public long capacity() { return capacity; }
+
+    @Override
+    public double refillPerSecond() { return 1_000_000_000d / emissionNs; }
+}
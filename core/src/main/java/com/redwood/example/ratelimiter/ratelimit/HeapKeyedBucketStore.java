@@ -0,0 +1,301 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.util.Objects;
+
+
+/**
+ * On-heap {@link KeyedBucketStore} built from primitive arrays.
+ * - Keys are spread over 64 lock-striped segments; each segment is an open-addressing table of
+ *   parallel arrays (key, cached hash, packed bucket state), so a bucket costs 16 bytes plus its key.
+ * - Bucket state uses the same single-long encoding as {@link PackedTokenBucketRateLimiter}:
+ *   the instant at which the bucket is empty.
+ * - Memory is bounded by {@code maxKeys}. When a segment is full, buckets that have fully refilled
+ *   are swept first; if none can be dropped, new keys share a single overflow bucket until space frees up.
+ *   Sweeps only reallocate a segment that actually has buckets to drop.
+ */
+public final class HeapKeyedBucketStore implements KeyedBucketStore {
+
+    private static final double EPS = 1e-5;
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int INITIAL_TABLE = 16;
+    private static final double LOAD_FACTOR = 0.75;
+    /** Key reference + cached hash + bucket state per table slot. */
+    private static final int SLOT_BYTES = 4 + 4 + 8;
+    /** String object + backing array headers on top of the (Latin-1) characters. */
+    private static final int KEY_OVERHEAD_BYTES = 40;
+    /** A full segment re-sweeps for idle buckets at most this often, so overflow inserts stay O(1). */
+    private static final long SWEEP_BACKOFF_NS = 100_000_000L;
+
+    private final double capacity;
+    private final double refillPerNs;
+    private final double nsPerToken;
+    private final long fullRefillNs;
+    private final NanoClock clock;
+    private final long maxKeys;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final PackedTokenBucketRateLimiter overflow;
+
+    public HeapKeyedBucketStore(Config cfg, long maxKeys) {
+        if (maxKeys <= 0) throw new IllegalArgumentException("maxKeys must be positive");
+        this.capacity = cfg.capacity();
+        this.refillPerNs = cfg.refillPerSecond() / 1_000_000_000d;
+        this.nsPerToken = 1d / refillPerNs;
+        this.fullRefillNs = (long) Math.ceil(capacity * nsPerToken);
+        this.clock = cfg.clock();
+        this.maxKeys = maxKeys;
+        this.overflow = new PackedTokenBucketRateLimiter(cfg);
+
+        int perSegment = (int) Math.min(Integer.MAX_VALUE / 2, (maxKeys + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    private Segment segmentFor(int h) {
+        return segments[h >>> (32 - SEGMENT_BITS)];
+    }
+
+    private double tokens(long emptyAt, long now) {
+        long base = Math.max(emptyAt, now - fullRefillNs);
+        return Math.min(capacity, (now - base) * refillPerNs);
+    }
+
+    @Override
+    public boolean tryAcquire(String key, double permits) {
+        Objects.requireNonNull(key);
+        int h = spread(key.hashCode());
+        Segment s = segmentFor(h);
+        long now = clock.nanoTime();
+        synchronized (s) {
+            int i = s.slot(key, h, now, true);
+            if (i < 0) {
+                if (!overflow.tryAcquire(permits)) return false;
+                s.lastOverflowNs = now;
+                return true;
+            }
+
+            long base = Math.max(s.emptyAt[i], now - fullRefillNs);
+            if (Math.min(capacity, (now - base) * refillPerNs) + EPS < permits) return false;
+            s.emptyAt[i] = base + Math.round(permits * nsPerToken);
+            return true;
+        }
+    }
+
+    @Override
+    public long remaining(String key) {
+        return (long) Math.floor(Math.max(0d, available(key)) + EPS);
+    }
+
+    @Override
+    public double available(String key) {
+        int h = spread(key.hashCode());
+        Segment s = segmentFor(h);
+        long now = clock.nanoTime();
+        synchronized (s) {
+            int i = s.slot(key, h, now, false);
+            if (i >= 0) return tokens(s.emptyAt[i], now);
+            return s.full() ? overflow.available() : capacity; // unknown keys have a fresh bucket
+        }
+    }
+
+    @Override
+    public void setAvailable(String key, double tokens) {
+        Objects.requireNonNull(key);
+        int h = spread(key.hashCode());
+        Segment s = segmentFor(h);
+        long now = clock.nanoTime();
+        long emptyAt = now - Math.round(Math.max(0d, Math.min(capacity, tokens)) * nsPerToken);
+        synchronized (s) {
+            int i = s.slot(key, h, now, true);
+            if (i >= 0) s.emptyAt[i] = emptyAt;
+        }
+    }
+
+    /** Buckets are addressed by key; a hash alone cannot be mapped back to one. */
+    @Override
+    public boolean setAvailableByHash(long keyHash, double tokens) {
+        return false;
+    }
+
+    /** Each segment is copied under its lock, then visited outside it. */
+    @Override
+    public void forEachBucket(BucketVisitor visitor) {
+        for (Segment s : segments) {
+            String[] keys;
+            double[] levels;
+            int n = 0;
+            synchronized (s) {
+                long now = clock.nanoTime();
+                keys = new String[s.size];
+                levels = new double[s.size];
+                for (int j = 0; j < s.keys.length; j++) {
+                    if (s.keys[j] == null) continue;
+                    keys[n] = s.keys[j];
+                    levels[n++] = tokens(s.emptyAt[j], now);
+                }
+            }
+            for (int j = 0; j < n; j++) visitor.key(keys[j], levels[j]);
+        }
+    }
+
+    /**
+     * A key without a bucket was charged to the overflow bucket, whether or not its segment is still full:
+     * its own bucket would be a fresh, full one. The overflow bucket only gets the refund while a charge of
+     * this segment can still be outstanding there, i.e. within a full refill of the last one.
+     */
+    @Override
+    public void refund(String key, double permits) {
+        int h = spread(key.hashCode());
+        Segment s = segmentFor(h);
+        long now = clock.nanoTime();
+        synchronized (s) {
+            int i = s.slot(key, h, now, false);
+            if (i >= 0) s.emptyAt[i] -= Math.round(permits * nsPerToken);
+            else if (now - s.lastOverflowNs < fullRefillNs) overflow.refund(permits);
+        }
+    }
+
+    @Override
+    public long capacity() { return (long) capacity; }
+
+    @Override
+    public double refillPerSecond() { return refillPerNs * 1_000_000_000d; }
+
+    @Override
+    public long size() {
+        long n = 0;
+        for (Segment s : segments) {
+            synchronized (s) { n += s.size; }
+        }
+        return n;
+    }
+
+    @Override
+    public long maxKeys() { return maxKeys; }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Segment s : segments) {
+            synchronized (s) { bytes += (long) s.keys.length * SLOT_BYTES + s.keyBytes; }
+        }
+        return bytes;
+    }
+
+    @Override
+    public long evictIdle() {
+        long evicted = 0;
+        long now = clock.nanoTime();
+        for (Segment s : segments) {
+            synchronized (s) {
+                s.lastSweepNs = now;
+                if (!s.hasIdle(now)) continue;
+                int before = s.size;
+                s.rebuild(s.keys.length, now, true);
+                evicted += before - s.size;
+            }
+        }
+        return evicted;
+    }
+
+    /** One open-addressing table; every access happens while holding the segment's monitor. */
+    private final class Segment {
+        final int maxSize;
+        final int maxTable;
+        String[] keys = new String[INITIAL_TABLE];
+        int[] hashes = new int[INITIAL_TABLE];
+        long[] emptyAt = new long[INITIAL_TABLE];
+        int size;
+        long keyBytes;
+        long lastSweepNs = clock.nanoTime() - SWEEP_BACKOFF_NS;
+        /** When a key of this segment was last charged to the overflow bucket. */
+        long lastOverflowNs = clock.nanoTime() - fullRefillNs;
+
+        Segment(int maxSize) {
+            this.maxSize = maxSize;
+            int table = INITIAL_TABLE;
+            while (table * LOAD_FACTOR < maxSize) table <<= 1;
+            this.maxTable = table;
+        }
+
+        /** True while new keys of this segment are served by the overflow bucket. */
+        boolean full() {
+            return size >= maxSize || size + 1 > maxTable * LOAD_FACTOR;
+        }
+
+        /** Index of the key's bucket; created (full) on demand. -1 when absent or no space is left. */
+        int slot(String key, int h, long now, boolean create) {
+            int i = find(key, h);
+            if (i >= 0 || !create) return i < 0 ? -1 : i;
+
+            if (size >= maxSize || size + 1 > keys.length * LOAD_FACTOR) {
+                // Make room: grow while allowed, and drop idle buckets unless a sweep just ran
+                boolean sweep = now - lastSweepNs >= SWEEP_BACKOFF_NS;
+                if (sweep) lastSweepNs = now;
+                int length = size + 1 > keys.length * LOAD_FACTOR && keys.length < maxTable ? keys.length << 1 : keys.length;
+                if (length != keys.length || (sweep && hasIdle(now))) rebuild(length, now, sweep);
+                if (size >= maxSize || size + 1 > keys.length * LOAD_FACTOR) return -1;
+                i = find(key, h);
+            }
+
+            int at = -i - 1;
+            keys[at] = key;
+            hashes[at] = h;
+            emptyAt[at] = now - fullRefillNs;
+            size++;
+            keyBytes += KEY_OVERHEAD_BYTES + key.length();
+            return at;
+        }
+
+        /** Slot of the key, or {@code -(insertion point) - 1}. */
+        private int find(String key, int h) {
+            int mask = keys.length - 1;
+            int i = h & mask;
+            String k;
+            while ((k = keys[i]) != null) {
+                if (hashes[i] == h && k.equals(key)) return i;
+                i = (i + 1) & mask;
+            }
+            return -i - 1;
+        }
+
+        /** True if some bucket has fully refilled, so a sweep would drop it; scanned in place. */
+        boolean hasIdle(long now) {
+            long idleBefore = now - fullRefillNs;
+            for (int j = 0; j < keys.length; j++) {
+                if (keys[j] != null && emptyAt[j] <= idleBefore) return true;
+            }
+            return false;
+        }
+
+        /** Re-inserts every bucket into a table of {@code length} slots, optionally dropping full ones. */
+        void rebuild(int length, long now, boolean dropIdle) {
+            String[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            long[] oldEmptyAt = emptyAt;
+            keys = new String[length];
+            hashes = new int[length];
+            emptyAt = new long[length];
+            size = 0;
+            keyBytes = 0;
+
+            long idleBefore = now - fullRefillNs;
+            for (int j = 0; j < oldKeys.length; j++) {
+                String k = oldKeys[j];
+                if (k == null || (dropIdle && oldEmptyAt[j] <= idleBefore)) continue;
+                int at = -find(k, oldHashes[j]) - 1;
+                keys[at] = k;
+                hashes[at] = oldHashes[j];
+                emptyAt[at] = oldEmptyAt[j];
+                size++;
+                keyBytes += KEY_OVERHEAD_BYTES + k.length();
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+
+/**
+ * Counts every acquire against several levels at once, e.g. an endpoint bucket, the caller's tenant bucket
+ * and a service-wide ceiling: permits are granted only when every level grants them.
+ * - Levels are acquired one after the other; when one denies, the permits already taken from the others are
+ *   refunded, so a denial never leaks tokens. Between the acquire and the refund a concurrent caller may see
+ *   the earlier levels briefly short, never over their limit.
+ * - The allow path is the levels' own lock-free acquires in a row; nothing is locked or allocated.
+ * - To fail fast the levels are tried in an {@link Order} shared by all limiters over the same chain: the
+ *   tightest bucket first, and after that whichever level denied most recently (move to front), so under
+ *   saturation a denial usually costs a single acquire and nothing to refund.
+ */
+public final class HierarchicalRateLimiter implements RateLimiter {
+
+    /** Evaluation order of a chain's levels; only rewritten on a denial by a level that was not tried first. */
+    public static final class Order {
+        private volatile int[] indexes;
+
+        /** Tightest level (smallest capacity, then slowest refill) first. */
+        public Order(RateLimiter[] levels) {
+            this.indexes = IntStream.range(0, levels.length).boxed()
+                    .sorted(Comparator.<Integer>comparingLong(i -> levels[i].capacity()).thenComparingDouble(i -> levels[i].refillPerSecond()))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        int[] indexes() { return indexes; }
+
+        /** Moves {@code level} to the front. Racing updates may each win; any permutation is a valid order. */
+        void denied(int level) {
+            int[] current = indexes;
+            if (current[0] == level) return;
+            int[] updated = new int[current.length];
+            updated[0] = level;
+            for (int i = 0, j = 1; i < current.length; i++) {
+                if (current[i] != level) updated[j++] = current[i];
+            }
+            indexes = updated;
+        }
+    }
+
+    private final RateLimiter[] levels;
+    private final Order order;
+
+    public HierarchicalRateLimiter(RateLimiter... levels) {
+        this(levels, new Order(levels));
+    }
+
+    /** Limiter over {@code levels} evaluated in a shared {@code order}, e.g. one per client key of the same chain. */
+    public HierarchicalRateLimiter(RateLimiter[] levels, Order order) {
+        if (levels.length == 0) throw new IllegalArgumentException("At least one level required");
+        if (order.indexes().length != levels.length) throw new IllegalArgumentException("Order does not match the levels");
+        this.levels = levels.clone();
+        this.order = order;
+    }
+
+    /** The levels in configuration order. */
+    public RateLimiter[] levels() { return levels.clone(); }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        int[] o = order.indexes();
+        for (int i = 0; i < o.length; i++) {
+            if (!levels[o[i]].tryAcquire(permits)) {
+                for (int j = i - 1; j >= 0; j--) levels[o[j]].refund(permits);
+                order.denied(o[i]);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fractional permits are taken from every level in the same way; each level charges them as it does alone,
+     * and gives back exactly that charge when a later level denies.
+     */
+    @Override
+    public boolean tryAcquire(double permits) {
+        int[] o = order.indexes();
+        for (int i = 0; i < o.length; i++) {
+            if (!levels[o[i]].tryAcquire(permits)) {
+                for (int j = i - 1; j >= 0; j--) levels[o[j]].rollback(permits);
+                order.denied(o[i]);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reserves on every level; the wait is the longest of theirs. */
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        int[] o = order.indexes();
+        long wait = 0;
+        for (int i = 0; i < o.length; i++) {
+            long w = levels[o[i]].reserve(permits, maxWaitNanos);
+            if (w < 0) {
+                for (int j = i - 1; j >= 0; j--) levels[o[j]].refund(permits);
+                order.denied(o[i]);
+                return -1;
+            }
+            wait = Math.max(wait, w);
+        }
+        return wait;
+    }
+
+    @Override
+    public long waitNanos(int permits) {
+        long wait = 0;
+        for (RateLimiter l : levels) wait = Math.max(wait, l.waitNanos(permits));
+        return wait;
+    }
+
+    /** What every level can still grant. */
+    @Override
+    public long remaining() {
+        long min = Long.MAX_VALUE;
+        for (RateLimiter l : levels) min = Math.min(min, l.remaining());
+        return min;
+    }
+
+    @Override
+    public double available() {
+        double min = Double.MAX_VALUE;
+        for (RateLimiter l : levels) min = Math.min(min, l.available());
+        return min;
+    }
+
+    @Override
+    public long capacity() {
+        long min = Long.MAX_VALUE;
+        for (RateLimiter l : levels) min = Math.min(min, l.capacity());
+        return min;
+    }
+
+    @Override
+    public double refillPerSecond() {
+        double min = Double.MAX_VALUE;
+        for (RateLimiter l : levels) min = Math.min(min, l.refillPerSecond());
+        return min;
+    }
+
+    @Override
+    public void refund(int permits) {
+        for (RateLimiter l : levels) l.refund(permits);
+    }
+
+    @Override
+    public void refund(double permits) {
+        for (RateLimiter l : levels) l.refund(permits);
+    }
+
+    @Override
+    public void rollback(double permits) {
+        for (RateLimiter l : levels) l.rollback(permits);
+    }
+
+    /**
+     * The levels are configured rules of their own, carried over on reload and restored from snapshots
+     * individually, so an overwrite of the chain as a whole is ignored.
+     */
+    @Override
+    public void setAvailable(double tokens) {}
+
+    @Override
+    public long casRetries() {
+        long sum = 0;
+        for (RateLimiter l : levels) sum += l.casRetries();
+        return sum;
+    }
+
+    @Override
+    public long contentionFailures() {
+        long sum = 0;
+        for (RateLimiter l : levels) sum += l.contentionFailures();
+        return sum;
+    }
+}
@@ -0,0 +1,64 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * In-process {@link TokenStore}: the stand-in for a shared store in tests and single-node runs.
+ * Several {@link LeasedRateLimiter}s on one instance behave like nodes of a cluster sharing a real store.
+ */
+public final class InMemoryTokenStore implements TokenStore {
+
+    /** Central bucket state; mutated only inside {@link ConcurrentHashMap#compute}. */
+    private static final class Central {
+        double tokens;
+        long lastRefillNs;
+
+        Central(double tokens, long lastRefillNs) {
+            this.tokens = tokens;
+            this.lastRefillNs = lastRefillNs;
+        }
+    }
+
+    private final NanoClock clock;
+    private final ConcurrentHashMap<String, Central> buckets = new ConcurrentHashMap<>();
+
+    public InMemoryTokenStore() {
+        this(NanoClock.system());
+    }
+
+    public InMemoryTokenStore(NanoClock clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    @Override
+    public Grant take(Bucket bucket, long max) {
+        return apply(bucket, Math.max(0, max));
+    }
+
+    @Override
+    public Grant giveBack(Bucket bucket, long tokens) {
+        return apply(bucket, -Math.max(0, tokens));
+    }
+
+    /** Refills, then takes {@code delta} tokens (gives them back when negative). */
+    private Grant apply(Bucket bucket, long delta) {
+        long[] result = new long[2];
+        buckets.compute(bucket.name(), (name, c) -> {
+            long now = clock.nanoTime();
+            if (c == null) c = new Central(bucket.capacity(), now);
+            double refilled = (now - c.lastRefillNs) * bucket.refillPerSecond() / 1_000_000_000d;
+            c.tokens = Math.min(bucket.capacity(), c.tokens + Math.max(0, refilled));
+            c.lastRefillNs = now;
+            long granted = delta > 0 ? Math.min(delta, (long) Math.floor(c.tokens)) : 0;
+            c.tokens = Math.min(bucket.capacity(), c.tokens - (delta > 0 ? granted : delta));
+            result[0] = granted;
+            result[1] = (long) Math.floor(c.tokens);
+            return c;
+        });
+        return new Grant(result[0], result[1]);
+    }
+}
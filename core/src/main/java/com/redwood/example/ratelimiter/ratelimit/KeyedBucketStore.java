@@ -0,0 +1,82 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+/**
+ * Lazily created token buckets, one per client key (tenant, API key, IP, ...), all sharing
+ * the same capacity and refill rate. Implementations bound their memory and evict buckets
+ * that have fully refilled, since such a bucket is indistinguishable from a fresh one.
+ */
+public interface KeyedBucketStore {
+    /** Takes {@code permits} tokens, fractions included, from the key's bucket. */
+    boolean tryAcquire(String key, double permits);
+    long remaining(String key);
+    void refund(String key, double permits);
+
+    /** Current (fractional) number of tokens in the key's bucket. */
+    double available(String key);
+
+    /** Overwrites the token count of the key's bucket (created if needed), clamped to {@code [0, capacity]}. */
+    void setAvailable(String key, double tokens);
+    long capacity();
+    double refillPerSecond();
+
+    /** Number of buckets currently held. */
+    long size();
+
+    /** Upper bound on the number of buckets held at once. */
+    long maxKeys();
+
+    /** Estimated memory held by the store, in bytes. */
+    long memoryBytes();
+
+    /** Drops every bucket that has fully refilled; returns how many were evicted. */
+    long evictIdle();
+
+    /** Receives the buckets of a store; see {@link #forEachBucket}. */
+    interface BucketVisitor {
+        /** A bucket known by its client key. */
+        void key(String key, double tokens);
+
+        /** A bucket of a store that only keeps the 64-bit hash of the key. */
+        void hash(long keyHash, double tokens);
+    }
+
+    /**
+     * Visits every held bucket with its current tokens, without blocking acquires for longer
+     * than it takes to copy a small part of the store.
+     */
+    void forEachBucket(BucketVisitor visitor);
+
+    /**
+     * Overwrites the bucket stored under a 64-bit key hash, as reported by {@link BucketVisitor#hash}.
+     * Returns false when the store needs the key itself and cannot address the bucket.
+     */
+    boolean setAvailableByHash(long keyHash, double tokens);
+
+    /**
+     * Copies the buckets of {@code previous} into this store after a config reload, scaling each
+     * bucket's tokens by {@code capacity() / previous.capacity()}. Returns how many were carried over;
+     * buckets this store cannot address (hashed keys moving to a store that needs the key) start full.
+     */
+    default long carryOver(KeyedBucketStore previous) {
+        double scale = (double) capacity() / previous.capacity();
+        long[] carried = new long[1];
+        previous.forEachBucket(new BucketVisitor() {
+            @Override
+            public void key(String key, double tokens) {
+                setAvailable(key, tokens * scale);
+                carried[0]++;
+            }
+
+            @Override
+            public void hash(long keyHash, double tokens) {
+                if (setAvailableByHash(keyHash, tokens * scale)) carried[0]++;
+            }
+        });
+        return carried[0];
+    }
+
+    /** {@link RateLimiter} view of a single key's bucket. */
+    default RateLimiter forKey(String key) {
+        return new KeyedRateLimiter(this, key);
+    }
+}
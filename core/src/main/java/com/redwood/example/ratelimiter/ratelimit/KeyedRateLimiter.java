@@ -0,0 +1,46 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import java.util.Objects;
+
+/** Exposes one key of a {@link KeyedBucketStore} through the common {@link RateLimiter} interface. */
+public record KeyedRateLimiter(KeyedBucketStore store, String key) implements RateLimiter {
+
+    public KeyedRateLimiter {
+        Objects.requireNonNull(store);
+        Objects.requireNonNull(key);
+    }
+
+    @Override
+    public boolean tryAcquire() { return store.tryAcquire(key, 1); }
+
+    @Override
+    public boolean tryAcquire(int permits) { return store.tryAcquire(key, permits); }
+
+    @Override
+    public boolean tryAcquire(double permits) { return store.tryAcquire(key, permits); }
+
+    @Override
+    public long remaining() { return store.remaining(key); }
+
+    @Override
+    public long capacity() { return store.capacity(); }
+
+    @Override
+    public double refillPerSecond() { return store.refillPerSecond(); }
+
+    @Override
+    public void refund(int permits) { store.refund(key, permits); }
+
+    @Override
+    public void refund(double permits) { store.refund(key, permits); }
+
+    /** The stores charge fractions exactly. */
+    @Override
+    public void rollback(double permits) { store.refund(key, permits); }
+
+    @Override
+    public double available() { return store.available(key); }
+
+    @Override
+    public void setAvailable(double tokens) { store.setAvailable(key, tokens); }
+}
@@ -0,0 +1,263 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore.Bucket;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore.Grant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Cluster-mode limiter: one endpoint's bucket lives in a shared {@link TokenStore}, and every node spends
+ * tokens from a local lease it takes from there in batches.
+ * - Acquires only touch the local lease (one CAS); the store is called in the background when the lease
+ *   drops below half of {@code leaseSize}, at most one call in flight per limiter.
+ * - Tokens are taken from the central bucket before they are spent, so the cluster as a whole never admits
+ *   more than the configured limit. The price is under-admission: up to about one and a half leases per
+ *   node can sit unused while another node is starved. Smaller leases are more accurate, larger ones
+ *   call the store less often.
+ * - With an empty lease an acquire is denied at once, or with {@code waitNanos > 0} blocks up to that long for
+ *   the refill (accuracy over latency). {@link #reserve} never waits, so async acquires poll instead.
+ * - A central bucket that granted nothing is not asked again before it can have refilled what was wanted.
+ * - While the store is unreachable acquires go to a local {@code fallback} bucket holding this node's share
+ *   of the limit, or are denied when there is none.
+ * - With a lease TTL, a lease that has not been topped up for that long is handed back, so an idle node does
+ *   not keep tokens from the others indefinitely.
+ */
+public final class LeasedRateLimiter implements RateLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LeasedRateLimiter.class);
+    /** Pause before the store is tried again after a failed call. */
+    static final long STORE_RETRY_NS = TimeUnit.MILLISECONDS.toNanos(500);
+    /** Longest pause after an empty grant, however slow the refill rate. */
+    private static final long MAX_BACKOFF_NS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Store calls block on I/O, so each refill gets its own virtual thread. */
+    private static final Executor REFILLS = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("lease-refill-", 0).factory());
+
+    private final TokenStore store;
+    private final Bucket bucket;
+    private final long leaseSize;
+    private final long waitNanos;
+    private final NanoClock clock;
+    private final RateLimiter fallback;
+    private final Executor refills;
+    private final long leaseTtlNanos;
+
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>();
+    private volatile long remoteRemaining;
+    /** No store call before this instant (store down, or central bucket drained). */
+    private volatile long nextCallNs;
+    private volatile boolean storeDown;
+    /** When the current lease is handed back unless topped up before; only used with a lease TTL. */
+    private volatile long leaseExpiresNs;
+
+    /**
+     * @param name          key of the central bucket, the same on every node (the endpoint)
+     * @param leaseSize     tokens taken from the store per call
+     * @param waitNanos     how long an acquire may wait for a refill when the lease is empty; 0 denies at once
+     * @param fallbackShare fraction of the limit this node enforces on its own while the store is down; 0 denies
+     */
+    public LeasedRateLimiter(Config cfg, TokenStore store, String name, long leaseSize, long waitNanos, double fallbackShare) {
+        this(cfg, store, name, leaseSize, waitNanos, fallbackShare, 0);
+    }
+
+    /** @param leaseTtlNanos how long an unrenewed lease is kept before it is handed back; 0 keeps it until {@link #release} */
+    public LeasedRateLimiter(Config cfg, TokenStore store, String name, long leaseSize, long waitNanos, double fallbackShare,
+                             long leaseTtlNanos) {
+        this(cfg, store, name, leaseSize, waitNanos, fallbackShare, leaseTtlNanos, REFILLS);
+    }
+
+    /** Tests pass a direct executor to run store calls inline. */
+    LeasedRateLimiter(Config cfg, TokenStore store, String name, long leaseSize, long waitNanos, double fallbackShare, Executor refills) {
+        this(cfg, store, name, leaseSize, waitNanos, fallbackShare, 0, refills);
+    }
+
+    LeasedRateLimiter(Config cfg, TokenStore store, String name, long leaseSize, long waitNanos, double fallbackShare,
+                      long leaseTtlNanos, Executor refills) {
+        if (leaseSize <= 0) throw new IllegalArgumentException("leaseSize must be positive");
+        if (fallbackShare < 0 || fallbackShare > 1) throw new IllegalArgumentException("fallbackShare must be within [0, 1]");
+        this.store = Objects.requireNonNull(store);
+        this.bucket = new Bucket(name, cfg.capacity(), cfg.refillPerSecond());
+        this.leaseSize = leaseSize;
+        this.waitNanos = Math.max(0, waitNanos);
+        this.clock = cfg.clock();
+        this.remoteRemaining = cfg.capacity();
+        this.nextCallNs = clock.nanoTime();
+        this.refills = Objects.requireNonNull(refills);
+        this.leaseTtlNanos = Math.max(0, leaseTtlNanos);
+        this.fallback = fallbackShare == 0 ? null : new LocalTokenBucketRateLimiter(Config.newBuilder()
+                .capacity(Math.max(1, Math.round(cfg.capacity() * fallbackShare)))
+                .refillTokensPerSecond(cfg.refillPerSecond() * fallbackShare).clock(clock).build());
+        refill(0); // the first requests should not all find an empty lease
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return acquire(permits, waitNanos);
+    }
+
+    /** Never waits for the refill: async acquires call this on the shared timer thread and poll again instead. */
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        return acquire(permits, 0) ? 0 : -1;
+    }
+
+    private boolean acquire(int permits, long waitNanos) {
+        if (takeLeased(permits)) {
+            if (leased.get() < leaseSize / 2) refill(0);
+            return true;
+        }
+        CompletableFuture<Void> pending = refill(permits);
+        if (waitNanos > 0 && !pending.isDone()) {
+            try {
+                pending.get(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // decided below with whatever the lease holds
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (takeLeased(permits)) return true;
+        return storeDown && fallback != null && fallback.tryAcquire(permits);
+    }
+
+    /**
+     * Takes what the local lease holds, up to {@code max}, in one CAS; never waits for the store, whose refill
+     * is only started. With the store down and the lease empty the fallback share is drained instead.
+     */
+    @Override
+    public long tryAcquireUpTo(long max) {
+        for (;;) {
+            long current = leased.get();
+            long taken = Math.min(max, current);
+            if (taken <= 0) break;
+            if (leased.compareAndSet(current, current - taken)) {
+                if (current - taken < leaseSize / 2) refill(0);
+                return taken;
+            }
+        }
+        refill(0);
+        return storeDown && fallback != null ? fallback.tryAcquireUpTo(max) : 0;
+    }
+
+    private boolean takeLeased(int permits) {
+        long current;
+        do {
+            current = leased.get();
+            if (current < permits) return false;
+        } while (!leased.compareAndSet(current, current - permits));
+        return true;
+    }
+
+    /**
+     * Starts a store call unless one is running or the store should be left alone; returns the call to wait for.
+     * {@code needed} is the number of tokens a waiting acquire is short of.
+     */
+    private CompletableFuture<Void> refill(long needed) {
+        for (;;) {
+            CompletableFuture<Void> running = inFlight.get();
+            if (running != null) return running;
+            if (clock.nanoTime() - nextCallNs < 0) return CompletableFuture.completedFuture(null);
+            CompletableFuture<Void> call = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, call)) {
+                refills.execute(() -> fetch(needed, call));
+                return call;
+            }
+        }
+    }
+
+    private void fetch(long needed, CompletableFuture<Void> call) {
+        long want = Math.max(leaseSize, needed - leased.get());
+        try {
+            Grant grant = store.take(bucket, want);
+            leased.addAndGet(grant.granted());
+            remoteRemaining = grant.remaining();
+            storeDown = false;
+            if (grant.granted() > 0 && leaseTtlNanos > 0) {
+                leaseExpiresNs = clock.nanoTime() + leaseTtlNanos;
+                TimerWheel.shared().schedule(leaseTtlNanos, () -> refills.execute(this::expireLease));
+            }
+            if (grant.granted() == 0) {
+                long refillNs = (long) Math.ceil(Math.max(1, needed) / bucket.refillPerSecond() * 1e9);
+                nextCallNs = clock.nanoTime() + Math.min(refillNs, MAX_BACKOFF_NS);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!storeDown) LOG.warn("Token store unavailable for '{}', using {}: {}", bucket.name(),
+                    fallback == null ? "the remaining lease" : "the local fallback share", e.toString());
+            storeDown = true;
+            nextCallNs = clock.nanoTime() + STORE_RETRY_NS;
+        } finally {
+            inFlight.set(null);
+            call.complete(null);
+        }
+    }
+
+    /**
+     * Hands the unused lease back to the store; the limiter stays usable and leases again on demand.
+     * A store call in flight is waited for first, so its grant is returned too instead of arriving after.
+     */
+    @Override
+    public void release() {
+        CompletableFuture<Void> running = inFlight.get();
+        if (running != null) running.join();
+        long unused = leased.getAndSet(0);
+        if (unused == 0) return;
+        try {
+            remoteRemaining = store.giveBack(bucket, unused).remaining();
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Could not return {} leased tokens of '{}': {}", unused, bucket.name(), e.toString());
+        }
+    }
+
+    /** Hands the lease back if it has not been topped up within the TTL; scheduled after every grant. */
+    void expireLease() {
+        if (leased.get() > 0 && clock.nanoTime() - leaseExpiresNs >= 0) release();
+    }
+
+    /** Local lease plus what the central bucket held at the last store call. */
+    @Override
+    public long remaining() { return (long) available(); }
+
+    @Override
+    public long capacity() { return bucket.capacity(); }
+
+    @Override
+    public double refillPerSecond() { return bucket.refillPerSecond(); }
+
+    @Override
+    public void refund(int permits) {
+        leased.addAndGet(permits);
+    }
+
+    @Override
+    public double available() {
+        return Math.min(bucket.capacity(), leased.get() + remoteRemaining);
+    }
+
+    /** The bucket's state lives in the store, shared with the other nodes; a local overwrite is ignored. */
+    @Override
+    public void setAvailable(double tokens) {}
+
+    /** Tokens currently leased to this node. */
+    public long leased() { return leased.get(); }
+
+    /** Whether the last store call failed. */
+    public boolean storeDown() { return storeDown; }
+}
@@ -2,6 +2,7 @@ package com.redwood.example.ratelimiter.ratelimit;
 
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -34,6 +35,10 @@ public class LocalTokenBucketRateLimiter implements RateLimiter {
 
         public static Builder newBuilder() { return new Builder(); }
 
+        long capacity() { return capacity; }
+        double refillPerSecond() { return refillPerSecond; }
+        NanoClock clock() { return clock; }
+
         /** Fluent builder for readability. */
         public static final class Builder {
             private long capacity;
@@ -60,6 +65,9 @@ public class LocalTokenBucketRateLimiter implements RateLimiter {
     private final double refillPerNs;
     private final NanoClock clock;
     private final AtomicReference<State> state;
+    /** Only touched after a failed CAS, so uncontended acquires never pay for them. */
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder contentionFailures = new LongAdder();
 
     public LocalTokenBucketRateLimiter(Config cfg) {
         this.capacity = cfg.capacity;
@@ -71,12 +79,15 @@ public class LocalTokenBucketRateLimiter implements RateLimiter {
     @Override
     public boolean tryAcquire() { return tryAcquire(1); }
 
+    @Override
+    public boolean tryAcquire(int permits) { return tryAcquire((double) permits); }
+
     /**
-     * Attempts to acquire N tokens.
+     * Attempts to acquire N (possibly fractional) tokens.
      * Returns true if enough tokens are available, false otherwise.
      */
     @Override
-    public boolean tryAcquire(int permits) {
+    public boolean tryAcquire(double permits) {
         int attempts = 0;
         final double EPS = 1e-5;
 
@@ -95,12 +106,62 @@ public class LocalTokenBucketRateLimiter implements RateLimiter {
                 return false;
             }
 
+            casRetries.increment();
             attempts++;
             if ((attempts & 0xFF) == 0) Thread.yield();
         }
+        contentionFailures.increment();
         return false;
     }
 
+    /**
+     * Lends up to {@code maxWaitNanos} of refill ahead: the token count may go negative, and acquires
+     * are denied until it has refilled past zero again.
+     */
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        final double EPS = 1e-5;
+        if (permits > capacity) return -1;
+
+        while (true) {
+            State current = state.get();
+            State refilled = refill(current, clock.nanoTime());
+            double missing = permits - refilled.available - EPS;
+            long wait = missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerNs);
+            if (wait > maxWaitNanos) return -1;
+
+            State updated = new State(refilled.available - permits, refilled.lastRefillNs);
+            if (state.compareAndSet(current, updated)) return wait;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Exact, including permits reserved ahead by earlier callers. */
+    @Override
+    public long waitNanos(int permits) {
+        if (permits > capacity) return Long.MAX_VALUE;
+        double missing = permits - refill(state.get(), clock.nanoTime()).available;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerNs);
+    }
+
+    @Override
+    public void refund(int permits) { refund((double) permits); }
+
+    @Override
+    public void rollback(double permits) { refund(permits); }
+
+    @Override
+    public void refund(double permits) {
+        while (true) {
+            State current = state.get();
+            State refilled = refill(current, clock.nanoTime());
+            double restored = Math.min(capacity, refilled.available + permits);
+            if (state.compareAndSet(current, new State(restored, refilled.lastRefillNs))) return;
+            Thread.onSpinWait();
+        }
+    }
+
     /** Adds tokens proportional to elapsed time since last refill. */
     private State refill(State prev, long now) {
         if (now <= prev.lastRefillNs) return prev;
@@ -111,14 +172,31 @@ public class LocalTokenBucketRateLimiter implements RateLimiter {
         return new State(newAvail, now);
     }
 
+    /** Read-only: the refill is computed, not stored, so it never overwrites a concurrent acquire. */
     @Override
     public long remaining() {
         final double EPS = 1e-5;
         State s = refill(state.get(), clock.nanoTime());
-        state.set(s);
-        return (long) Math.floor(s.available + EPS);
+        return (long) Math.floor(Math.max(0d, s.available) + EPS);
     }
 
+    /** Zero while the bucket is in debt from {@link #reserve}. */
+    @Override
+    public double available() {
+        return Math.max(0d, refill(state.get(), clock.nanoTime()).available);
+    }
+
+    @Override
+    public void setAvailable(double tokens) {
+        state.set(new State(Math.max(0d, Math.min(capacity, tokens)), clock.nanoTime()));
+    }
+
+    @Override
+    public long casRetries() { return casRetries.sum(); }
+
+    @Override
+    public long contentionFailures() { return contentionFailures.sum(); }
+
     @Override
     public long capacity() { return capacity; }
 
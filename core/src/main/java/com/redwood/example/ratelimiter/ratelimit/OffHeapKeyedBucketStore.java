@@ -0,0 +1,373 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free {@link KeyedBucketStore} whose buckets live outside the Java heap, so that tens of millions
+ * of keys add nothing to GC marking work or pause times.
+ * - The table is a fixed set of direct {@link ByteBuffer} slabs of 16-byte slots: a 64-bit key hash
+ *   followed by the packed bucket state of {@link PackedTokenBucketRateLimiter} (the instant the bucket is empty).
+ * - Keys are not stored, only their 64-bit hash; two keys colliding on all 64 bits share a bucket
+ *   (the expected number of such pairs at 50M keys is below 10^-4).
+ * - Open addressing with a bounded probe window; both words are updated with CAS, never locks. A slot changing
+ *   owner is marked {@code RELEASING} for a few instructions, and probes passing it wait for the mark to clear.
+ * - Idle (fully refilled) buckets are indistinguishable from fresh ones, so their slots are reused in place
+ *   by new keys, and {@link #evictIdle()} turns them into reusable tombstones. A bucket is re-checked to be
+ *   idle while marked, so a charge that landed after it was found idle keeps its key; a caller that raced
+ *   with a reuse notices the key word changed after its CAS and hands the permits back before retrying.
+ * - Two racing inserts of one key can claim two slots (e.g. one sees a tombstone that appeared after the other
+ *   scanned past it). Each insert re-probes after claiming, and the copy further down the probe window is
+ *   released: its charges move to the first copy, then the slot becomes a tombstone.
+ * - The whole table is reserved up front ({@code ceil(maxKeys / 0.75)} slots). Keys that find no slot in their
+ *   probe window, or arrive while {@code maxKeys} buckets are held, share one overflow bucket like
+ *   {@link HeapKeyedBucketStore}.
+ */
+public final class OffHeapKeyedBucketStore implements KeyedBucketStore {
+
+    private static final double EPS = 1e-5;
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int SLOT_BYTES = 16;
+    /** 2^24 slots (256 MiB) per slab keeps every offset within a single ByteBuffer's int range. */
+    private static final int SLAB_SHIFT = 24;
+    private static final long SLAB_MASK = (1L << SLAB_SHIFT) - 1;
+    private static final int MAX_PROBES = 32;
+
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = 1L;
+    /** Key word of a slot changing owner (an idle bucket being taken, a duplicate being folded); briefly held. */
+    private static final long RELEASING = 2L;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final double capacity;
+    private final double refillPerNs;
+    private final double nsPerToken;
+    private final long fullRefillNs;
+    private final NanoClock clock;
+    private final long maxKeys;
+    private final long slots;
+    private final ByteBuffer[] slabs;
+    private final LongAdder size = new LongAdder();
+    private final PackedTokenBucketRateLimiter overflow;
+
+    public OffHeapKeyedBucketStore(Config cfg, long maxKeys) {
+        if (maxKeys <= 0) throw new IllegalArgumentException("maxKeys must be positive");
+        this.capacity = cfg.capacity();
+        this.refillPerNs = cfg.refillPerSecond() / 1_000_000_000d;
+        this.nsPerToken = 1d / refillPerNs;
+        this.fullRefillNs = (long) Math.ceil(capacity * nsPerToken);
+        this.clock = cfg.clock();
+        this.maxKeys = maxKeys;
+        this.overflow = new PackedTokenBucketRateLimiter(cfg);
+
+        this.slots = Math.max(MAX_PROBES, (long) Math.ceil(maxKeys / LOAD_FACTOR));
+        int count = (int) ((slots + SLAB_MASK) >>> SLAB_SHIFT);
+        this.slabs = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long slabSlots = Math.min(1L << SLAB_SHIFT, slots - ((long) i << SLAB_SHIFT));
+            int bytes = (int) (slabSlots * SLOT_BYTES);
+            // Zeroed memory is a valid empty table: key word EMPTY, state word decodes to "full"
+            slabs[i] = ByteBuffer.allocateDirect(bytes + Long.BYTES).alignedSlice(Long.BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    // ---- slot access ----
+
+    private ByteBuffer slab(long slot) { return slabs[(int) (slot >>> SLAB_SHIFT)]; }
+
+    private static int keyOffset(long slot) { return (int) ((slot & SLAB_MASK) * SLOT_BYTES); }
+
+    private long keyAt(long slot) {
+        return (long) LONGS.getVolatile(slab(slot), keyOffset(slot));
+    }
+
+    private boolean casKey(long slot, long expect, long update) {
+        return LONGS.compareAndSet(slab(slot), keyOffset(slot), expect, update);
+    }
+
+    private long stateAt(long slot) {
+        return (long) LONGS.getVolatile(slab(slot), keyOffset(slot) + Long.BYTES);
+    }
+
+    private boolean casState(long slot, long expect, long update) {
+        return LONGS.compareAndSet(slab(slot), keyOffset(slot) + Long.BYTES, expect, update);
+    }
+
+    /**
+     * The state word holds {@code emptyAtNs ^ Long.MIN_VALUE}, so freshly zeroed memory decodes to
+     * {@code Long.MIN_VALUE}: a bucket that has been full forever.
+     */
+    private static long emptyAt(long state) { return state ^ Long.MIN_VALUE; }
+
+    private static long state(long emptyAt) { return emptyAt ^ Long.MIN_VALUE; }
+
+    private boolean idle(long slot, long now) {
+        return emptyAt(stateAt(slot)) <= now - fullRefillNs;
+    }
+
+    /** True for a key word holding a hash, as opposed to one of the EMPTY, TOMBSTONE and RELEASING markers. */
+    private static boolean isKey(long k) {
+        return Long.compareUnsigned(k, RELEASING) > 0;
+    }
+
+    /** Moves a hash off the marker values. */
+    private static long avoidMarkers(long h) {
+        return isKey(h) ? h : h + 3;
+    }
+
+    /** 64-bit FNV-1a over the key's chars, finalised with the MurmurHash3 mixer; never one of the markers. */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = key.length(); i < n; i++) h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return avoidMarkers(h);
+    }
+
+    /** Result of {@link #find}: the key is absent but a slot is available for it. */
+    private static final long ABSENT = -1;
+    /** Result of {@link #find}: the key is absent and its probe window is full, so it maps to the overflow bucket. */
+    private static final long NO_ROOM = -2;
+
+    /**
+     * Slot holding {@code h}, claiming an empty or idle one when {@code create} is set.
+     * Returns {@link #ABSENT} or {@link #NO_ROOM} when no slot is (or can be) assigned.
+     */
+    private long find(long h, long now, boolean create) {
+        retry:
+        for (;;) {
+            long slot = Long.remainderUnsigned(h, slots);
+            long reusable = -1, reusableKey = EMPTY;
+            boolean skippedTombstone = false;
+            for (int p = 0; p < MAX_PROBES; p++, slot = slot + 1 == slots ? 0 : slot + 1) {
+                long k = keyAt(slot);
+                if (k == h) return slot;
+                if (k == RELEASING) {
+                    Thread.onSpinWait();
+                    continue retry;
+                }
+                if (k == EMPTY) {
+                    // End of the probe chain: the key is not stored further on
+                    if (!create) return reusable >= 0 || hasRoom() ? ABSENT : NO_ROOM;
+                    if (reusable >= 0) break;
+                    // Checked again after the reclaim: a sweep running alongside may have taken the idle buckets
+                    if (!hasRoom() && !reclaimIdle(slot, now) && !hasRoom()) return NO_ROOM;
+                    if (casKey(slot, EMPTY, h)) {
+                        size.increment();
+                        return settle(h, slot, now);
+                    }
+                    if (keyAt(slot) == h) return slot;
+                    continue retry;
+                }
+                if (reusable < 0 && (k == TOMBSTONE ? hasRoom() : idle(slot, now))) {
+                    reusable = slot;
+                    reusableKey = k;
+                } else if (k == TOMBSTONE) {
+                    skippedTombstone = true;
+                }
+            }
+            // A sweep running alongside may have freed room since the tombstones were passed over
+            if (reusable < 0) {
+                if (skippedTombstone && hasRoom()) continue;
+                return NO_ROOM;
+            }
+            if (!create) return ABSENT;
+            // Take over a tombstone or an idle bucket: its state already reads as a full bucket
+            if (reusableKey == TOMBSTONE ? casKey(reusable, TOMBSTONE, h) : takeIdle(reusable, reusableKey, h, now)) {
+                if (reusableKey == TOMBSTONE) size.increment();
+                return settle(h, reusable, now);
+            }
+        }
+    }
+
+    /**
+     * Called after claiming {@code claimed} for {@code h}: if a racing insert put the same key earlier in the
+     * probe window, that slot is the key's bucket and {@code claimed} is released into it.
+     */
+    private long settle(long h, long claimed, long now) {
+        for (long slot = Long.remainderUnsigned(h, slots); slot != claimed; slot = slot + 1 == slots ? 0 : slot + 1) {
+            if (keyAt(slot) == h) {
+                release(h, claimed, slot, now);
+                return slot;
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Folds a duplicate slot into the key's first one. Charges that land on the duplicate after its key word
+     * changed are handed back by {@link #tryAcquire}, which then retries against the first slot.
+     */
+    private void release(long h, long duplicate, long first, long now) {
+        for (;;) {
+            long k = keyAt(duplicate);
+            if (k == RELEASING) {
+                Thread.onSpinWait(); // a sweep is checking it; it either keeps the key or drops the slot
+                continue;
+            }
+            if (k != h) return;
+            if (casKey(duplicate, h, RELEASING)) break;
+        }
+        long charged = emptyAt(stateAt(duplicate)) - (now - fullRefillNs);
+        if (charged > 0) refundSlot(first, -charged, now);
+        LONGS.setVolatile(slab(duplicate), keyOffset(duplicate) + Long.BYTES, state(Long.MIN_VALUE));
+        size.decrement();
+        LONGS.setVolatile(slab(duplicate), keyOffset(duplicate), TOMBSTONE);
+    }
+
+    /**
+     * Hands the idle bucket of key {@code k} to {@code owner}, a new key or {@link #TOMBSTONE}. Returns false,
+     * leaving the slot to {@code k}, if it was charged since it was found idle. The size drops before a tombstone
+     * is published, so that an insert never sees one while the key it replaced still counts against {@code maxKeys}.
+     */
+    private boolean takeIdle(long slot, long k, long owner, long now) {
+        if (!casKey(slot, k, RELEASING)) return false;
+        if (!idle(slot, now)) {
+            LONGS.setVolatile(slab(slot), keyOffset(slot), k);
+            return false;
+        }
+        if (owner == TOMBSTONE) size.decrement();
+        LONGS.setVolatile(slab(slot), keyOffset(slot), owner);
+        return true;
+    }
+
+    /** Tombstones one idle bucket in the probe window starting at {@code from}, making room for a new key. */
+    private boolean reclaimIdle(long from, long now) {
+        long slot = from;
+        for (int p = 0; p < MAX_PROBES; p++, slot = slot + 1 == slots ? 0 : slot + 1) {
+            long k = keyAt(slot);
+            if (isKey(k) && idle(slot, now) && takeIdle(slot, k, TOMBSTONE, now)) return true;
+        }
+        return false;
+    }
+
+    /** New keys (as opposed to reused idle buckets) may only be added while fewer than maxKeys are held. */
+    private boolean hasRoom() {
+        return size.sum() < maxKeys;
+    }
+
+    private double tokens(long emptyAt, long now) {
+        long base = Math.max(emptyAt, now - fullRefillNs);
+        return Math.min(capacity, (now - base) * refillPerNs);
+    }
+
+    @Override
+    public boolean tryAcquire(String key, double permits) {
+        long h = hash(key);
+        long cost = Math.round(permits * nsPerToken);
+        for (;;) {
+            long now = clock.nanoTime();
+            long slot = find(h, now, true);
+            if (slot < 0) return overflow.tryAcquire(permits);
+
+            long state, base;
+            do {
+                state = stateAt(slot);
+                base = Math.max(emptyAt(state), now - fullRefillNs);
+                if (Math.min(capacity, (now - base) * refillPerNs) + EPS < permits) return false;
+            } while (!casState(slot, state, state(base + cost)));
+
+            if (keyAt(slot) == h) return true;
+            // The slot was reused for another key meanwhile: give the permits back and look the key up again
+            refundSlot(slot, cost, clock.nanoTime());
+        }
+    }
+
+    private void refundSlot(long slot, long cost, long now) {
+        long state;
+        do {
+            state = stateAt(slot);
+        } while (!casState(slot, state, state(Math.max(emptyAt(state), now - fullRefillNs) - cost)));
+    }
+
+    @Override
+    public long remaining(String key) {
+        return (long) Math.floor(Math.max(0d, available(key)) + EPS);
+    }
+
+    @Override
+    public double available(String key) {
+        long now = clock.nanoTime();
+        long slot = find(hash(key), now, false);
+        if (slot >= 0) return tokens(emptyAt(stateAt(slot)), now);
+        return slot == NO_ROOM ? overflow.available() : capacity; // unknown keys have a fresh bucket
+    }
+
+    @Override
+    public void setAvailable(String key, double tokens) {
+        setAvailable(hash(key), tokens);
+    }
+
+    private void setAvailable(long h, double tokens) {
+        long now = clock.nanoTime();
+        long slot = find(h, now, true);
+        if (slot < 0) return;
+        long emptyAt = now - Math.round(Math.max(0d, Math.min(capacity, tokens)) * nsPerToken);
+        long state;
+        do {
+            state = stateAt(slot);
+        } while (!casState(slot, state, state(emptyAt)));
+    }
+
+    @Override
+    public boolean setAvailableByHash(long keyHash, double tokens) {
+        setAvailable(avoidMarkers(keyHash), tokens);
+        return true;
+    }
+
+    /** Reports hashes, the keys themselves are not kept; slots are read lock-free. */
+    @Override
+    public void forEachBucket(BucketVisitor visitor) {
+        for (long slot = 0; slot < slots; slot++) {
+            long k = keyAt(slot);
+            if (!isKey(k)) continue;
+            visitor.hash(k, tokens(emptyAt(stateAt(slot)), clock.nanoTime()));
+        }
+    }
+
+    @Override
+    public void refund(String key, double permits) {
+        long now = clock.nanoTime();
+        long slot = find(hash(key), now, false);
+        if (slot >= 0) refundSlot(slot, Math.round(permits * nsPerToken), now);
+        else if (slot == NO_ROOM) overflow.refund(permits);
+    }
+
+    @Override
+    public long capacity() { return (long) capacity; }
+
+    @Override
+    public double refillPerSecond() { return refillPerNs * 1_000_000_000d; }
+
+    @Override
+    public long size() { return size.sum(); }
+
+    @Override
+    public long maxKeys() { return maxKeys; }
+
+    /** Off-heap bytes reserved for the table; the heap footprint is constant. */
+    @Override
+    public long memoryBytes() { return slots * SLOT_BYTES; }
+
+    @Override
+    public long evictIdle() {
+        long evicted = 0;
+        long now = clock.nanoTime();
+        for (long slot = 0; slot < slots; slot++) {
+            long k = keyAt(slot);
+            if (isKey(k) && idle(slot, now) && takeIdle(slot, k, TOMBSTONE, now)) evicted++;
+        }
+        return evicted;
+    }
+}
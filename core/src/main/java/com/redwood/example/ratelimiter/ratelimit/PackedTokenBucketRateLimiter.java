@@ -0,0 +1,224 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Allocation-free Token Bucket Rate Limiter.
+ * - The whole bucket lives in a single primitive {@code long}: the instant (in clock nanos)
+ *   at which the bucket was, or will be, empty. Tokens are derived as
+ *   {@code min(capacity, (now - emptyAtNs) * refillPerNs)}.
+ * - Refill and acquire are folded into one CAS on that long, so the hot path never allocates.
+ * - Semantics match {@link LocalTokenBucketRateLimiter}: continuous fractional refill,
+ *   capacity cap and the same epsilon when comparing tokens.
+ */
+public class PackedTokenBucketRateLimiter implements RateLimiter {
+
+    private static final double EPS = 1e-5;
+
+    private static final VarHandle EMPTY_AT;
+    static {
+        try {
+            EMPTY_AT = MethodHandles.lookup().findVarHandle(PackedTokenBucketRateLimiter.class, "emptyAtNs", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final double capacity;
+    private final double refillPerNs;
+    private final double nsPerToken;
+    private final long fullRefillNs;
+    private final NanoClock clock;
+
+    /** Only touched after a failed CAS, so uncontended acquires never pay for it. */
+    private final LongAdder casRetries = new LongAdder();
+
+    /** Instant at which the bucket holds zero tokens; only updated through {@link #EMPTY_AT}. */
+    @SuppressWarnings("unused")
+    private volatile long emptyAtNs;
+
+    public PackedTokenBucketRateLimiter(Config cfg) {
+        this(cfg.capacity(), cfg.refillPerSecond(), cfg.clock());
+    }
+
+    /** Fractional capacities are allowed here so that stripes of a larger bucket can be built. */
+    PackedTokenBucketRateLimiter(double capacity, double refillPerSecond, NanoClock clock) {
+        if (capacity <= 0 || refillPerSecond <= 0)
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        this.capacity = capacity;
+        this.refillPerNs = refillPerSecond / 1_000_000_000d;
+        this.nsPerToken = 1d / refillPerNs;
+        this.fullRefillNs = (long) Math.ceil(capacity * nsPerToken);
+        this.clock = Objects.requireNonNull(clock);
+        this.emptyAtNs = clock.nanoTime() - fullRefillNs;
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    /**
+     * Attempts to acquire N tokens with a single CAS.
+     * A failed CAS means another thread made progress, so we simply retry with fresh state;
+     * a denial is only ever returned when the bucket really holds too few tokens.
+     */
+    @Override
+    public boolean tryAcquire(int permits) { return tryAcquire((double) permits); }
+
+    /** Fractional permits cost proportionally fewer nanoseconds of refill; no rounding to whole tokens. */
+    @Override
+    public boolean tryAcquire(double permits) {
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) EMPTY_AT.getVolatile(this);
+            long base = floor(current, now);
+
+            if (tokensAt(base, now) + EPS < permits) return false;
+
+            long updated = base + Math.round(permits * nsPerToken);
+            if (EMPTY_AT.compareAndSet(this, current, updated)) return true;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Lends up to {@code maxWaitNanos} of refill ahead by moving the empty-instant past now;
+     * acquires are denied until the clock has caught up with it.
+     */
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        if (permits > capacity + EPS) return -1;
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) EMPTY_AT.getVolatile(this);
+            long base = floor(current, now);
+
+            double missing = permits - tokensAt(base, now) - EPS;
+            long wait = missing <= 0 ? 0 : (long) Math.ceil(missing * nsPerToken);
+            if (wait > maxWaitNanos) return -1;
+
+            long updated = base + Math.round(permits * nsPerToken);
+            if (EMPTY_AT.compareAndSet(this, current, updated)) return wait;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Exact, including permits reserved ahead by earlier callers. */
+    @Override
+    public long waitNanos(int permits) {
+        if (permits > capacity + EPS) return Long.MAX_VALUE;
+        long now = clock.nanoTime();
+        double missing = permits - tokensAt(floor((long) EMPTY_AT.getVolatile(this), now), now);
+        return missing <= 0 ? 0 : (long) Math.ceil(missing * nsPerToken);
+    }
+
+    /** Empty-instant never lags more than a full refill behind {@code now}: that is the capacity cap. */
+    private long floor(long emptyAt, long now) {
+        long full = now - fullRefillNs;
+        return Math.max(emptyAt, full);
+    }
+
+    private double tokensAt(long base, long now) {
+        return Math.min(capacity, (now - base) * refillPerNs);
+    }
+
+    /** Current (fractional) number of tokens, zero while in debt; read-only, no state is written. */
+    @Override
+    public double available() {
+        long now = clock.nanoTime();
+        return Math.max(0d, tokensAt(floor((long) EMPTY_AT.getVolatile(this), now), now));
+    }
+
+    /** Whole tokens of {@link #tryDrain}: one CAS whatever the bucket holds. */
+    @Override
+    public long tryAcquireUpTo(long max) { return (long) drain(max, true); }
+
+    /**
+     * Takes up to {@code max} tokens, whatever is available, in one CAS.
+     * Returns the amount actually taken (0 when the bucket is dry).
+     */
+    double tryDrain(double max) { return drain(max, false); }
+
+    private double drain(double max, boolean whole) {
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) EMPTY_AT.getVolatile(this);
+            long base = floor(current, now);
+
+            double tokens = tokensAt(base, now);
+            double taken = Math.min(max, whole ? Math.floor(tokens + EPS) : tokens);
+            if (taken <= 0) return 0;
+
+            long updated = base + Math.round(taken * nsPerToken);
+            if (EMPTY_AT.compareAndSet(this, current, updated)) return taken;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Gives back as much of {@code tokens} as fits below capacity, in one CAS.
+     * Returns the part that did not fit (0 when all of it did).
+     */
+    double refundUpTo(double tokens) {
+        while (true) {
+            long now = clock.nanoTime();
+            long current = (long) EMPTY_AT.getVolatile(this);
+            long base = floor(current, now);
+
+            double room = capacity - tokensAt(base, now);
+            if (room <= EPS) return tokens;
+
+            double given = Math.min(tokens, room);
+            long updated = base - Math.round(given * nsPerToken);
+            if (EMPTY_AT.compareAndSet(this, current, updated)) return tokens - given;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void refund(int permits) { refund((double) permits); }
+
+    @Override
+    public void rollback(double permits) { refund(permits); }
+
+    /** Gives tokens back; anything above capacity is dropped by the cap on the next read. */
+    @Override
+    public void refund(double tokens) {
+        long delta = Math.round(tokens * nsPerToken);
+        while (true) {
+            long current = (long) EMPTY_AT.getVolatile(this);
+            if (EMPTY_AT.compareAndSet(this, current, current - delta)) return;
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void setAvailable(double tokens) {
+        double clamped = Math.max(0d, Math.min(capacity, tokens));
+        EMPTY_AT.setVolatile(this, clock.nanoTime() - Math.round(clamped * nsPerToken));
+    }
+
+    @Override
+    public long remaining() {
+        return (long) Math.floor(available() + EPS);
+    }
+
+    @Override
+    public long casRetries() { return casRetries.sum(); }
+
+    @Override
+    public long capacity() { return (long) capacity; }
+
+    @Override
+    public double refillPerSecond() { return refillPerNs * 1_000_000_000d; }
+}
@@ -0,0 +1,175 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Common interface so different limiter implementations can be swapped easily. */
+public interface RateLimiter {
+    boolean tryAcquire();
+    boolean tryAcquire(int permits);
+    long remaining();
+    long capacity();
+    double refillPerSecond();
+
+    /**
+     * Returns permits that were acquired but not used, e.g. when a multi-bucket
+     * acquire is rolled back. Tokens above capacity are dropped.
+     */
+    void refund(int permits);
+
+    /**
+     * Fractional {@link #tryAcquire(int)}, for requests priced in tokens rather than counted (see the
+     * {@code cost} of a config entry). Limiters that keep a continuous token count take exactly {@code permits};
+     * the others, by default, take them rounded up to whole permits.
+     */
+    default boolean tryAcquire(double permits) {
+        return tryAcquire(wholePermits(permits));
+    }
+
+    /**
+     * Fractional {@link #refund(int)}, e.g. the unused part of a cost charged up front. Limiters that take whole
+     * permits in {@link #tryAcquire(double)} give back whole permits, rounded down, so a charge and the refund
+     * of its unused part add up to the used part rounded up.
+     */
+    default void refund(double permits) {
+        int whole = roundDown(permits);
+        if (whole > 0) refund(whole);
+    }
+
+    /**
+     * Undoes a successful {@link #tryAcquire(double)} of {@code permits}, e.g. when a later level of a
+     * multi-bucket acquire denies: gives back exactly what that call took. Limiters that take whole permits
+     * give back the rounded-up charge here, where {@link #refund(double)} would round down and leak a permit.
+     */
+    default void rollback(double permits) {
+        refund(wholePermits(permits));
+    }
+
+    /**
+     * Takes as many whole permits as the limiter grants right now, up to {@code max}, e.g. to hand out a lease.
+     * By default one acquire of what {@link #remaining()} reports, halved a few times when a concurrent acquire
+     * got in first; limiters that can take whatever they hold in one step do so.
+     * @return the permits taken, 0 when none were
+     */
+    default long tryAcquireUpTo(long max) {
+        long want = Math.min(Math.min(max, remaining()), Math.min(capacity(), Integer.MAX_VALUE));
+        for (int attempt = 0; want > 0 && attempt < 4; attempt++, want /= 2) {
+            if (tryAcquire((int) want)) return want;
+        }
+        return 0;
+    }
+
+    /** Current (fractional) number of tokens. */
+    double available();
+
+    /**
+     * Overwrites the token count, clamped to {@code [0, capacity]}; used to carry a bucket's
+     * fill level over to its replacement when the configuration is reloaded.
+     */
+    void setAvailable(double tokens);
+
+    /**
+     * Gives back resources held on behalf of this limiter outside the process (tokens leased from a
+     * shared store) when it is replaced or the service stops; a no-op for local buckets.
+     */
+    default void release() {}
+
+    /**
+     * Takes {@code permits} now if they will have refilled within {@code maxWaitNanos}, leaving the bucket in
+     * debt until then, and returns how long the caller has to wait before using them; -1 when the wait would be
+     * longer, in which case nothing is taken. Later acquires queue up behind the debt.
+     * Limiters that cannot lend ahead only grant what they hold right now.
+     */
+    default long reserve(int permits, long maxWaitNanos) {
+        return tryAcquire(permits) ? 0 : -1;
+    }
+
+    /**
+     * Estimated nanoseconds until {@code permits} can be acquired, 0 if they can be now;
+     * {@link Long#MAX_VALUE} when they never can (more than the capacity).
+     */
+    default long waitNanos(int permits) {
+        if (permits > capacity()) return Long.MAX_VALUE;
+        double missing = permits - available();
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerSecond() * 1_000_000_000d);
+    }
+
+    /**
+     * Blocks until {@code permits} are acquired, or returns false at once if they cannot be within
+     * {@code timeout}. If interrupted while waiting for reserved permits they are refunded.
+     */
+    default boolean acquire(int permits, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            long left = deadline - System.nanoTime();
+            long wait = reserve(permits, Math.max(0, left));
+            if (wait >= 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    refund(permits);
+                    throw e;
+                }
+                return true;
+            }
+            long estimate = waitNanos(permits);
+            if (estimate > left) return false;
+            TimeUnit.NANOSECONDS.sleep(Math.max(estimate, TimerWheel.TICK_NS));
+        }
+    }
+
+    /**
+     * Non-blocking {@link #acquire(int, Duration)}: the future completes with true once the permits are
+     * acquired and usable, or with false as soon as they cannot be within {@code timeout}.
+     * Waits are timers on the shared {@link TimerWheel}, whose thread also completes the future.
+     * Cancelling the future before it completes refunds reserved permits.
+     */
+    default CompletableFuture<Boolean> acquireAsync(int permits, Duration timeout) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        acquireAsync(this, permits, System.nanoTime() + timeout.toNanos(), result);
+        return result;
+    }
+
+    private static void acquireAsync(RateLimiter limiter, int permits, long deadline, CompletableFuture<Boolean> result) {
+        if (result.isDone()) return;
+        long left = deadline - System.nanoTime();
+        long wait = limiter.reserve(permits, Math.max(0, left));
+        if (wait >= 0) {
+            Runnable grant = () -> {
+                if (!result.complete(true)) limiter.refund(permits);
+            };
+            if (wait == 0) grant.run();
+            else TimerWheel.shared().schedule(wait, grant);
+            return;
+        }
+        long estimate = limiter.waitNanos(permits);
+        if (estimate > left) {
+            result.complete(false);
+            return;
+        }
+        TimerWheel.shared().schedule(Math.max(estimate, TimerWheel.TICK_NS), () -> acquireAsync(limiter, permits, deadline, result));
+    }
+
+    /**
+     * Whole permits covering {@code permits}; a cost that is whole up to floating-point error (0.1 * 30) stays
+     * whole. Any positive cost takes at least one permit, so no fraction passes for free.
+     */
+    static int wholePermits(double permits) {
+        if (!(permits > 0)) return 0;
+        return (int) Math.min(Math.max(Math.ceil(permits - 1e-9), 1), Integer.MAX_VALUE);
+    }
+
+    private static int roundDown(double permits) {
+        return (int) Math.min(Math.max(Math.floor(permits + 1e-9), 0), Integer.MAX_VALUE);
+    }
+
+    /** Failed compare-and-set attempts that had to be retried; 0 for limiters that do not use CAS. */
+    default long casRetries() { return 0; }
+
+    /**
+     * Acquires that were denied because of contention rather than too few tokens
+     * (retry budget exhausted, or lost a race while borrowing). Also included in the denials.
+     */
+    default long contentionFailures() { return 0; }
+}
@@ -0,0 +1,202 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * {@link TokenStore} on a Redis-compatible server (Redis 5+, Valkey, KeyDB, Dragonfly), spoken to over plain
+ * RESP on a single connection; no client library needed.
+ * - Every call is one Lua script that refills the bucket to the server's {@code TIME}, applies the change
+ *   and returns {@code [granted, remaining]}, so concurrent nodes never race and node clocks do not matter.
+ * - The script is sent by SHA ({@code EVALSHA}) and only in full after a {@code NOSCRIPT} reply.
+ * - Buckets are hashes {@code <prefix><endpoint> = {t: tokens, ts: micros}} that expire once they would be
+ *   full again, so unused endpoints do not linger.
+ * - Calls are serialised on the connection (lease refills are rare and off the request path); a broken
+ *   connection is dropped and reopened by the next call.
+ */
+public final class RedisTokenStore implements TokenStore {
+
+    static final String SCRIPT = """
+            local cap = tonumber(ARGV[1])
+            local rate = tonumber(ARGV[2])
+            local delta = tonumber(ARGV[3])
+            local t = redis.call('TIME')
+            local nowStr = t[1] .. string.format('%06d', tonumber(t[2]))
+            local now = tonumber(nowStr)
+            local s = redis.call('HMGET', KEYS[1], 't', 'ts')
+            local tokens = tonumber(s[1]) or cap
+            local ts = tonumber(s[2]) or now
+            tokens = math.min(cap, tokens + math.max(0, now - ts) * rate / 1000000)
+            local granted = 0
+            if delta > 0 then
+              granted = math.min(delta, math.floor(tokens))
+              tokens = tokens - granted
+            else
+              tokens = math.min(cap, tokens - delta)
+            end
+            redis.call('HSET', KEYS[1], 't', string.format('%.17g', tokens), 'ts', nowStr)
+            redis.call('PEXPIRE', KEYS[1], math.ceil((cap - tokens) / rate * 1000) + 1000)
+            return {granted, math.floor(tokens)}
+            """;
+    private static final String SCRIPT_SHA = sha1Hex(SCRIPT);
+
+    private final String host;
+    private final int port;
+    private final String keyPrefix;
+    private final int timeoutMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    public RedisTokenStore(String host, int port, String keyPrefix, int timeoutMs) {
+        this.host = Objects.requireNonNull(host);
+        this.port = port;
+        this.keyPrefix = Objects.requireNonNull(keyPrefix);
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Grant take(Bucket bucket, long max) throws IOException {
+        return call(bucket, Math.max(0, max));
+    }
+
+    @Override
+    public Grant giveBack(Bucket bucket, long tokens) throws IOException {
+        return call(bucket, -Math.max(0, tokens));
+    }
+
+    private Grant call(Bucket bucket, long delta) throws IOException {
+        String key = keyPrefix + bucket.name();
+        String[] args = {Long.toString(bucket.capacity()), Double.toString(bucket.refillPerSecond()), Long.toString(delta)};
+        lock.lock();
+        try {
+            connect();
+            Object reply = eval("EVALSHA", SCRIPT_SHA, key, args);
+            if (reply instanceof RedisError e && e.message().startsWith("NOSCRIPT")) reply = eval("EVAL", SCRIPT, key, args);
+            if (reply instanceof RedisError e) throw new IOException("Redis error: " + e.message());
+            if (!(reply instanceof Object[] a) || a.length != 2 || !(a[0] instanceof Long granted) || !(a[1] instanceof Long remaining))
+                throw new IOException("Unexpected script reply " + reply);
+            return new Grant(granted, remaining);
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Object eval(String command, String script, String key, String[] args) throws IOException {
+        write(command, script, "1", key, args[0], args[1], args[2]);
+        return read();
+    }
+
+    private void connect() throws IOException {
+        if (socket != null) return;
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), timeoutMs);
+            s.setSoTimeout(timeoutMs);
+            s.setTcpNoDelay(true);
+            in = new BufferedInputStream(s.getInputStream());
+            out = new BufferedOutputStream(s.getOutputStream());
+            socket = s;
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // already broken
+        }
+        socket = null;
+    }
+
+    // ---- RESP ----
+
+    /** An error reply ({@code -ERR ...}). */
+    record RedisError(String message) {}
+
+    private void write(String... parts) throws IOException {
+        StringBuilder sb = new StringBuilder().append('*').append(parts.length).append("\r\n");
+        for (String p : parts) {
+            byte[] bytes = p.getBytes(StandardCharsets.UTF_8);
+            sb.append('$').append(bytes.length).append("\r\n").append(p).append("\r\n");
+        }
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /** Reads one reply: Long, String, RedisError, Object[] or null. */
+    private Object read() throws IOException {
+        int type = in.read();
+        if (type < 0) throw new EOFException("Redis closed the connection");
+        String line = readLine();
+        return switch (type) {
+            case '+' -> line;
+            case '-' -> new RedisError(line);
+            case ':' -> Long.parseLong(line);
+            case '$' -> {
+                int len = Integer.parseInt(line);
+                if (len < 0) yield null;
+                byte[] bytes = in.readNBytes(len + 2);
+                if (bytes.length != len + 2) throw new EOFException("Truncated bulk reply");
+                yield new String(bytes, 0, len, StandardCharsets.UTF_8);
+            }
+            case '*' -> {
+                int n = Integer.parseInt(line);
+                if (n < 0) yield null;
+                Object[] items = new Object[n];
+                for (int i = 0; i < n; i++) items[i] = read();
+                yield items;
+            }
+            default -> throw new IOException("Unexpected reply type '" + (char) type + "'");
+        };
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c; (c = in.read()) != '\r'; ) {
+            if (c < 0) throw new EOFException("Redis closed the connection");
+            sb.append((char) c);
+        }
+        if (in.read() != '\n') throw new IOException("Malformed reply line");
+        return sb.toString();
+    }
+
+    private static String sha1Hex(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
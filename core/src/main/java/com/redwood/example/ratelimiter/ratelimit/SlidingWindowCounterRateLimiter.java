@@ -0,0 +1,144 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Sliding-window counter: at most {@code capacity} permits in any window of {@code capacity / rate} seconds,
+ * the way upstream quotas ("100 requests per minute") are usually stated.
+ * - Time is cut into fixed windows; the count in the sliding window is estimated as the current window's
+ *   count plus the previous window's count weighted by how much of it the sliding window still covers.
+ * - Both counts and the window they belong to are packed into one {@code long} and updated with one CAS,
+ *   so acquires never allocate: bits 63..40 hold the low 24 bits of the window index, 39..20 the previous
+ *   window's count and 19..0 the current one. Buckets are therefore limited to {@value #MAX_CAPACITY} permits.
+ * - Unlike a token bucket there is no burst carry-over between windows beyond what the weighting allows.
+ * - A bucket left untouched for exactly a multiple of 2^24 windows would see its old counts again; with
+ *   one-second windows that is half a year of silence followed by a hit on the exact window.
+ */
+public final class SlidingWindowCounterRateLimiter implements RateLimiter {
+
+    static final int MAX_CAPACITY = (1 << 20) - 1;
+
+    private static final double EPS = 1e-9;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long TAG_MASK = (1L << 24) - 1;
+
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(SlidingWindowCounterRateLimiter.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long capacity;
+    private final double refillPerSecond;
+    private final long windowNs;
+    private final long originNs;
+    private final NanoClock clock;
+
+    /** Only touched after a failed CAS, so uncontended acquires never pay for it. */
+    private final LongAdder casRetries = new LongAdder();
+
+    /** Window tag and both counts, see the class comment; only updated through {@link #STATE}. */
+    @SuppressWarnings("unused")
+    private volatile long state;
+
+    public SlidingWindowCounterRateLimiter(Config cfg) {
+        if (cfg.capacity() > MAX_CAPACITY)
+            throw new IllegalArgumentException("Sliding window buckets hold at most " + MAX_CAPACITY + " permits");
+        this.capacity = cfg.capacity();
+        this.refillPerSecond = cfg.refillPerSecond();
+        this.windowNs = Math.max(1, Math.round(capacity / refillPerSecond * 1_000_000_000d));
+        this.clock = cfg.clock();
+        this.originNs = clock.nanoTime();
+    }
+
+    private static long pack(long tag, long previous, long current) {
+        return (tag & TAG_MASK) << (2 * COUNT_BITS) | previous << COUNT_BITS | current;
+    }
+
+    private static long previous(long s) { return (s >>> COUNT_BITS) & COUNT_MASK; }
+
+    private static long current(long s) { return s & COUNT_MASK; }
+
+    private long window(long now) { return Math.floorDiv(now - originNs, windowNs); }
+
+    /** The state rolled forward to {@code window}: one window on shifts the counts, more clears them. */
+    private static long roll(long s, long window) {
+        long behind = (window - (s >>> (2 * COUNT_BITS))) & TAG_MASK;
+        if (behind == 0) return s;
+        return pack(window, behind == 1 ? current(s) : 0, 0);
+    }
+
+    /** Estimated permits in the sliding window ending at {@code now}. */
+    private double used(long s, long now, long window) {
+        double previousWeight = 1d - (double) (now - originNs - window * windowNs) / windowNs;
+        return previous(s) * previousWeight + current(s);
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        while (true) {
+            long now = clock.nanoTime();
+            long window = window(now);
+            long observed = (long) STATE.getVolatile(this);
+            long s = roll(observed, window);
+            if (used(s, now, window) + permits > capacity + EPS) return false;
+            if (STATE.compareAndSet(this, observed, s + permits)) return true;
+            casRetries.increment();
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public double available() {
+        long now = clock.nanoTime();
+        long window = window(now);
+        return Math.max(0d, capacity - used(roll((long) STATE.getVolatile(this), window), now, window));
+    }
+
+    @Override
+    public long remaining() {
+        return (long) Math.floor(available() + EPS);
+    }
+
+    /** Recorded as permits used in the current window. */
+    @Override
+    public void setAvailable(double tokens) {
+        long used = Math.round(capacity - Math.max(0d, Math.min(capacity, tokens)));
+        STATE.setVolatile(this, pack(window(clock.nanoTime()), 0, used));
+    }
+
+    /** Takes permits off the current window's count, never below zero. */
+    @Override
+    public void refund(int permits) {
+        while (true) {
+            long window = window(clock.nanoTime());
+            long observed = (long) STATE.getVolatile(this);
+            long s = roll(observed, window);
+            long updated = s - Math.min(current(s), permits);
+            if (STATE.compareAndSet(this, observed, updated)) return;
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public long casRetries() { return casRetries.sum(); }
+
+    @Override
+    public long capacity() { return capacity; }
+
+    @Override
+    public double refillPerSecond() { return refillPerSecond; }
+}
@@ -0,0 +1,118 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+
+import java.util.Arrays;
+
+
+/**
+ * Sliding-window log: exactly {@code capacity} permits in any window of {@code capacity / rate} seconds,
+ * with no estimation at window edges.
+ * - The log is a ring of the grant times of the last {@code capacity} permits, preallocated so acquires
+ *   never allocate. The ring is ordered oldest first from {@code head}, so a request for {@code n} permits
+ *   is admitted exactly when the {@code n}-th oldest entry has left the window.
+ * - An acquire writes one slot per permit, which cannot be done with a single CAS; the ring is guarded
+ *   by the limiter's monitor instead. Meant for low-rate endpoints where exactness matters more than
+ *   throughput under contention.
+ * - Memory is 8 bytes per permit of capacity, so buckets are limited to {@value #MAX_CAPACITY} permits.
+ */
+public final class SlidingWindowLogRateLimiter implements RateLimiter {
+
+    static final int MAX_CAPACITY = 1 << 20;
+
+    private final int capacity;
+    private final double refillPerSecond;
+    private final long windowNs;
+    private final NanoClock clock;
+    /** Grant times, oldest at {@link #head}; slots that never held a grant carry an already expired time. */
+    private final long[] log;
+    private int head;
+
+    public SlidingWindowLogRateLimiter(Config cfg) {
+        if (cfg.capacity() > MAX_CAPACITY)
+            throw new IllegalArgumentException("Sliding log buckets hold at most " + MAX_CAPACITY + " permits");
+        this.capacity = (int) cfg.capacity();
+        this.refillPerSecond = cfg.refillPerSecond();
+        this.windowNs = Math.max(1, Math.round(capacity / refillPerSecond * 1_000_000_000d));
+        this.clock = cfg.clock();
+        this.log = new long[capacity];
+        Arrays.fill(log, clock.nanoTime() - windowNs);
+    }
+
+    private int slot(int offset) {
+        int i = head + offset;
+        return i >= capacity ? i - capacity : i;
+    }
+
+    private boolean expired(long grantNs, long now) {
+        return now - grantNs >= windowNs;
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    @Override
+    public synchronized boolean tryAcquire(int permits) {
+        if (permits > capacity) return false;
+        if (permits <= 0) return true;
+        long now = clock.nanoTime();
+        if (!expired(log[slot(permits - 1)], now)) return false;
+        for (int i = 0; i < permits; i++) log[slot(i)] = now;
+        head = slot(permits);
+        return true;
+    }
+
+    /** Exact: the time until the {@code permits}-th oldest grant leaves the window. */
+    @Override
+    public synchronized long waitNanos(int permits) {
+        if (permits > capacity) return Long.MAX_VALUE;
+        if (permits <= 0) return 0;
+        return Math.max(0, log[slot(permits - 1)] + windowNs - clock.nanoTime());
+    }
+
+    /** Expired entries form a prefix of the ring, so they are counted by binary search. */
+    @Override
+    public synchronized long remaining() {
+        long now = clock.nanoTime();
+        int lo = 0, hi = capacity;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (expired(log[slot(mid)], now)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    @Override
+    public double available() { return remaining(); }
+
+    /** Rebuilds the log as {@code capacity - tokens} grants made just now. */
+    @Override
+    public synchronized void setAvailable(double tokens) {
+        long now = clock.nanoTime();
+        int free = (int) Math.round(Math.max(0d, Math.min(capacity, tokens)));
+        head = 0;
+        for (int i = 0; i < capacity; i++) log[i] = i < free ? now - windowNs : now;
+    }
+
+    /**
+     * Forgets the newest {@code permits} grants. Their slots become the oldest and are marked expired,
+     * no later than the entry after them so the ring stays ordered.
+     */
+    @Override
+    public synchronized void refund(int permits) {
+        int n = Math.min(permits, capacity);
+        if (n <= 0) return;
+        long now = clock.nanoTime();
+        head = slot(capacity - n);
+        long expiredAt = Math.min(log[slot(n % capacity)], now - windowNs);
+        for (int i = 0; i < n; i++) log[slot(i)] = expiredAt;
+    }
+
+    @Override
+    public long capacity() { return capacity; }
+
+    @Override
+    public double refillPerSecond() { return refillPerSecond; }
+}
@@ -0,0 +1,154 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Striped Token Bucket Rate Limiter for buckets shared by many threads (e.g. the global '*' limit).
+ * - Capacity and refill rate are split evenly across N cells; each thread has a home cell,
+ *   so uncontended acquires touch a different cache line per core.
+ * - When the home cell runs dry, tokens are borrowed from the other cells, so the aggregate
+ *   behaves like one bucket of the configured size and never over-admits.
+ * - {@code tolerance} bounds the borrowing cost: cells holding fewer tokens than that are
+ *   skipped, so at most {@code stripes * tolerance} tokens can be left stranded. 0 means exact.
+ */
+public class StripedTokenBucketRateLimiter implements RateLimiter {
+
+    private static final double EPS = 1e-5;
+
+    /** Packed bucket padded so neighbouring cells do not share a cache line. */
+    @SuppressWarnings("unused")
+    private static final class Cell extends PackedTokenBucketRateLimiter {
+        long p1, p2, p3, p4, p5, p6, p7;
+        Cell(double capacity, double refillPerSecond, LocalTokenBucketRateLimiter.NanoClock clock) {
+            super(capacity, refillPerSecond, clock);
+        }
+    }
+
+    private final Cell[] cells;
+    private final long capacity;
+    private final double refillPerSecond;
+    private final double tolerance;
+    private final LongAdder contentionFailures = new LongAdder();
+
+    /**
+     * @param stripes   number of cells; {@code <= 0} uses the number of available processors.
+     *                  Capped at the capacity so every cell can hold at least one token.
+     * @param tolerance tokens below which a cell is not worth borrowing from (0 = exact).
+     */
+    public StripedTokenBucketRateLimiter(Config cfg, int stripes, double tolerance) {
+        if (tolerance < 0) throw new IllegalArgumentException("Tolerance must not be negative");
+        int n = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        n = (int) Math.max(1, Math.min(n, cfg.capacity()));
+
+        this.capacity = cfg.capacity();
+        this.refillPerSecond = cfg.refillPerSecond();
+        this.tolerance = tolerance;
+        this.cells = new Cell[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = new Cell((double) capacity / n, refillPerSecond / n, cfg.clock());
+        }
+    }
+
+    /** Spreads thread ids over the cells (Fibonacci hashing). */
+    private int home() {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % cells.length);
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    /**
+     * Acquires from the home cell, borrowing from the other cells when it runs dry.
+     * Denials are decided on a read-only sum first, so a depleted bucket costs no CAS at all.
+     */
+    @Override
+    public boolean tryAcquire(int permits) { return tryAcquire((double) permits); }
+
+    @Override
+    public boolean tryAcquire(double permits) {
+        int home = home();
+        Cell local = cells[home];
+        if (local.tryAcquire(permits)) return true;
+        if (cells.length == 1) return false;
+
+        double total = 0;
+        for (Cell c : cells) total += Math.max(0d, c.available());
+        if (total + EPS < permits) return false;
+
+        double needed = permits;
+        for (int i = 0; i < cells.length && needed > EPS; i++) {
+            Cell c = cells[(home + i) % cells.length];
+            if (i > 0 && tolerance > 0 && c.available() < tolerance) continue;
+            needed -= c.tryDrain(needed);
+        }
+        if (needed <= EPS) return true;
+
+        // Lost a race against other borrowers: hand back what we gathered
+        giveBack(home, permits - needed);
+        contentionFailures.increment();
+        return false;
+    }
+
+    @Override
+    public void refund(int permits) {
+        giveBack(home(), permits);
+    }
+
+    @Override
+    public void rollback(double permits) { refund(permits); }
+
+    @Override
+    public void refund(double permits) {
+        giveBack(home(), permits);
+    }
+
+    /**
+     * Fills the home cell and spills what does not fit over the others: permits borrowed from other cells
+     * come back even when the home cell is full, so a refund never loses tokens below the total capacity.
+     */
+    private void giveBack(int home, double tokens) {
+        for (int i = 0; i < cells.length && tokens > EPS; i++) tokens = cells[(home + i) % cells.length].refundUpTo(tokens);
+    }
+
+    @Override
+    public long remaining() {
+        return (long) Math.floor(available() + EPS);
+    }
+
+    @Override
+    public double available() {
+        double total = 0;
+        for (Cell c : cells) total += Math.max(0d, c.available());
+        return total;
+    }
+
+    /** Spreads the tokens evenly, like {@link #refund(int)}. */
+    @Override
+    public void setAvailable(double tokens) {
+        double share = Math.max(0d, Math.min(capacity, tokens)) / cells.length;
+        for (Cell c : cells) c.setAvailable(share);
+    }
+
+    @Override
+    public long capacity() { return capacity; }
+
+    @Override
+    public double refillPerSecond() { return refillPerSecond; }
+
+    @Override
+    public long casRetries() {
+        long retries = 0;
+        for (Cell c : cells) retries += c.casRetries();
+        return retries;
+    }
+
+    @Override
+    public long contentionFailures() { return contentionFailures.sum(); }
+
+    /** Number of cells the bucket is split into. */
+    public int stripes() { return cells.length; }
+}
@@ -0,0 +1,116 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Hashed timer wheel waking up acquirers whose permits refill later, see {@link RateLimiter#acquireAsync}.
+ * - One daemon thread ticks every {@link #TICK_NS}. A task lands in the slot of its deadline tick together with
+ *   the number of full turns still to go, so scheduling and expiry cost O(1) however many callers are waiting;
+ *   there is no sleeping thread per waiter.
+ * - Tasks never run early and at most about one tick late. They run on the ticker thread and must be short.
+ * - Other threads only append to a lock-free queue that the ticker drains; the slots are the ticker's alone.
+ *   With nothing pending the ticker parks until the next schedule.
+ */
+public final class TimerWheel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimerWheel.class);
+
+    static final long TICK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int SLOTS = 512;
+
+    private static final class Holder {
+        static final TimerWheel SHARED = new TimerWheel("rate-limiter-timer");
+    }
+
+    /** The wheel shared by all limiters, started on first use. */
+    public static TimerWheel shared() { return Holder.SHARED; }
+
+    private static final class Timeout {
+        final long deadlineNs;
+        final Runnable task;
+        long rounds;
+        Timeout next;
+
+        Timeout(long deadlineNs, Runnable task) {
+            this.deadlineNs = deadlineNs;
+            this.task = task;
+        }
+    }
+
+    private final Timeout[] slots = new Timeout[SLOTS];
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final long startNs = System.nanoTime();
+    private final Thread ticker;
+    /** Ticks up to and including this one have been expired; ticker thread only. */
+    private long tick = -1;
+    private int pending;
+
+    TimerWheel(String name) {
+        this.ticker = Thread.ofPlatform().name(name).daemon().start(this::run);
+    }
+
+    /** Runs {@code task} on the ticker thread once {@code delayNanos} have passed. */
+    public void schedule(long delayNanos, Runnable task) {
+        incoming.add(new Timeout(System.nanoTime() + Math.max(0, delayNanos), task));
+        LockSupport.unpark(ticker);
+    }
+
+    private long tickOf(long nanoTime) {
+        return Math.floorDiv(nanoTime - startNs, TICK_NS);
+    }
+
+    private void run() {
+        while (true) {
+            if (pending == 0 && incoming.isEmpty()) {
+                LockSupport.park(this);
+                tick = tickOf(System.nanoTime()) - 1; // nothing was pending, so the skipped slots are empty
+            } else {
+                LockSupport.parkNanos(this, startNs + (tick + 1) * TICK_NS - System.nanoTime());
+            }
+            long now = tickOf(System.nanoTime());
+            while (tick < now) {
+                tick++;
+                transferIncoming();
+                expire((int) (tick & (SLOTS - 1)));
+            }
+        }
+    }
+
+    private void transferIncoming() {
+        for (Timeout t; (t = incoming.poll()) != null; ) {
+            long due = Math.max(tick, Math.ceilDiv(t.deadlineNs - startNs, TICK_NS));
+            t.rounds = (due - tick) / SLOTS;
+            int slot = (int) (due & (SLOTS - 1));
+            t.next = slots[slot];
+            slots[slot] = t;
+            pending++;
+        }
+    }
+
+    private void expire(int slot) {
+        Timeout keep = null;
+        for (Timeout t = slots[slot], next; t != null; t = next) {
+            next = t.next;
+            if (t.rounds > 0) {
+                t.rounds--;
+                t.next = keep;
+                keep = t;
+                continue;
+            }
+            pending--;
+            try {
+                t.task.run();
+            } catch (Throwable e) {
+                LOG.warn("Timer task failed", e);
+            }
+        }
+        slots[slot] = keep;
+    }
+}
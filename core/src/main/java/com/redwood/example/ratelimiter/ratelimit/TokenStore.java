@@ -0,0 +1,35 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+
+
+/**
+ * Central token buckets shared by every instance of the service in cluster mode.
+ * Nodes never ask it per request: {@link LeasedRateLimiter} takes tokens in batches (leases) and spends
+ * them locally. Each call refills the bucket to the store's own clock and applies the change atomically,
+ * so nodes with skewed clocks still agree on the rate.
+ */
+public interface TokenStore extends Closeable {
+
+    /** A central bucket; the limits travel with every call so the store needs no configuration of its own. */
+    record Bucket(String name, long capacity, double refillPerSecond) {
+        public Bucket {
+            Objects.requireNonNull(name);
+            if (capacity <= 0 || refillPerSecond <= 0) throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+    }
+
+    /** Outcome of a store call: tokens handed to the caller and whole tokens left in the central bucket. */
+    record Grant(long granted, long remaining) {}
+
+    /** Takes up to {@code max} whole tokens, fewer (possibly none) when the bucket holds less. */
+    Grant take(Bucket bucket, long max) throws IOException;
+
+    /** Returns unused leased tokens; anything above capacity is dropped. */
+    Grant giveBack(Bucket bucket, long tokens) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+}
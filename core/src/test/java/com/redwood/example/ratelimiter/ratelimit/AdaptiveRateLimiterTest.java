@@ -0,0 +1,71 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AdaptiveRateLimiter: a bucket of 10 tokens starting at 10/s, adjustable between 1/s and 20/s.
+ */
+class AdaptiveRateLimiterTest {
+
+    private FakeClock clock;
+    private AdaptiveRateLimiter limiter;
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+        limiter = new AdaptiveRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(10).refillTokensPerSecond(10).clock(clock).build(), 1, 20);
+    }
+
+    private void drain() {
+        while (limiter.tryAcquire()) { /* empty the bucket */ }
+    }
+
+    @Test
+    void refillFollowsTheCurrentRate() {
+        drain();
+        clock.advanceMs(100);
+        assertEquals(1, limiter.remaining(), "10/s for 100ms");
+
+        assertEquals(2, limiter.setRefillPerSecond(2));
+        assertEquals(1, limiter.remaining(), "Tokens already in the bucket are kept");
+        clock.advanceMs(500);
+        assertEquals(2, limiter.remaining(), "2/s for 500ms adds one");
+
+        limiter.setRefillPerSecond(20);
+        clock.advanceMs(100);
+        assertEquals(4, limiter.remaining());
+        clock.advanceMs(10_000);
+        assertEquals(10, limiter.remaining(), "Capacity still caps the bucket");
+    }
+
+    @Test
+    void rateIsClampedToItsBounds() {
+        assertEquals(20, limiter.setRefillPerSecond(100));
+        assertEquals(20, limiter.refillPerSecond());
+        assertEquals(1, limiter.setRefillPerSecond(0));
+        assertEquals(1, limiter.refillPerSecond());
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveRateLimiter(
+                LocalTokenBucketRateLimiter.Config.newBuilder().capacity(10).refillTokensPerSecond(10).build(), 5, 2));
+    }
+
+    /** Waits are real time: one token at 2/s is half a second away, not the 100ms it would be at the initial rate. */
+    @Test
+    void waitsAreConvertedToRealTime() {
+        drain();
+        limiter.setRefillPerSecond(2);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), limiter.waitNanos(1), 10_000);
+
+        assertEquals(-1, limiter.reserve(1, TimeUnit.MILLISECONDS.toNanos(400)), "Too far away");
+        long wait = limiter.reserve(1, TimeUnit.MILLISECONDS.toNanos(600));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), wait, 10_000);
+        clock.advanceMs(500);
+        assertFalse(limiter.tryAcquire(), "The refilled token was reserved");
+    }
+}
@@ -0,0 +1,98 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.Config;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every implementation under concurrent callers released together, with the clock frozen so no token can
+ * come from refill: a bucket must never admit more than it holds, nor lose or create tokens.
+ * The open-ended version of this (real clock, many keys, {@code /api/check}) is the {@code soak} task.
+ */
+class ConcurrentAdmissionTest {
+
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 50;
+    private static final long CAPACITY = 64;
+
+    private static Map<String, Function<Config, RateLimiter>> implementations() {
+        Map<String, Function<Config, RateLimiter>> all = new LinkedHashMap<>();
+        all.put("atomic", LocalTokenBucketRateLimiter::new);
+        all.put("packed", PackedTokenBucketRateLimiter::new);
+        all.put("striped", cfg -> new StripedTokenBucketRateLimiter(cfg, THREADS, 0));
+        all.put("gcra", GcraRateLimiter::new);
+        all.put("sliding-window", SlidingWindowCounterRateLimiter::new);
+        all.put("sliding-log", SlidingWindowLogRateLimiter::new);
+        all.put("heap-keyed", cfg -> new KeyedRateLimiter(new HeapKeyedBucketStore(cfg, 16), "key"));
+        all.put("off-heap-keyed", cfg -> new KeyedRateLimiter(new OffHeapKeyedBucketStore(cfg, 16), "key"));
+        all.put("hierarchical", cfg -> new HierarchicalRateLimiter(new LocalTokenBucketRateLimiter(cfg), new PackedTokenBucketRateLimiter(cfg)));
+        return all;
+    }
+
+    private static Config frozen() {
+        return Config.newBuilder().capacity(CAPACITY).refillTokensPerSecond(1).clock(() -> 0).build();
+    }
+
+    /** Runs {@code body} on {@link #THREADS} threads released at the same instant. */
+    private static void race(Runnable body) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    return;
+                }
+                body.run();
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+    }
+
+    @Test
+    void concurrentCallersTakeExactlyTheBucket() throws Exception {
+        for (Map.Entry<String, Function<Config, RateLimiter>> impl : implementations().entrySet()) {
+            for (int round = 0; round < ROUNDS; round++) {
+                RateLimiter limiter = impl.getValue().apply(frozen());
+                AtomicLong admitted = new AtomicLong();
+                race(() -> {
+                    for (int i = 0; i < CAPACITY; i++) if (limiter.tryAcquire()) admitted.incrementAndGet();
+                });
+                // Striped borrowing may give up under contention, so it can under-admit, never over-admit
+                if (impl.getKey().equals("striped")) assertTrue(admitted.get() <= CAPACITY, impl.getKey() + " admitted " + admitted);
+                else assertEquals(CAPACITY, admitted.get(), impl.getKey());
+                assertEquals(CAPACITY - admitted.get(), limiter.remaining(), impl.getKey() + " lost or created tokens");
+            }
+        }
+    }
+
+    /** Multi-permit acquires interleaved with refunds: what is left is exactly what was not kept. */
+    @Test
+    void refundsAndMultiPermitAcquiresConserveTokens() throws Exception {
+        for (Map.Entry<String, Function<Config, RateLimiter>> impl : implementations().entrySet()) {
+            RateLimiter limiter = impl.getValue().apply(frozen());
+            AtomicLong kept = new AtomicLong();
+            race(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2_000; i++) {
+                    int permits = 1 + random.nextInt(3);
+                    if (!limiter.tryAcquire(permits)) continue;
+                    if (random.nextBoolean()) limiter.refund(permits);
+                    else kept.addAndGet(permits);
+                }
+            });
+            assertTrue(kept.get() <= CAPACITY, impl.getKey() + " kept " + kept);
+            assertEquals(CAPACITY - kept.get(), limiter.remaining(), impl.getKey());
+        }
+    }
+}
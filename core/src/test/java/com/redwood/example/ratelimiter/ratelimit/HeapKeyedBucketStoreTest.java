@@ -0,0 +1,149 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HeapKeyedBucketStore: per-key isolation, lazy creation,
+ * idle eviction and the maxKeys bound.
+ */
+class HeapKeyedBucketStoreTest {
+
+    private FakeClock clock;
+
+    private HeapKeyedBucketStore newStore(long capacity, double rate, long maxKeys) {
+        return new HeapKeyedBucketStore(
+                LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(capacity)
+                        .refillTokensPerSecond(rate)
+                        .clock(clock)
+                        .build(),
+                maxKeys
+        );
+    }
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+    }
+
+    /** Every key has its own bucket; exhausting one leaves the others untouched. */
+    @Test
+    void keysAreIndependent() {
+        HeapKeyedBucketStore store = newStore(3, 1.0, 1000);
+
+        assertTrue(store.tryAcquire("tenant-a", 3));
+        assertFalse(store.tryAcquire("tenant-a", 1));
+        assertEquals(0, store.remaining("tenant-a"));
+
+        assertTrue(store.tryAcquire("tenant-b", 2));
+        assertEquals(1, store.remaining("tenant-b"));
+
+        clock.advanceMs(1000);
+        assertEquals(1, store.remaining("tenant-a"), "Refills like a regular bucket");
+    }
+
+    /** Buckets are only created on acquire; lookups of unknown keys report a full bucket. */
+    @Test
+    void bucketsAreCreatedLazily() {
+        HeapKeyedBucketStore store = newStore(5, 1.0, 1000);
+
+        assertEquals(5, store.remaining("unknown"));
+        assertEquals(0, store.size());
+
+        store.tryAcquire("a", 1);
+        store.tryAcquire("b", 1);
+        store.tryAcquire("a", 1);
+        assertEquals(2, store.size());
+        assertTrue(store.memoryBytes() > 0);
+    }
+
+    /** Fully refilled buckets are dropped by the sweep; partially used ones survive. */
+    @Test
+    void evictsIdleBuckets() {
+        HeapKeyedBucketStore store = newStore(4, 2.0, 1000);
+        store.tryAcquire("idle", 1);
+        clock.advanceMs(400);
+        store.tryAcquire("busy", 4);
+
+        // idle refilled after 500ms, busy needs 2s
+        clock.advanceMs(200);
+        assertEquals(1, store.evictIdle());
+        assertEquals(1, store.size());
+        assertEquals(0, store.remaining("busy"));
+    }
+
+    /** Refunded permits return to the key's bucket, capped at capacity. */
+    @Test
+    void refundRestoresKeyTokens() {
+        HeapKeyedBucketStore store = newStore(5, 1.0, 1000);
+        store.tryAcquire("a", 4);
+        store.refund("a", 3);
+        assertEquals(4, store.remaining("a"));
+
+        store.refund("a", 10);
+        assertEquals(5, store.remaining("a"));
+    }
+
+    /** The store never holds more than maxKeys buckets; new keys beyond that share the overflow bucket. */
+    @Test
+    void boundedByMaxKeys() {
+        HeapKeyedBucketStore store = newStore(5, 1.0, 64);
+
+        int allowed = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (store.tryAcquire("client-" + i, 1)) allowed++;
+        }
+        assertTrue(store.size() <= 64, "size=" + store.size());
+        assertTrue(allowed <= 64 + 5, "Keys without a bucket are limited by the shared overflow bucket");
+
+        // Once every bucket has refilled, space is reclaimed for new keys
+        clock.advanceMs(1000);
+        store.evictIdle();
+        assertEquals(0, store.size());
+        assertTrue(store.tryAcquire("late", 5));
+        assertEquals(1, store.size());
+    }
+
+    /** A key charged to the overflow bucket gets its refund back there, even once its segment has room again. */
+    @Test
+    void refundReachesOverflowBucketAfterSpaceFrees() {
+        HeapKeyedBucketStore store = newStore(2000, 1.0, 64);
+        for (int i = 0; i < 1000; i++) store.tryAcquire("client-" + i, 1);
+        assertTrue(store.tryAcquire("late", 1000), "Charged to the overflow bucket");
+
+        clock.advanceMs(1000);
+        assertEquals(64, store.evictIdle());
+        store.refund("late", 1000);
+
+        int allowed = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (store.tryAcquire("next-" + i, 1)) allowed++;
+        }
+        assertEquals(1000, allowed, "The overflow bucket holds the refunded tokens again");
+    }
+
+    /** A reload carries every key's fill level over, scaled to the new capacity. */
+    @Test
+    void carryOverScalesKeysToNewCapacity() {
+        HeapKeyedBucketStore old = newStore(4, 1.0, 1000);
+        old.tryAcquire("a", 3);
+        old.tryAcquire("b", 1);
+
+        HeapKeyedBucketStore store = newStore(8, 1.0, 1000);
+        assertEquals(2, store.carryOver(old));
+        assertEquals(2, store.remaining("a"));
+        assertEquals(6, store.remaining("b"));
+        assertEquals(8, store.remaining("c"));
+
+        assertEquals(0, store.carryOver(newOffHeap()), "Hashed keys cannot be carried into a keyed table");
+    }
+
+    private OffHeapKeyedBucketStore newOffHeap() {
+        return new OffHeapKeyedBucketStore(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(4).refillTokensPerSecond(1.0).clock(clock).build(), 64);
+    }
+}
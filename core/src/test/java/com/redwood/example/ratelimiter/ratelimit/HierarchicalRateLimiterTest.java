@@ -0,0 +1,134 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Acquires across an endpoint, a tenant and a global level on a controllable clock. */
+class HierarchicalRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private LocalTokenBucketRateLimiter bucket(long capacity, double rate) {
+        return new LocalTokenBucketRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(capacity).refillTokensPerSecond(rate).clock(now::get).build());
+    }
+
+    /** Counts acquires, to see which levels a decision touched. */
+    private static final class Counting implements RateLimiter {
+        final RateLimiter delegate;
+        int acquires;
+
+        Counting(RateLimiter delegate) { this.delegate = delegate; }
+
+        @Override public boolean tryAcquire() { return tryAcquire(1); }
+        @Override public boolean tryAcquire(int permits) { acquires++; return delegate.tryAcquire(permits); }
+        @Override public long remaining() { return delegate.remaining(); }
+        @Override public long capacity() { return delegate.capacity(); }
+        @Override public double refillPerSecond() { return delegate.refillPerSecond(); }
+        @Override public void refund(int permits) { delegate.refund(permits); }
+        @Override public double available() { return delegate.available(); }
+        @Override public void setAvailable(double tokens) { delegate.setAvailable(tokens); }
+    }
+
+    /** Every level must grant; a denial anywhere refunds the others so nothing leaks. */
+    @Test
+    void grantsOnlyWhenEveryLevelGrants_andRefundsOnDenial() {
+        LocalTokenBucketRateLimiter endpoint = bucket(10, 1);
+        LocalTokenBucketRateLimiter tenant = bucket(4, 1);
+        LocalTokenBucketRateLimiter global = bucket(100, 1);
+        HierarchicalRateLimiter chain = new HierarchicalRateLimiter(endpoint, tenant, global);
+
+        assertTrue(chain.tryAcquire(3));
+        assertEquals(1, chain.remaining(), "Tenant is the tightest level");
+        assertFalse(chain.tryAcquire(2));
+        assertEquals(7, endpoint.remaining(), "Nothing leaked from the endpoint");
+        assertEquals(97, global.remaining(), "Nothing leaked from the global level");
+
+        global.setAvailable(0);
+        assertFalse(chain.tryAcquire());
+        assertEquals(1, tenant.remaining());
+        assertEquals(7, endpoint.remaining());
+    }
+
+    /** A level that charges whole permits gets back the permit it took for a fraction, not a rounded-down 0. */
+    @Test
+    void fractionalDenialGivesWholePermitLevelsTheirChargeBack() {
+        SlidingWindowCounterRateLimiter window = new SlidingWindowCounterRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(10).refillTokensPerSecond(10).clock(now::get).build());
+        LocalTokenBucketRateLimiter global = bucket(100, 1);
+        HierarchicalRateLimiter chain = new HierarchicalRateLimiter(window, global);
+        global.setAvailable(0.25);
+
+        assertFalse(chain.tryAcquire(0.5), "Window goes first and takes a whole permit, the global level denies");
+        assertEquals(10, window.remaining(), "The window's permit came back");
+        assertTrue(global.available() > 0.2 && global.available() < 0.3);
+    }
+
+    /** The tightest level goes first, then whichever denied last, so denials under load cost one acquire. */
+    @Test
+    void triesTheLevelMostLikelyToDenyFirst() {
+        Counting endpoint = new Counting(bucket(10, 1));
+        Counting tenant = new Counting(bucket(2, 1));
+        Counting global = new Counting(bucket(100, 1));
+        HierarchicalRateLimiter chain = new HierarchicalRateLimiter(endpoint, tenant, global);
+
+        assertFalse(chain.tryAcquire(3));
+        assertEquals(1, tenant.acquires, "Tightest bucket first");
+        assertEquals(0, endpoint.acquires + global.acquires);
+
+        global.setAvailable(0);
+        assertFalse(chain.tryAcquire());
+        assertFalse(chain.tryAcquire());
+        assertEquals(2, global.acquires, "Once it denied, the global level is tried first");
+        assertEquals(2, tenant.acquires);
+    }
+
+    /** Limiters over the same chain share the order, e.g. the per-key views of one rule. */
+    @Test
+    void sharedOrderAcrossLimitersOfOneChain() {
+        Counting endpoint = new Counting(bucket(1, 1));
+        Counting global = new Counting(bucket(1, 1));
+        RateLimiter[] levels = {endpoint, global};
+        HierarchicalRateLimiter.Order order = new HierarchicalRateLimiter.Order(levels);
+
+        assertTrue(new HierarchicalRateLimiter(levels, order).tryAcquire());
+        global.setAvailable(0);
+        endpoint.setAvailable(1);
+        assertFalse(new HierarchicalRateLimiter(levels, order).tryAcquire());
+        int before = endpoint.acquires;
+        assertFalse(new HierarchicalRateLimiter(levels, order).tryAcquire());
+        assertEquals(before, endpoint.acquires, "Global now goes first for every limiter on the order");
+    }
+
+    @Test
+    void reserveWaitsForTheSlowestLevel() {
+        LocalTokenBucketRateLimiter endpoint = bucket(2, 1);
+        LocalTokenBucketRateLimiter global = bucket(1, 4);
+        HierarchicalRateLimiter chain = new HierarchicalRateLimiter(endpoint, global);
+        endpoint.setAvailable(0);
+        global.setAvailable(0);
+
+        assertEquals(1_000, TimeUnit.NANOSECONDS.toMillis(chain.waitNanos(1) + 500_000));
+        assertEquals(-1, chain.reserve(1, TimeUnit.MILLISECONDS.toNanos(500)), "Global could, the endpoint not");
+        assertEquals(0, global.waitNanos(1) - TimeUnit.MILLISECONDS.toNanos(250), 1_000_000, "Global reservation refunded");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertTrue(chain.remaining() > 0);
+    }
+
+    @Test
+    void overwritingTheChainLeavesTheLevelsAlone() {
+        LocalTokenBucketRateLimiter endpoint = bucket(2, 1);
+        LocalTokenBucketRateLimiter global = bucket(4, 1);
+        HierarchicalRateLimiter chain = new HierarchicalRateLimiter(endpoint, global);
+
+        chain.setAvailable(0);
+
+        assertEquals(2, endpoint.remaining());
+        assertEquals(4, global.remaining());
+    }
+}
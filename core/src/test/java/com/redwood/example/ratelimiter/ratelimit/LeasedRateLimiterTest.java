@@ -0,0 +1,189 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.TokenStore.Bucket;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore.Grant;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cluster-mode limiters on an {@link InMemoryTokenStore}: several limiters on one store stand in for the
+ * nodes of a cluster. Store calls run inline (direct executor) unless a test is about waiting for them.
+ */
+class LeasedRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final InMemoryTokenStore central = new InMemoryTokenStore(now::get);
+
+    /** Counts the calls reaching the store. */
+    private final class CountingStore implements TokenStore {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Grant take(Bucket bucket, long max) {
+            calls.incrementAndGet();
+            return central.take(bucket, max);
+        }
+
+        @Override
+        public Grant giveBack(Bucket bucket, long tokens) {
+            calls.incrementAndGet();
+            return central.giveBack(bucket, tokens);
+        }
+    }
+
+    private LocalTokenBucketRateLimiter.Config config(long capacity, double rate) {
+        return LocalTokenBucketRateLimiter.Config.newBuilder().capacity(capacity).refillTokensPerSecond(rate).clock(now::get).build();
+    }
+
+    private LeasedRateLimiter node(TokenStore store, long capacity, long lease) {
+        return new LeasedRateLimiter(config(capacity, 1), store, "/api/v1/users", lease, 0, 0, Runnable::run);
+    }
+
+    /** However requests spread over the nodes, together they admit the limit and not a token more. */
+    @Test
+    void nodesTogetherNeverExceedTheLimit() {
+        List<LeasedRateLimiter> nodes = List.of(node(central, 20, 4), node(central, 20, 4), node(central, 20, 4));
+
+        int allowed = 0;
+        for (int i = 0; i < 60; i++) {
+            if (nodes.get(i % 3).tryAcquire()) allowed++;
+        }
+        assertEquals(20, allowed);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2)); // 2 tokens at 1/s
+        allowed = 0;
+        for (int i = 0; i < 60; i++) {
+            if (nodes.get(i % 3).tryAcquire()) allowed++;
+        }
+        assertEquals(2, allowed);
+    }
+
+    /** Takes what the lease holds without waiting for the store, which only tops it up afterwards. */
+    @Test
+    void upToTakesTheLease() {
+        LeasedRateLimiter node = node(central, 10, 4);
+        assertEquals(4, node.tryAcquireUpTo(100));
+        assertEquals(4, node.leased(), "Topped up");
+        assertEquals(4, node.tryAcquireUpTo(100));
+        assertEquals(2, node.tryAcquireUpTo(100), "The rest of the central bucket");
+        assertEquals(0, node.tryAcquireUpTo(100));
+    }
+
+    /** Acquires are served from the lease; the store sees one call per lease, not per request. */
+    @Test
+    void storeIsCalledOncePerLease() {
+        CountingStore store = new CountingStore();
+        LeasedRateLimiter node = node(store, 1_000, 100);
+
+        for (int i = 0; i < 500; i++) assertTrue(node.tryAcquire());
+        assertTrue(store.calls.get() <= 6, "calls: " + store.calls.get());
+    }
+
+    /** A drained central bucket is not asked again before it can have refilled. */
+    @Test
+    void drainedStoreIsLeftAloneUntilItRefills() {
+        CountingStore store = new CountingStore();
+        LeasedRateLimiter node = node(store, 5, 5);
+        for (int i = 0; i < 5; i++) assertTrue(node.tryAcquire());
+
+        int calls = store.calls.get();
+        for (int i = 0; i < 100; i++) assertFalse(node.tryAcquire());
+        assertEquals(calls, store.calls.get(), "backs off after the empty grant");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(node.tryAcquire());
+    }
+
+    /** Released leases go back to the central bucket for the other nodes. */
+    @Test
+    void releaseHandsTheLeaseBack() {
+        LeasedRateLimiter a = node(central, 10, 4);
+        assertEquals(4, a.leased());
+        a.release();
+        assertEquals(0, a.leased());
+
+        LeasedRateLimiter b = node(central, 10, 10);
+        assertEquals(10, b.leased(), "a's lease was returned");
+    }
+
+    /** A lease left untouched for its TTL goes back to the store; one topped up in time is kept. */
+    @Test
+    void leaseIsReturnedWhenItsTtlRunsOut() {
+        LeasedRateLimiter node = new LeasedRateLimiter(config(10, 1), central, "/a", 4, 0, 0,
+                TimeUnit.SECONDS.toNanos(5), Runnable::run);
+        assertEquals(4, node.leased());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        node.expireLease();
+        assertEquals(4, node.leased(), "not expired yet");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        node.expireLease();
+        assertEquals(0, node.leased());
+        assertEquals(10, central.take(new Bucket("/a", 10, 1), 10).granted(), "whole bucket back in the store");
+    }
+
+    /** With an empty lease, waiting for the refill trades latency for accuracy. */
+    @Test
+    void emptyLeaseDeniesOrWaitsForTheRefill() {
+        TokenStore slow = new TokenStore() {
+            @Override
+            public Grant take(Bucket bucket, long max) throws IOException {
+                sleep(100);
+                return central.take(bucket, max);
+            }
+
+            @Override
+            public Grant giveBack(Bucket bucket, long tokens) {
+                return central.giveBack(bucket, tokens);
+            }
+        };
+
+        LeasedRateLimiter eager = new LeasedRateLimiter(config(10, 1), slow, "/eager", 5, 0, 0);
+        assertFalse(eager.tryAcquire(), "lease not there yet");
+
+        LeasedRateLimiter patient = new LeasedRateLimiter(config(10, 1), slow, "/patient", 5, TimeUnit.SECONDS.toNanos(5), 0);
+        assertEquals(-1, patient.reserve(1, 0), "reserve runs on the timer thread and never waits");
+        assertTrue(patient.tryAcquire(), "waited for the first lease");
+    }
+
+    /** An unreachable store leaves each node with its fallback share of the limit, or denies without one. */
+    @Test
+    void unreachableStoreFallsBackToLocalShare() {
+        TokenStore down = new TokenStore() {
+            @Override
+            public Grant take(Bucket bucket, long max) throws IOException {
+                throw new IOException("connection refused");
+            }
+
+            @Override
+            public Grant giveBack(Bucket bucket, long tokens) throws IOException {
+                throw new IOException("connection refused");
+            }
+        };
+
+        LeasedRateLimiter shared = new LeasedRateLimiter(config(10, 1), down, "/a", 2, 0, 0.5, Runnable::run);
+        assertTrue(shared.storeDown());
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) if (shared.tryAcquire()) allowed++;
+        assertEquals(5, allowed);
+
+        LeasedRateLimiter closed = new LeasedRateLimiter(config(10, 1), down, "/b", 2, 0, 0, Runnable::run);
+        assertFalse(closed.tryAcquire());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
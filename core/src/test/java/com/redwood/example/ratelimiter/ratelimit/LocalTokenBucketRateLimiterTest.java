@@ -145,4 +145,58 @@ class LocalTokenBucketRateLimiterTest {
         clock.advanceMs(700);
         assertEquals(10, limiter.remaining(), "Should cap at full capacity");
     }
+
+    /** Refunded permits come back, but never beyond capacity. */
+    @Test
+    void refundRestoresTokensUpToCapacity() {
+        assertTrue(limiter.tryAcquire(3));
+        assertEquals(2, limiter.remaining());
+
+        limiter.refund(2);
+        assertEquals(4, limiter.remaining(), "Refund adds tokens back");
+
+        limiter.refund(10);
+        assertEquals(5, limiter.remaining(), "Refund is capped at capacity");
+    }
+
+    /** Fractional costs are taken and refunded exactly, not rounded to whole tokens. */
+    @Test
+    void fractionalPermitsAreExact() {
+        assertTrue(limiter.tryAcquire(2.5));
+        assertEquals(2.5, limiter.available(), 1e-6);
+        assertTrue(limiter.tryAcquire(2.25));
+        assertFalse(limiter.tryAcquire(0.5), "0.25 left");
+        assertTrue(limiter.tryAcquire(0.25));
+
+        clock.advanceMs(125);
+        assertTrue(limiter.tryAcquire(0.25), "0.25 refilled in 125ms at 2/s");
+
+        limiter.refund(1.75);
+        assertEquals(1.75, limiter.available(), 1e-6, "Unused part of a cost charged up front");
+    }
+
+    /** A reservation lends refill ahead; later callers queue behind the debt and see the longer wait. */
+    @Test
+    void reserveGoesIntoDebt_andLaterCallersWaitBehindIt() {
+        assertTrue(limiter.tryAcquire(5));
+        assertEquals(1_000, ms(limiter.waitNanos(2)), "2 tokens at 2/s");
+
+        assertEquals(-1, limiter.reserve(2, TimeUnit.MILLISECONDS.toNanos(900)), "Wait longer than allowed");
+        assertEquals(1_000, ms(limiter.reserve(2, TimeUnit.SECONDS.toNanos(5))));
+
+        assertEquals(0, limiter.remaining(), "Debt never shows as negative");
+        assertEquals(1_500, ms(limiter.waitNanos(1)), "Queued behind the reservation");
+
+        clock.advanceMs(1_000);
+        assertFalse(limiter.tryAcquire(), "Refill first repays the debt");
+        clock.advanceMs(500);
+        assertTrue(limiter.tryAcquire());
+
+        assertEquals(-1, limiter.reserve(6, Long.MAX_VALUE), "Never more than the capacity");
+        assertEquals(Long.MAX_VALUE, limiter.waitNanos(6));
+    }
+
+    private static long ms(long nanos) {
+        return Math.round(nanos / 1e6);
+    }
 }
@@ -0,0 +1,199 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OffHeapKeyedBucketStore. Mirrors the HeapKeyedBucketStore scenarios,
+ * plus in-place reuse of idle slots and concurrent acquires on the lock-free slots.
+ */
+class OffHeapKeyedBucketStoreTest {
+
+    private FakeClock clock;
+
+    private OffHeapKeyedBucketStore newStore(long capacity, double rate, long maxKeys) {
+        return new OffHeapKeyedBucketStore(
+                LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(capacity)
+                        .refillTokensPerSecond(rate)
+                        .clock(clock)
+                        .build(),
+                maxKeys
+        );
+    }
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+    }
+
+    /** Every key has its own bucket; exhausting one leaves the others untouched. */
+    @Test
+    void keysAreIndependent() {
+        OffHeapKeyedBucketStore store = newStore(3, 1.0, 1000);
+
+        assertTrue(store.tryAcquire("tenant-a", 3));
+        assertFalse(store.tryAcquire("tenant-a", 1));
+        assertEquals(0, store.remaining("tenant-a"));
+
+        assertTrue(store.tryAcquire("tenant-b", 2));
+        assertEquals(1, store.remaining("tenant-b"));
+
+        clock.advanceMs(1000);
+        assertEquals(1, store.remaining("tenant-a"), "Refills like a regular bucket");
+    }
+
+    /** Buckets are only created on acquire; lookups of unknown keys report a full bucket. */
+    @Test
+    void bucketsAreCreatedLazily() {
+        OffHeapKeyedBucketStore store = newStore(5, 1.0, 1000);
+
+        assertEquals(5, store.remaining("unknown"));
+        assertEquals(0, store.size());
+
+        store.tryAcquire("a", 1);
+        store.tryAcquire("b", 1);
+        store.tryAcquire("a", 1);
+        assertEquals(2, store.size());
+        assertTrue(store.memoryBytes() > 0);
+    }
+
+    /** Fully refilled buckets are dropped by the sweep; partially used ones survive. */
+    @Test
+    void evictsIdleBuckets() {
+        OffHeapKeyedBucketStore store = newStore(4, 2.0, 1000);
+        store.tryAcquire("idle", 1);
+        clock.advanceMs(400);
+        store.tryAcquire("busy", 4);
+
+        // idle refilled after 500ms, busy needs 2s
+        clock.advanceMs(200);
+        assertEquals(1, store.evictIdle());
+        assertEquals(1, store.size());
+        assertEquals(0, store.remaining("busy"));
+    }
+
+    /** Refunded permits return to the key's bucket, capped at capacity. */
+    @Test
+    void refundRestoresKeyTokens() {
+        OffHeapKeyedBucketStore store = newStore(5, 1.0, 1000);
+        store.tryAcquire("a", 4);
+        store.refund("a", 3);
+        assertEquals(4, store.remaining("a"));
+
+        store.refund("a", 10);
+        assertEquals(5, store.remaining("a"));
+    }
+
+    /** The store never holds more than maxKeys buckets; new keys beyond that share the overflow bucket. */
+    @Test
+    void boundedByMaxKeys() {
+        OffHeapKeyedBucketStore store = newStore(5, 1.0, 64);
+
+        int allowed = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (store.tryAcquire("client-" + i, 1)) allowed++;
+        }
+        assertTrue(store.size() <= 64, "size=" + store.size());
+        assertTrue(allowed <= 64 + 5, "Keys without a bucket are limited by the shared overflow bucket");
+
+        // Once every bucket has refilled, space is reclaimed for new keys
+        clock.advanceMs(1000);
+        store.evictIdle();
+        assertEquals(0, store.size());
+        assertTrue(store.tryAcquire("late", 5));
+        assertEquals(1, store.size());
+    }
+
+    /** A full table hands the slots of idle buckets to new keys without waiting for a sweep. */
+    @Test
+    void reusesIdleSlotsWhenFull() {
+        OffHeapKeyedBucketStore store = newStore(2, 1.0, 64);
+        for (int i = 0; i < 64; i++) assertTrue(store.tryAcquire("old-" + i, 1));
+        assertEquals(64, store.size());
+
+        clock.advanceMs(1000);
+        for (int i = 0; i < 64; i++) assertTrue(store.tryAcquire("new-" + i, 2), "new-" + i);
+        assertEquals(64, store.size());
+        assertEquals(0, store.remaining("new-7"));
+    }
+
+    /** Concurrent acquires on one key never hand out more than the bucket holds. */
+    @Test
+    void concurrentAcquiresRespectCapacity() throws InterruptedException {
+        OffHeapKeyedBucketStore store = newStore(1000, 1.0, 1000);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < 500; i++) {
+                    if (store.tryAcquire("shared", 1)) allowed.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads) t.join();
+
+        assertEquals(1000, allowed.get());
+        assertEquals(1, store.size());
+    }
+
+    /** Inserts of one key racing with sweeps that turn idle slots into tombstones still end up in one bucket. */
+    @Test
+    void racingInsertsShareOneBucket() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            OffHeapKeyedBucketStore store = newStore(4, 1.0, 64);
+            for (int i = 0; i < 64; i++) store.tryAcquire("old-" + i, 1);
+            clock.advanceMs(1000);
+
+            AtomicInteger allowed = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[5];
+            threads[0] = new Thread(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                store.evictIdle();
+            });
+            for (int t = 1; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    try { start.await(); } catch (InterruptedException e) { return; }
+                    for (int i = 0; i < 2; i++) {
+                        if (store.tryAcquire("hot", 1)) allowed.incrementAndGet();
+                    }
+                });
+            }
+            for (Thread t : threads) t.start();
+            start.countDown();
+            for (Thread t : threads) t.join();
+
+            assertEquals(4, allowed.get(), "round " + round);
+            assertEquals(0, store.remaining("hot"), "round " + round);
+        }
+    }
+
+    /** Buckets carry over from both store kinds, scaled to the new capacity. */
+    @Test
+    void carryOverScalesKeysToNewCapacity() {
+        OffHeapKeyedBucketStore old = newStore(4, 1.0, 1000);
+        old.tryAcquire("a", 3);
+        OffHeapKeyedBucketStore store = newStore(8, 1.0, 1000);
+        assertEquals(1, store.carryOver(old));
+        assertEquals(2, store.remaining("a"));
+        assertEquals(8, store.remaining("b"));
+
+        HeapKeyedBucketStore heap = new HeapKeyedBucketStore(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(2).refillTokensPerSecond(1.0).clock(clock).build(), 1000);
+        heap.tryAcquire("c", 1);
+        OffHeapKeyedBucketStore fromHeap = newStore(8, 1.0, 1000);
+        assertEquals(1, fromHeap.carryOver(heap));
+        assertEquals(4, fromHeap.remaining("c"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PackedTokenBucketRateLimiter.
+ * Mirrors the LocalTokenBucketRateLimiter scenarios so both implementations
+ * are held to the same fractional-refill semantics.
+ */
+class PackedTokenBucketRateLimiterTest {
+
+    private FakeClock clock;
+    private PackedTokenBucketRateLimiter limiter;
+
+    private PackedTokenBucketRateLimiter newLimiter(long capacity, double rate) {
+        return new PackedTokenBucketRateLimiter(
+                LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(capacity)
+                        .refillTokensPerSecond(rate)
+                        .clock(clock)
+                        .build()
+        );
+    }
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+        // Bucket of 5 tokens, refills at 2 tokens per second
+        limiter = newLimiter(5, 2.0);
+    }
+
+    /** Verify starting state and empty bucket behavior. */
+    @Test
+    void startsFull_andNeverNegative() {
+        assertEquals(5, limiter.remaining(), "Should start full");
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(), "Token " + i + " should be granted");
+        }
+
+        assertFalse(limiter.tryAcquire(), "Should block when empty");
+        assertEquals(0, limiter.remaining(), "Remaining tokens never negative");
+    }
+
+    /** Takes the whole tokens held, whatever the amount asked for. */
+    @Test
+    void upToTakesWholeTokensInOneStep() {
+        assertTrue(limiter.tryAcquire(2.5));
+        assertEquals(2, limiter.tryAcquireUpTo(10));
+        assertEquals(0, limiter.tryAcquireUpTo(1), "Half a token left");
+
+        clock.advanceMs(250);
+        assertEquals(1, limiter.tryAcquireUpTo(3));
+        assertEquals(0, limiter.available(), 1e-9);
+    }
+
+    /** Validate smooth refill over time, partial token restoration, and max cap. */
+    @Test
+    void refillsGraduallyOverTime() {
+        for (int i = 0; i < 5; i++) limiter.tryAcquire();
+        assertEquals(0, limiter.remaining(), "Empty after full usage");
+
+        clock.advanceMs(500);
+        assertTrue(limiter.tryAcquire(), "Should allow after 0.5s");
+        assertEquals(0, limiter.remaining(), "1 token consumed");
+
+        clock.advanceMs(500);
+        assertTrue(limiter.tryAcquire(), "Should allow after another 0.5s");
+        assertEquals(0, limiter.remaining(), "Bucket empty again");
+
+        clock.advanceMs(2500);
+        assertEquals(5, limiter.remaining(), "Should refill to full capacity only");
+    }
+
+    /** Fractional tokens accumulate across several short intervals. */
+    @Test
+    void fractionalRefillAccumulates() {
+        for (int i = 0; i < 5; i++) limiter.tryAcquire();
+
+        // 3 x 200ms at 2 tokens/sec = 1.2 tokens
+        clock.advanceMs(200);
+        assertFalse(limiter.tryAcquire(), "0.4 tokens is not enough");
+        clock.advanceMs(200);
+        assertFalse(limiter.tryAcquire(), "0.8 tokens is not enough");
+        clock.advanceMs(200);
+        assertTrue(limiter.tryAcquire(), "1.2 tokens allows one permit");
+
+        // 0.2 left over, another 400ms brings it to exactly 1.0
+        clock.advanceMs(400);
+        assertTrue(limiter.tryAcquire(), "Leftover fraction carries over");
+    }
+
+    /** Check acquiring multiple permits at once and rejecting oversize requests. */
+    @Test
+    void multiplePermitRequestBehavior() {
+        limiter = newLimiter(10, 5.0);
+
+        assertTrue(limiter.tryAcquire(4), "Should acquire 4 permits");
+        assertEquals(6, limiter.remaining(), "6 remaining after acquiring 4");
+
+        assertFalse(limiter.tryAcquire(20), "Should reject requests exceeding capacity");
+        assertEquals(6, limiter.remaining(), "Remaining unchanged after failed request");
+    }
+
+    /** Ensures bucket never exceeds capacity after long idle times. */
+    @Test
+    void doesNotExceedCapacityOnLongIdlePeriod() {
+        for (int i = 0; i < 5; i++) limiter.tryAcquire();
+        assertEquals(0, limiter.remaining());
+
+        clock.advanceMs(60_000);
+
+        assertEquals(5, limiter.remaining(), "Never exceed max capacity");
+        for (int i = 0; i < 5; i++) assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire(), "Idle time must not bank extra tokens");
+    }
+
+    /** Validate linear proportional refill based on elapsed time. */
+    @Test
+    void refillIsLinearWithTime() {
+        limiter = newLimiter(10, 10.0);
+
+        for (int i = 0; i < 10; i++) limiter.tryAcquire();
+        assertEquals(0, limiter.remaining());
+
+        clock.advanceMs(100);
+        assertEquals(1, limiter.remaining(), "0.1s -> 1 token expected");
+
+        clock.advanceMs(200);
+        assertEquals(3, limiter.remaining(), "0.3s -> 3 tokens total");
+
+        clock.advanceMs(700);
+        assertEquals(10, limiter.remaining(), "Should cap at full capacity");
+    }
+
+    @Test
+    void reportsConfiguration() {
+        assertEquals(5, limiter.capacity());
+        assertEquals(2.0, limiter.refillPerSecond(), 1e-9);
+    }
+
+    /** Refunded permits come back, but never beyond capacity. */
+    @Test
+    void refundRestoresTokensUpToCapacity() {
+        assertTrue(limiter.tryAcquire(3));
+        assertEquals(2, limiter.remaining());
+
+        limiter.refund(2);
+        assertEquals(4, limiter.remaining(), "Refund adds tokens back");
+
+        limiter.refund(10);
+        assertEquals(5, limiter.remaining(), "Refund is capped at capacity");
+        for (int i = 0; i < 5; i++) assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire(), "Over-refund must not bank extra tokens");
+    }
+}
@@ -0,0 +1,104 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.TokenStore.Bucket;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore.Grant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RESP framing of RedisTokenStore against a scripted stand-in server: the script itself runs only on a real
+ * Redis, here each command gets a canned reply and is recorded for inspection.
+ */
+class RedisTokenStoreTest {
+
+    private final ServerSocket server = new ServerSocket(0);
+    private final BlockingQueue<List<String>> commands = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+    private final Thread serving = Thread.ofVirtual().start(this::serve);
+
+    RedisTokenStoreTest() throws IOException {}
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+        serving.interrupt();
+    }
+
+    private void serve() {
+        try (Socket s = server.accept(); InputStream in = new BufferedInputStream(s.getInputStream()); OutputStream out = s.getOutputStream()) {
+            for (;;) {
+                if (in.read() != '*') return;
+                int n = Integer.parseInt(line(in));
+                List<String> args = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    line(in); // $<length>
+                    args.add(line(in));
+                }
+                commands.add(args);
+                out.write(replies.take().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // test over
+        }
+    }
+
+    private static String line(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c; (c = in.read()) != '\r'; ) sb.append((char) c);
+        in.read();
+        return sb.toString();
+    }
+
+    private List<String> nextCommand() throws InterruptedException {
+        return commands.poll(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void sendsScriptBySha_andInFullAfterNoscript() throws Exception {
+        RedisTokenStore store = new RedisTokenStore("127.0.0.1", server.getLocalPort(), "rl:", 2_000);
+        Bucket bucket = new Bucket("/api/v1/users", 10, 2);
+
+        replies.add("-NOSCRIPT No matching script\r\n");
+        replies.add("*2\r\n:3\r\n:7\r\n");
+        assertEquals(new Grant(3, 7), store.take(bucket, 3));
+
+        List<String> evalsha = nextCommand();
+        assertEquals("EVALSHA", evalsha.get(0));
+        assertEquals(List.of("1", "rl:/api/v1/users", "10", "2.0", "3"), evalsha.subList(2, 7));
+        List<String> eval = nextCommand();
+        assertEquals("EVAL", eval.get(0));
+        assertEquals(RedisTokenStore.SCRIPT, eval.get(1));
+
+        replies.add("*2\r\n:0\r\n:10\r\n");
+        assertEquals(new Grant(0, 10), store.giveBack(bucket, 3));
+        List<String> giveBack = nextCommand();
+        assertEquals("EVALSHA", giveBack.get(0));
+        assertEquals("-3", giveBack.get(6), "returns are negative takes");
+        store.close();
+    }
+
+    @Test
+    void errorRepliesFailTheCall() {
+        RedisTokenStore store = new RedisTokenStore("127.0.0.1", server.getLocalPort(), "rl:", 2_000);
+        replies.add("-ERR wrong number of arguments\r\n");
+        IOException e = assertThrows(IOException.class, () -> store.take(new Bucket("/a", 10, 1), 1));
+        assertTrue(e.getMessage().contains("wrong number"));
+        store.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SlidingWindowCounterRateLimiter on the fake clock.
+ * 10 permits at 1 per second: a 10 second window admitting 10 permits.
+ */
+class SlidingWindowCounterRateLimiterTest {
+
+    private FakeClock clock;
+    private SlidingWindowCounterRateLimiter limiter;
+
+    private SlidingWindowCounterRateLimiter newLimiter(long capacity, double rate) {
+        return new SlidingWindowCounterRateLimiter(
+                LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(capacity)
+                        .refillTokensPerSecond(rate)
+                        .clock(clock)
+                        .build()
+        );
+    }
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+        limiter = newLimiter(10, 1.0);
+    }
+
+    @Test
+    void admitsTheLimitPerWindow() {
+        assertEquals(10, limiter.remaining(), "Should start with the whole window");
+        assertTrue(limiter.tryAcquire(10));
+        assertFalse(limiter.tryAcquire(), "Window used up");
+
+        // Unlike a token bucket nothing comes back mid-window
+        clock.advanceMs(5_000);
+        assertFalse(limiter.tryAcquire());
+        assertEquals(0, limiter.remaining());
+    }
+
+    /** The previous window counts with the share of it still inside the sliding window. */
+    @Test
+    void previousWindowIsWeightedByOverlap() {
+        assertTrue(limiter.tryAcquire(10));
+
+        clock.advanceMs(10_000); // start of the next window: previous counts fully
+        assertEquals(0, limiter.remaining());
+
+        clock.advanceMs(3_000); // 70% of the previous window overlaps: 7 used
+        assertEquals(3, limiter.remaining());
+        assertTrue(limiter.tryAcquire(3));
+        assertFalse(limiter.tryAcquire());
+
+        clock.advanceMs(7_000); // next window: previous (3) counts fully
+        assertEquals(7, limiter.remaining());
+    }
+
+    /** Two or more windows of silence clear both counters. */
+    @Test
+    void longIdleClearsTheCounts() {
+        assertTrue(limiter.tryAcquire(10));
+        clock.advanceMs(60_000);
+        assertEquals(10, limiter.remaining());
+        assertTrue(limiter.tryAcquire(10));
+        assertFalse(limiter.tryAcquire(), "Idle time must not bank extra permits");
+    }
+
+    @Test
+    void multiplePermitRequestBehavior() {
+        assertTrue(limiter.tryAcquire(4));
+        assertEquals(6, limiter.remaining());
+        assertFalse(limiter.tryAcquire(20), "Should reject requests exceeding capacity");
+        assertEquals(6, limiter.remaining(), "Remaining unchanged after failed request");
+    }
+
+    @Test
+    void refundAndSetAvailable() {
+        assertTrue(limiter.tryAcquire(6));
+        limiter.refund(2);
+        assertEquals(6, limiter.remaining());
+        limiter.refund(100);
+        assertEquals(10, limiter.remaining(), "Refund never goes below an empty window");
+
+        limiter.setAvailable(3);
+        assertEquals(3, limiter.remaining());
+        assertFalse(limiter.tryAcquire(4));
+    }
+
+    @Test
+    void reportsConfiguration_andRejectsOversizedBuckets() {
+        assertEquals(10, limiter.capacity());
+        assertEquals(1.0, limiter.refillPerSecond(), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> newLimiter(SlidingWindowCounterRateLimiter.MAX_CAPACITY + 1L, 1));
+    }
+}
@@ -0,0 +1,117 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SlidingWindowLogRateLimiter on the fake clock.
+ * 5 permits at 1 per second: at most 5 grants in any 5 second window, exactly.
+ */
+class SlidingWindowLogRateLimiterTest {
+
+    private FakeClock clock;
+    private SlidingWindowLogRateLimiter limiter;
+
+    private SlidingWindowLogRateLimiter newLimiter(long capacity, double rate) {
+        return new SlidingWindowLogRateLimiter(
+                LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(capacity)
+                        .refillTokensPerSecond(rate)
+                        .clock(clock)
+                        .build()
+        );
+    }
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+        limiter = newLimiter(5, 1.0);
+    }
+
+    /** Each grant frees its slot exactly one window after it was made. */
+    @Test
+    void grantsExpireOneWindowLater() {
+        assertTrue(limiter.tryAcquire(2));
+        clock.advanceMs(1_000);
+        assertTrue(limiter.tryAcquire(3));
+        assertFalse(limiter.tryAcquire());
+
+        clock.advanceMs(3_999);
+        assertFalse(limiter.tryAcquire(), "First grants still 1ms inside the window");
+        clock.advanceMs(1);
+        assertEquals(2, limiter.remaining());
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.tryAcquire());
+
+        clock.advanceMs(1_000);
+        assertEquals(3, limiter.remaining(), "Second batch expired");
+    }
+
+    /** One slot per permit: fractional costs are charged whole, and refunds give back whole permits only. */
+    @Test
+    void fractionalPermitsAreRoundedToWholeSlots() {
+        assertTrue(limiter.tryAcquire(0.5));
+        assertEquals(4, limiter.remaining(), "0.5 takes a whole slot");
+        assertTrue(limiter.tryAcquire(0.1 * 30), "3 up to floating-point error takes 3 slots, not 4");
+        assertEquals(1, limiter.remaining());
+
+        limiter.refund(2.5);
+        assertEquals(3, limiter.remaining(), "Charge of 3, used 0.5: refunding 2.5 gives back 2");
+    }
+
+    @Test
+    void multiplePermitRequestBehavior() {
+        assertTrue(limiter.tryAcquire(4));
+        assertEquals(1, limiter.remaining());
+        assertFalse(limiter.tryAcquire(2));
+        assertFalse(limiter.tryAcquire(6), "Should reject requests exceeding capacity");
+        assertEquals(1, limiter.remaining(), "Remaining unchanged after failed request");
+    }
+
+    @Test
+    void longIdleDoesNotBankPermits() {
+        clock.advanceMs(60_000);
+        assertEquals(5, limiter.remaining());
+        assertTrue(limiter.tryAcquire(5));
+        assertFalse(limiter.tryAcquire());
+    }
+
+    /** Refunds forget the newest grants; older grants keep their own expiry. */
+    @Test
+    void refundForgetsNewestGrants() {
+        assertTrue(limiter.tryAcquire(2));
+        clock.advanceMs(1_000);
+        assertTrue(limiter.tryAcquire(3));
+
+        limiter.refund(3);
+        assertEquals(3, limiter.remaining());
+        assertTrue(limiter.tryAcquire(3));
+        assertFalse(limiter.tryAcquire());
+
+        clock.advanceMs(4_000); // the first two grants expire
+        assertEquals(2, limiter.remaining());
+
+        limiter.refund(100);
+        assertEquals(5, limiter.remaining(), "Refund is capped at capacity");
+    }
+
+    @Test
+    void setAvailableRebuildsTheLog() {
+        limiter.setAvailable(2);
+        assertEquals(2, limiter.remaining());
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.tryAcquire());
+        clock.advanceMs(5_000);
+        assertEquals(5, limiter.remaining());
+    }
+
+    @Test
+    void reportsConfiguration_andRejectsOversizedBuckets() {
+        assertEquals(5, limiter.capacity());
+        assertEquals(1.0, limiter.refillPerSecond(), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> newLimiter(SlidingWindowLogRateLimiter.MAX_CAPACITY + 1L, 1));
+    }
+}
@@ -0,0 +1,110 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiterTest.FakeClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StripedTokenBucketRateLimiter.
+ * The aggregate of all stripes must behave like a single bucket of the configured size.
+ */
+class StripedTokenBucketRateLimiterTest {
+
+    private FakeClock clock;
+
+    private StripedTokenBucketRateLimiter newLimiter(long capacity, double rate, int stripes) {
+        return new StripedTokenBucketRateLimiter(
+                LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(capacity)
+                        .refillTokensPerSecond(rate)
+                        .clock(clock)
+                        .build(),
+                stripes, 0);
+    }
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock(0);
+    }
+
+    /** A single thread can use the whole capacity by borrowing from the other stripes. */
+    @Test
+    void borrowsAcrossStripes_upToAggregateCapacity() {
+        StripedTokenBucketRateLimiter limiter = newLimiter(8, 4.0, 4);
+        assertEquals(4, limiter.stripes());
+        assertEquals(8, limiter.remaining(), "Should start full");
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limiter.tryAcquire(), "Token " + i + " should be granted");
+        }
+        assertFalse(limiter.tryAcquire(), "Aggregate capacity exhausted");
+        assertEquals(0, limiter.remaining());
+    }
+
+    /** Refill rate is the aggregate of all stripes. */
+    @Test
+    void refillsAtAggregateRate() {
+        StripedTokenBucketRateLimiter limiter = newLimiter(8, 4.0, 4);
+        while (limiter.tryAcquire()) { /* drain */ }
+
+        clock.advanceMs(500);
+        assertEquals(2, limiter.remaining(), "0.5s at 4/s -> 2 tokens");
+
+        clock.advanceMs(10_000);
+        assertEquals(8, limiter.remaining(), "Capped at aggregate capacity");
+    }
+
+    /** Requests larger than one stripe are served by gathering tokens from several stripes. */
+    @Test
+    void multiPermitRequestSpanningStripes() {
+        StripedTokenBucketRateLimiter limiter = newLimiter(10, 5.0, 4);
+
+        assertTrue(limiter.tryAcquire(7), "7 permits exceed one stripe but fit the aggregate");
+        assertEquals(3, limiter.remaining());
+        assertFalse(limiter.tryAcquire(4), "Only 3 left in total");
+        assertEquals(3, limiter.remaining(), "Denied request leaves state unchanged");
+    }
+
+    @Test
+    void stripesNeverExceedCapacity() {
+        StripedTokenBucketRateLimiter limiter = newLimiter(3, 1.0, 64);
+        assertEquals(3, limiter.stripes(), "Every stripe must hold at least one token");
+        assertEquals(3, limiter.capacity());
+        assertEquals(1.0, limiter.refillPerSecond(), 1e-9);
+    }
+
+    /** With time frozen, concurrent callers must be admitted exactly capacity times in total. */
+    @Test
+    void concurrentCallersNeverOverAdmit() throws Exception {
+        StripedTokenBucketRateLimiter limiter = newLimiter(1000, 1.0, 8);
+        int threads = 8;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire()) admitted.incrementAndGet();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+
+        assertTrue(admitted.get() <= 1000, "Admitted " + admitted.get() + " > capacity");
+        assertEquals(1000, admitted.get() + limiter.remaining(), "No tokens lost or created");
+    }
+}
@@ -0,0 +1,97 @@
+package com.redwood.example.ratelimiter.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The timer wheel and the waiting acquires built on it. These run on the real clock, as the wheel does,
+ * with limiters slow enough that the timings are not flaky.
+ */
+class TimerWheelTest {
+
+    private static LocalTokenBucketRateLimiter limiter(long capacity, double rate) {
+        return new LocalTokenBucketRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(capacity).refillTokensPerSecond(rate).build());
+    }
+
+    /** Thousands of timers on the one ticker thread, none of them early. */
+    @Test
+    void firesEveryTaskNoEarlierThanItsDelay() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel("test-timer");
+        int tasks = 5_000;
+        CountDownLatch done = new CountDownLatch(tasks);
+        AtomicInteger early = new AtomicInteger();
+        for (int i = 0; i < tasks; i++) {
+            long delay = TimeUnit.MILLISECONDS.toNanos(i % 700); // also beyond one turn of the wheel
+            long deadline = System.nanoTime() + delay;
+            wheel.schedule(delay, () -> {
+                if (System.nanoTime() < deadline) early.incrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+    }
+
+    @Test
+    void acquireWaitsForTheRefill_orGivesUpAtOnce() throws InterruptedException {
+        LocalTokenBucketRateLimiter bucket = limiter(2, 10);
+        assertTrue(bucket.tryAcquire(2));
+
+        long start = System.nanoTime();
+        assertTrue(bucket.acquire(1, Duration.ofSeconds(1)));
+        long waited = System.nanoTime() - start;
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(90), "waited " + waited);
+
+        start = System.nanoTime();
+        assertFalse(bucket.acquire(2, Duration.ofMillis(50)), "200ms away");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50), "no point waiting");
+    }
+
+    /** Waiters are served in order of arrival, each one refill interval after the previous. */
+    @Test
+    void asyncWaitersQueueBehindEachOther() {
+        LocalTokenBucketRateLimiter bucket = limiter(1, 20);
+        assertTrue(bucket.tryAcquire());
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> first = bucket.acquireAsync(1, Duration.ofSeconds(1));
+        CompletableFuture<Boolean> second = bucket.acquireAsync(1, Duration.ofSeconds(1));
+        CompletableFuture<Boolean> tooLate = bucket.acquireAsync(1, Duration.ofMillis(60));
+
+        assertFalse(tooLate.join(), "150ms behind the others");
+        assertTrue(first.join());
+        assertTrue(second.join());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(95));
+    }
+
+    /** The reserved permit comes back when the cancelled waiter's turn comes. */
+    @Test
+    void cancellingAWaiterRefundsItsPermits() throws InterruptedException {
+        LocalTokenBucketRateLimiter bucket = limiter(5, 4);
+        assertTrue(bucket.tryAcquire(5));
+
+        CompletableFuture<Boolean> waiter = bucket.acquireAsync(1, Duration.ofSeconds(10));
+        assertTrue(bucket.waitNanos(1) > TimeUnit.MILLISECONDS.toNanos(400), "queued behind the waiter");
+        waiter.cancel(false);
+
+        Thread.sleep(300);
+        assertTrue(bucket.tryAcquire(), "1.2 tokens refilled, the waiter's one refunded");
+    }
+
+    /** Limiters without reservations get there by retrying when the estimate says they may pass. */
+    @Test
+    void limitersWithoutReservationsRetry() {
+        SlidingWindowLogRateLimiter log = new SlidingWindowLogRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(2).refillTokensPerSecond(20).build());
+        assertTrue(log.tryAcquire(2));
+        assertTrue(log.acquireAsync(1, Duration.ofSeconds(1)).join());
+    }
+}
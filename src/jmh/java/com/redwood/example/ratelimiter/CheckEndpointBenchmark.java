@@ -0,0 +1,40 @@
+package com.redwood.example.ratelimiter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * In-process cost of the {@code /api/check} handler (registry lookup, acquire, response building)
+ * using the bundled config.json. Lives in the controller's package so the response records are visible.
+ * HTTP/servlet overhead is intentionally excluded; this isolates what the service itself adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckEndpointBenchmark {
+
+    @Param({"/api/v1/users", "/unconfigured"})
+    public String path;
+
+    private ApiController controller;
+
+    @Setup
+    public void setup() throws Exception {
+        controller = new ApiController(new RateLimiterConfiguration().rateLimiterRegistry());
+    }
+
+    @Benchmark
+    public ResponseEntity<LimitResponse> check() {
+        return controller.check(path, 1, null, null, null);
+    }
+}
@@ -0,0 +1,86 @@
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.binary.BinaryCheckClient;
+import com.redwood.example.ratelimiter.binary.BinaryCheckServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * End-to-end throughput and latency of one check over loopback: Spring MVC + Jackson over HTTP
+ * versus the binary protocol. Boots the real application with both listeners on free ports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckProtocolBenchmark {
+
+    static final String PATH = "/api/v1/users";
+
+    private ConfigurableApplicationContext context;
+    int httpPort;
+    int binaryPort;
+
+    @Setup
+    public void boot() {
+        context = new SpringApplicationBuilder(Main.class)
+                .properties("server.port=0", "ratelimiter.binary.port=0", "ratelimiter.binary.host=127.0.0.1",
+                        "logging.level.root=WARN")
+                .run();
+        httpPort = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        binaryPort = context.getBean(BinaryCheckServer.class).port();
+    }
+
+    @TearDown
+    public void shutdown() {
+        context.close();
+    }
+
+    /** One connection per benchmark thread, as an in-cluster caller would hold. */
+    @State(Scope.Thread)
+    public static class Client {
+        @Param({"http", "binary"})
+        public String transport;
+
+        HttpClient http;
+        HttpRequest request;
+        BinaryCheckClient binary;
+
+        @Setup
+        public void connect(CheckProtocolBenchmark server) throws IOException {
+            if ("http".equals(transport)) {
+                http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.httpPort + "/api/check?path=" + PATH)).build();
+            } else {
+                binary = new BinaryCheckClient("127.0.0.1", server.binaryPort);
+            }
+        }
+
+        @TearDown
+        public void disconnect() throws IOException {
+            if (binary != null) binary.close();
+        }
+    }
+
+    @Benchmark
+    public Object check(Client client) throws Exception {
+        if (client.binary != null) return client.binary.check(PATH, 1);
+        return client.http.send(client.request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,94 @@
+package com.redwood.example.ratelimiter.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Entry point for the {@code jmh} Gradle task.
+ * JMH only accepts a single thread count per run, so this runner sweeps the requested
+ * thread counts, enables the GC (allocation rate) profiler, and merges every run into
+ * one JSON file that can be diffed between commits.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws RunnerException {
+        String include = ".*";
+        String threads = "1,4,16,64";
+        String output = "build/reports/jmh";
+        boolean quick = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--include" -> include = args[++i];
+                case "--threads" -> threads = args[++i];
+                case "--output" -> output = args[++i];
+                case "--quick" -> quick = true;
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        int[] threadCounts = Arrays.stream(threads.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        List<RunResult> all = new ArrayList<>();
+
+        for (int t : threadCounts) {
+            ChainedOptionsBuilder opts = new OptionsBuilder()
+                    .include(include)
+                    .threads(t)
+                    .addProfiler(GCProfiler.class)
+                    .shouldFailOnError(true);
+            if (quick) {
+                opts.forks(1).warmupIterations(1).warmupTime(TimeValue.seconds(1))
+                        .measurementIterations(2).measurementTime(TimeValue.seconds(1));
+            } else {
+                opts.forks(2).warmupIterations(3).warmupTime(TimeValue.seconds(2))
+                        .measurementIterations(5).measurementTime(TimeValue.seconds(2));
+            }
+            all.addAll(new Runner(opts.build()).run());
+        }
+
+        File dir = new File(output);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("Cannot create " + dir);
+        File json = new File(dir, "results.json");
+        try (PrintStream out = new PrintStream(json, StandardCharsets.UTF_8)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(all);
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("Cannot write " + json, e);
+        }
+
+        printLatencySummary(all);
+        System.out.println("JMH results written to " + json.getAbsolutePath());
+    }
+
+    /** One line per sampled benchmark so p50/p99 are visible without opening the JSON. */
+    private static void printLatencySummary(List<RunResult> results) {
+        System.out.printf("%n%-70s %8s %12s %12s%n", "Benchmark (SampleTime)", "threads", "p50", "p99");
+        for (RunResult r : results) {
+            Result<?> primary = r.getPrimaryResult();
+            if (!"sample".equals(r.getParams().getMode().shortLabel())) continue;
+            var stats = primary.getStatistics();
+            String params = r.getParams().getParamsKeys().stream()
+                    .map(k -> k + "=" + r.getParams().getParam(k)).reduce((a, b) -> a + "," + b).orElse("");
+            System.out.printf("%-70s %8d %12.3f %12.3f %s%n",
+                    r.getParams().getBenchmark() + (params.isEmpty() ? "" : " [" + params + "]"),
+                    r.getParams().getThreads(), stats.getPercentile(50), stats.getPercentile(99), primary.getScoreUnit());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.redwood.example.ratelimiter.bench;
+
+import com.redwood.example.ratelimiter.ratelimit.HeapKeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.OffHeapKeyedBucketStore;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Entry point for the {@code keyStoreFootprint} Gradle task.
+ * JMH measures time per operation, not what a store full of keys costs the rest of the process, so this
+ * compares the per-key stores directly: every (store, key count) pair runs in its own JVM, which fills the
+ * store, reports heap and direct memory after a full GC, then serves random acquires for a while and records
+ * every stop-the-world GC pause. Results are printed and written to {@code footprint.csv}.
+ */
+public final class KeyStoreFootprint {
+
+    private static final String RESULT_PREFIX = "RESULT ";
+    private static final String HEADER = "store,keys,liveKeys,heapMB,directMB,fillSeconds,opsPerSecond,gcPauses,maxPauseMs,totalPauseMs,fullGcMs";
+
+    private KeyStoreFootprint() {}
+
+    public static void main(String[] args) throws Exception {
+        String stores = "heap,off-heap";
+        String keys = "10000000,50000000";
+        String heap = "4g";
+        int seconds = 10;
+        String output = "build/reports/footprint";
+        String childStore = null;
+        long childKeys = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stores" -> stores = args[++i];
+                case "--keys" -> keys = args[++i];
+                case "--heap" -> heap = args[++i];
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--output" -> output = args[++i];
+                case "--child" -> {
+                    childStore = args[++i];
+                    childKeys = Long.parseLong(args[++i]);
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (childStore != null) {
+            System.out.println(RESULT_PREFIX + measure(childStore, childKeys, seconds));
+            return;
+        }
+
+        List<String> rows = new ArrayList<>();
+        for (String k : keys.split(",")) {
+            for (String store : stores.split(",")) {
+                rows.add(fork(store.trim(), Long.parseLong(k.trim()), heap, seconds));
+            }
+        }
+
+        File dir = new File(output);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("Cannot create " + dir);
+        File csv = new File(dir, "footprint.csv");
+        try (PrintStream out = new PrintStream(csv, StandardCharsets.UTF_8)) {
+            out.println(HEADER);
+            rows.forEach(out::println);
+        }
+
+        System.out.printf("%n%s%n", HEADER);
+        rows.forEach(System.out::println);
+        System.out.println("Footprint results written to " + csv.getAbsolutePath());
+    }
+
+    /** Runs one measurement in a fresh JVM so the stores never share a heap. */
+    private static String fork(String store, long keys, String heap, int seconds) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> cmd = List.of(java, "-Xmx" + heap, "-Xms" + heap, "-XX:+UseG1GC",
+                "-XX:MaxDirectMemorySize=" + (keys * 24 + (512L << 20)),
+                "-cp", System.getProperty("java.class.path"), KeyStoreFootprint.class.getName(),
+                "--seconds", String.valueOf(seconds), "--child", store, String.valueOf(keys));
+        System.out.printf("Measuring %s with %,d keys (-Xmx%s)...%n", store, keys, heap);
+
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) result = line.substring(RESULT_PREFIX.length());
+                else System.out.println("  " + line);
+            }
+        }
+        int exit = p.waitFor();
+        return result != null ? result : "%s,%d,failed (exit %d)".formatted(store, keys, exit);
+    }
+
+    private static KeyedBucketStore newStore(String store, long keys) {
+        LocalTokenBucketRateLimiter.Config cfg = LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(100).refillTokensPerSecond(0.01).build(); // buckets stay non-idle for the whole run
+        return switch (store) {
+            case "heap" -> new HeapKeyedBucketStore(cfg, keys);
+            case "off-heap" -> new OffHeapKeyedBucketStore(cfg, keys);
+            default -> throw new IllegalArgumentException("Unknown store " + store);
+        };
+    }
+
+    private static String measure(String storeName, long keys, int seconds) {
+        KeyedBucketStore store = newStore(storeName, keys);
+
+        long start = System.nanoTime();
+        for (long i = 0; i < keys; i++) store.tryAcquire("client-" + i, 1);
+        double fillSeconds = (System.nanoTime() - start) / 1e9;
+
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        double fullGcMs = (System.nanoTime() - fullGcStart) / 1e6;
+        long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long directBytes = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(b -> "direct".equals(b.getName())).mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+
+        // Steady state: random existing keys, so the only garbage is the per-request key string
+        AtomicLong pauses = new AtomicLong();
+        AtomicLong totalPauseUs = new AtomicLong();
+        AtomicLong maxPauseUs = new AtomicLong();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((n, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType())) return;
+                var info = GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+                if (info.getGcName().contains("Concurrent")) return; // concurrent cycles do not stop the world
+                long us = info.getGcInfo().getDuration() * 1000;
+                pauses.incrementAndGet();
+                totalPauseUs.addAndGet(us);
+                maxPauseUs.accumulateAndGet(us, Math::max);
+            }, null, null);
+        }
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long ops = 0;
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while ((ops & 0xFFF) != 0 || System.nanoTime() < deadline) {
+            store.tryAcquire("client-" + rnd.nextLong(keys), 1);
+            ops++;
+        }
+
+        return "%s,%d,%d,%d,%d,%.1f,%.0f,%d,%.1f,%.1f,%.1f".formatted(storeName, keys, store.size(), heapBytes >> 20, directBytes >> 20,
+                fillSeconds, ops / (double) seconds, pauses.get(), maxPauseUs.get() / 1000d, totalPauseUs.get() / 1000d, fullGcMs);
+    }
+}
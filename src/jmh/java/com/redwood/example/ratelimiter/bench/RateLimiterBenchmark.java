@@ -0,0 +1,81 @@
+package com.redwood.example.ratelimiter.bench;
+
+import com.redwood.example.ratelimiter.ratelimit.GcraRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.PackedTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowCounterRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowLogRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.StripedTokenBucketRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Hot-path cost of the limiter implementations: the three token buckets and the alternative algorithms.
+ * - {@code hot}: every thread hammers one shared bucket (worst-case CAS contention).
+ * - {@code many}: threads spread over {@link #KEYS} independent buckets (cache-miss dominated).
+ * Buckets are sized so that most calls are admitted and the refill path stays exercised.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RateLimiterBenchmark {
+
+    static final int KEYS = 4096;
+
+    @Param({"atomic", "packed", "striped", "gcra", "sliding-window", "sliding-log"})
+    public String mode;
+
+    @Param({"hot", "many"})
+    public String workload;
+
+    private RateLimiter[] limiters;
+
+    @Setup
+    public void setup() {
+        int n = "hot".equals(workload) ? 1 : KEYS;
+        limiters = new RateLimiter[n];
+        // The log keeps 8 bytes per permit of capacity; 4096 logs of a million permits would not fit in the heap
+        long capacity = "sliding-log".equals(mode) && n > 1 ? 1_000 : 1_000_000;
+        for (int i = 0; i < n; i++) limiters[i] = newLimiter(mode, capacity, 50_000_000d);
+    }
+
+    static RateLimiter newLimiter(String mode, long capacity, double ratePerSecond) {
+        LocalTokenBucketRateLimiter.Config cfg = LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(capacity).refillTokensPerSecond(ratePerSecond).build();
+        return switch (mode) {
+            case "atomic" -> new LocalTokenBucketRateLimiter(cfg);
+            case "packed" -> new PackedTokenBucketRateLimiter(cfg);
+            case "striped" -> new StripedTokenBucketRateLimiter(cfg, 0, 0);
+            case "gcra" -> new GcraRateLimiter(cfg);
+            case "sliding-window" -> new SlidingWindowCounterRateLimiter(cfg);
+            case "sliding-log" -> new SlidingWindowLogRateLimiter(cfg);
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        };
+    }
+
+    private RateLimiter pick() {
+        RateLimiter[] l = limiters;
+        return l.length == 1 ? l[0] : l[ThreadLocalRandom.current().nextInt(l.length)];
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        return pick().tryAcquire();
+    }
+
+    @Benchmark
+    public long remaining() {
+        return pick().remaining();
+    }
+}
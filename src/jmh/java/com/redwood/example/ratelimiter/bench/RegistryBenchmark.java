@@ -0,0 +1,120 @@
+package com.redwood.example.ratelimiter.bench;
+
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Cost of resolving a path to its limiter, with and without the acquire that follows.
+ * - {@code hot}: a single configured endpoint.
+ * - {@code many}: {@link RateLimiterBenchmark#KEYS} configured endpoints picked at random.
+ * - {@code global}: unconfigured paths falling back to the shared '*' bucket.
+ * - {@code pattern}: distinct paths resolved through the wildcard trie (twice the resolved-cache size,
+ *   so both cache hits and trie walks are measured).
+ * {@code getForId} resolves the same paths by their interned IDs (an array index) for comparison.
+ * {@code instrumented} measures the cost of the per-endpoint decision counters, {@code shadow} that of queuing
+ * every decision for two shadow candidates per endpoint (their evaluation runs on the evaluator thread).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegistryBenchmark {
+
+    @Param({"hot", "many", "global", "pattern"})
+    public String workload;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    @Param({"false", "true"})
+    public boolean shadow;
+
+    private RateLimiterRegistry registry;
+    private String[] paths;
+    private int[] ids;
+
+    @Setup
+    public void setup() {
+        int n = RateLimiterBenchmark.KEYS;
+        List<RateLimitEntry> limits = new ArrayList<>(n + 1);
+        limits.add(entry("*", shadow));
+        limits.add(entry("/api/v2/*/logs", shadow));
+        limits.add(entry("/api/v3/users/**", shadow));
+        String[] configured = new String[n];
+        for (int i = 0; i < n; i++) {
+            configured[i] = "/api/v1/resource-" + i;
+            limits.add(entry(configured[i], shadow));
+        }
+        RateLimitFile file = new RateLimitFile();
+        file.limits = limits;
+        registry = new RateLimiterRegistry(file, instrumented);
+
+        paths = switch (workload) {
+            case "hot" -> new String[]{configured[0]};
+            case "many" -> configured;
+            case "global" -> new String[]{"/not/configured/a", "/not/configured/b"};
+            case "pattern" -> {
+                String[] p = new String[2 * 4096];
+                for (int i = 0; i < p.length; i++) p[i] = (i % 2 == 0 ? "/api/v2/tenant-" + i + "/logs" : "/api/v3/users/" + i);
+                yield p;
+            }
+            default -> throw new IllegalArgumentException("Unknown workload " + workload);
+        };
+        ids = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) ids[i] = registry.register(paths[i]);
+    }
+
+    private static RateLimitEntry entry(String endpoint, boolean shadowed) {
+        RateLimitEntry e = new RateLimitEntry();
+        e.endpoint = endpoint;
+        e.bucketSize = 1_000_000;
+        e.refillRate = 50_000_000d;
+        if (shadowed) e.shadow = List.of(candidate("half", 500_000), candidate("double", 2_000_000));
+        return e;
+    }
+
+    private static ShadowEntry candidate(String name, long size) {
+        ShadowEntry c = new ShadowEntry();
+        c.name = name;
+        c.bucketSize = size;
+        c.refillRate = 50_000_000d;
+        return c;
+    }
+
+    private String pick() {
+        String[] p = paths;
+        return p.length == 1 ? p[0] : p[ThreadLocalRandom.current().nextInt(p.length)];
+    }
+
+    @Benchmark
+    public RateLimiter getForPath() {
+        return registry.getForPath(pick());
+    }
+
+    @Benchmark
+    public RateLimiter getForId() {
+        int[] i = ids;
+        return registry.getForId(i.length == 1 ? i[0] : i[ThreadLocalRandom.current().nextInt(i.length)]);
+    }
+
+    @Benchmark
+    public boolean getForPathAndAcquire() {
+        return registry.getForPath(pick()).tryAcquire();
+    }
+}
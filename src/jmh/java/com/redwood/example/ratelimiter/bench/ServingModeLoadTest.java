@@ -0,0 +1,170 @@
+package com.redwood.example.ratelimiter.bench;
+
+import com.redwood.example.ratelimiter.Main;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Entry point for the {@code servingModeLoadTest} Gradle task.
+ * Starts the service once per serving mode (platform Tomcat threads, virtual threads, reactive Netty) in its
+ * own JVM and drives {@code GET /api/check} with a closed loop of {@code concurrency} clients, each on a
+ * virtual thread, recording throughput and the latency distribution (HdrHistogram). Limits are set high
+ * enough that the limiter never denies, so what is measured is the serving stack. Results are printed and
+ * written to {@code serving-modes.csv}.
+ * Client and server share the machine, so compare modes against each other rather than reading absolute numbers.
+ */
+public final class ServingModeLoadTest {
+
+    private static final String HEADER = "mode,concurrency,requests,errors,requestsPerSecond,p50Ms,p99Ms,p999Ms,maxMs";
+    private static final String CONFIG = """
+            { "limits": [
+              { "endpoint": "*",             "refill-rate": 1000000000, "bucket-size": 1000000000 },
+              { "endpoint": "/api/v1/users", "refill-rate": 1000000000, "bucket-size": 1000000000 }
+            ] }
+            """;
+
+    private ServingModeLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        String modes = "platform,virtual,reactive";
+        String concurrency = "64,1024";
+        int seconds = 15;
+        int warmup = 5;
+        String output = "build/reports/serving-modes";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--modes" -> modes = args[++i];
+                case "--concurrency" -> concurrency = args[++i];
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--output" -> output = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        Path config = Files.createTempFile("serving-modes", ".json");
+        Files.writeString(config, CONFIG);
+        List<String> rows = new ArrayList<>();
+        try {
+            for (String mode : modes.split(",")) {
+                Server server = start(mode.trim(), config);
+                try {
+                    awaitStarted(server);
+                    for (String c : concurrency.split(",")) {
+                        int clients = Integer.parseInt(c.trim());
+                        System.out.printf("Loading %s with %d clients...%n", mode, clients);
+                        load(server.port(), clients, warmup);
+                        rows.add(mode.trim() + "," + clients + "," + load(server.port(), clients, seconds));
+                    }
+                } finally {
+                    server.process().destroy();
+                    server.process().waitFor();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(config);
+        }
+
+        File dir = new File(output);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("Cannot create " + dir);
+        File csv = new File(dir, "serving-modes.csv");
+        try (PrintStream out = new PrintStream(csv, StandardCharsets.UTF_8)) {
+            out.println(HEADER);
+            rows.forEach(out::println);
+        }
+
+        System.out.printf("%n%s%n", HEADER);
+        rows.forEach(System.out::println);
+        System.out.println("Serving mode results written to " + csv.getAbsolutePath());
+    }
+
+    /** A forked service and the port it listens on. */
+    private record Server(Process process, int port) {}
+
+    /** Forks the service; {@code platform} is the default profile-less setup. */
+    private static Server start(String mode, Path config) throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> cmd = new ArrayList<>(List.of(java, "-Xmx1g", "-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                "--server.port=" + port, "--ratelimiter.config.location=" + config, "--logging.level.root=WARN"));
+        if (!"platform".equals(mode)) cmd.add("--spring.profiles.active=" + mode);
+        System.out.printf("Starting service in %s mode on port %d...%n", mode, port);
+        return new Server(new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start(), port);
+    }
+
+    /** Polls the root endpoint until the service answers. */
+    private static void awaitStarted(Server server) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest ping = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/api/")).build();
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!server.process().isAlive()) throw new IllegalStateException("Service exited with " + server.process().exitValue());
+            try {
+                if (client.send(ping, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (IOException notYet) {
+                // not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Service did not start within 60s");
+    }
+
+    /** Closed-loop load for {@code seconds}; returns the CSV columns after mode and concurrency. */
+    private static String load(int port, int clients, int seconds) throws Exception {
+        HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/check?path=/api/v1/users");
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+
+        List<Future<Histogram>> results = new ArrayList<>(clients);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                results.add(workers.submit(() -> {
+                    Histogram h = new Histogram(3);
+                    while (System.nanoTime() < deadline) {
+                        long t0 = System.nanoTime();
+                        try {
+                            if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) errors.incrementAndGet();
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        h.recordValue((System.nanoTime() - t0) / 1_000);
+                    }
+                    return h;
+                }));
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        Histogram all = new Histogram(3);
+        for (Future<Histogram> f : results) all.add(f.get());
+        return "%d,%d,%.0f,%.2f,%.2f,%.2f,%.2f".formatted(all.getTotalCount(), errors.get(), all.getTotalCount() / elapsed,
+                all.getValueAtPercentile(50) / 1000d, all.getValueAtPercentile(99) / 1000d,
+                all.getValueAtPercentile(99.9) / 1000d, all.getMaxValue() / 1000d);
+    }
+}
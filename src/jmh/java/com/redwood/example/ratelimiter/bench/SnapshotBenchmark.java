@@ -0,0 +1,105 @@
+package com.redwood.example.ratelimiter.bench;
+
+import com.redwood.example.ratelimiter.config.LimitModels.KeyStoreType;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.service.BucketSnapshot;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Time to save and to restore a snapshot of {@code keys} limited client buckets, i.e. the cost a
+ * warm restart adds to startup and the background work of every periodic save.
+ * Each restore starts from a freshly built registry, as it would after a restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SnapshotBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int keys;
+
+    @Param({"heap", "off-heap"})
+    public String store;
+
+    private Path file;
+    private RateLimiterRegistry source;
+
+    /** Registry as it is right after a restart, rebuilt before every restore. */
+    @State(Scope.Thread)
+    public static class Restarted {
+        RateLimiterRegistry registry;
+
+        @Setup(Level.Invocation)
+        public void restart(SnapshotBenchmark benchmark) {
+            registry = new RateLimiterRegistry(benchmark.config());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        file = Files.createTempFile("buckets", ".snapshot");
+        source = new RateLimiterRegistry(config());
+        for (int i = 0; i < keys; i++) source.getForPath("/api/v1/users", "client-" + i).tryAcquire(1);
+        new BucketSnapshot(source, file).save();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private RateLimitFile config() {
+        RateLimitEntry global = new RateLimitEntry();
+        global.endpoint = "*";
+        global.bucketSize = 1_000;
+        global.refillRate = 100;
+
+        RateLimitEntry users = new RateLimitEntry();
+        users.endpoint = "/api/v1/users";
+        users.bucketSize = 100;
+        users.refillRate = 0.001; // buckets stay limited for the whole run
+        users.perKey = true;
+        users.maxKeys = keys;
+        users.keyStore = "off-heap".equals(store) ? KeyStoreType.OFF_HEAP : KeyStoreType.HEAP;
+
+        RateLimitFile file = new RateLimitFile();
+        file.limits = List.of(global, users);
+        return file;
+    }
+
+    @Benchmark
+    public BucketSnapshot.Stats save() throws IOException {
+        return new BucketSnapshot(source, file).save();
+    }
+
+    @Benchmark
+    public BucketSnapshot.Stats restore(Restarted restarted) throws IOException {
+        return new BucketSnapshot(restarted.registry, file).restore();
+    }
+}
@@ -0,0 +1,408 @@
+package com.redwood.example.ratelimiter.bench;
+
+import com.redwood.example.ratelimiter.Main;
+import com.redwood.example.ratelimiter.ratelimit.GcraRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.HeapKeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.HierarchicalRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.InMemoryTokenStore;
+import com.redwood.example.ratelimiter.ratelimit.KeyedRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LeasedRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+import com.redwood.example.ratelimiter.ratelimit.OffHeapKeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.PackedTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowCounterRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowLogRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.StripedTokenBucketRateLimiter;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Entry point for the {@code soak} Gradle task: proves under concurrency that no limiter admits more than
+ * its bucket allows. Everything runs in this JVM; nothing external is needed.
+ * - Soak: {@code threads} workers check random keys (one limiter per key) for {@code seconds}, either as
+ *   fast as they can or paced to a total of {@code qps} (open loop, so latency counts from the intended send
+ *   time and a stalled limiter cannot hide behind fewer requests). Every key's admitted count is compared
+ *   with the most its bucket can hand out over the run, burst plus refill. Like {@code /api/check}, every
+ *   check also reads {@code remaining()}. The {@code http} target drives {@code /api/check} of a service
+ *   started in-process against one shared bucket refilling slowly enough that it denies almost every check.
+ * - Races: jcstress-style rounds where all threads are released at once on one small bucket whose clock
+ *   stands still, so exactly {@code capacity} acquires may succeed. More is forbidden; fewer is reported,
+ *   as implementations that give up under contention (striped borrowing) may legitimately under-admit.
+ * Results are printed and written to {@code soak.csv} and {@code races.csv}; the task fails on any violation.
+ */
+public final class SoakTest {
+
+    private static final String SOAK_HEADER = "target,threads,keys,targetQps,checks,admitted,errors,checksPerSecond,p50Us,p99Us,p999Us,maxUs,maxKeyAdmitted,keyBound,violations";
+    private static final String RACE_HEADER = "target,threads,capacity,rounds,exact,underAdmitted,overAdmitted";
+    private static final List<String> TARGETS = List.of("atomic", "packed", "striped", "gcra", "sliding-window", "sliding-log",
+            "heap-keyed", "off-heap-keyed", "hierarchical", "leased", "http");
+
+    /** Refill of the {@code http} target's bucket: far below what any HTTP loop sends, so it stays saturated. */
+    private static final double HTTP_REFILL_PER_SECOND = 10;
+
+    private SoakTest() {}
+
+    public static void main(String[] args) throws Exception {
+        String targets = String.join(",", TARGETS);
+        int threads = 8;
+        int keys = 1000;
+        long qps = 0;
+        int seconds = 10;
+        long capacity = 100;
+        double rate = 1000;
+        int raceRounds = 2000;
+        String output = "build/reports/soak";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--targets" -> targets = args[++i];
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--keys" -> keys = Integer.parseInt(args[++i]);
+                case "--qps" -> qps = Long.parseLong(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--capacity" -> capacity = Long.parseLong(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--race-rounds" -> raceRounds = Integer.parseInt(args[++i]);
+                case "--output" -> output = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<String> soakRows = new ArrayList<>();
+        List<String> raceRows = new ArrayList<>();
+        long violations = 0;
+        for (String t : targets.split(",")) {
+            String target = t.trim();
+            if (!TARGETS.contains(target)) throw new IllegalArgumentException("Unknown target: " + target);
+            int targetKeys = target.equals("http") ? 1 : keys;
+            System.out.printf("Soaking %s: %d threads, %d keys, %s...%n", target, threads, targetKeys, qps > 0 ? qps + " checks/s" : "unpaced");
+            Result soak = target.equals("http") ? soakHttp(threads, qps, seconds, capacity)
+                    : soak(target, threads, keys, qps, seconds, capacity, rate);
+            soakRows.add(target + "," + threads + "," + targetKeys + "," + qps + "," + soak.csv());
+            violations += soak.violations;
+
+            if (raceRounds > 0 && !target.equals("http") && !target.equals("leased")) {
+                Race race = race(target, Math.max(2, threads), raceRounds);
+                raceRows.add(target + "," + Math.max(2, threads) + "," + race.csv());
+                violations += race.over;
+            }
+        }
+
+        File dir = new File(output);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("Cannot create " + dir);
+        write(new File(dir, "soak.csv"), SOAK_HEADER, soakRows);
+        write(new File(dir, "races.csv"), RACE_HEADER, raceRows);
+        System.out.println("Soak results written to " + dir.getAbsolutePath());
+        if (violations > 0) {
+            System.err.println(violations + " violation(s): a limiter admitted more than its bucket allows");
+            System.exit(1);
+        }
+    }
+
+    private static void write(File csv, String header, List<String> rows) throws IOException {
+        try (PrintStream out = new PrintStream(csv, StandardCharsets.UTF_8)) {
+            out.println(header);
+            rows.forEach(out::println);
+        }
+        System.out.printf("%n%s%n", header);
+        rows.forEach(System.out::println);
+    }
+
+    /** Most a bucket may admit over a run: its burst plus what refills meanwhile. */
+    private record Bound(double burst, double perSecond) {
+        long at(double seconds) { return (long) Math.floor(burst + perSecond * seconds + 1e-6); }
+    }
+
+    /**
+     * Limiters under test, one per key, with the bound each key must hold; {@code shared} is a bucket every
+     * key also counts into (hierarchical only), whose bound applies to the sum over all keys.
+     */
+    private record Subject(RateLimiter[] limiters, Bound keyBound, RateLimiter shared, Bound sharedBound, AutoCloseable resources) {}
+
+    private static Subject subject(String target, int keys, long capacity, double rate, NanoClock clock) {
+        LocalTokenBucketRateLimiter.Config cfg = LocalTokenBucketRateLimiter.Config.newBuilder()
+                .capacity(capacity).refillTokensPerSecond(rate).clock(clock).build();
+        RateLimiter[] limiters = new RateLimiter[keys];
+        Bound bound = new Bound(capacity, rate);
+        RateLimiter shared = null;
+        Bound sharedBound = null;
+        AutoCloseable resources = () -> {};
+        switch (target) {
+            case "atomic" -> { for (int k = 0; k < keys; k++) limiters[k] = new LocalTokenBucketRateLimiter(cfg); }
+            case "packed" -> { for (int k = 0; k < keys; k++) limiters[k] = new PackedTokenBucketRateLimiter(cfg); }
+            case "striped" -> { for (int k = 0; k < keys; k++) limiters[k] = new StripedTokenBucketRateLimiter(cfg, 0, 0); }
+            case "gcra" -> { for (int k = 0; k < keys; k++) limiters[k] = new GcraRateLimiter(cfg); }
+            case "sliding-log" -> { for (int k = 0; k < keys; k++) limiters[k] = new SlidingWindowLogRateLimiter(cfg); }
+            case "sliding-window" -> {
+                for (int k = 0; k < keys; k++) limiters[k] = new SlidingWindowCounterRateLimiter(cfg);
+                // Every fixed window holds at most capacity, and a run touches one more window than it spans
+                bound = new Bound(2 * capacity, rate);
+            }
+            case "heap-keyed" -> {
+                HeapKeyedBucketStore store = new HeapKeyedBucketStore(cfg, 2L * keys);
+                for (int k = 0; k < keys; k++) limiters[k] = new KeyedRateLimiter(store, "key-" + k);
+            }
+            case "off-heap-keyed" -> {
+                OffHeapKeyedBucketStore store = new OffHeapKeyedBucketStore(cfg, 2L * keys);
+                for (int k = 0; k < keys; k++) limiters[k] = new KeyedRateLimiter(store, "key-" + k);
+            }
+            case "hierarchical" -> {
+                // A tenant bucket holding a quarter of what the keys could take together, so both levels deny
+                long tenantCapacity = Math.max(1, capacity * keys / 4);
+                shared = new LocalTokenBucketRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+                        .capacity(tenantCapacity).refillTokensPerSecond(rate * keys / 4).clock(clock).build());
+                sharedBound = new Bound(tenantCapacity, rate * keys / 4);
+                for (int k = 0; k < keys; k++) limiters[k] = new HierarchicalRateLimiter(new LocalTokenBucketRateLimiter(cfg), shared);
+            }
+            case "leased" -> {
+                // The bound is the central bucket's: leases spent locally must never add up to more
+                InMemoryTokenStore store = new InMemoryTokenStore(clock);
+                long lease = Math.max(1, capacity / 10);
+                for (int k = 0; k < keys; k++) limiters[k] = new LeasedRateLimiter(cfg, store, "key-" + k, lease, 0, 0);
+                resources = () -> {
+                    for (RateLimiter l : limiters) l.release();
+                    store.close();
+                };
+            }
+            default -> throw new IllegalArgumentException("Unknown target: " + target);
+        }
+        return new Subject(limiters, bound, shared, sharedBound, resources);
+    }
+
+    /** One check of a key; true when admitted. */
+    @FunctionalInterface
+    private interface Check {
+        boolean check(int key) throws Exception;
+    }
+
+    /** Outcome of a soak run. */
+    private record Result(long checks, long admitted, long errors, double seconds, Histogram latencyNanos,
+                          long maxKeyAdmitted, long keyBound, long violations) {
+        String csv() {
+            return "%d,%d,%d,%.0f,%.2f,%.2f,%.2f,%.2f,%d,%d,%d".formatted(checks, admitted, errors, checks / seconds,
+                    latencyNanos.getValueAtPercentile(50) / 1000d, latencyNanos.getValueAtPercentile(99) / 1000d,
+                    latencyNanos.getValueAtPercentile(99.9) / 1000d, latencyNanos.getMaxValue() / 1000d,
+                    maxKeyAdmitted, keyBound, violations);
+        }
+    }
+
+    private static Result soak(String target, int threads, int keys, long qps, int seconds, long capacity, double rate) throws Exception {
+        long created = System.nanoTime();
+        Subject s = subject(target, keys, capacity, rate, NanoClock.system());
+        AutoCloseable resources = s.resources();
+        try {
+            Load load = drive(k -> {
+                RateLimiter limiter = s.limiters()[k];
+                boolean allowed = limiter.tryAcquire();
+                limiter.remaining(); // as /api/check answers with it, racing the other workers' acquires
+                return allowed;
+            }, threads, keys, qps, seconds, new AtomicLong());
+            double elapsed = (System.nanoTime() - created) / 1e9;
+            long violations = violations(load.admitted, s.keyBound().at(elapsed));
+            if (s.shared() != null) {
+                long total = 0;
+                for (long a : load.admitted) total += a;
+                if (total > s.sharedBound().at(elapsed)) violations++;
+            }
+            return load.result(0, elapsed, s.keyBound().at(elapsed), violations);
+        } finally {
+            resources.close();
+        }
+    }
+
+    /**
+     * Soak through {@code GET /api/check} of the service: every worker checks one shared bucket of
+     * {@code capacity} refilling at {@link #HTTP_REFILL_PER_SECOND}, so the checks contend on a single
+     * state and a lost update shows as over-admission.
+     */
+    private static Result soakHttp(int threads, long qps, int seconds, long capacity) throws Exception {
+        Path config = Files.createTempFile("soak", ".json");
+        Files.writeString(config, """
+                { "limits": [
+                  { "endpoint": "*",     "refill-rate": 1000000000, "bucket-size": 1000000000 },
+                  { "endpoint": "/soak", "refill-rate": %s, "bucket-size": %d }
+                ] }
+                """.formatted(HTTP_REFILL_PER_SECOND, capacity));
+        try (ConfigurableApplicationContext service = SpringApplication.run(Main.class, "--server.port=0",
+                "--ratelimiter.config.location=" + config, "--logging.level.root=WARN");
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            int port = service.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpRequest check = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/check?path=/soak")).build();
+
+            // Warm the serving stack up on a path outside the checked bucket
+            HttpRequest warmup = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/check?path=/warmup")).build();
+            drive(k -> http.send(warmup, HttpResponse.BodyHandlers.discarding()).statusCode() == 200, threads, 1, 0,
+                    Math.min(5, seconds), new AtomicLong());
+
+            // The bucket has been refilling since startup; its burst is capped at capacity all the same
+            long start = System.nanoTime();
+            AtomicLong errors = new AtomicLong();
+            Load load = drive(k -> {
+                int status = http.send(check, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status != 200 && status != 429) errors.incrementAndGet();
+                return status == 200;
+            }, threads, 1, qps, seconds, errors);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            long bound = new Bound(capacity, HTTP_REFILL_PER_SECOND).at(elapsed);
+            if (load.checks() < 2 * bound)
+                System.out.printf("The http soak sent %d checks against a bound of %d: not saturated%n", load.checks(), bound);
+            return load.result(errors.get(), elapsed, bound, violations(load.admitted, bound));
+        } finally {
+            Files.deleteIfExists(config);
+        }
+    }
+
+    private static long violations(long[] admitted, long bound) {
+        long violations = 0;
+        for (long a : admitted) if (a > bound) violations++;
+        return violations;
+    }
+
+    /** Checks and admissions per key, and the latency of every check. */
+    private record Load(long checks, long[] admitted, Histogram latencyNanos, double seconds) {
+        Result result(long errors, double elapsed, long keyBound, long violations) {
+            long total = 0, max = 0;
+            for (long a : admitted) {
+                total += a;
+                max = Math.max(max, a);
+            }
+            return new Result(checks, total, errors, seconds, latencyNanos, max, keyBound, violations);
+        }
+    }
+
+    /** Runs {@code threads} workers for {@code seconds}; {@code qps} > 0 paces them to that total rate. */
+    private static Load drive(Check check, int threads, int keys, long qps, int seconds, AtomicLong errors) throws Exception {
+        long intervalNanos = qps > 0 ? Math.max(1, threads * 1_000_000_000L / qps) : 0;
+        long[][] admitted = new long[threads][keys];
+        long[] checks = new long[threads];
+        Histogram[] latencies = new Histogram[threads];
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            latencies[t] = new Histogram(3);
+            workers[t] = Thread.ofPlatform().name("soak-" + t).start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long next = start + id * intervalNanos / threads;
+                while (true) {
+                    long intended;
+                    if (intervalNanos > 0) {
+                        next += intervalNanos;
+                        // A worker behind schedule stops at the deadline too; its lag shows in the latencies
+                        if (next > deadline || System.nanoTime() > deadline) break;
+                        sleepUntil(next);
+                        intended = next;
+                    } else {
+                        intended = System.nanoTime();
+                        if (intended > deadline) break;
+                    }
+                    int key = random.nextInt(keys);
+                    try {
+                        if (check.check(key)) admitted[id][key]++;
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[id].recordValue(Math.max(0, System.nanoTime() - intended));
+                    checks[id]++;
+                }
+            });
+        }
+        for (Thread w : workers) w.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] perKey = new long[keys];
+        long total = 0;
+        Histogram all = new Histogram(3);
+        for (int t = 0; t < threads; t++) {
+            for (int k = 0; k < keys; k++) perKey[k] += admitted[t][k];
+            total += checks[t];
+            all.add(latencies[t]);
+        }
+        return new Load(total, perKey, all, elapsed);
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long left;
+        while ((left = nanoTime - System.nanoTime()) > 0) {
+            if (left > 50_000) LockSupport.parkNanos(left - 50_000);
+            else Thread.onSpinWait();
+        }
+    }
+
+    /** Tally of race rounds. */
+    private record Race(long capacity, int rounds, int exact, int under, int over) {
+        String csv() { return capacity + "," + rounds + "," + exact + "," + under + "," + over; }
+    }
+
+    /**
+     * Rounds of {@code threads} workers released together on one bucket of {@code 2 * threads} tokens whose
+     * clock does not move; each worker tries to take the whole bucket one permit at a time. Exactly the
+     * limiter's capacity (the smallest level's, for hierarchical) must be granted.
+     */
+    private static Race race(String target, int threads, int rounds) throws Exception {
+        long capacity = 2L * threads;
+        NanoClock frozen = () -> 0;
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        AtomicLong granted = new AtomicLong();
+        RateLimiter[] current = new RateLimiter[1];
+        int exact = 0, under = 0, over = 0;
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = Thread.ofPlatform().name("race-" + t).daemon().start(() -> {
+                try {
+                    while (true) {
+                        barrier.await();
+                        RateLimiter limiter = current[0];
+                        if (limiter == null) return;
+                        long mine = 0;
+                        for (long i = 0; i < capacity; i++) if (limiter.tryAcquire()) mine++;
+                        granted.addAndGet(mine);
+                        barrier.await();
+                    }
+                } catch (Exception e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (int r = 0; r < rounds; r++) {
+            Subject s = subject(target, 1, capacity, 1, frozen);
+            current[0] = s.limiters()[0];
+            granted.set(0);
+            barrier.await(); // go
+            barrier.await(); // all done
+            long n = granted.get(), expected = current[0].capacity();
+            if (n > expected) over++;
+            else if (n < expected) under++;
+            else exact++;
+            s.resources().close();
+        }
+        current[0] = null;
+        barrier.await();
+        for (Thread w : workers) w.join();
+        return new Race(capacity, rounds, exact, under, over);
+    }
+}
@@ -0,0 +1,201 @@
+package com.redwood.example.ratelimiter.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipFile;
+
+
+/**
+ * Entry point for the {@code startupComparison} Gradle task.
+ * Starts the service repeatedly as a plain JVM jar, as an AOT-processed jar ({@code -Paot} build, run with
+ * {@code -Dspring.aot.enabled=true}) and as a native executable ({@code -Pnative} build), each with the JSON and
+ * the compiled config, and records:
+ * - {@code readyMs}: from launching the process to the first 200 from {@code GET /api/}, the number an autoscaler sees;
+ * - {@code startedMs}: Spring's own "Started ... in" figure;
+ * - {@code rssMb}: resident set size right after the first answer (Linux only, -1 elsewhere).
+ * Variants whose artifact was not built are skipped. Rows go to {@code startup.csv}, medians relative to the
+ * JVM jar with the JSON config to {@code startup.md}.
+ */
+public final class StartupComparison {
+
+    private static final String HEADER = "mode,config,run,readyMs,startedMs,rssMb";
+    private static final Pattern STARTED = Pattern.compile("Started \\w+ in ([0-9.]+) seconds");
+    /** Present in jars built with the AOT profile. */
+    private static final String AOT_INITIALIZER = "BOOT-INF/classes/com/redwood/example/ratelimiter/Main__ApplicationContextInitializer.class";
+
+    private StartupComparison() {}
+
+    /** One way of starting the service: the command before the service's own arguments. */
+    private record Variant(String mode, List<String> command) {}
+
+    private record Run(long readyMs, long startedMs, long rssMb) {}
+
+    public static void main(String[] args) throws Exception {
+        String jar = null;
+        String nativeImage = null;
+        String jsonConfig = "src/main/resources/config.json";
+        String compiledConfig = null;
+        int runs = 5;
+        String output = "build/reports/startup";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--jar" -> jar = args[++i];
+                case "--native" -> nativeImage = args[++i];
+                case "--json-config" -> jsonConfig = args[++i];
+                case "--compiled-config" -> compiledConfig = args[++i];
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--output" -> output = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Variant> variants = new ArrayList<>();
+        if (jar != null && new File(jar).isFile()) {
+            variants.add(new Variant("jvm", List.of(java, "-jar", jar)));
+            if (hasAotInitializers(jar)) variants.add(new Variant("jvm-aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar)));
+            else System.out.println("Skipping jvm-aot: " + jar + " was not built with -Paot");
+        } else {
+            System.out.println("Skipping jvm and jvm-aot: no jar at " + jar);
+        }
+        if (nativeImage != null && new File(nativeImage).canExecute()) variants.add(new Variant("native", List.of(nativeImage)));
+        else System.out.println("Skipping native: no executable at " + nativeImage + " (build with -Pnative on a GraalVM JDK)");
+
+        Map<String, String> configs = new LinkedHashMap<>();
+        configs.put("json", jsonConfig);
+        if (compiledConfig != null && new File(compiledConfig).isFile()) configs.put("compiled", compiledConfig);
+
+        File dir = new File(output);
+        File logs = new File(dir, "logs");
+        if (!logs.isDirectory() && !logs.mkdirs()) throw new IllegalStateException("Cannot create " + logs);
+
+        List<String> rows = new ArrayList<>();
+        Map<String, List<Run>> results = new LinkedHashMap<>();
+        for (Variant v : variants) {
+            for (Map.Entry<String, String> config : configs.entrySet()) {
+                List<Run> measured = new ArrayList<>();
+                for (int run = 1; run <= runs; run++) {
+                    File log = new File(logs, v.mode() + "-" + config.getKey() + "-" + run + ".log");
+                    Run r = start(v, config.getValue(), log);
+                    measured.add(r);
+                    rows.add("%s,%s,%d,%d,%d,%d".formatted(v.mode(), config.getKey(), run, r.readyMs(), r.startedMs(), r.rssMb()));
+                    System.out.printf("%s / %s run %d: ready in %d ms, RSS %d MB%n", v.mode(), config.getKey(), run, r.readyMs(), r.rssMb());
+                }
+                results.put(v.mode() + " / " + config.getKey(), measured);
+            }
+        }
+
+        File csv = new File(dir, "startup.csv");
+        try (PrintStream out = new PrintStream(csv, StandardCharsets.UTF_8)) {
+            out.println(HEADER);
+            rows.forEach(out::println);
+        }
+        File summary = new File(dir, "startup.md");
+        try (PrintStream out = new PrintStream(summary, StandardCharsets.UTF_8)) {
+            summarize(results, runs, out);
+        }
+        summarize(results, runs, System.out);
+        System.out.println("Startup results written to " + csv.getAbsolutePath() + " and " + summary.getAbsolutePath());
+    }
+
+    private static boolean hasAotInitializers(String jar) throws IOException {
+        try (ZipFile zip = new ZipFile(jar)) {
+            return zip.getEntry(AOT_INITIALIZER) != null;
+        }
+    }
+
+    /** Starts the service, waits for its first answer, measures it and stops it. */
+    private static Run start(Variant v, String config, File log) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        List<String> cmd = new ArrayList<>(v.command());
+        cmd.addAll(List.of("--server.port=" + port, "--ratelimiter.config.location=" + config));
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            awaitAnswer(process, port);
+            long readyMs = (System.nanoTime() - launched) / 1_000_000;
+            long rssMb = rssMb(process.pid());
+            return new Run(readyMs, startedMs(log.toPath()), rssMb);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    /** Polls the root endpoint until the service answers; tight, so the poll interval barely adds to the result. */
+    private static void awaitAnswer(Process process, int port) throws Exception {
+        URI root = URI.create("http://127.0.0.1:" + port + "/api/");
+        long deadline = System.nanoTime() + Duration.ofSeconds(120).toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) throw new IllegalStateException("Service exited with " + process.exitValue());
+            try {
+                HttpURLConnection c = (HttpURLConnection) root.toURL().openConnection();
+                c.setConnectTimeout(100);
+                if (c.getResponseCode() == 200) return;
+            } catch (IOException notYet) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("Service did not answer within 120s");
+    }
+
+    private static long rssMb(long pid) {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux, or the process is gone
+        }
+        return -1;
+    }
+
+    private static long startedMs(Path log) throws IOException {
+        Matcher m = STARTED.matcher(Files.readString(log));
+        return m.find() ? Math.round(Double.parseDouble(m.group(1)) * 1000) : -1;
+    }
+
+    private static long median(List<Run> runs, java.util.function.ToLongFunction<Run> value) {
+        long[] v = runs.stream().mapToLong(value).sorted().toArray();
+        return v.length == 0 ? -1 : v[v.length / 2];
+    }
+
+    private static void summarize(Map<String, List<Run>> results, int runs, PrintStream out) {
+        out.printf("# Startup comparison (median of %d runs)%n%n", runs);
+        out.println("| variant | ready ms | vs jvm | started ms | RSS MB | vs jvm |");
+        out.println("|---|---|---|---|---|---|");
+        List<Run> base = results.get("jvm / json");
+        long baseReady = base == null ? -1 : median(base, Run::readyMs);
+        long baseRss = base == null ? -1 : median(base, Run::rssMb);
+        for (Map.Entry<String, List<Run>> e : results.entrySet()) {
+            long ready = median(e.getValue(), Run::readyMs);
+            long rss = median(e.getValue(), Run::rssMb);
+            out.printf("| %s | %d | %s | %d | %d | %s |%n", e.getKey(), ready, ratio(ready, baseReady),
+                    median(e.getValue(), Run::startedMs), rss, ratio(rss, baseRss));
+        }
+    }
+
+    private static String ratio(long value, long base) {
+        return value <= 0 || base <= 0 ? "-" : "%.2fx".formatted((double) value / base);
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.service.AdaptiveControl;
+import com.redwood.example.ratelimiter.service.LimitRule;
+import org.springframework.lang.NonNull;
+
+
+/** Current refill rate of an adaptive rule and the bounds it moves within. */
+record AdaptiveLimit(@NonNull String endpoint, @NonNull String policy, double refillPerSecond, double minRate, double maxRate) {
+
+    static AdaptiveLimit of(LimitRule rule) {
+        AdaptiveControl a = rule.adaptive();
+        return new AdaptiveLimit(rule.endpoint(), a.policy().name().toLowerCase(), a.rate(),
+                a.limiter().minRefillPerSecond(), a.limiter().maxRefillPerSecond());
+    }
+}
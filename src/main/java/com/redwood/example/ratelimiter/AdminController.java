@@ -0,0 +1,71 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.service.ConfigReloader;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry.ReloadResult;
+import com.redwood.example.ratelimiter.service.ShadowLimits;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/** Deny counts of one shadow candidate: {@code extraDenials} are the requests it denies that were allowed. */
+record ShadowCandidateStats(@NonNull String name, long denied, long extraDenials) {}
+/** Shadow evaluation of one endpoint: the replayed requests, how many the enforcing limit denied, and each candidate. */
+record ShadowStats(@NonNull String endpoint, long evaluated, long dropped, long actualDenied, @NonNull List<ShadowCandidateStats> candidates) {
+
+    static ShadowStats of(ShadowLimits shadow) {
+        List<ShadowCandidateStats> candidates = new ArrayList<>();
+        for (ShadowLimits.Candidate c : shadow.candidates()) candidates.add(new ShadowCandidateStats(c.name(), c.denied(), c.deniedAllowed()));
+        return new ShadowStats(shadow.endpoint(), shadow.evaluated(), shadow.dropped(), shadow.actualDenied(), candidates);
+    }
+}
+
+/**
+ * Operational endpoints that change the running service rather than check limits.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final ConfigReloader reloader;
+    private final RateLimiterRegistry registry;
+
+    public AdminController(ConfigReloader reloader, RateLimiterRegistry registry) {
+        this.reloader = reloader;
+        this.registry = registry;
+    }
+
+    /**
+     * Re-reads the config and swaps it in without dropping bucket state.
+     * A config that cannot be read or is invalid is rejected with 400 and the current one stays active.
+     */
+    @PostMapping("/reload")
+    public ReloadResult reload() {
+        try {
+            return reloader.reload();
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Config rejected: " + e.getMessage(), e);
+        }
+    }
+
+    /** What the shadow candidates of every shadowed endpoint would have denied, next to what was denied. */
+    @GetMapping("/shadow")
+    public List<ShadowStats> shadow() {
+        List<ShadowStats> stats = new ArrayList<>();
+        for (ShadowLimits shadow : registry.shadows()) stats.add(ShadowStats.of(shadow));
+        return stats;
+    }
+}
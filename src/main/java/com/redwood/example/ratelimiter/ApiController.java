@@ -4,39 +4,59 @@
 
 package com.redwood.example.ratelimiter;
 
-import com.redwood.example.ratelimiter.config.ConfigLoader;
-import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
 import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.service.ChargeLedger;
+import com.redwood.example.ratelimiter.service.LimitRule;
+import com.redwood.example.ratelimiter.service.PathTable;
 import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
-import jakarta.annotation.PostConstruct;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * REST API exposing the rate-limit checking endpoints.
  */
 record Greeting(String message) {}
-record LimitResponse(@NonNull String message, boolean allowed, long requestsRemaining) {}
+/** Footprint of one per-key rule. */
+record KeyedLimitStats(@NonNull String endpoint, long keys, long maxKeys, long memoryBytes) {}
 
 @RestController
 @RequestMapping("/api")
 public class ApiController {
 
-    private RateLimiterRegistry registry;
+    /** Longest {@code waitMs} accepted; stays below the servlet containers' default async timeout of 30s. */
+    static final long MAX_WAIT_MS = 20_000;
+    /** Fewest tokens a check takes, so no weight makes a request (nearly) free; whole-permit limiters take 1. */
+    static final double MIN_CHARGE = 0.001;
+    /** How long a reservation can be settled; after that its whole charge stays spent. */
+    static final long RESERVATION_TTL_MS = 600_000;
+    /** Reservations open at once. */
+    static final int MAX_OPEN_RESERVATIONS = 100_000;
 
-    /** Initialize registry by loading JSON config once at startup. */
-    @PostConstruct
-    public void init() throws IOException {
-        RateLimitFile config = new ConfigLoader().loadFromClasspathOrFile("config.json");
-        this.registry = new RateLimiterRegistry(config);
+    private final RateLimiterRegistry registry;
+    private final ChargeLedger reservations = new ChargeLedger(MAX_OPEN_RESERVATIONS);
+
+    /** Registry is shared with the other transports, see {@link RateLimiterConfiguration}. */
+    public ApiController(RateLimiterRegistry registry) {
+        this.registry = registry;
     }
 
     @GetMapping("/")
@@ -44,14 +64,235 @@ public class ApiController {
         return new Greeting("Service is up and running");
     }
 
-    /** Endpoint to check if a given path request is allowed under rate limits. */
+    /**
+     * Endpoint to check if a given path request is allowed under rate limits.
+     * Consumes {@code permits} requests at once (default 1), each costing the tokens configured for the path
+     * and the HTTP {@code method} of the checked request (1 unless priced) times the caller's {@code weight}
+     * (default 1), e.g. the number of rows an export will read. For per-key rules {@code key}
+     * (tenant, API key, client IP, ...) selects the caller's own bucket.
+     */
     @GetMapping("/check")
-    public ResponseEntity<LimitResponse> check(@RequestParam(name = "path", required = false) String path) {
-        RateLimiter limiter = registry.getForPath(path);
-        boolean allowed = limiter.tryAcquire();
-        long remaining = limiter.remaining();
+    public ResponseEntity<LimitResponse> check(@RequestParam(name = "path", required = false) String path,
+                                               @RequestParam(name = "permits", defaultValue = "1") int permits,
+                                               @RequestParam(name = "key", required = false) String key,
+                                               @RequestParam(name = "method", required = false) String method,
+                                               @RequestParam(name = "weight", required = false) Double weight) {
+        requirePositive(permits);
+        double cost = charge(registry.cost(path, method), permits, requireWeight(weight));
+        RateLimiter limiter = registry.getForPath(path, key);
+        return respond(LimitResponse.of(limiter, cost, tryCharge(limiter, cost)));
+    }
+
+    /**
+     * Queuing variant of {@link #check}: with {@code waitMs} the request waits up to that long for the permits
+     * instead of being denied at once, and is only answered 429 when they cannot be had in time.
+     * The request thread is released while waiting; the answer comes from the limiter's timer.
+     * Waits are for whole tokens, so a fractional cost is charged rounded up.
+     */
+    @GetMapping(value = "/check", params = "waitMs")
+    public CompletableFuture<ResponseEntity<LimitResponse>> checkWaiting(@RequestParam(name = "path", required = false) String path,
+                                                                         @RequestParam(name = "permits", defaultValue = "1") int permits,
+                                                                         @RequestParam(name = "key", required = false) String key,
+                                                                         @RequestParam(name = "method", required = false) String method,
+                                                                         @RequestParam(name = "weight", required = false) Double weight,
+                                                                         @RequestParam(name = "waitMs") long waitMs) {
+        requirePositive(permits);
+        requireWait(waitMs);
+        int cost = RateLimiter.wholePermits(charge(registry.cost(path, method), permits, requireWeight(weight)));
+        RateLimiter limiter = registry.getForPath(path, key);
+        return limiter.acquireAsync(cost, Duration.ofMillis(waitMs))
+                .thenApply(allowed -> respond(LimitResponse.of(limiter, cost, allowed)));
+    }
+
+    /**
+     * {@link #check} for a long-running request charged by its estimated weight up front: an allowed check
+     * also opens a reservation of its cost, which {@link #settle} closes once the actual work is known.
+     * 503 when too many reservations are open to record another one (nothing is charged then).
+     */
+    @PostMapping("/check/reserve")
+    public ResponseEntity<Reservation> reserve(@RequestParam(name = "path", required = false) String path,
+                                               @RequestParam(name = "permits", defaultValue = "1") int permits,
+                                               @RequestParam(name = "key", required = false) String key,
+                                               @RequestParam(name = "method", required = false) String method,
+                                               @RequestParam(name = "weight", required = false) Double weight) {
+        requirePositive(permits);
+        double cost = charge(registry.cost(path, method), permits, requireWeight(weight));
+        RateLimiter limiter = registry.getForPath(path, key);
+        LimitResponse check = LimitResponse.of(limiter, cost, tryCharge(limiter, cost));
+        if (!check.allowed()) return respond(check, Reservation.of(null, check, 0));
+        String id = reservations.open(limiter, cost, TimeUnit.MILLISECONDS.toNanos(RESERVATION_TTL_MS));
+        if (id == null) {
+            limiter.rollback(cost);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many open reservations");
+        }
+        return ResponseEntity.ok(Reservation.of(id, check, RESERVATION_TTL_MS));
+    }
+
+    /**
+     * Closes a reservation once the request's actual cost is known: of the tokens it charged, all but
+     * {@code used} go back to the bucket. Each reservation settles once; 404 for an unknown, expired or
+     * settled one. The answer's {@code cost} is minus the tokens given back.
+     */
+    @PostMapping("/check/settle")
+    public LimitResponse settle(@RequestBody SettleRequest request) {
+        if (request.reservationId() == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "reservationId required");
+        if (!(request.used() >= 0) || Double.isInfinite(request.used()))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "used must not be negative");
+        ChargeLedger.Refund refund = reservations.settle(request.reservationId(), request.used());
+        if (refund == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown, expired or settled reservation");
+        return new LimitResponse("Settled", true, refund.limiter().remaining(), 0, -refund.tokens());
+    }
+
+    /**
+     * Variant of {@link #check} for a path interned through {@link #registerPath}: the limiter is found by
+     * array index instead of by hashing the path. 404 for an unknown ID.
+     */
+    @GetMapping("/check/id/{id}")
+    public ResponseEntity<LimitResponse> checkId(@PathVariable("id") int id,
+                                                 @RequestParam(name = "permits", defaultValue = "1") int permits,
+                                                 @RequestParam(name = "key", required = false) String key,
+                                                 @RequestParam(name = "method", required = false) String method,
+                                                 @RequestParam(name = "weight", required = false) Double weight) {
+        requirePositive(permits);
+        Double w = requireWeight(weight);
+        RateLimiter limiter;
+        double cost;
+        try {
+            limiter = registry.getForId(id, key);
+            cost = charge(registry.costForId(id, method), permits, w);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+        return respond(LimitResponse.of(limiter, cost, tryCharge(limiter, cost)));
+    }
+
+    /**
+     * Interns {@code path} and returns its ID; registering a path again returns the same ID.
+     * 503 once the table holds as many paths as it takes.
+     */
+    @PostMapping("/paths")
+    public PathId registerPath(@RequestParam(name = "path") String path) {
+        if (path.isBlank()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "path required");
+        try {
+            return new PathId(path, registry.register(path));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /** Every interned path (configured endpoints included) in ID order. */
+    @GetMapping("/paths")
+    public List<PathId> paths() {
+        PathTable paths = registry.paths();
+        List<PathId> all = new ArrayList<>(paths.size());
+        for (int id = 0; id < paths.size(); id++) all.add(new PathId(paths.path(id), id));
+        return all;
+    }
+
+    /** 200, or 429 with a {@code Retry-After} header when the wait can be estimated. */
+    private static ResponseEntity<LimitResponse> respond(LimitResponse body) {
+        return respond(body, body);
+    }
+
+    /** {@link #respond(LimitResponse)} with another body for the same check. */
+    private static <T> ResponseEntity<T> respond(LimitResponse check, T body) {
+        if (check.allowed()) return ResponseEntity.ok(body);
+        ResponseEntity.BodyBuilder denied = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+        String retryAfter = check.retryAfter();
+        if (retryAfter != null) denied.header(HttpHeaders.RETRY_AFTER, retryAfter);
+        return denied.body(body);
+    }
+
+    /**
+     * Evaluates many {path, permits} pairs in one round trip.
+     * Without {@code allOrNothing} each item is decided independently and the response is 200.
+     * With {@code allOrNothing} the items are acquired in order and those already taken are refunded
+     * on the first denial; the response is then 429. This is all-or-nothing but not atomic, see
+     * {@link RateLimiterRegistry#tryAcquireAll(List, double[])}.
+     */
+    @PostMapping("/check/batch")
+    public ResponseEntity<BatchCheckResponse> checkBatch(@RequestBody BatchCheckRequest request) {
+        if (request == null || request.items() == null || request.items().isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch must contain at least one item");
+
+        List<BatchCheckItem> items = request.items();
+        List<RateLimiter> limiters = new ArrayList<>(items.size());
+        int[] permits = new int[items.size()];
+        double[] costs = new double[items.size()];
+        for (int i = 0; i < permits.length; i++) {
+            BatchCheckItem item = items.get(i);
+            permits[i] = item.permits() == null ? 1 : item.permits();
+            requirePositive(permits[i]);
+            costs[i] = charge(registry.cost(item.path(), item.method()), permits[i], requireWeight(item.weight()));
+            limiters.add(registry.getForPath(item.path(), item.key()));
+        }
+
+        boolean[] decisions = new boolean[permits.length];
+        if (request.allOrNothing()) {
+            boolean all = RateLimiterRegistry.tryAcquireAll(limiters, costs) < 0;
+            Arrays.fill(decisions, all);
+        } else {
+            for (int i = 0; i < permits.length; i++) decisions[i] = tryCharge(limiters.get(i), costs[i]);
+        }
+
+        boolean allAllowed = true;
+        List<BatchCheckResult> results = new ArrayList<>(permits.length);
+        for (int i = 0; i < permits.length; i++) {
+            allAllowed &= decisions[i];
+            results.add(new BatchCheckResult(items.get(i).path(), permits[i], costs[i], decisions[i], limiters.get(i).remaining()));
+        }
+
+        BatchCheckResponse body = new BatchCheckResponse(allAllowed, results);
+        boolean rejected = request.allOrNothing() && !allAllowed;
+        return rejected ? ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(body) : ResponseEntity.ok(body);
+    }
+
+    /** Live bucket count and estimated memory of every per-key rule. */
+    @GetMapping("/metrics/keys")
+    public List<KeyedLimitStats> keyedStats() {
+        List<KeyedLimitStats> stats = new ArrayList<>();
+        for (LimitRule rule : registry.rules()) {
+            KeyedBucketStore store = rule.perKey();
+            if (store != null) stats.add(new KeyedLimitStats(rule.endpoint(), store.size(), store.maxKeys(), store.memoryBytes()));
+        }
+        return stats;
+    }
+
+    private static void requirePositive(int permits) {
+        if (permits <= 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "permits must be positive");
+    }
+
+    /** Null stays null: no weight given. */
+    private static Double requireWeight(Double weight) {
+        if (weight != null && !validWeight(weight)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "weight must be positive");
+        return weight;
+    }
+
+    static boolean validWeight(double weight) {
+        return weight > 0 && !Double.isInfinite(weight);
+    }
+
+    /**
+     * Tokens a check takes: {@code permits} requests at {@code cost} each, times the caller's {@code weight},
+     * and at least {@link #MIN_CHARGE}. 400 when the product overflows.
+     */
+    static double charge(double cost, int permits, Double weight) {
+        double charged = permits * cost;
+        if (weight != null) charged *= weight;
+        if (Double.isInfinite(charged)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "charge too large");
+        return Math.max(MIN_CHARGE, charged);
+    }
+
+    /**
+     * Takes {@code cost} from {@code limiter}; a charge above its capacity is denied without reaching it,
+     * as no wait would ever grant it (the answer's {@code waitNanos} is then -1).
+     */
+    static boolean tryCharge(RateLimiter limiter, double cost) {
+        return cost <= limiter.capacity() && limiter.tryAcquire(cost);
+    }
 
-        LimitResponse body = new LimitResponse(allowed ? "Allowed" : "Rate limit exceeded", allowed, remaining);
-        return allowed ? ResponseEntity.ok(body) : ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(body);
+    private static void requireWait(long waitMs) {
+        if (waitMs < 0 || waitMs > MAX_WAIT_MS)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "waitMs must be between 0 and " + MAX_WAIT_MS);
     }
-}
\ No newline at end of file
+}
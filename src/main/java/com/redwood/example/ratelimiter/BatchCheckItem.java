@@ -0,0 +1,12 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/**
+ * One entry of a batch check; {@code permits} defaults to 1, {@code key} selects the client bucket of per-key rules,
+ * {@code method} and {@code weight} price it like a single check.
+ */
+record BatchCheckItem(String path, Integer permits, String key, String method, Double weight) {}
@@ -0,0 +1,11 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import java.util.List;
+
+
+/** Batch of checks; with {@code allOrNothing} either every item is acquired or none is. */
+record BatchCheckRequest(List<BatchCheckItem> items, boolean allOrNothing) {}
@@ -0,0 +1,13 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import org.springframework.lang.NonNull;
+
+import java.util.List;
+
+
+/** Decisions on a batch check, in item order; {@code allowed} when every item was. */
+record BatchCheckResponse(boolean allowed, @NonNull List<BatchCheckResult> results) {}
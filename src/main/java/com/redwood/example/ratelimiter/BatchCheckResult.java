@@ -0,0 +1,9 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/** Decision on one item of a batch check. */
+record BatchCheckResult(String path, int permits, double cost, boolean allowed, long requestsRemaining) {}
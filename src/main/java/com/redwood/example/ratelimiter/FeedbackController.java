@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.service.LimitRule;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Feedback for adaptive limits: callers report how the calls they were allowed to make went downstream,
+ * and the rule governing the path lowers or raises its refill rate on the next control interval
+ * ({@code ratelimiter.adaptive.interval-ms}). Reports only count; they never block on the control loop.
+ */
+@RestController
+@RequestMapping("/api/feedback")
+public class FeedbackController {
+
+    private final RateLimiterRegistry registry;
+
+    public FeedbackController(RateLimiterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Counts the report into the rule governing {@code path}; 404 when that rule is not adaptive. */
+    @PostMapping
+    public AdaptiveLimit report(@RequestBody FeedbackReport report) {
+        LimitRule rule = registry.ruleFor(report.path());
+        if (rule.adaptive() == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No adaptive limit for '" + report.path() + "'");
+        try {
+            rule.adaptive().report(report.count() == null ? 1 : report.count(), report.errors() == null ? 0 : report.errors(),
+                    report.latencyMs() == null ? Double.NaN : report.latencyMs());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return AdaptiveLimit.of(rule);
+    }
+
+    /** Every adaptive rule with its current rate. */
+    @GetMapping
+    public List<AdaptiveLimit> limits() {
+        List<AdaptiveLimit> limits = new ArrayList<>();
+        for (LimitRule rule : registry.rules()) {
+            if (rule.adaptive() != null) limits.add(AdaptiveLimit.of(rule));
+        }
+        return limits;
+    }
+}
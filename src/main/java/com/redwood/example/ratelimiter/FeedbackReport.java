@@ -0,0 +1,12 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/**
+ * Outcome of downstream calls made under the limit of {@code path}: {@code count} calls (default 1), {@code errors}
+ * of which failed (default 0), taking {@code latencyMs} on average (optional).
+ */
+record FeedbackReport(String path, Integer count, Integer errors, Double latencyMs) {}
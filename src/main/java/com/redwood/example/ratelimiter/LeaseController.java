@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.service.ChargeLedger;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Token leases for the client library: instead of asking {@code /api/check} per request, a client takes a
+ * batch of tokens from the bucket that governs a path and spends them in-process.
+ * Tokens are debited before they are spent, so clients never push the bucket over its limit; a client is
+ * expected to hand back what it did not use within {@code ttlMs}. Limiter metrics count one decision per
+ * lease, not per request served from it.
+ * Every grant is recorded under its {@code leaseId}, and a return is only taken against that lease, capped at
+ * what it granted minus what came back already; returns are accepted for twice the TTL, so one sent as the
+ * lease expires on the client still counts.
+ */
+@RestController
+@RequestMapping("/api/lease")
+public class LeaseController {
+
+    /** Leases open at once; at 5s TTL this admits 20,000 lease calls per second. */
+    static final int MAX_OPEN_LEASES = 100_000;
+
+    private final RateLimiterRegistry registry;
+    private final long ttlMs;
+    private final ChargeLedger leases = new ChargeLedger(MAX_OPEN_LEASES);
+
+    public LeaseController(RateLimiterRegistry registry, @Value("${ratelimiter.lease.ttl-ms:5000}") long ttlMs) {
+        this.registry = registry;
+        this.ttlMs = ttlMs;
+    }
+
+    @GetMapping
+    public LeaseTerms terms(@RequestParam(name = "path", required = false) String path,
+                            @RequestParam(name = "key", required = false) String key) {
+        RateLimiter limiter = registry.getForPath(path, key);
+        return new LeaseTerms(limiter.capacity(), limiter.refillPerSecond(), ttlMs);
+    }
+
+    /**
+     * Takes up to {@code tokens}, whatever the bucket holds; a grant of 0 means it is dry and has no lease ID.
+     * 503 when too many leases are open to record another one.
+     */
+    @PostMapping
+    public LeaseGrant take(@RequestBody LeaseRequest request) {
+        RateLimiter limiter = registry.getForPath(request.path(), request.key());
+        long granted = limiter.tryAcquireUpTo(requirePositive(request.tokens()));
+        if (granted == 0) return new LeaseGrant(null, 0, limiter.remaining(), ttlMs);
+        String leaseId = leases.open(limiter, granted, TimeUnit.MILLISECONDS.toNanos(2 * ttlMs));
+        if (leaseId == null) {
+            limiter.refund((double) granted);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many open leases");
+        }
+        return new LeaseGrant(leaseId, granted, limiter.remaining(), ttlMs);
+    }
+
+    /**
+     * Gives back unused tokens of lease {@code leaseId}, at most what is still outstanding on it; the answer's
+     * {@code granted} is minus the tokens taken back. 404 for an unknown, expired or fully returned lease.
+     */
+    @PostMapping("/return")
+    public LeaseGrant giveBack(@RequestBody LeaseReturn request) {
+        if (request.leaseId() == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "leaseId required");
+        ChargeLedger.Refund refund = leases.giveBack(request.leaseId(), requirePositive(request.tokens()));
+        if (refund == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown or expired lease");
+        return new LeaseGrant(request.leaseId(), -(long) refund.tokens(), refund.limiter().remaining(), ttlMs);
+    }
+
+    private static long requirePositive(long tokens) {
+        if (tokens <= 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "tokens must be positive");
+        return tokens;
+    }
+}
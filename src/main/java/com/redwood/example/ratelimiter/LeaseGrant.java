@@ -0,0 +1,12 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/**
+ * Lease to return unused tokens against (null when nothing was granted), tokens handed out (negative for a
+ * return), whole tokens left in the bucket and how long the client may hold them.
+ */
+record LeaseGrant(String leaseId, long granted, long remaining, long ttlMs) {}
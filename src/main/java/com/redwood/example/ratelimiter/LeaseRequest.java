@@ -0,0 +1,9 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/** Tokens to take from the bucket of {@code path} and {@code key} ({@code /api/lease}). */
+record LeaseRequest(String path, String key, long tokens) {}
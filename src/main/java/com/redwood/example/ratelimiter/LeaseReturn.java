@@ -0,0 +1,9 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/** Unused {@code tokens} of lease {@code leaseId} to give back ({@code /api/lease/return}). */
+record LeaseReturn(String leaseId, long tokens) {}
@@ -0,0 +1,9 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/** Limits of the bucket a lease is taken from; the client sizes its local limiter with them. */
+record LeaseTerms(long capacity, double refillPerSecond, long ttlMs) {}
@@ -0,0 +1,32 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Outcome of one check.
+ * {@code waitNanos}: estimated wait before a denied request could pass, -1 if it never can; 0 when allowed.
+ * {@code cost}: tokens the check took, or would have taken when denied; negative for tokens refunded.
+ */
+record LimitResponse(@NonNull String message, boolean allowed, long requestsRemaining, long waitNanos, double cost) {
+
+    /** The wait of a fractional cost is the one for its whole permits, so it may be a little long. */
+    static LimitResponse of(RateLimiter limiter, double cost, boolean allowed) {
+        if (allowed) return new LimitResponse("Allowed", true, limiter.remaining(), 0, cost);
+        long wait = limiter.waitNanos(RateLimiter.wholePermits(cost));
+        return new LimitResponse("Rate limit exceeded", false, limiter.remaining(), wait == Long.MAX_VALUE ? -1 : wait, cost);
+    }
+
+    /** Value of the {@code Retry-After} header: whole seconds, rounded up; null when there is nothing to wait for. */
+    String retryAfter() {
+        if (allowed || waitNanos < 0) return null;
+        return Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+    }
+}
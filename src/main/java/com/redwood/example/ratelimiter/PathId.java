@@ -0,0 +1,11 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import org.springframework.lang.NonNull;
+
+
+/** An interned path and its ID for {@code /api/check/id/{id}} and the binary protocol. */
+record PathId(@NonNull String path, int id) {}
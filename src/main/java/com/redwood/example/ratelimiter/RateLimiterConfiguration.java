@@ -0,0 +1,180 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.binary.BinaryCheckServer;
+import com.redwood.example.ratelimiter.config.ConfigLoader;
+import com.redwood.example.ratelimiter.config.ConfigWatcher;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.config.LimitModelsRuntimeHints;
+import com.redwood.example.ratelimiter.metrics.RateLimiterMetrics;
+import com.redwood.example.ratelimiter.ratelimit.InMemoryTokenStore;
+import com.redwood.example.ratelimiter.ratelimit.RedisTokenStore;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore;
+import com.redwood.example.ratelimiter.service.BucketSnapshot;
+import com.redwood.example.ratelimiter.service.ConfigReloader;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
+/**
+ * Wires the shared {@link RateLimiterRegistry} so every transport (HTTP, binary) sees the same buckets.
+ */
+@Configuration
+@EnableScheduling
+@ImportRuntimeHints(LimitModelsRuntimeHints.class)
+public class RateLimiterConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiterConfiguration.class);
+
+    private RateLimiterRegistry registry;
+    private BucketSnapshot snapshot;
+
+    /** Classpath resource or file path of the JSON config; hot reload needs a file outside the classpath. */
+    @Value("${ratelimiter.config.location:config.json}")
+    private String configLocation = "config.json";
+
+    /** Counts per-endpoint decisions for {@link RateLimiterMetrics}. */
+    @Value("${ratelimiter.metrics.enabled:true}")
+    private boolean metricsEnabled = true;
+
+    /** See {@link #clusterTokenStore}; resolved lazily because that bean is defined here too. */
+    @Autowired
+    private ObjectProvider<TokenStore> clusterStore;
+
+    /**
+     * Transports that call limiters on threads that must not block: the reactive serving mode (Netty event loop)
+     * and the binary protocol (selector thread). With either, cluster rules may not wait for lease refills.
+     */
+    @Value("${spring.main.web-application-type:}")
+    private String webApplicationType = "";
+
+    @Value("${ratelimiter.binary.port:}")
+    private String binaryPort = "";
+
+    /** Bucket state file for warm restarts; empty disables snapshots. */
+    @Value("${ratelimiter.snapshot.file:}")
+    private String snapshotFile = "";
+
+    /**
+     * Registry built from the JSON config at startup; {@link ConfigReloader} swaps in later versions.
+     * With a snapshot file configured, bucket state is restored before any transport can use the registry.
+     */
+    @Bean
+    public RateLimiterRegistry rateLimiterRegistry() throws IOException {
+        RateLimitFile config = new ConfigLoader().loadFromClasspathOrFile(configLocation);
+        boolean leaseWaitAllowed = !"reactive".equalsIgnoreCase(webApplicationType) && binaryPort.isBlank();
+        registry = new RateLimiterRegistry(config, metricsEnabled, clusterStore == null ? null : clusterStore.getIfAvailable(), leaseWaitAllowed);
+        if (!snapshotFile.isBlank()) {
+            snapshot = new BucketSnapshot(registry, Paths.get(snapshotFile));
+            long start = System.nanoTime();
+            try {
+                BucketSnapshot.Stats restored = snapshot.restore();
+                LOG.info("Restored {} rules and {} client buckets from {} in {} ms", restored.rules(), restored.buckets(),
+                        snapshot.file(), (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable bucket snapshot {}, starting with full buckets: {}", snapshot.file(), e.toString());
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Central token store for rules in {@code cluster} mode, shared by all instances; only created when
+     * {@code ratelimiter.cluster.store} is {@code redis} or {@code memory} (in-process, single node).
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "ratelimiter.cluster.store")
+    public TokenStore clusterTokenStore(@Value("${ratelimiter.cluster.store}") String type,
+                                        @Value("${ratelimiter.cluster.redis.host:localhost}") String host,
+                                        @Value("${ratelimiter.cluster.redis.port:6379}") int port,
+                                        @Value("${ratelimiter.cluster.redis.key-prefix:ratelimiter:}") String keyPrefix,
+                                        @Value("${ratelimiter.cluster.redis.timeout-ms:200}") int timeoutMs) {
+        return switch (type) {
+            case "redis" -> new RedisTokenStore(host, port, keyPrefix, timeoutMs);
+            case "memory" -> new InMemoryTokenStore();
+            default -> throw new IllegalArgumentException("Unknown ratelimiter.cluster.store '" + type + "', expected redis or memory");
+        };
+    }
+
+    /** Per-endpoint decision, contention, token and latency metrics, bound to the Actuator meter registry. */
+    @Bean
+    @ConditionalOnProperty(name = "ratelimiter.metrics.enabled", matchIfMissing = true)
+    public RateLimiterMetrics rateLimiterMetrics(RateLimiterRegistry registry,
+                                                 @Value("${ratelimiter.metrics.latency-sample-every:16}") int sampleEvery) {
+        return new RateLimiterMetrics(registry, sampleEvery);
+    }
+
+    /** Re-applies the config to the live registry; used by the admin endpoint and the file watcher. */
+    @Bean
+    public ConfigReloader configReloader(RateLimiterRegistry registry) {
+        return new ConfigReloader(new ConfigLoader(), configLocation, registry);
+    }
+
+    /** Optional file watcher; only started when {@code ratelimiter.config.watch=true}. */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "ratelimiter.config.watch", havingValue = "true")
+    public ConfigWatcher configWatcher(ConfigReloader reloader,
+                                       @Value("${ratelimiter.config.watch-quiet-ms:250}") long quietMs) {
+        return new ConfigWatcher(Paths.get(reloader.location()), quietMs, reloader::reloadQuietly);
+    }
+
+    /** Periodically drops fully refilled per-key buckets so idle clients stop holding memory. */
+    @Scheduled(fixedDelayString = "${ratelimiter.keys.sweep-interval-ms:10000}")
+    public void evictIdleKeys() {
+        if (registry != null) registry.evictIdleKeys();
+    }
+
+    /** Control loop of adaptive rules: moves their refill rates by the feedback reported since the last run. */
+    @Scheduled(fixedDelayString = "${ratelimiter.adaptive.interval-ms:1000}")
+    public void adjustAdaptiveLimits() {
+        if (registry != null) registry.adjustAdaptiveLimits();
+    }
+
+    /** Periodically snapshots bucket state (off the request path) when a snapshot file is configured. */
+    @Scheduled(fixedDelayString = "${ratelimiter.snapshot.interval-ms:30000}",
+               initialDelayString = "${ratelimiter.snapshot.interval-ms:30000}")
+    public void saveSnapshot() {
+        if (snapshot == null) return;
+        try {
+            snapshot.save();
+        } catch (IOException e) {
+            LOG.warn("Could not write bucket snapshot {}: {}", snapshot.file(), e.toString());
+        }
+    }
+
+    /**
+     * Final snapshot on shutdown, so a deploy restarts with the buckets it stopped with, and cluster leases
+     * go back to the store for the remaining instances.
+     */
+    @PreDestroy
+    public void saveSnapshotOnShutdown() {
+        saveSnapshot();
+        if (registry != null) registry.releaseLeases();
+    }
+
+    /** Optional low-latency binary listener; only started when {@code ratelimiter.binary.port} is set. */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "ratelimiter.binary.port")
+    public BinaryCheckServer binaryCheckServer(RateLimiterRegistry registry,
+                                               @Value("${ratelimiter.binary.host:0.0.0.0}") String host,
+                                               @Value("${ratelimiter.binary.port}") int port) {
+        return new BinaryCheckServer(registry, new InetSocketAddress(host, port));
+    }
+}
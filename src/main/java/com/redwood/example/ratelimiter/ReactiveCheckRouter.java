@@ -0,0 +1,77 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+
+/**
+ * Functional WebFlux endpoint for {@code GET /api/check}, active only in the reactive serving mode
+ * (profile {@code reactive}, Netty).
+ * Limiter calls never block, so the check runs inline on the Netty event loop without a hand-off; with
+ * {@code waitMs} the response is sent from the limiter's timer once the permits are acquired.
+ * Router functions are matched before annotated controllers, so this handler takes over {@code /api/check}
+ * while WebFlux keeps serving the rest of {@link ApiController}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCheckRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveCheckRoute(RateLimiterRegistry registry) {
+        return route(GET("/api/check"), request -> check(registry, request));
+    }
+
+    /**
+     * Same contract as {@link ApiController#check} and {@link ApiController#checkWaiting}: 200 or 429 with a
+     * {@link LimitResponse}, 400 for bad permits, weight or wait. Cancelling a waiting request refunds its permits.
+     */
+    static Mono<ServerResponse> check(RateLimiterRegistry registry, ServerRequest request) {
+        int permits;
+        Double weight;
+        Long waitMs;
+        try {
+            permits = request.queryParam("permits").map(Integer::parseInt).orElse(1);
+            weight = request.queryParam("weight").map(Double::parseDouble).orElse(null);
+            waitMs = request.queryParam("waitMs").map(Long::parseLong).orElse(null);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        if (permits <= 0) return ServerResponse.badRequest().build();
+        if (weight != null && !ApiController.validWeight(weight)) return ServerResponse.badRequest().build();
+        if (waitMs != null && (waitMs < 0 || waitMs > ApiController.MAX_WAIT_MS)) return ServerResponse.badRequest().build();
+
+        String path = request.queryParam("path").orElse(null);
+        double cost = ApiController.charge(registry.cost(path, request.queryParam("method").orElse(null)), permits, weight);
+        RateLimiter limiter = registry.getForPath(path, request.queryParam("key").orElse(null));
+        if (waitMs == null) return respond(LimitResponse.of(limiter, cost, ApiController.tryCharge(limiter, cost)));
+        int whole = RateLimiter.wholePermits(cost);
+        return Mono.fromFuture(limiter.acquireAsync(whole, Duration.ofMillis(waitMs)))
+                .flatMap(allowed -> respond(LimitResponse.of(limiter, whole, allowed)));
+    }
+
+    private static Mono<ServerResponse> respond(LimitResponse body) {
+        if (body.allowed()) return ServerResponse.ok().bodyValue(body);
+        ServerResponse.BodyBuilder denied = ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS);
+        String retryAfter = body.retryAfter();
+        if (retryAfter != null) denied.header(HttpHeaders.RETRY_AFTER, retryAfter);
+        return denied.bodyValue(body);
+    }
+}
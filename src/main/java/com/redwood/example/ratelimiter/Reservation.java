@@ -0,0 +1,21 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import org.springframework.lang.NonNull;
+
+
+/**
+ * Outcome of a check that charged up front, see {@link LimitResponse}; when allowed, {@code reservationId}
+ * settles it within {@code expiresInMs}. Null and 0 when denied.
+ */
+record Reservation(String reservationId, @NonNull String message, boolean allowed, long requestsRemaining, long waitNanos,
+                   double cost, long expiresInMs) {
+
+    static Reservation of(String reservationId, LimitResponse check, long expiresInMs) {
+        return new Reservation(reservationId, check.message(), check.allowed(), check.requestsRemaining(), check.waitNanos(),
+                check.cost(), expiresInMs);
+    }
+}
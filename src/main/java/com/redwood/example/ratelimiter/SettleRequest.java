@@ -0,0 +1,9 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+
+/** Tokens reservation {@code reservationId} actually used; the rest of its charge is given back. */
+record SettleRequest(String reservationId, double used) {}
@@ -0,0 +1,109 @@
+package com.redwood.example.ratelimiter.binary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.redwood.example.ratelimiter.binary.BinaryProtocol.*;
+
+
+/**
+ * Blocking Java client for {@link BinaryCheckServer}.
+ * Not thread-safe: use one client (connection) per thread, or pipeline through
+ * {@link #checkAll(List, int)} to amortise the round trip over many checks.
+ */
+public final class BinaryCheckClient implements Closeable {
+
+    /** Decision returned for every request. */
+    public record Decision(boolean allowed, long remaining) {}
+
+    private static final int PIPELINE_WINDOW = 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_FRAME_BYTES + 4);
+    private final ByteBuffer in = ByteBuffer.allocate(4 + RESPONSE_BODY_BYTES);
+
+    public BinaryCheckClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /** Consumes {@code permits} tokens for {@code path} (null or empty = global limit). */
+    public Decision check(String path, int permits) throws IOException {
+        out.clear();
+        encode(path, permits);
+        flush();
+        return readDecision();
+    }
+
+    /** Consumes {@code permits} tokens for the path interned under {@code id}, see {@code POST /api/paths}. */
+    public Decision check(int id, int permits) throws IOException {
+        out.clear();
+        out.putInt(REQUEST_HEADER_BYTES + ID_BYTES).put(TYPE_ID).putInt(permits).putInt(id);
+        flush();
+        return readDecision();
+    }
+
+    /**
+     * Pipelines the checks: a window of requests is sent before any response is read, and
+     * responses come back in request order. Windows keep both sides' buffers bounded.
+     */
+    public List<Decision> checkAll(List<String> paths, int permits) throws IOException {
+        List<Decision> decisions = new ArrayList<>(paths.size());
+        for (int start = 0; start < paths.size(); start += PIPELINE_WINDOW) {
+            int end = Math.min(paths.size(), start + PIPELINE_WINDOW);
+            out.clear();
+            for (int i = start; i < end; i++) {
+                String path = paths.get(i);
+                if (out.remaining() < 4 + REQUEST_HEADER_BYTES + utf8Length(path)) flush();
+                encode(path, permits);
+            }
+            flush();
+            for (int i = start; i < end; i++) decisions.add(readDecision());
+        }
+        return decisions;
+    }
+
+    private void encode(String path, int permits) {
+        byte[] bytes = path == null ? new byte[0] : path.getBytes(StandardCharsets.UTF_8);
+        if (REQUEST_HEADER_BYTES + bytes.length > MAX_FRAME_BYTES)
+            throw new IllegalArgumentException("Path too long for the binary protocol");
+        out.putInt(REQUEST_HEADER_BYTES + bytes.length).put(TYPE_PATH).putInt(permits).put(bytes);
+    }
+
+    private static int utf8Length(String path) {
+        return path == null ? 0 : path.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    private Decision readDecision() throws IOException {
+        in.clear();
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) throw new EOFException("Server closed the connection");
+        }
+        in.flip();
+        int length = in.getInt();
+        if (length != RESPONSE_BODY_BYTES) throw new IOException("Unexpected response length " + length);
+        byte status = in.get();
+        long remaining = in.getLong();
+        if (status == STATUS_BAD_REQUEST) throw new IllegalArgumentException("Server rejected the request");
+        return new Decision(status == STATUS_ALLOWED, remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,244 @@
+package com.redwood.example.ratelimiter.binary;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.service.PathTable;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Objects;
+
+import static com.redwood.example.ratelimiter.binary.BinaryProtocol.*;
+
+
+/**
+ * Non-blocking TCP listener speaking {@link BinaryProtocol}.
+ * - One selector thread owns every connection; limiter calls are lock-free and never block,
+ *   so they run inline on that thread without a hand-off to a worker pool.
+ * - All complete frames in a read are processed before writing, which makes pipelined
+ *   requests cost one read and one write syscall per batch.
+ * - Paths are matched as raw bytes against the registry's interned paths; only paths that are not interned
+ *   (patterns, the global fallback) are decoded into a {@code String}.
+ * - Each permit is charged the path's configured {@code cost}, as {@code /api/check} charges a request without
+ *   a method; interned paths read it from the path table.
+ */
+public final class BinaryCheckServer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryCheckServer.class);
+    private static final int BUFFER_BYTES = 8 * 1024;
+    /** Stop reading from a client that does not drain its responses beyond this many bytes. */
+    private static final int MAX_PENDING_BYTES = 1024 * 1024;
+    /** Resolved path that is not interned (a pattern match or the global fallback); -1 is a bad request. */
+    private static final int NOT_INTERNED = -2;
+
+    private final RateLimiterRegistry registry;
+    private final InetSocketAddress bindAddress;
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread loop;
+    private volatile boolean running;
+
+    public BinaryCheckServer(RateLimiterRegistry registry, InetSocketAddress bindAddress) {
+        this.registry = Objects.requireNonNull(registry);
+        this.bindAddress = Objects.requireNonNull(bindAddress);
+    }
+
+    /** Binds the socket and starts the selector thread. */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(bindAddress);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        loop = new Thread(this::run, "binary-check-selector");
+        loop.setDaemon(true);
+        loop.start();
+        LOG.info("Binary check protocol listening on {}:{}", bindAddress.getHostString(), port());
+    }
+
+    /** Actual bound port, useful when started on port 0. */
+    public int port() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("Server socket not bound", e);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) accept();
+                        else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // A broken connection must never take the selector thread down with it
+                        closeQuietly(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) LOG.warn("Binary check selector failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ch.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel ch = (SocketChannel) key.channel();
+        Connection c = (Connection) key.attachment();
+
+        int n = ch.read(c.in);
+        if (n < 0) {
+            closeQuietly(key);
+            return;
+        }
+
+        c.in.flip();
+        while (c.in.remaining() >= 4) {
+            int length = c.in.getInt(c.in.position());
+            if (length < REQUEST_HEADER_BYTES || length > MAX_FRAME_BYTES) {
+                closeQuietly(key);
+                return;
+            }
+            if (c.in.remaining() < 4 + length) break;
+            c.in.position(c.in.position() + 4);
+            handle(c, length);
+        }
+        c.in.compact();
+        if (c.in.remaining() == 0) c.in = grow(c.in, MAX_FRAME_BYTES + 4);
+
+        write(key);
+    }
+
+    /** Decodes one frame at the buffer's position and appends its response. */
+    private void handle(Connection c, int length) {
+        ByteBuffer in = c.in;
+        int end = in.position() + length;
+        byte type = in.get();
+        int permits = in.getInt();
+
+        PathTable paths = registry.paths();
+        int payload = in.position();
+        int id = permits <= 0 ? -1 : switch (type) {
+            case TYPE_PATH -> byPath(paths, in, end - payload);
+            case TYPE_ID -> end - payload == ID_BYTES ? byId(paths, in.getInt()) : -1;
+            default -> -1;
+        };
+        in.position(end);
+        RateLimiter limiter;
+        double cost;
+        if (id >= 0) {
+            limiter = paths.limiter(id);
+            cost = paths.cost(id, null);
+        } else if (id == NOT_INTERNED) {
+            String path = end == payload ? null : new String(in.array(), in.arrayOffset() + payload, end - payload, StandardCharsets.UTF_8);
+            limiter = registry.getForPath(path);
+            cost = registry.cost(path, null);
+        } else {
+            respond(c, STATUS_BAD_REQUEST, 0);
+            return;
+        }
+
+        boolean allowed = limiter.tryAcquire(permits * cost);
+        respond(c, allowed ? STATUS_ALLOWED : STATUS_DENIED, limiter.remaining());
+    }
+
+    /** ID of the path in the next {@code length} bytes, matched without decoding; {@link #NOT_INTERNED} if none. */
+    private static int byPath(PathTable paths, ByteBuffer in, int length) {
+        if (length == 0) return NOT_INTERNED;
+        int id = paths.find(in.array(), in.arrayOffset() + in.position(), length);
+        return id >= 0 ? id : NOT_INTERNED;
+    }
+
+    /** {@code id} if it is interned, -1 (a bad request) if not. */
+    private static int byId(PathTable paths, int id) {
+        return id >= 0 && id < paths.size() ? id : -1;
+    }
+
+    private static void respond(Connection c, byte status, long remaining) {
+        if (c.out.remaining() < 4 + RESPONSE_BODY_BYTES) c.out = grow(c.out, Integer.MAX_VALUE);
+        c.out.putInt(RESPONSE_BODY_BYTES).put(status).putLong(remaining);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        c.out.flip();
+        ((SocketChannel) key.channel()).write(c.out);
+        boolean pending = c.out.hasRemaining();
+        c.out.compact();
+        int ops = SelectionKey.OP_READ;
+        if (pending) ops = c.out.position() > MAX_PENDING_BYTES ? SelectionKey.OP_WRITE : ops | SelectionKey.OP_WRITE;
+        key.interestOps(ops);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buf, int max) {
+        int size = (int) Math.min((long) buf.capacity() * 2, max);
+        if (size <= buf.capacity()) throw new IllegalStateException("Buffer limit reached");
+        ByteBuffer bigger = ByteBuffer.allocate(size);
+        buf.flip();
+        bigger.put(buf);
+        return bigger;
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // already closing
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) closeQuietly(key);
+        selector.close();
+        server.close();
+    }
+
+    /** Per-connection read and write buffers; only touched by the selector thread. */
+    private static final class Connection {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+    }
+}
@@ -0,0 +1,39 @@
+package com.redwood.example.ratelimiter.binary;
+
+/**
+ * Wire format of the binary check protocol. All integers are big-endian.
+ *
+ * <pre>
+ * Request  : int length | byte type | int permits | payload
+ *            type {@link #TYPE_PATH}: payload = UTF-8 path bytes (may be empty -> global limit)
+ *            type {@link #TYPE_ID}:   payload = int path ID (see {@code POST /api/paths}); unknown IDs are bad requests
+ *            length counts every byte after the length field itself.
+ *            Each permit costs the path's configured {@code cost} in tokens (1 unless priced).
+ *
+ * Response : int length | byte status | long remaining
+ *            status {@link #STATUS_DENIED}, {@link #STATUS_ALLOWED} or {@link #STATUS_BAD_REQUEST}
+ * </pre>
+ *
+ * Responses are written in request order, so clients may pipeline any number of requests
+ * on one connection and match responses positionally.
+ */
+public final class BinaryProtocol {
+
+    private BinaryProtocol() {}
+
+    public static final byte TYPE_PATH = 1;
+    public static final byte TYPE_ID = 2;
+
+    public static final byte STATUS_DENIED = 0;
+    public static final byte STATUS_ALLOWED = 1;
+    public static final byte STATUS_BAD_REQUEST = 2;
+
+    /** type + permits. */
+    static final int REQUEST_HEADER_BYTES = 1 + 4;
+    /** Payload of a {@link #TYPE_ID} request. */
+    static final int ID_BYTES = 4;
+    /** status + remaining. */
+    static final int RESPONSE_BODY_BYTES = 1 + 8;
+    /** Upper bound for a single request frame; larger frames close the connection. */
+    static final int MAX_FRAME_BYTES = 16 * 1024;
+}
@@ -0,0 +1,196 @@
+package com.redwood.example.ratelimiter.config;
+
+import com.redwood.example.ratelimiter.config.LimitModels.AdaptivePolicy;
+import com.redwood.example.ratelimiter.config.LimitModels.Algorithm;
+import com.redwood.example.ratelimiter.config.LimitModels.KeyStoreType;
+import com.redwood.example.ratelimiter.config.LimitModels.LimiterMode;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Precompiled binary form of the rate-limit config, read at startup without JSON parsing (or loading Jackson).
+ * - Produced from the JSON by {@link #main} ({@code ./gradlew compileConfig}); {@link ConfigLoader} recognizes it
+ *   by its {@link #MAGIC} header, so {@code ratelimiter.config.location} can point at either form.
+ * - Every field of {@link RateLimitEntry} is written in declaration order; {@link #VERSION} changes whenever
+ *   that order does, and files of another version are rejected rather than misread. Recompile after upgrading.
+ */
+public final class CompiledConfig {
+
+    /** "RLCF". */
+    static final int MAGIC = 0x524C4346;
+    static final int VERSION = 2;
+
+    private CompiledConfig() {}
+
+    /** Whether {@code header} (the first four bytes of a file) starts a compiled config. */
+    static boolean isCompiled(byte[] header) {
+        return header.length >= 4 && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF)) == MAGIC;
+    }
+
+    public static void write(RateLimitFile file, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        List<RateLimitEntry> limits = file.limits == null ? List.of() : file.limits;
+        data.writeInt(limits.size());
+        for (RateLimitEntry e : limits) writeEntry(e, data);
+        data.flush();
+    }
+
+    public static RateLimitFile read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) throw new IOException("Not a compiled rate-limit config");
+        int version = data.readInt();
+        if (version != VERSION)
+            throw new IOException("Compiled config version " + version + ", expected " + VERSION + "; recompile it from the JSON");
+        int n = data.readInt();
+        List<RateLimitEntry> limits = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) limits.add(readEntry(data));
+        RateLimitFile file = new RateLimitFile();
+        file.limits = limits;
+        return file;
+    }
+
+    private static void writeEntry(RateLimitEntry e, DataOutputStream out) throws IOException {
+        writeString(e.endpoint, out);
+        out.writeDouble(e.refillRate);
+        out.writeLong(e.bucketSize);
+        writeEnum(e.algorithm, out);
+        writeEnum(e.mode, out);
+        out.writeInt(e.stripes);
+        out.writeDouble(e.stripeTolerance);
+        out.writeLong(e.leaseSize);
+        out.writeLong(e.leaseWaitMs);
+        out.writeDouble(e.fallbackShare);
+        out.writeBoolean(e.perKey);
+        out.writeLong(e.maxKeys);
+        writeEnum(e.keyStore, out);
+        writeEnum(e.adaptive, out);
+        out.writeDouble(e.minRate);
+        out.writeDouble(e.maxRate);
+        out.writeDouble(e.targetLatencyMs);
+        out.writeDouble(e.maxErrorRate);
+        out.writeDouble(e.rateIncrease);
+        out.writeDouble(e.rateDecrease);
+        out.writeDouble(e.cost);
+        Map<String, Double> methodCosts = e.methodCosts == null ? Map.of() : e.methodCosts;
+        out.writeInt(methodCosts.size());
+        for (Map.Entry<String, Double> m : methodCosts.entrySet()) {
+            writeString(m.getKey(), out);
+            out.writeDouble(m.getValue());
+        }
+        List<String> parents = e.parents == null ? List.of() : e.parents;
+        out.writeInt(parents.size());
+        for (String parent : parents) writeString(parent, out);
+        List<ShadowEntry> shadow = e.shadow == null ? List.of() : e.shadow;
+        out.writeInt(shadow.size());
+        for (ShadowEntry s : shadow) {
+            writeString(s.name, out);
+            out.writeDouble(s.refillRate);
+            out.writeLong(s.bucketSize);
+            writeEnum(s.algorithm, out);
+            out.writeBoolean(s.perKey);
+            out.writeLong(s.maxKeys);
+        }
+    }
+
+    private static RateLimitEntry readEntry(DataInputStream in) throws IOException {
+        RateLimitEntry e = new RateLimitEntry();
+        e.endpoint = readString(in);
+        e.refillRate = in.readDouble();
+        e.bucketSize = in.readLong();
+        e.algorithm = readEnum(Algorithm.class, in);
+        e.mode = readEnum(LimiterMode.class, in);
+        e.stripes = in.readInt();
+        e.stripeTolerance = in.readDouble();
+        e.leaseSize = in.readLong();
+        e.leaseWaitMs = in.readLong();
+        e.fallbackShare = in.readDouble();
+        e.perKey = in.readBoolean();
+        e.maxKeys = in.readLong();
+        e.keyStore = readEnum(KeyStoreType.class, in);
+        e.adaptive = readEnum(AdaptivePolicy.class, in);
+        e.minRate = in.readDouble();
+        e.maxRate = in.readDouble();
+        e.targetLatencyMs = in.readDouble();
+        e.maxErrorRate = in.readDouble();
+        e.rateIncrease = in.readDouble();
+        e.rateDecrease = in.readDouble();
+        e.cost = in.readDouble();
+        int methods = in.readInt();
+        Map<String, Double> methodCosts = new LinkedHashMap<>();
+        for (int i = 0; i < methods; i++) methodCosts.put(readString(in), in.readDouble());
+        e.methodCosts = methodCosts;
+        int parents = in.readInt();
+        List<String> p = new ArrayList<>(parents);
+        for (int i = 0; i < parents; i++) p.add(readString(in));
+        e.parents = p;
+        int shadows = in.readInt();
+        List<ShadowEntry> shadow = new ArrayList<>(shadows);
+        for (int i = 0; i < shadows; i++) {
+            ShadowEntry s = new ShadowEntry();
+            s.name = readString(in);
+            s.refillRate = in.readDouble();
+            s.bucketSize = in.readLong();
+            s.algorithm = readEnum(Algorithm.class, in);
+            s.perKey = in.readBoolean();
+            s.maxKeys = in.readLong();
+            shadow.add(s);
+        }
+        e.shadow = shadow;
+        return e;
+    }
+
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /** By name, not ordinal, so reordering the constants cannot silently change a compiled config. */
+    private static void writeEnum(Enum<?> value, DataOutputStream out) throws IOException {
+        writeString(value == null ? null : value.name(), out);
+    }
+
+    private static <E extends Enum<E>> E readEnum(Class<E> type, DataInputStream in) throws IOException {
+        String name = readString(in);
+        try {
+            return name == null ? null : Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown " + type.getSimpleName() + " '" + name + "' in compiled config", e);
+        }
+    }
+
+    /** Compiles a JSON config: {@code CompiledConfig <config.json> <config.bin>}. */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompiledConfig <config.json (classpath or file)> <output file>");
+            System.exit(2);
+        }
+        RateLimitFile file = new ConfigLoader().loadFromClasspathOrFile(args[0]);
+        Path out = Path.of(args[1]);
+        if (out.toAbsolutePath().getParent() != null) Files.createDirectories(out.toAbsolutePath().getParent());
+        try (OutputStream os = Files.newOutputStream(out)) {
+            write(file, os);
+        }
+        System.out.printf("Compiled %d limits from %s into %s (%d bytes)%n", file.limits.size(), args[0], out, Files.size(out));
+    }
+}
@@ -2,6 +2,7 @@ package com.redwood.example.ratelimiter.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -10,26 +11,39 @@ import static com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
 
 
 /**
- * Loads the JSON rate-limit configuration either from:
+ * Loads the rate-limit configuration either from:
  *  - classpath resource (e.g.config.json)
  *  - or directly from a file system path.
+ * Either may be JSON or a {@link CompiledConfig}, told apart by the file's header; the JSON mapper is only
+ * created when a JSON file is read.
  */
 public final class ConfigLoader {
 
-    private final ObjectMapper mapper = JsonMapper.builder().build();
+    private volatile ObjectMapper mapper;
 
     public RateLimitFile loadFromClasspathOrFile(String resourceOrPath) throws IOException {
         // Try reading from classpath first
         InputStream cp = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourceOrPath);
         if (cp != null) {
             try (cp) {
-                return mapper.readValue(cp, RateLimitFile.class);
+                return read(cp);
             }
         }
 
         // Fallback to file system path
         try(InputStream fs = Files.newInputStream(Paths.get(resourceOrPath))) {
-            return mapper.readValue(fs, RateLimitFile.class);
+            return read(fs);
         }
     }
+
+    private RateLimitFile read(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(4);
+        byte[] header = buffered.readNBytes(4);
+        buffered.reset();
+        if (CompiledConfig.isCompiled(header)) return CompiledConfig.read(buffered);
+        ObjectMapper json = mapper;
+        if (json == null) mapper = json = JsonMapper.builder().build();
+        return json.readValue(buffered, RateLimitFile.class);
+    }
 }
@@ -0,0 +1,90 @@
+package com.redwood.example.ratelimiter.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+
+/**
+ * Watches one config file through an NIO {@link WatchService} and runs a callback when it changes.
+ * - The parent directory is watched, so editors that replace the file (write + rename) are noticed too.
+ * - Events are debounced: the callback runs once the file has been quiet for {@code quietMs},
+ *   so a save that arrives as several events triggers a single reload.
+ * - The callback runs on the watcher's own daemon thread, never on a request thread.
+ */
+public final class ConfigWatcher implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    private final Path file;
+    private final long quietMs;
+    private final Runnable onChange;
+
+    private WatchService watcher;
+    private Thread loop;
+    private volatile boolean running;
+
+    public ConfigWatcher(Path file, long quietMs, Runnable onChange) {
+        this.file = Objects.requireNonNull(file).toAbsolutePath().normalize();
+        this.quietMs = quietMs;
+        this.onChange = Objects.requireNonNull(onChange);
+    }
+
+    /** Registers the watch and starts the watcher thread. */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        if (!Files.isRegularFile(file)) throw new IOException("Config file to watch not found: " + file);
+        watcher = file.getFileSystem().newWatchService();
+        file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+
+        running = true;
+        loop = new Thread(this::run, "config-watcher");
+        loop.setDaemon(true);
+        loop.start();
+        LOG.info("Watching {} for rate-limit changes", file);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                WatchKey key = watcher.take();
+                boolean changed = drain(key);
+                // Keep collecting until the file has been quiet, then fire once
+                while (changed && (key = watcher.poll(quietMs, TimeUnit.MILLISECONDS)) != null) drain(key);
+                if (changed && running) onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /** Consumes the key's events and re-arms it; true if one of them concerns the watched file. */
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name && file.getFileName().equals(name)) changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        if (watcher != null) watcher.close();
+        if (loop != null) loop.interrupt();
+    }
+}
@@ -2,6 +2,8 @@ package com.redwood.example.ratelimiter.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /** Holds POJOs for deserializing config.json rate-limit settings. */
 public final class LimitModels {
@@ -18,12 +20,219 @@ public final class LimitModels {
         @JsonProperty("bucket-size")
         public long bucketSize;
 
+        /** Limiting algorithm; {@link #mode} picks among the token bucket implementations. */
+        @JsonProperty("algorithm")
+        public Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+        /** Limiter implementation backing this entry; defaults to the AtomicReference based bucket. */
+        @JsonProperty("mode")
+        public LimiterMode mode = LimiterMode.ATOMIC;
+
+        /** Striped mode only: number of cells, 0 means one per available processor. */
+        @JsonProperty("stripes")
+        public int stripes;
+
+        /** Striped mode only: tokens below which a cell is not borrowed from (0 = exact aggregate). */
+        @JsonProperty("stripe-tolerance")
+        public double stripeTolerance;
+
+        /** Cluster mode only: tokens a node takes from the shared store at once; 0 means a tenth of the bucket. */
+        @JsonProperty("lease-size")
+        public long leaseSize;
+
+        /** Cluster mode only: how long an acquire may wait for a lease refill; 0 denies at once when the lease is spent. */
+        @JsonProperty("lease-wait-ms")
+        public long leaseWaitMs;
+
+        /** Cluster mode only: share of the limit a node enforces alone while the store is down; 0 denies instead. */
+        @JsonProperty("fallback-share")
+        public double fallbackShare;
+
+        /** Gives every client key (tenant, API key, IP) its own bucket instead of one shared bucket. */
+        @JsonProperty("per-key")
+        public boolean perKey;
+
+        /** Per-key only: maximum number of key buckets held at once. */
+        @JsonProperty("max-keys")
+        public long maxKeys = 1_000_000;
+
+        /** Per-key only: where the per-key buckets are kept. */
+        @JsonProperty("key-store")
+        public KeyStoreType keyStore = KeyStoreType.HEAP;
+
+        /** Adapts the refill rate to downstream latency and errors reported on {@code /api/feedback}; absent keeps it fixed. */
+        @JsonProperty("adaptive")
+        public AdaptivePolicy adaptive;
+
+        /** Adaptive only: lowest refill rate the controller may set; 0 means a tenth of {@code refill-rate}. */
+        @JsonProperty("min-rate")
+        public double minRate;
+
+        /** Adaptive only: highest refill rate the controller may set; 0 means {@code refill-rate}, so it only backs off. */
+        @JsonProperty("max-rate")
+        public double maxRate;
+
+        /** Adaptive only: mean downstream latency above which the rate goes down; 0 reacts to errors only (aimd). */
+        @JsonProperty("target-latency-ms")
+        public double targetLatencyMs;
+
+        /** Adaptive only: share of failed downstream calls above which the rate goes down. */
+        @JsonProperty("max-error-rate")
+        public double maxErrorRate = 0.05;
+
+        /** AIMD only: tokens per second added after a healthy interval; 0 means a twentieth of {@code max-rate - min-rate}. */
+        @JsonProperty("rate-increase")
+        public double rateIncrease;
+
+        /** AIMD only: factor the rate is multiplied by after an unhealthy interval. */
+        @JsonProperty("rate-decrease")
+        public double rateDecrease = 0.7;
+
+        /**
+         * Tokens one request governed by this entry costs, e.g. 10 for a report export and 0.5 for a cached lookup;
+         * charged on every level of its {@code parents} too. Fractions are charged exactly by token-bucket and
+         * gcra limiters (any mode but {@code cluster}), rounded up by the others.
+         */
+        @JsonProperty("cost")
+        public double cost = 1;
+
+        /** Cost per HTTP method ({@code GET}, {@code POST}, ...) of the checked request, instead of {@link #cost}. */
+        @JsonProperty("method-costs")
+        public Map<String, Double> methodCosts = Map.of();
+
+        /**
+         * Other entries every request of this one also counts against, by their {@code endpoint}: typically a
+         * {@code @}-scope (an entry that is only ever a parent, e.g. a per-key {@code @tenant}) and {@code *}.
+         * Parents' own parents apply too.
+         */
+        @JsonProperty("parents")
+        public List<String> parents = List.of();
+
+        /**
+         * Candidate limits evaluated on this entry's traffic without affecting any response, to see what they
+         * would deny before enforcing them.
+         */
+        @JsonProperty("shadow")
+        public List<ShadowEntry> shadow = List.of();
+
+        /**
+         * Entries are equal when they would build identical limiters; a config reload keeps those untouched.
+         * {@link #cost}, {@link #methodCosts}, {@link #parents} and {@link #shadow} are not compared, so a reload
+         * that only reprices, re-parents or changes the shadow candidates keeps the buckets too.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RateLimitEntry e)) return false;
+            return Objects.equals(endpoint, e.endpoint) && Double.compare(refillRate, e.refillRate) == 0
+                    && bucketSize == e.bucketSize && algorithm == e.algorithm && mode == e.mode && stripes == e.stripes
+                    && Double.compare(stripeTolerance, e.stripeTolerance) == 0 && perKey == e.perKey
+                    && maxKeys == e.maxKeys && keyStore == e.keyStore && leaseSize == e.leaseSize
+                    && leaseWaitMs == e.leaseWaitMs && Double.compare(fallbackShare, e.fallbackShare) == 0
+                    && adaptive == e.adaptive && Double.compare(minRate, e.minRate) == 0 && Double.compare(maxRate, e.maxRate) == 0
+                    && Double.compare(targetLatencyMs, e.targetLatencyMs) == 0 && Double.compare(maxErrorRate, e.maxErrorRate) == 0
+                    && Double.compare(rateIncrease, e.rateIncrease) == 0 && Double.compare(rateDecrease, e.rateDecrease) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, refillRate, bucketSize, algorithm, mode, stripes, stripeTolerance, perKey, maxKeys, keyStore,
+                    leaseSize, leaseWaitMs, fallbackShare, adaptive, minRate, maxRate, targetLatencyMs, maxErrorRate, rateIncrease, rateDecrease);
+        }
+
         @Override
         public String toString() {
-            return "RateLimitEntry{endpoint= '%s', bucketSize= %d, refillRate= %.2f}".formatted(endpoint, bucketSize, refillRate);
+            return "RateLimitEntry{endpoint= '%s', bucketSize= %d, refillRate= %.2f, algorithm= %s, mode= %s, perKey= %s, keyStore= %s}".formatted(endpoint, bucketSize, refillRate, algorithm, mode, perKey, keyStore);
         }
     }
 
+    /** A candidate limit evaluated in the shadow of an entry, see {@link RateLimitEntry#shadow}. */
+    public static final class ShadowEntry {
+
+        /** Label of the candidate in metrics; unique within its entry. */
+        @JsonProperty("name")
+        public String name;
+
+        @JsonProperty("refill-rate")
+        public double refillRate;
+
+        @JsonProperty("bucket-size")
+        public long bucketSize;
+
+        @JsonProperty("algorithm")
+        public Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+        /** Evaluates every client key against its own candidate bucket (token-bucket or gcra). */
+        @JsonProperty("per-key")
+        public boolean perKey;
+
+        /** Per-key only: maximum number of candidate key buckets held at once. */
+        @JsonProperty("max-keys")
+        public long maxKeys = 100_000;
+
+        /** Candidates are equal when they would build identical limiters; a reload keeps those and their counts. */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ShadowEntry e)) return false;
+            return Objects.equals(name, e.name) && Double.compare(refillRate, e.refillRate) == 0 && bucketSize == e.bucketSize
+                    && algorithm == e.algorithm && perKey == e.perKey && maxKeys == e.maxKeys;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, refillRate, bucketSize, algorithm, perKey, maxKeys);
+        }
+
+        @Override
+        public String toString() {
+            return "ShadowEntry{name= '%s', bucketSize= %d, refillRate= %.2f, algorithm= %s, perKey= %s}".formatted(name, bucketSize, refillRate, algorithm, perKey);
+        }
+    }
+
+    /**
+     * Selects the limiting algorithm of an entry. All read {@code bucket-size} as the burst / window limit and
+     * {@code refill-rate} as the sustained rate; the sliding windows are {@code bucket-size / refill-rate} seconds long.
+     */
+    public enum Algorithm {
+        /** Token bucket, implementation chosen by {@link LimiterMode}. */
+        @JsonProperty("token-bucket") TOKEN_BUCKET,
+        /** {@code GcraRateLimiter}: token bucket semantics from a single theoretical-arrival-time long. */
+        @JsonProperty("gcra") GCRA,
+        /** {@code SlidingWindowLogRateLimiter}: exact count of grants in the sliding window, one slot per permit. */
+        @JsonProperty("sliding-log") SLIDING_LOG,
+        /** {@code SlidingWindowCounterRateLimiter}: sliding window estimated from two fixed-window counters. */
+        @JsonProperty("sliding-window") SLIDING_WINDOW
+    }
+
+    /** Selects which token bucket implementation a limit entry is built with. */
+    public enum LimiterMode {
+        /** {@code LocalTokenBucketRateLimiter}: immutable state object swapped via AtomicReference. */
+        @JsonProperty("atomic") ATOMIC,
+        /** {@code PackedTokenBucketRateLimiter}: single primitive long, allocation-free single CAS. */
+        @JsonProperty("packed") PACKED,
+        /** {@code StripedTokenBucketRateLimiter}: capacity split over per-core cells that borrow from each other. */
+        @JsonProperty("striped") STRIPED,
+        /** {@code LeasedRateLimiter}: bucket shared by all instances in a central token store, spent from local leases. */
+        @JsonProperty("cluster") CLUSTER
+    }
+
+    /** Control law of an adaptive entry; both move the refill rate once per {@code ratelimiter.adaptive.interval-ms}. */
+    public enum AdaptivePolicy {
+        /** Additive increase while healthy, multiplicative decrease ({@code rate-decrease}) when latency or errors are too high. */
+        @JsonProperty("aimd") AIMD,
+        /** Moves the rate by the ratio of {@code target-latency-ms} to the observed mean latency, halved per interval. */
+        @JsonProperty("gradient") GRADIENT
+    }
+
+    /** Selects the storage backing per-key buckets. */
+    public enum KeyStoreType {
+        /** {@code HeapKeyedBucketStore}: lock-striped primitive arrays on the Java heap, sized on demand. */
+        @JsonProperty("heap") HEAP,
+        /** {@code OffHeapKeyedBucketStore}: lock-free table in direct memory, reserved up front; no GC cost per key. */
+        @JsonProperty("off-heap") OFF_HEAP
+    }
+
     /** Wrapper for the whole JSON structure: list of rate-limit entries. */
     public static final class RateLimitFile {
         @JsonProperty("limits")
@@ -0,0 +1,24 @@
+package com.redwood.example.ratelimiter.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+
+/**
+ * Native-image hints for reading the config: {@link ConfigLoader} binds {@link LimitModels} with Jackson outside
+ * any bean Spring's AOT processing could inspect, so the reflection it needs is declared here, for every model
+ * and enum nested in {@link LimitModels} (new ones are covered without touching this class).
+ * The bundled {@code config.json} and a compiled {@code config.bin} next to it are kept as resources.
+ */
+public final class LimitModelsRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> model : LimitModels.class.getDeclaredClasses()) {
+            hints.reflection().registerType(model, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.PUBLIC_FIELDS,
+                    MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        hints.resources().registerPattern("config.json").registerPattern("config.bin");
+    }
+}
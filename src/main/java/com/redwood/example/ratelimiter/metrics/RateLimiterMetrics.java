@@ -0,0 +1,195 @@
+package com.redwood.example.ratelimiter.metrics;
+
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
+import com.redwood.example.ratelimiter.service.AdaptiveControl;
+import com.redwood.example.ratelimiter.service.DecisionStats;
+import com.redwood.example.ratelimiter.service.LimitRule;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import com.redwood.example.ratelimiter.service.ShadowLimits;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+
+/**
+ * Publishes per-endpoint limiter metrics to Micrometer (and from there to Actuator / Prometheus).
+ * - Decision and contention counters are read from the limiters' own {@code LongAdder}s when scraped
+ *   ({@link FunctionCounter}), so the acquire path never calls into Micrometer for them.
+ * - Latency goes to a {@link Timer} with HDR-histogram percentiles and Prometheus buckets, fed by a
+ *   sample of acquires (see {@link DecisionStats#timeAcquires}).
+ * - Meters are registered for new rules and removed for dropped ones after every config reload; shadow
+ *   meters likewise follow the candidates, which a reload may change without changing the rule.
+ *
+ * <pre>
+ * ratelimiter.decisions{endpoint, outcome=allowed|denied}   counter
+ * ratelimiter.contention.failures{endpoint}                 counter, denials caused by contention
+ * ratelimiter.cas.retries{endpoint}                         counter, retried CAS on the shared bucket
+ * ratelimiter.tokens{endpoint}                              gauge, tokens in the shared bucket
+ * ratelimiter.keys{endpoint}                                gauge, client buckets of per-key rules
+ * ratelimiter.refill.rate{endpoint}                         gauge, current refill rate of adaptive rules
+ * ratelimiter.acquire.latency{endpoint}                     timer (sampled)
+ * ratelimiter.shadow.requests{endpoint}                     counter, decisions replayed against shadow candidates
+ * ratelimiter.shadow.dropped{endpoint}                      counter, decisions not replayed (evaluator queue full)
+ * ratelimiter.shadow.denied{endpoint, limit=actual|name}    counter, replayed requests denied by the limit / candidate
+ * ratelimiter.shadow.extra.denials{endpoint, limit=name}    counter, requests a candidate denies that were allowed
+ * </pre>
+ */
+public final class RateLimiterMetrics implements MeterBinder {
+
+    private final RateLimiterRegistry registry;
+    private final int latencySampleEvery;
+    private final Map<String, List<Meter>> meters = new HashMap<>();
+    /** Keyed by endpoint and candidate name; the endpoint's own shadow meters under {@link ShadowLimits#ACTUAL}. */
+    private final Map<List<String>, List<Meter>> shadowMeters = new HashMap<>();
+    private MeterRegistry meterRegistry;
+
+    /** @param latencySampleEvery time one acquire in this many (rounded up to a power of two). */
+    public RateLimiterMetrics(RateLimiterRegistry registry, int latencySampleEvery) {
+        this.registry = Objects.requireNonNull(registry);
+        this.latencySampleEvery = latencySampleEvery;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry meterRegistry) {
+        if (this.meterRegistry != null) throw new IllegalStateException("Already bound");
+        this.meterRegistry = meterRegistry;
+        refresh();
+        registry.addReloadListener(this::refresh);
+    }
+
+    /** Brings the registered meters in line with the registry's current rules. */
+    synchronized void refresh() {
+        Set<String> live = new HashSet<>();
+        for (LimitRule rule : registry.rules()) {
+            live.add(rule.endpoint());
+            meters.computeIfAbsent(rule.endpoint(), endpoint -> register(rule));
+        }
+        meters.entrySet().removeIf(e -> {
+            if (live.contains(e.getKey())) return false;
+            e.getValue().forEach(meterRegistry::remove);
+            return true;
+        });
+
+        Set<List<String>> liveShadows = new HashSet<>();
+        for (ShadowLimits shadow : registry.shadows()) {
+            String endpoint = shadow.endpoint();
+            liveShadows.add(List.of(endpoint, ShadowLimits.ACTUAL));
+            shadowMeters.computeIfAbsent(List.of(endpoint, ShadowLimits.ACTUAL), key -> registerShadow(endpoint));
+            for (ShadowLimits.Candidate c : shadow.candidates()) {
+                liveShadows.add(List.of(endpoint, c.name()));
+                shadowMeters.computeIfAbsent(List.of(endpoint, c.name()), key -> registerCandidate(endpoint, c.name()));
+            }
+        }
+        shadowMeters.entrySet().removeIf(e -> {
+            if (liveShadows.contains(e.getKey())) return false;
+            e.getValue().forEach(meterRegistry::remove);
+            return true;
+        });
+    }
+
+    private List<Meter> register(LimitRule rule) {
+        String endpoint = rule.endpoint();
+        Tags tags = Tags.of("endpoint", endpoint);
+        List<Meter> registered = new ArrayList<>();
+
+        DecisionStats stats = rule.stats();
+        if (stats != null) {
+            registered.add(FunctionCounter.builder("ratelimiter.decisions", stats, DecisionStats::allowed)
+                    .tags(tags).tag("outcome", "allowed").description("Acquires granted").register(meterRegistry));
+            registered.add(FunctionCounter.builder("ratelimiter.decisions", stats, DecisionStats::denied)
+                    .tags(tags).tag("outcome", "denied").description("Acquires denied, including contention failures").register(meterRegistry));
+
+            Timer latency = Timer.builder("ratelimiter.acquire.latency")
+                    .tags(tags).description("Sampled acquire latency")
+                    .publishPercentiles(0.5, 0.99, 0.999).publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100)).maximumExpectedValue(Duration.ofMillis(10))
+                    .register(meterRegistry);
+            registered.add(latency);
+            stats.timeAcquires(nanos -> latency.record(nanos, TimeUnit.NANOSECONDS), latencySampleEvery);
+        }
+
+        // The limiters behind an endpoint are replaced by reloads, so these resolve the current rule on every read
+        registered.add(FunctionCounter.builder("ratelimiter.contention.failures", registry,
+                        current(endpoint, r -> r.shared().contentionFailures()))
+                .tags(tags).description("Acquires denied because of contention, not a lack of tokens").register(meterRegistry));
+        registered.add(FunctionCounter.builder("ratelimiter.cas.retries", registry, current(endpoint, r -> r.shared().casRetries()))
+                .tags(tags).description("Retried compare-and-set attempts on the shared bucket").register(meterRegistry));
+        registered.add(Gauge.builder("ratelimiter.tokens", registry, current(endpoint, r -> r.shared().available()))
+                .tags(tags).description("Tokens in the shared bucket").register(meterRegistry));
+        if (rule.perKey() != null) {
+            registered.add(Gauge.builder("ratelimiter.keys", registry, current(endpoint, r -> {
+                        KeyedBucketStore store = r.perKey();
+                        return store == null ? Double.NaN : store.size();
+                    }))
+                    .tags(tags).description("Client buckets held by the per-key rule").register(meterRegistry));
+        }
+        if (rule.adaptive() != null) {
+            registered.add(Gauge.builder("ratelimiter.refill.rate", registry, current(endpoint, r -> {
+                        AdaptiveControl adaptive = r.adaptive();
+                        return adaptive == null ? Double.NaN : adaptive.rate();
+                    }))
+                    .tags(tags).description("Refill rate the adaptive rule currently enforces, tokens per second").register(meterRegistry));
+        }
+        return registered;
+    }
+
+    private List<Meter> registerShadow(String endpoint) {
+        Tags tags = Tags.of("endpoint", endpoint);
+        return List.of(
+                FunctionCounter.builder("ratelimiter.shadow.requests", registry, currentShadow(endpoint, ShadowLimits::evaluated))
+                        .tags(tags).description("Decisions replayed against the shadow candidates").register(meterRegistry),
+                FunctionCounter.builder("ratelimiter.shadow.dropped", registry, currentShadow(endpoint, ShadowLimits::dropped))
+                        .tags(tags).description("Decisions not replayed because the shadow evaluator fell behind").register(meterRegistry),
+                FunctionCounter.builder("ratelimiter.shadow.denied", registry, currentShadow(endpoint, ShadowLimits::actualDenied))
+                        .tags(tags).tag("limit", ShadowLimits.ACTUAL).description("Replayed requests denied").register(meterRegistry));
+    }
+
+    private List<Meter> registerCandidate(String endpoint, String name) {
+        Tags tags = Tags.of("endpoint", endpoint, "limit", name);
+        return List.of(
+                FunctionCounter.builder("ratelimiter.shadow.denied", registry, currentCandidate(endpoint, name, ShadowLimits.Candidate::denied))
+                        .tags(tags).description("Replayed requests denied").register(meterRegistry),
+                FunctionCounter.builder("ratelimiter.shadow.extra.denials", registry,
+                                currentCandidate(endpoint, name, ShadowLimits.Candidate::deniedAllowed))
+                        .tags(tags).description("Replayed requests the candidate denies that the enforcing limit allowed").register(meterRegistry));
+    }
+
+    private static ToDoubleFunction<RateLimiterRegistry> currentShadow(String endpoint, ToDoubleFunction<ShadowLimits> value) {
+        return registry -> {
+            ShadowLimits shadow = registry.shadow(endpoint);
+            return shadow == null ? Double.NaN : value.applyAsDouble(shadow);
+        };
+    }
+
+    private static ToDoubleFunction<RateLimiterRegistry> currentCandidate(String endpoint, String name,
+                                                                          ToDoubleFunction<ShadowLimits.Candidate> value) {
+        return currentShadow(endpoint, shadow -> {
+            for (ShadowLimits.Candidate c : shadow.candidates()) {
+                if (c.name().equals(name)) return value.applyAsDouble(c);
+            }
+            return Double.NaN;
+        });
+    }
+
+    private static ToDoubleFunction<RateLimiterRegistry> current(String endpoint, ToDoubleFunction<LimitRule> value) {
+        return registry -> {
+            LimitRule rule = registry.rule(endpoint);
+            return rule == null ? Double.NaN : value.applyAsDouble(rule);
+        };
+    }
+}
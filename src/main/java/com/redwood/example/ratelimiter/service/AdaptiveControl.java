@@ -0,0 +1,120 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.config.LimitModels.AdaptivePolicy;
+import com.redwood.example.ratelimiter.config.LimitModels.Algorithm;
+import com.redwood.example.ratelimiter.config.LimitModels.LimiterMode;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.ratelimit.AdaptiveRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Feedback loop of one adaptive rule: callers report how the downstream calls they made went, and
+ * {@link #adjust()}, run on a schedule, moves the rule's refill rate within its bounds.
+ * - Reports only add to {@link LongAdder}s and the rate is derived from their sums once per interval, so
+ *   neither reporting nor acquiring ever waits on the controller.
+ * - An interval without reports leaves the rate where it is.
+ */
+public final class AdaptiveControl {
+
+    /** Gradient: share of the gap to the rate the latency ratio points at that is closed per interval. */
+    private static final double SMOOTHING = 0.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double MAX_GRADIENT = 2;
+
+    private final AdaptiveRateLimiter limiter;
+    private final AdaptivePolicy policy;
+    private final double targetLatencyNanos;
+    private final double maxErrorRate;
+    private final double increase;
+    private final double decrease;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timedCalls = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    private AdaptiveControl(AdaptiveRateLimiter limiter, RateLimitEntry e) {
+        this.limiter = limiter;
+        this.policy = e.adaptive;
+        this.targetLatencyNanos = e.targetLatencyMs * 1_000_000d;
+        this.maxErrorRate = e.maxErrorRate;
+        this.increase = e.rateIncrease > 0 ? e.rateIncrease
+                : Math.max((limiter.maxRefillPerSecond() - limiter.minRefillPerSecond()) / 20, limiter.minRefillPerSecond() / 20);
+        this.decrease = e.rateDecrease;
+    }
+
+    /** Builds the limiter and loop of an adaptive entry; rejects settings adaptation cannot apply to. */
+    static AdaptiveControl of(RateLimitEntry e, LocalTokenBucketRateLimiter.Config cfg) {
+        if ((e.algorithm != null && e.algorithm != Algorithm.TOKEN_BUCKET)
+                || (e.mode != null && e.mode != LimiterMode.ATOMIC && e.mode != LimiterMode.PACKED))
+            throw new IllegalArgumentException("Adaptive limits are single-node token buckets (mode atomic or packed): " + e.endpoint);
+        if (e.perKey)
+            throw new IllegalArgumentException("Adaptive limits adapt the shared bucket and cannot be per-key: " + e.endpoint);
+        if (e.maxErrorRate < 0 || e.maxErrorRate > 1 || e.rateDecrease <= 0 || e.rateDecrease >= 1)
+            throw new IllegalArgumentException("'max-error-rate' must be in [0, 1] and 'rate-decrease' in (0, 1): " + e.endpoint);
+        if (e.adaptive == AdaptivePolicy.GRADIENT && e.targetLatencyMs <= 0)
+            throw new IllegalArgumentException("Gradient control needs 'target-latency-ms': " + e.endpoint);
+
+        double min = e.minRate > 0 ? e.minRate : e.refillRate / 10;
+        double max = e.maxRate > 0 ? e.maxRate : Math.max(e.refillRate, min);
+        AdaptiveRateLimiter limiter;
+        try {
+            limiter = new AdaptiveRateLimiter(cfg, min, max);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(ex.getMessage() + ": " + e.endpoint, ex);
+        }
+        return new AdaptiveControl(limiter, e);
+    }
+
+    /**
+     * Records {@code calls} downstream calls, {@code errors} of which failed, that took {@code meanLatencyMs}
+     * on average (NaN when not measured).
+     */
+    public void report(long calls, long errors, double meanLatencyMs) {
+        if (calls <= 0 || errors < 0 || errors > calls || meanLatencyMs < 0)
+            throw new IllegalArgumentException("Expected calls > 0, 0 <= errors <= calls and a latency >= 0");
+        this.calls.add(calls);
+        this.errors.add(errors);
+        if (!Double.isNaN(meanLatencyMs)) {
+            timedCalls.add(calls);
+            latencyNanos.add(Math.round(meanLatencyMs * 1_000_000d * calls));
+        }
+    }
+
+    /** The rule's bucket. */
+    public AdaptiveRateLimiter limiter() { return limiter; }
+
+    /** Current refill rate. */
+    public double rate() { return limiter.refillPerSecond(); }
+
+    public AdaptivePolicy policy() { return policy; }
+
+    /** Moves the rate by what was reported since the last call; returns the rate now in force. */
+    double adjust() {
+        long n = calls.sumThenReset();
+        long failed = errors.sumThenReset();
+        long timed = timedCalls.sumThenReset();
+        long latency = latencyNanos.sumThenReset();
+        double rate = limiter.refillPerSecond();
+        if (n == 0) return rate;
+
+        double errorRate = (double) failed / n;
+        double meanLatency = timed == 0 ? Double.NaN : (double) latency / timed;
+        boolean failing = errorRate > maxErrorRate;
+        boolean slow = targetLatencyNanos > 0 && meanLatency > targetLatencyNanos;
+
+        double next = switch (policy) {
+            case AIMD -> failing || slow ? rate * decrease : rate + increase;
+            case GRADIENT -> {
+                double gradient = timed == 0 ? 1
+                        : Math.max(MIN_GRADIENT, Math.min(MAX_GRADIENT, targetLatencyNanos / Math.max(1, meanLatency)));
+                if (failing) gradient = Math.min(gradient, Math.max(MIN_GRADIENT, 1 - errorRate));
+                yield rate + SMOOTHING * (rate * gradient - rate);
+            }
+        };
+        return limiter.setRefillPerSecond(next);
+    }
+}
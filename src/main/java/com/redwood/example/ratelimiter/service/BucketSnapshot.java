@@ -0,0 +1,236 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore.BucketVisitor;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Saves the token state of every bucket in a {@link RateLimiterRegistry} to a compact binary file and
+ * restores it on startup, so a restart does not hand every client a full bucket.
+ * - Buckets are stored as tokens at a wall-clock instant rather than as monotonic {@code nanoTime} stamps,
+ *   which mean nothing in another JVM; on restore the wall time that passed is refilled at the current rate.
+ * - Full buckets are indistinguishable from fresh ones and are skipped, so the file only holds the
+ *   clients that were actually limited.
+ * - The file is written sequentially to a temporary file and atomically moved into place: a crash
+ *   mid-save leaves the previous snapshot intact.
+ * - Saving only reads limiter state; shared buckets and off-heap stores are read lock-free and
+ *   on-heap stores copy one segment at a time, so acquires are never held up by a save.
+ * - Rules are matched by endpoint; a changed capacity is scaled like a config reload, and rules that
+ *   are no longer configured are ignored.
+ *
+ * <pre>
+ * file   : int magic | int version | long savedAtEpochMs | rule*  | byte END
+ * rule   : byte RULE | utf endpoint | long capacity | double refillPerSecond | float sharedTokens | bucket* | byte END
+ * bucket : byte KEY | utf key | float tokens    or    byte HASH | long keyHash | float tokens
+ * utf    : unsigned short length | UTF-8 bytes
+ * </pre>
+ */
+public final class BucketSnapshot {
+
+    private static final int MAGIC = 0x524C5353; // "RLSS"
+    private static final int VERSION = 1;
+    private static final byte END = 0;
+    private static final byte RULE = 1;
+    private static final byte KEY = 2;
+    private static final byte HASH = 3;
+    private static final int MAX_KEY_BYTES = 0xFFFF;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final double EPS = 1e-5;
+
+    /** What a save or restore covered. */
+    public record Stats(int rules, long buckets) {}
+
+    private final RateLimiterRegistry registry;
+    private final Path file;
+    private final LongSupplier wallClockMs;
+
+    public BucketSnapshot(RateLimiterRegistry registry, Path file) {
+        this(registry, file, System::currentTimeMillis);
+    }
+
+    BucketSnapshot(RateLimiterRegistry registry, Path file, LongSupplier wallClockMs) {
+        this.registry = Objects.requireNonNull(registry);
+        this.file = Objects.requireNonNull(file);
+        this.wallClockMs = Objects.requireNonNull(wallClockMs);
+    }
+
+    public Path file() { return file; }
+
+    /** Writes the current state of every rule; saves are serialized so they never interleave on the temp file. */
+    public synchronized Stats save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        int rules = 0;
+        long buckets = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(wallClockMs.getAsLong());
+            for (LimitRule rule : registry.rules()) {
+                buckets += writeRule(out, rule);
+                rules++;
+            }
+            out.writeByte(END);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Stats(rules, buckets);
+    }
+
+    private static long writeRule(DataOutputStream out, LimitRule rule) throws IOException {
+        RateLimiter shared = rule.shared();
+        double capacity = shared.capacity();
+        out.writeByte(RULE);
+        writeUtf(out, rule.endpoint());
+        out.writeLong(shared.capacity());
+        out.writeDouble(shared.refillPerSecond());
+        out.writeFloat((float) shared.available());
+
+        long[] written = new long[1];
+        KeyedBucketStore store = rule.perKey();
+        if (store != null) {
+            store.forEachBucket(new BucketVisitor() {
+                @Override
+                public void key(String key, double tokens) {
+                    byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                    if (tokens + EPS >= capacity || bytes.length > MAX_KEY_BYTES) return;
+                    try {
+                        out.writeByte(KEY);
+                        out.writeShort(bytes.length);
+                        out.write(bytes);
+                        out.writeFloat((float) tokens);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    written[0]++;
+                }
+
+                @Override
+                public void hash(long keyHash, double tokens) {
+                    if (tokens + EPS >= capacity) return;
+                    try {
+                        out.writeByte(HASH);
+                        out.writeLong(keyHash);
+                        out.writeFloat((float) tokens);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    written[0]++;
+                }
+            });
+        }
+        out.writeByte(END);
+        return written[0];
+    }
+
+    /**
+     * Loads the snapshot into the registry's current rules. A missing file restores nothing;
+     * a corrupt or foreign one throws (buckets read before the damage keep their restored state).
+     */
+    public Stats restore() throws IOException {
+        Map<String, LimitRule> byEndpoint = new HashMap<>();
+        for (LimitRule rule : registry.rules()) byEndpoint.put(rule.endpoint(), rule);
+
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES));
+        } catch (NoSuchFileException e) {
+            return new Stats(0, 0);
+        }
+
+        int rules = 0;
+        long buckets = 0;
+        try (in) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a bucket snapshot: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            double elapsedSeconds = Math.max(0, wallClockMs.getAsLong() - in.readLong()) / 1000d;
+
+            for (byte tag; (tag = in.readByte()) != END; ) {
+                if (tag != RULE) throw new IOException("Corrupt snapshot, unexpected tag " + tag + ": " + file);
+                LimitRule rule = byEndpoint.get(readUtf(in));
+                long oldCapacity = in.readLong();
+                in.readDouble(); // old refill rate, the current one refills the elapsed time
+                float sharedTokens = in.readFloat();
+
+                if (rule != null) {
+                    RateLimiter shared = rule.shared();
+                    shared.setAvailable(restored(sharedTokens, oldCapacity, shared.capacity(), shared.refillPerSecond(), elapsedSeconds));
+                    rules++;
+                }
+                buckets += readBuckets(in, rule == null ? null : rule.perKey(), oldCapacity, elapsedSeconds);
+            }
+        }
+        return new Stats(rules, buckets);
+    }
+
+    /** Reads one rule's buckets, applying them to {@code store} (null skips them); returns how many were applied. */
+    private long readBuckets(DataInputStream in, KeyedBucketStore store, long oldCapacity, double elapsedSeconds) throws IOException {
+        long applied = 0;
+        byte[] buffer = new byte[256];
+        for (byte tag; (tag = in.readByte()) != END; ) {
+            String key = null;
+            long keyHash = 0;
+            if (tag == KEY) {
+                int length = in.readUnsignedShort();
+                if (buffer.length < length) buffer = new byte[length];
+                in.readFully(buffer, 0, length);
+                if (store != null) key = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            } else if (tag == HASH) {
+                keyHash = in.readLong();
+            } else {
+                throw new IOException("Corrupt snapshot, unexpected tag " + tag + ": " + file);
+            }
+            float tokens = in.readFloat();
+            if (store == null) continue;
+
+            double restored = restored(tokens, oldCapacity, store.capacity(), store.refillPerSecond(), elapsedSeconds);
+            if (restored + EPS >= store.capacity()) continue; // would be a fresh bucket anyway
+            if (key != null) {
+                store.setAvailable(key, restored);
+                applied++;
+            } else if (store.setAvailableByHash(keyHash, restored)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /** Saved tokens scaled to the current capacity, plus the refill of the wall time since the save. */
+    private static double restored(double tokens, long oldCapacity, long capacity, double refillPerSecond, double elapsedSeconds) {
+        return Math.min(capacity, tokens / oldCapacity * capacity + elapsedSeconds * refillPerSecond);
+    }
+
+    private static void writeUtf(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_KEY_BYTES) throw new IOException("Endpoint too long for a snapshot: " + s);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readUtf(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Tokens charged to callers that may later give part of them back (leases, up-front charges).
+ * - Every charge gets an unguessable ID; a return names it and is capped at what is still outstanding on it,
+ *   so no caller can put back more than it was charged. A settlement gives back all but the used part at once
+ *   and closes the charge.
+ * - Entries are updated with compare-and-set on the map, so racing returns of one charge never both succeed
+ *   for the same tokens.
+ * - A charge is forgotten once fully returned, settled or expired; the tokens of an expired charge stay spent.
+ * - At most {@code maxOpen} charges are kept; when full, expired ones are swept (at most every
+ *   {@link #SWEEP_INTERVAL_NS}) and a charge that still does not fit is refused.
+ */
+public final class ChargeLedger {
+
+    /** What a return gave back, and to which limiter. */
+    public record Refund(RateLimiter limiter, double tokens) {}
+
+    private record Charge(RateLimiter limiter, double outstanding, long expiresNs) {}
+
+    static final long SWEEP_INTERVAL_NS = 100_000_000L;
+
+    private final Map<String, Charge> open = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final int maxOpen;
+    private final LongSupplier clock;
+    private volatile long nextSweepNs;
+
+    public ChargeLedger(int maxOpen) {
+        this(maxOpen, System::nanoTime);
+    }
+
+    public ChargeLedger(int maxOpen, LongSupplier clock) {
+        if (maxOpen <= 0) throw new IllegalArgumentException("maxOpen must be positive");
+        this.maxOpen = maxOpen;
+        this.clock = Objects.requireNonNull(clock);
+        this.nextSweepNs = clock.getAsLong();
+    }
+
+    /**
+     * Records {@code tokens} already charged to {@code limiter}, returnable for {@code ttlNanos}.
+     * @return the charge's ID, or null when the ledger is full
+     */
+    public String open(RateLimiter limiter, double tokens, long ttlNanos) {
+        long now = clock.getAsLong();
+        if (open.size() >= maxOpen) {
+            sweep(now);
+            if (open.size() >= maxOpen) return null;
+        }
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String id = HexFormat.of().formatHex(bytes);
+        open.put(id, new Charge(Objects.requireNonNull(limiter), tokens, now + ttlNanos));
+        return id;
+    }
+
+    /**
+     * Gives up to {@code tokens} of charge {@code id} back to its limiter.
+     * @return what was given back, or null for an unknown, expired, settled or fully returned charge
+     */
+    public Refund giveBack(String id, double tokens) {
+        return apply(id, tokens, false);
+    }
+
+    /**
+     * Closes charge {@code id}, giving back what is outstanding beyond the {@code used} tokens; a charge can be
+     * settled only once.
+     * @return what was given back, or null for an unknown, expired, settled or fully returned charge
+     */
+    public Refund settle(String id, double used) {
+        return apply(id, used, true);
+    }
+
+    /** {@code amount} is the tokens to give back, or with {@code settle} the ones to keep. */
+    private Refund apply(String id, double amount, boolean settle) {
+        if (id == null) return null;
+        long now = clock.getAsLong();
+        for (;;) {
+            Charge c = open.get(id);
+            if (c == null) return null;
+            if (now - c.expiresNs >= 0) {
+                open.remove(id, c);
+                return null;
+            }
+            double back = Math.max(0, settle ? c.outstanding - amount : Math.min(amount, c.outstanding));
+            double left = c.outstanding - back;
+            boolean applied = settle || left <= 0
+                    ? open.remove(id, c)
+                    : open.replace(id, c, new Charge(c.limiter, left, c.expiresNs));
+            if (applied) {
+                if (back > 0) c.limiter.refund(back);
+                return new Refund(c.limiter, back);
+            }
+        }
+    }
+
+    /** Charges currently open, expired ones not yet swept included. */
+    public int size() { return open.size(); }
+
+    private void sweep(long now) {
+        if (now - nextSweepNs < 0) return;
+        nextSweepNs = now + SWEEP_INTERVAL_NS;
+        open.values().removeIf(c -> now - c.expiresNs >= 0);
+    }
+}
@@ -0,0 +1,48 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.config.ConfigLoader;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry.ReloadResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+
+
+/**
+ * Re-reads the JSON config and applies it to a live {@link RateLimiterRegistry}.
+ * Triggered by the admin endpoint and, when enabled, by {@link com.redwood.example.ratelimiter.config.ConfigWatcher}.
+ * Parsing and building happen on the caller's thread; request threads only ever see the final swap.
+ */
+public final class ConfigReloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigReloader.class);
+
+    private final ConfigLoader loader;
+    private final String location;
+    private final RateLimiterRegistry registry;
+
+    public ConfigReloader(ConfigLoader loader, String location, RateLimiterRegistry registry) {
+        this.loader = Objects.requireNonNull(loader);
+        this.location = Objects.requireNonNull(location);
+        this.registry = Objects.requireNonNull(registry);
+    }
+
+    /** Loads the config and swaps it in; on any error the current config stays active and the error is thrown. */
+    public ReloadResult reload() throws IOException {
+        ReloadResult result = registry.reload(loader.loadFromClasspathOrFile(location));
+        LOG.info("Reloaded rate limits from {}: {}", location, result);
+        return result;
+    }
+
+    /** {@link #reload()} for background triggers: failures are logged instead of thrown. */
+    public void reloadQuietly() {
+        try {
+            reload();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring invalid rate-limit config {}, keeping the current one: {}", location, e.toString());
+        }
+    }
+
+    public String location() { return location; }
+}
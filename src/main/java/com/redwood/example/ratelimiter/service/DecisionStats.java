@@ -0,0 +1,45 @@
+package com.redwood.example.ratelimiter.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+
+/**
+ * Decision counters of one endpoint, shared by its shared bucket and all of its per-key buckets.
+ * - Counters are {@link LongAdder}s: concurrent acquires increment per-thread cells instead of
+ *   contending on one cache line, and the sum is only computed when metrics are scraped.
+ * - Acquire latency is timed for a random 1-in-{@code 2^n} sample of calls and only once a recorder
+ *   is attached, so unobserved endpoints never read the clock.
+ * - A config reload hands the same instance to the rule that replaces this one, so counters are continuous.
+ */
+public final class DecisionStats {
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private volatile LongConsumer latencyRecorder;
+    private volatile int sampleMask;
+
+    void record(boolean allowed) {
+        (allowed ? this.allowed : this.denied).increment();
+    }
+
+    /** Recorder for this call's latency in nanoseconds, or null when this call is not sampled. */
+    LongConsumer latencySample() {
+        LongConsumer recorder = latencyRecorder;
+        return recorder != null && (ThreadLocalRandom.current().nextInt() & sampleMask) == 0 ? recorder : null;
+    }
+
+    /**
+     * Starts timing acquires into {@code recorder} (nanoseconds), for one call in {@code sampleEvery};
+     * {@code sampleEvery} is rounded up to a power of two. A null recorder stops timing.
+     */
+    public void timeAcquires(LongConsumer recorder, int sampleEvery) {
+        this.sampleMask = Integer.highestOneBit(Math.max(1, sampleEvery) * 2 - 1) - 1;
+        this.latencyRecorder = recorder;
+    }
+
+    public long allowed() { return allowed.sum(); }
+
+    public long denied() { return denied.sum(); }
+}
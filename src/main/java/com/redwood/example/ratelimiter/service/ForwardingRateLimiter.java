@@ -0,0 +1,78 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * A limiter that hands every call to {@code delegate}; decorators override the acquires they observe.
+ * Everything is forwarded, defaults included, so the delegate's own implementations are used.
+ */
+abstract class ForwardingRateLimiter implements RateLimiter {
+
+    final RateLimiter delegate;
+
+    ForwardingRateLimiter(RateLimiter delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    @Override
+    public boolean tryAcquire() { return tryAcquire(1); }
+
+    @Override
+    public boolean tryAcquire(int permits) { return delegate.tryAcquire(permits); }
+
+    @Override
+    public boolean tryAcquire(double permits) { return delegate.tryAcquire(permits); }
+
+    @Override
+    public long tryAcquireUpTo(long max) { return delegate.tryAcquireUpTo(max); }
+
+    @Override
+    public long reserve(int permits, long maxWaitNanos) { return delegate.reserve(permits, maxWaitNanos); }
+
+    @Override
+    public boolean acquire(int permits, Duration timeout) throws InterruptedException { return delegate.acquire(permits, timeout); }
+
+    @Override
+    public CompletableFuture<Boolean> acquireAsync(int permits, Duration timeout) { return delegate.acquireAsync(permits, timeout); }
+
+    @Override
+    public long waitNanos(int permits) { return delegate.waitNanos(permits); }
+
+    @Override
+    public long remaining() { return delegate.remaining(); }
+
+    @Override
+    public long capacity() { return delegate.capacity(); }
+
+    @Override
+    public double refillPerSecond() { return delegate.refillPerSecond(); }
+
+    @Override
+    public void refund(int permits) { delegate.refund(permits); }
+
+    @Override
+    public void refund(double permits) { delegate.refund(permits); }
+
+    @Override
+    public void rollback(double permits) { delegate.rollback(permits); }
+
+    @Override
+    public double available() { return delegate.available(); }
+
+    @Override
+    public void setAvailable(double tokens) { delegate.setAvailable(tokens); }
+
+    @Override
+    public void release() { delegate.release(); }
+
+    @Override
+    public long casRetries() { return delegate.casRetries(); }
+
+    @Override
+    public long contentionFailures() { return delegate.contentionFailures(); }
+}
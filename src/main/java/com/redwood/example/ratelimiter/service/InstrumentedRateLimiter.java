@@ -0,0 +1,65 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+
+
+/** Counts the decisions of a limiter into its endpoint's {@link DecisionStats}; everything else is delegated. */
+final class InstrumentedRateLimiter extends ForwardingRateLimiter {
+
+    private final DecisionStats stats;
+
+    InstrumentedRateLimiter(RateLimiter delegate, DecisionStats stats) {
+        super(delegate);
+        this.stats = Objects.requireNonNull(stats);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) { return tryAcquire((double) permits); }
+
+    /** One decision, whatever it costs; its latency is timed for a sample of calls. */
+    @Override
+    public boolean tryAcquire(double permits) {
+        LongConsumer latency = stats.latencySample();
+        long start = latency == null ? 0 : System.nanoTime();
+        boolean allowed = delegate.tryAcquire(permits);
+        if (latency != null) latency.accept(System.nanoTime() - start);
+        stats.record(allowed);
+        return allowed;
+    }
+
+    /** Allowed when anything was taken. */
+    @Override
+    public long tryAcquireUpTo(long max) {
+        long taken = delegate.tryAcquireUpTo(max);
+        stats.record(taken > 0);
+        return taken;
+    }
+
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        long wait = delegate.reserve(permits, maxWaitNanos);
+        stats.record(wait >= 0);
+        return wait;
+    }
+
+    /** Counted once per call by its outcome, not per retry while waiting. */
+    @Override
+    public boolean acquire(int permits, Duration timeout) throws InterruptedException {
+        boolean allowed = delegate.acquire(permits, timeout);
+        stats.record(allowed);
+        return allowed;
+    }
+
+    /** Returns the delegate's future so that cancelling it still refunds. */
+    @Override
+    public CompletableFuture<Boolean> acquireAsync(int permits, Duration timeout) {
+        CompletableFuture<Boolean> result = delegate.acquireAsync(permits, timeout);
+        result.thenAccept(stats::record);
+        return result;
+    }
+}
@@ -0,0 +1,38 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.util.Objects;
+
+/**
+ * One configured limit: the bucket shared by all callers of the endpoint and, for per-key rules,
+ * the store of per-client buckets. Callers without a key always use the shared bucket.
+ * With {@code stats} set, every limiter handed out counts its decisions into it. Adaptive rules carry the
+ * {@code adaptive} loop that sets the shared bucket's rate.
+ */
+public record LimitRule(String endpoint, RateLimiter shared, KeyedBucketStore perKey, DecisionStats stats, AdaptiveControl adaptive) {
+
+    public LimitRule {
+        Objects.requireNonNull(endpoint);
+        Objects.requireNonNull(shared);
+        if (stats != null && !(shared instanceof InstrumentedRateLimiter)) shared = new InstrumentedRateLimiter(shared, stats);
+    }
+
+    /** Rule with a fixed rate. */
+    public LimitRule(String endpoint, RateLimiter shared, KeyedBucketStore perKey, DecisionStats stats) {
+        this(endpoint, shared, perKey, stats, null);
+    }
+
+    /** Rule without decision counters. */
+    public LimitRule(String endpoint, RateLimiter shared, KeyedBucketStore perKey) {
+        this(endpoint, shared, perKey, null);
+    }
+
+    /** Limiter for the given client key; the shared bucket when the rule is not keyed or no key was given. */
+    public RateLimiter limiterFor(String key) {
+        if (perKey == null || key == null || key.isEmpty()) return shared;
+        RateLimiter view = perKey.forKey(key);
+        return stats == null ? view : new InstrumentedRateLimiter(view, stats);
+    }
+}
@@ -0,0 +1,156 @@
+package com.redwood.example.ratelimiter.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Segment trie compiled from endpoint patterns such as {@code /api/v1/users/**} or {@code /api/v2/*}{@code /logs}.
+ * - {@code *} matches exactly one segment, {@code **} (last segment only) matches zero or more.
+ * - Precedence is longest literal match: at every segment a literal beats {@code *}, which beats {@code **}.
+ * - Lookup walks the path in place (segment hashes are computed over the original string) and is
+ *   allocation-free. Without {@code *} it is O(path length). A node is only ever tried against the segment
+ *   at its own depth, so backtracking out of {@code *} branches visits each trie node at most once:
+ *   the worst case is bounded by the size of the trie, not exponential in the path.
+ */
+final class PathPatternTrie<V> {
+
+    private static final String STAR = "*";
+    private static final String GLOBSTAR = "**";
+
+    /** Mutable node used while compiling, frozen into {@link Node} afterwards. */
+    private static final class Builder<V> {
+        final Map<String, Builder<V>> literals = new LinkedHashMap<>();
+        Builder<V> star;
+        V value;
+        V globstar;
+    }
+
+    /** Immutable node with an open-addressed table of literal children. */
+    private static final class Node<V> {
+        final String[] keys;
+        final Node<V>[] children;
+        final int mask;
+        final Node<V> star;
+        final V value;
+        final V globstar;
+
+        @SuppressWarnings("unchecked")
+        Node(Builder<V> b) {
+            int size = Integer.highestOneBit(Math.max(1, b.literals.size()) * 2 - 1) << 1;
+            this.keys = new String[size];
+            this.children = (Node<V>[]) new Node<?>[size];
+            this.mask = size - 1;
+            for (Map.Entry<String, Builder<V>> e : b.literals.entrySet()) {
+                String key = e.getKey();
+                int i = hash(key, 0, key.length()) & mask;
+                while (keys[i] != null) i = (i + 1) & mask;
+                keys[i] = key;
+                children[i] = new Node<>(e.getValue());
+            }
+            this.star = b.star == null ? null : new Node<>(b.star);
+            this.value = b.value;
+            this.globstar = b.globstar;
+        }
+
+        Node<V> literal(String path, int from, int to) {
+            int len = to - from;
+            int i = hash(path, from, to) & mask;
+            String k;
+            while ((k = keys[i]) != null) {
+                if (k.length() == len && path.regionMatches(from, k, 0, len)) return children[i];
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    private final Node<V> root;
+    private final List<V> values;
+
+    private PathPatternTrie(Node<V> root, List<V> values) {
+        this.root = root;
+        this.values = values;
+    }
+
+    /** Compiles the patterns; duplicate patterns or partial-segment wildcards are rejected. */
+    static <V> PathPatternTrie<V> compile(Map<String, V> patterns) {
+        Builder<V> root = new Builder<>();
+        for (Map.Entry<String, V> e : patterns.entrySet()) {
+            insert(root, e.getKey(), Objects.requireNonNull(e.getValue()));
+        }
+        return new PathPatternTrie<>(new Node<>(root), List.copyOf(patterns.values()));
+    }
+
+    private static <V> void insert(Builder<V> root, String pattern, V value) {
+        String[] segments = segments(pattern);
+        Builder<V> node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String seg = segments[i];
+            if (GLOBSTAR.equals(seg)) {
+                if (i != segments.length - 1)
+                    throw new IllegalArgumentException("'**' is only supported as the last segment: " + pattern);
+                if (node.globstar != null) throw new IllegalArgumentException("Duplicate endpoint pattern: " + pattern);
+                node.globstar = value;
+                return;
+            }
+            if (STAR.equals(seg)) {
+                if (node.star == null) node.star = new Builder<>();
+                node = node.star;
+            } else if (seg.indexOf('*') >= 0) {
+                throw new IllegalArgumentException("Wildcards must span a whole segment: " + pattern);
+            } else {
+                node = node.literals.computeIfAbsent(seg, k -> new Builder<>());
+            }
+        }
+        if (node.value != null) throw new IllegalArgumentException("Duplicate endpoint pattern: " + pattern);
+        node.value = value;
+    }
+
+    private static String[] segments(String pattern) {
+        return Arrays.stream(pattern.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    /** True if the endpoint contains a segment wildcard (the bare global {@code *} is not a pattern). */
+    static boolean isPattern(String endpoint) {
+        return endpoint != null && endpoint.indexOf('*') >= 0 && !STAR.equals(endpoint);
+    }
+
+    /** Most specific value matching {@code path}, or null. */
+    V match(String path) {
+        return match(root, path, 0);
+    }
+
+    /** Every compiled value, in pattern order. */
+    List<V> values() { return values; }
+
+    private static <V> V match(Node<V> node, String path, int pos) {
+        int len = path.length();
+        while (pos < len && path.charAt(pos) == '/') pos++;
+        if (pos == len) return node.value != null ? node.value : node.globstar;
+
+        int end = path.indexOf('/', pos);
+        if (end < 0) end = len;
+
+        Node<V> literal = node.literal(path, pos, end);
+        if (literal != null) {
+            V v = match(literal, path, end);
+            if (v != null) return v;
+        }
+        if (node.star != null) {
+            V v = match(node.star, path, end);
+            if (v != null) return v;
+        }
+        return node.globstar;
+    }
+
+    /** String.hashCode over a region, spread so that low bits are usable as a table index. */
+    private static int hash(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + s.charAt(i);
+        return h ^ (h >>> 16);
+    }
+}
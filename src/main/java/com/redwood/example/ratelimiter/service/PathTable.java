@@ -0,0 +1,108 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Interned paths: every registered path has a compact ID, its index into a flat {@code RateLimiter[]}.
+ * - A check by ID is an array load, with no string hashing or map lookup; so is its price.
+ * - {@link #find(byte[], int, int)} matches raw UTF-8 request bytes against the table (open addressing
+ *   over the bytes' hash), so transports reading bytes off the wire resolve a path without materialising
+ *   a {@code String}.
+ * Immutable; the registry publishes a new table when paths are registered or the config is reloaded.
+ */
+public final class PathTable {
+
+    static final PathTable EMPTY = new PathTable(List.of(), new RateLimiter[0], new PermitCost[0]);
+
+    private final String[] paths;
+    private final RateLimiter[] limiters;
+    /** Null for a path priced at one token per request. */
+    private final PermitCost[] costs;
+    private final byte[][] utf8;
+    /** Open-addressed: ID + 1 per slot, 0 when empty. */
+    private final int[] slots;
+    private final int mask;
+    private final Map<String, Integer> ids;
+
+    PathTable(List<String> paths, RateLimiter[] limiters, PermitCost[] costs) {
+        if (paths.size() != limiters.length || paths.size() != costs.length)
+            throw new IllegalArgumentException("One limiter and cost per path required");
+        this.paths = paths.toArray(String[]::new);
+        this.limiters = limiters;
+        this.costs = costs;
+        this.utf8 = new byte[this.paths.length][];
+        this.ids = new HashMap<>(this.paths.length * 2);
+
+        int size = Integer.highestOneBit(Math.max(2, this.paths.length * 2) - 1) << 1;
+        this.slots = new int[size];
+        this.mask = size - 1;
+        for (int id = 0; id < this.paths.length; id++) {
+            byte[] bytes = this.paths[id].getBytes(StandardCharsets.UTF_8);
+            utf8[id] = bytes;
+            ids.put(this.paths[id], id);
+            int i = hash(bytes, 0, bytes.length) & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+
+    /** Number of registered paths; IDs run from 0 to {@code size() - 1}. */
+    public int size() { return paths.length; }
+
+    /** ID of {@code path}, or -1 if it is not registered. */
+    public int id(String path) {
+        Integer id = ids.get(path);
+        return id == null ? -1 : id;
+    }
+
+    /** ID of the path in {@code bytes[offset, offset + length)} (UTF-8), or -1 if it is not registered. */
+    public int find(byte[] bytes, int offset, int length) {
+        int i = hash(bytes, offset, length) & mask;
+        int slot;
+        while ((slot = slots[i]) != 0) {
+            byte[] candidate = utf8[slot - 1];
+            if (Arrays.equals(candidate, 0, candidate.length, bytes, offset, offset + length)) return slot - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Registered path with this ID. */
+    public String path(int id) {
+        check(id);
+        return paths[id];
+    }
+
+    /** Limiter for callers without a key, as {@link RateLimiterRegistry#getForPath(String)} resolves the path. */
+    public RateLimiter limiter(int id) {
+        check(id);
+        return limiters[id];
+    }
+
+    /** {@link RateLimiterRegistry#cost} of the path with this ID, as of when the table was built. */
+    public double cost(int id, String method) {
+        check(id);
+        PermitCost cost = costs[id];
+        return cost == null ? 1 : cost.forMethod(method);
+    }
+
+    /** Registered paths in ID order. */
+    List<String> paths() { return List.of(paths); }
+
+    private void check(int id) {
+        if (id < 0 || id >= paths.length) throw new IllegalArgumentException("Unknown path id " + id);
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 1;
+        for (int i = offset, end = offset + length; i < end; i++) h = 31 * h + bytes[i];
+        return h ^ (h >>> 16);
+    }
+}
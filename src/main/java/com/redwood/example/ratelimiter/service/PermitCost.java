@@ -0,0 +1,47 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Price of one request under a rule, in tokens, from its entry's {@code cost} and {@code method-costs}.
+ * Callers multiply it by their own weight (permits, rows exported, ...) and charge the result through
+ * {@link com.redwood.example.ratelimiter.ratelimit.RateLimiter#tryAcquire(double)}.
+ */
+public record PermitCost(double cost, Map<String, Double> methods) {
+
+    /** Null for an entry priced at the default of one token per request. */
+    static PermitCost of(RateLimitEntry e) {
+        Map<String, Double> methods = e.methodCosts == null ? Map.of() : e.methodCosts;
+        if (e.cost == 1 && methods.isEmpty()) return null;
+        requireChargeable(e, "cost", e.cost);
+        Map<String, Double> upper = new HashMap<>();
+        for (Map.Entry<String, Double> m : methods.entrySet()) {
+            if (m.getKey() == null || m.getKey().isBlank() || m.getValue() == null)
+                throw new IllegalArgumentException("Method cost without method or cost: " + e.endpoint);
+            requireChargeable(e, "cost of " + m.getKey(), m.getValue());
+            upper.put(m.getKey().toUpperCase(Locale.ROOT), m.getValue());
+        }
+        return new PermitCost(e.cost, Map.copyOf(upper));
+    }
+
+    /** A cost above the bucket could never be granted; reject it rather than deny every such request. */
+    private static void requireChargeable(RateLimitEntry e, String what, double cost) {
+        if (!(cost > 0) || Double.isInfinite(cost))
+            throw new IllegalArgumentException("The " + what + " must be positive: " + e.endpoint);
+        if (cost > e.bucketSize)
+            throw new IllegalArgumentException("The " + what + " exceeds the bucket size of " + e.bucketSize + ": " + e.endpoint);
+    }
+
+    /** Cost of a request with HTTP {@code method}; {@link #cost} for null or a method without its own cost. */
+    public double forMethod(String method) {
+        if (method == null || methods.isEmpty()) return cost;
+        Double c = methods.get(method);
+        if (c == null) c = methods.get(method.toUpperCase(Locale.ROOT));
+        return c == null ? cost : c;
+    }
+}
@@ -1,48 +1,530 @@
 package com.redwood.example.ratelimiter.service;
 
+import com.redwood.example.ratelimiter.config.LimitModels.Algorithm;
+import com.redwood.example.ratelimiter.config.LimitModels.KeyStoreType;
+import com.redwood.example.ratelimiter.config.LimitModels.LimiterMode;
 import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
 import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.ratelimit.GcraRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.HeapKeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.HierarchicalRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.LeasedRateLimiter;
 import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.OffHeapKeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.PackedTokenBucketRateLimiter;
 import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowCounterRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowLogRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.StripedTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.TokenStore;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public final class RateLimiterRegistry {
 
     private static final String GLOBAL = "*";
-    private final Map<String, RateLimiter> buckets = new ConcurrentHashMap<>();
-    private final RateLimiter global;
+    /** Prefix of entries that are scopes: never matched against a path, only counted into as someone's parent. */
+    private static final String SCOPE = "@";
+    /** Slots in the bounded cache of paths resolved through the pattern trie. */
+    static final int RESOLVED_CACHE_SLOTS = 4096;
+    /** Most paths {@link #register} interns, configured endpoints included; reloads intern those beyond it. */
+    static final int MAX_INTERNED_PATHS = 16_384;
+
+    /**
+     * Everything a lookup needs, built completely before it is published through {@link #snapshot},
+     * so a request always resolves against one whole config, never a half-applied one.
+     */
+    private record Snapshot(Map<String, LimitRule> rules, LimitRule global, PathPatternTrie<LimitRule> patterns,
+                            ResolvedPathCache<LimitRule> resolved, Map<String, RateLimitEntry> entries,
+                            Map<String, LimitRule> byEndpoint, List<LimitRule> scopes, Map<LimitRule, Chain> chains,
+                            Map<LimitRule, Shadowed> shadows, Map<LimitRule, PermitCost> costs, PathTable paths) {
+
+        /** Same config with {@code order} interned, each path resolved against this snapshot. */
+        Snapshot withPaths(List<String> order) {
+            RateLimiter[] limiters = new RateLimiter[order.size()];
+            PermitCost[] prices = new PermitCost[order.size()];
+            for (int i = 0; i < limiters.length; i++) {
+                limiters[i] = limiterFor(this, order.get(i), null);
+                if (!costs.isEmpty()) prices[i] = costs.get(ruleFor(this, order.get(i)));
+            }
+            return new Snapshot(rules, global, patterns, resolved, entries, byEndpoint, scopes, chains, shadows, costs,
+                    new PathTable(order, limiters, prices));
+        }
+    }
+
+    /** Candidate limits of a rule and the limiter handed to its callers without a key, which feeds them. */
+    private record Shadowed(ShadowLimits limits, RateLimiter shared) {}
+
+    /**
+     * A rule with parents: its levels (the rule itself first), their shared evaluation order and the limiter
+     * over them used by callers without a key. Callers with a key get their own buckets on per-key levels.
+     */
+    private record Chain(LimitRule[] levels, HierarchicalRateLimiter.Order order, RateLimiter shared, boolean keyed) {
+
+        static Chain of(List<LimitRule> rules) {
+            LimitRule[] levels = rules.toArray(LimitRule[]::new);
+            RateLimiter[] limiters = new RateLimiter[levels.length];
+            boolean keyed = false;
+            for (int i = 0; i < levels.length; i++) {
+                limiters[i] = levels[i].shared();
+                keyed |= levels[i].perKey() != null;
+            }
+            HierarchicalRateLimiter.Order order = new HierarchicalRateLimiter.Order(limiters);
+            return new Chain(levels, order, new HierarchicalRateLimiter(limiters, order), keyed);
+        }
+
+        RateLimiter limiterFor(String key) {
+            if (!keyed || key == null || key.isEmpty()) return shared;
+            RateLimiter[] limiters = new RateLimiter[levels.length];
+            for (int i = 0; i < levels.length; i++) limiters[i] = levels[i].limiterFor(key);
+            return new HierarchicalRateLimiter(limiters, order);
+        }
+    }
+
+    /** What a {@link #reload} did to the configured rules. */
+    public record ReloadResult(int unchanged, int changed, int added, int removed, long keysCarriedOver) {}
+
+    private volatile Snapshot snapshot;
+    /** Whether rules count their decisions into {@link DecisionStats}. */
+    private final boolean instrumented;
+    /** Central store of {@code cluster} mode rules; null when the service runs on its own. */
+    private final TokenStore clusterStore;
+    private final boolean leaseWaitAllowed;
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Registry mapping each API endpoint to its corresponding RateLimiter.
      * Falls back to a shared global limiter for unconfigured paths.
      */
     public RateLimiterRegistry(RateLimitFile file) {
+        this(file, false);
+    }
+
+    /** With {@code instrumented} set, every rule counts its decisions, see {@link LimitRule#stats()}. */
+    public RateLimiterRegistry(RateLimitFile file, boolean instrumented) {
+        this(file, instrumented, null);
+    }
+
+    /**
+     * With a {@code clusterStore}, rules in {@code cluster} mode share their bucket with every other instance
+     * through it (see {@link LeasedRateLimiter}); without one such rules are rejected.
+     */
+    public RateLimiterRegistry(RateLimitFile file, boolean instrumented, TokenStore clusterStore) {
+        this(file, instrumented, clusterStore, true);
+    }
+
+    /**
+     * Without {@code leaseWaitAllowed} some transport calls limiters on a thread that must not block (the Netty
+     * event loop, the binary protocol's selector), so entries with {@code lease-wait-ms} are rejected: a cluster
+     * acquire would park that thread for up to that long.
+     */
+    public RateLimiterRegistry(RateLimitFile file, boolean instrumented, TokenStore clusterStore, boolean leaseWaitAllowed) {
+        this.instrumented = instrumented;
+        this.clusterStore = clusterStore;
+        this.leaseWaitAllowed = leaseWaitAllowed;
+        Snapshot s = build(file, Map.of(), Map.of(), Map.of(), instrumented, clusterStore, leaseWaitAllowed, new ReloadCounts());
+        this.snapshot = s.withPaths(internOrder(List.of(), file));
+    }
+
+    /**
+     * Replaces the configuration. The new snapshot is built aside and swapped in with one volatile write,
+     * so lookups never block or wait for it. Rules whose entry is unchanged keep their limiters as-is;
+     * changed rules get new limiters that start at the same fill level (as a fraction of capacity)
+     * as the ones they replace, per-key buckets included, and adaptive ones at the same rate (within the new bounds). Permits taken from a replaced limiter by
+     * requests that resolved it just before the swap are not carried over, and replaced limiters hand
+     * their cluster leases back. Path IDs stay as they are; newly configured endpoints get new ones.
+     * Shadow candidates with unchanged settings keep their buckets, and all keep their counts.
+     * An invalid file throws and leaves the current configuration in place.
+     */
+    public synchronized ReloadResult reload(RateLimitFile file) {
+        Snapshot current = snapshot;
+        Map<String, LimitRule> previous = current.byEndpoint;
+
+        Map<String, ShadowLimits> previousShadows = new HashMap<>();
+        for (Shadowed shadowed : current.shadows.values()) previousShadows.put(shadowed.limits().endpoint(), shadowed.limits());
+
+        ReloadCounts counts = new ReloadCounts();
+        Snapshot next = build(file, previous, current.entries, previousShadows, instrumented, clusterStore, leaseWaitAllowed, counts)
+                .withPaths(internOrder(current.paths.paths(), file));
+        int removed = (int) current.entries.keySet().stream().filter(e -> !next.entries.containsKey(e)).count();
+        snapshot = next;
+        for (LimitRule old : previous.values()) {
+            if (next.byEndpoint.get(old.endpoint()) != old) old.shared().release();
+        }
+        reloadListeners.forEach(Runnable::run);
+        return new ReloadResult(counts.unchanged, counts.changed, counts.added, removed, counts.keysCarriedOver);
+    }
+
+    /** Hands every cluster lease back to the central store, e.g. on shutdown so other instances can use them. */
+    public void releaseLeases() {
+        for (LimitRule r : rules()) r.shared().release();
+    }
+
+    /** Runs {@code listener} after every successful {@link #reload}, e.g. to register meters of new rules. */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(Objects.requireNonNull(listener));
+    }
+
+    /** {@code interned} followed by the exact endpoints of {@code file} not among them, in file order. */
+    private static List<String> internOrder(List<String> interned, RateLimitFile file) {
+        LinkedHashSet<String> order = new LinkedHashSet<>(interned);
+        for (RateLimitEntry e : file.limits) {
+            if (!GLOBAL.equals(e.endpoint) && !e.endpoint.startsWith(SCOPE) && !PathPatternTrie.isPattern(e.endpoint)) order.add(e.endpoint);
+        }
+        return List.copyOf(order);
+    }
+
+    /** Tallies for {@link ReloadResult}, filled in while a snapshot is built. */
+    private static final class ReloadCounts {
+        int unchanged, changed, added;
+        long keysCarriedOver;
+    }
+
+    /** Builds a snapshot, reusing or carrying over the state of the {@code previous} rules. */
+    private static Snapshot build(RateLimitFile file, Map<String, LimitRule> previous, Map<String, RateLimitEntry> previousEntries,
+                                  Map<String, ShadowLimits> previousShadows, boolean instrumented, TokenStore clusterStore,
+                                  boolean leaseWaitAllowed, ReloadCounts counts) {
         Objects.requireNonNull(file);
+        if (file.limits == null) throw new IllegalArgumentException("No limits configured");
 
         // Locate the global entry (mandatory)
-        RateLimitEntry globalEntry = file.limits.stream().filter(l -> GLOBAL.equals(l.endpoint)).findFirst().orElseThrow(()-> new IllegalArgumentException("Global '*' limit required "));
+        file.limits.stream().filter(l -> GLOBAL.equals(l.endpoint)).findFirst().orElseThrow(()-> new IllegalArgumentException("Global '*' limit required "));
 
-        this.global = build(globalEntry);
+        // Create per-endpoint buckets; wildcard rules are compiled into the pattern trie
+        Map<String, RateLimitEntry> entries = new HashMap<>();
+        Map<String, LimitRule> rules = new HashMap<>();
+        Map<String, LimitRule> wildcard = new LinkedHashMap<>();
+        Map<String, LimitRule> byEndpoint = new HashMap<>();
+        List<LimitRule> scopes = new ArrayList<>();
+        LimitRule global = null;
+        for(RateLimitEntry e : file.limits) {
+            if (e.leaseWaitMs > 0 && !leaseWaitAllowed)
+                throw new IllegalArgumentException("'lease-wait-ms' of '" + e.endpoint + "' would block a non-blocking transport (reactive or binary)");
+            entries.put(e.endpoint, e);
+            LimitRule rule = carryOver(e, previous.get(e.endpoint), previousEntries.get(e.endpoint), instrumented, clusterStore, counts);
+            byEndpoint.put(e.endpoint, rule);
+            if(GLOBAL.equals(e.endpoint)) global = rule;
+            else if(e.endpoint.startsWith(SCOPE)) scopes.add(rule);
+            else if(PathPatternTrie.isPattern(e.endpoint)) wildcard.put(e.endpoint, rule);
+            else rules.put(e.endpoint, rule);
+        }
 
-        // Create per-endpoint buckets
+        Map<LimitRule, Chain> chains = new IdentityHashMap<>();
         for(RateLimitEntry e : file.limits) {
-            if(!GLOBAL.equals(e.endpoint)) buckets.put(e.endpoint, build(e));
+            if(e.parents == null || e.parents.isEmpty()) continue;
+            LinkedHashSet<LimitRule> levels = new LinkedHashSet<>();
+            collectLevels(e.endpoint, entries, byEndpoint, levels, new ArrayList<>());
+            chains.put(byEndpoint.get(e.endpoint), Chain.of(List.copyOf(levels)));
+        }
+
+        Map<LimitRule, Shadowed> shadows = new IdentityHashMap<>();
+        for(RateLimitEntry e : file.limits) {
+            if(e.shadow == null || e.shadow.isEmpty()) continue;
+            if(e.endpoint.startsWith(SCOPE))
+                throw new IllegalArgumentException("Scopes are only counted into, so they cannot be shadowed: " + e.endpoint);
+            LimitRule rule = byEndpoint.get(e.endpoint);
+            ShadowLimits limits = ShadowLimits.of(e, previousShadows.get(e.endpoint), ShadowEvaluator.shared());
+            shadows.put(rule, new Shadowed(limits, limits.wrap(enforcing(chains, rule, null), null)));
+        }
+
+        Map<LimitRule, PermitCost> costs = new IdentityHashMap<>();
+        for(RateLimitEntry e : file.limits) {
+            PermitCost cost = PermitCost.of(e);
+            if(cost == null) continue;
+            if(e.endpoint.startsWith(SCOPE))
+                throw new IllegalArgumentException("Scopes are charged the cost of the request counted into them, they cannot have their own: " + e.endpoint);
+            costs.put(byEndpoint.get(e.endpoint), cost);
+        }
+
+        PathPatternTrie<LimitRule> patterns = wildcard.isEmpty() ? null : PathPatternTrie.compile(wildcard);
+        return new Snapshot(Map.copyOf(rules), global, patterns,
+                new ResolvedPathCache<>(RESOLVED_CACHE_SLOTS), Map.copyOf(entries), Map.copyOf(byEndpoint),
+                List.copyOf(scopes), chains.isEmpty() ? Map.of() : Collections.unmodifiableMap(chains),
+                shadows.isEmpty() ? Map.of() : Collections.unmodifiableMap(shadows),
+                costs.isEmpty() ? Map.of() : Collections.unmodifiableMap(costs), PathTable.EMPTY);
+    }
+
+    /** Adds the rule of {@code endpoint} and, depth first, its parents; a level reached twice counts once. */
+    private static void collectLevels(String endpoint, Map<String, RateLimitEntry> entries, Map<String, LimitRule> byEndpoint,
+                                      LinkedHashSet<LimitRule> levels, List<String> path) {
+        if (path.contains(endpoint))
+            throw new IllegalArgumentException("Parent cycle: " + String.join(" -> ", path) + " -> " + endpoint);
+        levels.add(byEndpoint.get(endpoint));
+        List<String> parents = entries.get(endpoint).parents;
+        if (parents == null) return;
+        path.add(endpoint);
+        for (String parent : parents) {
+            if (!entries.containsKey(parent))
+                throw new IllegalArgumentException("Unknown parent '" + parent + "' of '" + endpoint + "'");
+            collectLevels(parent, entries, byEndpoint, levels, path);
+        }
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Reuses the old rule when its entry is unchanged, otherwise builds a new one scaled to the old fill level
+     * that keeps counting into the old rule's stats.
+     */
+    private static LimitRule carryOver(RateLimitEntry e, LimitRule old, RateLimitEntry oldEntry, boolean instrumented,
+                                       TokenStore clusterStore, ReloadCounts counts) {
+        if (old == null) {
+            counts.added++;
+            return rule(e, instrumented ? new DecisionStats() : null, clusterStore);
+        }
+        if (e.equals(oldEntry)) {
+            counts.unchanged++;
+            return old;
         }
+
+        counts.changed++;
+        LimitRule rule = rule(e, old.stats() != null || !instrumented ? old.stats() : new DecisionStats(), clusterStore);
+        RateLimiter shared = old.shared();
+        rule.shared().setAvailable(shared.available() / shared.capacity() * rule.shared().capacity());
+        if (rule.adaptive() != null && old.adaptive() != null) rule.adaptive().limiter().setRefillPerSecond(old.adaptive().rate());
+        if (rule.perKey() != null && old.perKey() != null) counts.keysCarriedOver += rule.perKey().carryOver(old.perKey());
+        return rule;
+    }
+
+    private static LimitRule rule(RateLimitEntry e, DecisionStats stats, TokenStore clusterStore) {
+        if (e.adaptive != null) {
+            AdaptiveControl adaptive = AdaptiveControl.of(e, config(e));
+            return new LimitRule(e.endpoint, adaptive.limiter(), null, stats, adaptive);
+        }
+        return new LimitRule(e.endpoint, build(e, clusterStore), e.perKey ? buildKeyed(e) : null, stats);
+    }
+
+    private static LocalTokenBucketRateLimiter.Config config(RateLimitEntry e) {
+        return LocalTokenBucketRateLimiter.Config.newBuilder().capacity(e.bucketSize).refillTokensPerSecond(e.refillRate).build();
     }
 
     /** Factory method to construct a limiter from configuration. */
-    private static RateLimiter build(RateLimitEntry e){
-        return new LocalTokenBucketRateLimiter(
-                LocalTokenBucketRateLimiter.Config.newBuilder().capacity(e.bucketSize).refillTokensPerSecond(e.refillRate).build()
-        );
+    private static RateLimiter build(RateLimitEntry e, TokenStore clusterStore){
+        LocalTokenBucketRateLimiter.Config cfg = config(e);
+        LimiterMode mode = e.mode == null ? LimiterMode.ATOMIC : e.mode;
+        Algorithm algorithm = e.algorithm == null ? Algorithm.TOKEN_BUCKET : e.algorithm;
+        if (algorithm != Algorithm.TOKEN_BUCKET) {
+            if (mode != LimiterMode.ATOMIC)
+                throw new IllegalArgumentException("'mode' applies to token-bucket entries only: " + e.endpoint);
+            // Per-key stores keep one packed long per key, which already is GCRA's state
+            if (e.perKey && algorithm != Algorithm.GCRA)
+                throw new IllegalArgumentException("Per-key buckets are token buckets (or gcra): " + e.endpoint);
+            return switch (algorithm) {
+                case GCRA -> new GcraRateLimiter(cfg);
+                case SLIDING_LOG -> new SlidingWindowLogRateLimiter(cfg);
+                case SLIDING_WINDOW -> new SlidingWindowCounterRateLimiter(cfg);
+                case TOKEN_BUCKET -> throw new AssertionError();
+            };
+        }
+        return switch (mode) {
+            case ATOMIC -> new LocalTokenBucketRateLimiter(cfg);
+            case PACKED -> new PackedTokenBucketRateLimiter(cfg);
+            case STRIPED -> new StripedTokenBucketRateLimiter(cfg, e.stripes, e.stripeTolerance);
+            case CLUSTER -> {
+                if (clusterStore == null)
+                    throw new IllegalArgumentException("Cluster mode for '" + e.endpoint + "' needs ratelimiter.cluster.store");
+                long lease = e.leaseSize > 0 ? e.leaseSize : Math.max(1, e.bucketSize / 10);
+                yield new LeasedRateLimiter(cfg, clusterStore, e.endpoint, lease, TimeUnit.MILLISECONDS.toNanos(e.leaseWaitMs), e.fallbackShare);
+            }
+        };
+    }
+
+    /** Factory method for the per-key bucket store of a keyed entry. */
+    private static KeyedBucketStore buildKeyed(RateLimitEntry e) {
+        KeyStoreType type = e.keyStore == null ? KeyStoreType.HEAP : e.keyStore;
+        return switch (type) {
+            case HEAP -> new HeapKeyedBucketStore(config(e), e.maxKeys);
+            case OFF_HEAP -> new OffHeapKeyedBucketStore(config(e), e.maxKeys);
+        };
     }
 
-    /** Returns the limiter for a given path or the global fallback. */
+    /**
+     * Returns the limiter for a given path or the global fallback.
+     * Exact endpoints win; otherwise the most specific wildcard rule applies.
+     * For rules with parents this is a {@link HierarchicalRateLimiter} over the rule and its parents.
+     */
     public RateLimiter getForPath(String path){
-        if(path == null || path.isBlank()) return global;
-        return buckets.getOrDefault(path, global);
+        return getForPath(path, null);
+    }
+
+    /** Returns the limiter for a path and client key; per-key rules (and parents) give every key its own bucket. */
+    public RateLimiter getForPath(String path, String key){
+        return limiterFor(snapshot, path, key);
+    }
+
+    private static RateLimiter limiterFor(Snapshot s, String path, String key){
+        LimitRule rule = ruleFor(s, path);
+        if(!s.shadows.isEmpty()) {
+            Shadowed shadowed = s.shadows.get(rule);
+            if(shadowed != null)
+                return key == null || key.isEmpty() ? shadowed.shared() : shadowed.limits().wrap(enforcing(s.chains, rule, key), key);
+        }
+        return enforcing(s.chains, rule, key);
+    }
+
+    /** The limiter deciding for a rule: the rule's own, or the one over it and its parents. */
+    private static RateLimiter enforcing(Map<LimitRule, Chain> chains, LimitRule rule, String key){
+        if(chains.isEmpty()) return rule.limiterFor(key);
+        Chain chain = chains.get(rule);
+        return chain == null ? rule.limiterFor(key) : chain.limiterFor(key);
+    }
+
+    /**
+     * Tokens one request to {@code path} with HTTP {@code method} (null when not known) costs under the rule
+     * governing it, see {@link PermitCost}; 1 when that rule has no cost configured. Free when no rule has one.
+     */
+    public double cost(String path, String method){
+        Snapshot s = snapshot;
+        if(s.costs.isEmpty()) return 1;
+        PermitCost cost = s.costs.get(ruleFor(s, path));
+        return cost == null ? 1 : cost.forMethod(method);
+    }
+
+    /** {@link #cost} of an interned path: an array load, the price is resolved when the path is interned. */
+    public double costForId(int id, String method){
+        return snapshot.paths.cost(id, method);
+    }
+
+    /**
+     * Interns {@code path}: returns its compact ID for {@link #getForId}, the same one on every call and across
+     * reloads. Configured exact endpoints are interned up front; any other path (one matched by a pattern or
+     * falling back to the global limit) can be registered too. IDs are never dropped and every new path
+     * rebuilds the table, so at most {@link #MAX_INTERNED_PATHS} are taken; register the paths the service
+     * knows, not arbitrary request paths.
+     * @throws IllegalStateException when the table is full
+     */
+    public synchronized int register(String path){
+        if(path == null || path.isBlank()) throw new IllegalArgumentException("Path required");
+        Snapshot s = snapshot;
+        int id = s.paths.id(path);
+        if(id >= 0) return id;
+        if(s.paths.size() >= MAX_INTERNED_PATHS)
+            throw new IllegalStateException("Path table full: " + MAX_INTERNED_PATHS + " paths interned");
+
+        List<String> order = new ArrayList<>(s.paths.paths());
+        order.add(path);
+        snapshot = s.withPaths(order);
+        return order.size() - 1;
+    }
+
+    /** Limiter of an interned path for callers without a key: an array index, no hashing. */
+    public RateLimiter getForId(int id){
+        return snapshot.paths.limiter(id);
+    }
+
+    /** Limiter of an interned path and client key, see {@link #getForPath(String, String)}. */
+    public RateLimiter getForId(int id, String key){
+        PathTable paths = snapshot.paths;
+        return key == null || key.isEmpty() ? paths.limiter(id) : getForPath(paths.path(id), key);
+    }
+
+    /** The interned paths as currently published, for transports that match raw request bytes. */
+    public PathTable paths(){
+        return snapshot.paths;
+    }
+
+    /** Resolves the rule governing a path; its parents are not included. */
+    public LimitRule ruleFor(String path){
+        return ruleFor(snapshot, path);
+    }
+
+    private static LimitRule ruleFor(Snapshot s, String path){
+        if(path == null || path.isBlank()) return s.global;
+        LimitRule exact = s.rules.get(path);
+        if(exact != null || s.patterns == null) return exact != null ? exact : s.global;
+
+        LimitRule cached = s.resolved.get(path);
+        if(cached != null) return cached;
+
+        LimitRule matched = s.patterns.match(path);
+        LimitRule rule = matched != null ? matched : s.global;
+        s.resolved.put(path, rule);
+        return rule;
+    }
+
+    /** Rule configured for exactly this endpoint (or pattern, or {@code *}); null if there is none. */
+    public LimitRule rule(String endpoint){
+        return snapshot.byEndpoint.get(endpoint);
+    }
+
+    /** Every configured rule, global first. */
+    public List<LimitRule> rules(){
+        Snapshot s = snapshot;
+        List<LimitRule> all = new ArrayList<>(s.rules.size() + s.scopes.size() + 1);
+        all.add(s.global);
+        all.addAll(s.rules.values());
+        if(s.patterns != null) all.addAll(s.patterns.values());
+        all.addAll(s.scopes);
+        return all;
+    }
+
+    /** Shadow candidates of the rule configured for exactly this endpoint; null if it has none. */
+    public ShadowLimits shadow(String endpoint){
+        Snapshot s = snapshot;
+        LimitRule rule = s.byEndpoint.get(endpoint);
+        Shadowed shadowed = rule == null ? null : s.shadows.get(rule);
+        return shadowed == null ? null : shadowed.limits();
+    }
+
+    /** Shadow candidates of every rule that has them. */
+    public List<ShadowLimits> shadows(){
+        List<ShadowLimits> all = new ArrayList<>();
+        for(Shadowed shadowed : snapshot.shadows.values()) all.add(shadowed.limits());
+        return all;
+    }
+
+    /** Runs one step of every adaptive rule's control loop; meant to be called on a fixed schedule. */
+    public void adjustAdaptiveLimits(){
+        for(LimitRule r : rules()) {
+            if(r.adaptive() != null) r.adaptive().adjust();
+        }
+    }
+
+    /** Sweeps fully refilled per-key buckets out of every keyed rule and shadow candidate; returns how many were dropped. */
+    public long evictIdleKeys(){
+        long evicted = 0;
+        for(LimitRule r : rules()) {
+            if(r.perKey() != null) evicted += r.perKey().evictIdle();
+        }
+        for(ShadowLimits shadow : shadows()) evicted += shadow.evictIdleKeys();
+        return evicted;
+    }
+
+    /**
+     * All-or-nothing acquire across several limiters (e.g. an endpoint limit plus the global one).
+     * Limiters are acquired in order; if one denies, the permits already taken are refunded so
+     * nothing leaks. Returns the index of the first denying limiter, or -1 if all were acquired.
+     * <p>
+     * This is not atomic: until the refund lands, concurrent callers see the earlier limiters
+     * drained and may be denied although the batch ends up taking nothing.
+     */
+    public static int tryAcquireAll(List<RateLimiter> limiters, int[] permits) {
+        double[] costs = new double[permits.length];
+        for (int i = 0; i < permits.length; i++) costs[i] = permits[i];
+        return tryAcquireAll(limiters, costs);
+    }
+
+    /** {@link #tryAcquireAll(List, int[])} for costs in tokens, fractions included. */
+    public static int tryAcquireAll(List<RateLimiter> limiters, double[] permits) {
+        if (limiters.size() != permits.length)
+            throw new IllegalArgumentException("One cost per limiter required");
+
+        for (int i = 0; i < permits.length; i++) {
+            if (!limiters.get(i).tryAcquire(permits[i])) {
+                for (int j = i - 1; j >= 0; j--) limiters.get(j).rollback(permits[j]);
+                return i;
+            }
+        }
+        return -1;
     }
 }
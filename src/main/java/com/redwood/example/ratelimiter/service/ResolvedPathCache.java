@@ -0,0 +1,40 @@
+package com.redwood.example.ratelimiter.service;
+
+
+/**
+ * Bounded, direct-mapped cache of path -> resolved value.
+ * - Fixed number of slots, so memory stays bounded no matter how many distinct paths arrive;
+ *   a colliding path simply overwrites the slot.
+ * - Entries are immutable and published through final fields, so concurrent readers and
+ *   writers need no locking (a racing write at worst costs one extra trie lookup).
+ */
+final class ResolvedPathCache<V> {
+
+    private record Entry<V>(String path, V value) {}
+
+    private final Entry<V>[] slots;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    ResolvedPathCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = (Entry<V>[]) new Entry<?>[size];
+        this.mask = size - 1;
+    }
+
+    V get(String path) {
+        Entry<V> e = slots[index(path)];
+        return e != null && e.path.equals(path) ? e.value : null;
+    }
+
+    void put(String path, V value) {
+        slots[index(path)] = new Entry<>(path, value);
+    }
+
+    int capacity() { return slots.length; }
+
+    private int index(String path) {
+        int h = path.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,133 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter.NanoClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Replays the decisions of shadowed rules against their candidate limits, off the request path.
+ * - Requests append to a bounded lock-free ring (one CAS on the tail, no allocation); when the ring is full
+ *   the decision is dropped and counted instead of waiting, so a slow evaluator never slows down a check.
+ * - One daemon thread drains the ring. Candidates are only ever touched by it, and see the time the request
+ *   was decided, not the time it is replayed, through the shared {@link #clock()}.
+ * - With nothing queued the thread polls every {@link #IDLE_PARK_NS}; it is only started once a rule has shadows.
+ */
+final class ShadowEvaluator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShadowEvaluator.class);
+
+    /** Queued decisions per evaluator; a second of traffic at 65k checks/s. */
+    static final int CAPACITY = 1 << 16;
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final class Holder {
+        static final ShadowEvaluator SHARED = new ShadowEvaluator(CAPACITY).start("rate-limiter-shadow");
+    }
+
+    /** The evaluator shared by all registries, started on first use. */
+    static ShadowEvaluator shared() { return Holder.SHARED; }
+
+    private final int mask;
+    /**
+     * Per slot: the tail position that may write it next, or that position + 1 once written and ready to be
+     * read. Its volatile write publishes the slot's plain fields.
+     */
+    private final AtomicLongArray sequence;
+    private final ShadowLimits[] targets;
+    private final String[] keys;
+    private final double[] permits;
+    private final boolean[] allowed;
+    private final long[] nanoTimes;
+    private final AtomicLong tail = new AtomicLong();
+    /** Next position to read; evaluator thread only. */
+    private long head;
+    /** Time of the decision being replayed; never goes back, since concurrent requests may enqueue out of order. */
+    private volatile long replayNanos = System.nanoTime();
+
+    ShadowEvaluator(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+        this.mask = capacity - 1;
+        this.sequence = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) sequence.set(i, i);
+        this.targets = new ShadowLimits[capacity];
+        this.keys = new String[capacity];
+        this.permits = new double[capacity];
+        this.allowed = new boolean[capacity];
+        this.nanoTimes = new long[capacity];
+    }
+
+    private ShadowEvaluator start(String name) {
+        Thread.ofPlatform().name(name).daemon().start(this::run);
+        return this;
+    }
+
+    /** Clock of every candidate limit: the decision time of the request being replayed. */
+    NanoClock clock() {
+        return () -> replayNanos;
+    }
+
+    /**
+     * Queues one decision of {@code target}'s rule; false (counted as dropped) when the ring is full.
+     * Never blocks.
+     */
+    boolean offer(ShadowLimits target, String key, double permits, boolean allowed, long nanoTime) {
+        long t = tail.get();
+        while (true) {
+            int slot = (int) (t & mask);
+            long free = sequence.get(slot) - t;
+            if (free == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    targets[slot] = target;
+                    keys[slot] = key;
+                    this.permits[slot] = permits;
+                    this.allowed[slot] = allowed;
+                    nanoTimes[slot] = nanoTime;
+                    sequence.set(slot, t + 1);
+                    return true;
+                }
+                t = tail.get();
+            } else if (free < 0) {
+                target.countDropped();
+                return false;
+            } else {
+                t = tail.get();
+            }
+        }
+    }
+
+    /** Replays every queued decision that is fully written; returns how many. Evaluator thread only. */
+    int drain() {
+        int drained = 0;
+        while (true) {
+            int slot = (int) (head & mask);
+            if (sequence.get(slot) != head + 1) return drained;
+            ShadowLimits target = targets[slot];
+            String key = keys[slot];
+            targets[slot] = null;
+            keys[slot] = null;
+            if (nanoTimes[slot] - replayNanos > 0) replayNanos = nanoTimes[slot];
+            double n = permits[slot];
+            boolean actual = allowed[slot];
+            sequence.set(slot, head + mask + 1);
+            head++;
+            drained++;
+            target.evaluate(key, n, actual);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                if (drain() == 0) LockSupport.parkNanos(this, IDLE_PARK_NS);
+            } catch (RuntimeException e) {
+                LOG.warn("Shadow evaluation failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.config.LimitModels.Algorithm;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
+import com.redwood.example.ratelimiter.ratelimit.GcraRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.HeapKeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.KeyedBucketStore;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.PackedTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowCounterRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowLogRateLimiter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Candidate limits of one endpoint, evaluated on its traffic without affecting any response.
+ * - Every decision of the endpoint's limiter is queued to the {@link ShadowEvaluator} together with its outcome,
+ *   and replayed there against each candidate, so the counts compare what the candidate would have denied with
+ *   what was actually denied on exactly the same requests.
+ * - Counters are continuous across reloads, like {@link DecisionStats}; candidates whose settings are unchanged
+ *   keep their buckets too.
+ * - Decisions dropped because the evaluator fell behind are counted, not evaluated, so the comparison stays exact
+ *   for the requests it covers.
+ */
+public final class ShadowLimits {
+
+    /** Label of the enforcing limit next to the candidates' names in metrics; not allowed as a candidate name. */
+    public static final String ACTUAL = "actual";
+
+    /** One candidate limit with its own buckets and deny counts. Buckets are touched by the evaluator thread only. */
+    public static final class Candidate {
+
+        private final ShadowEntry entry;
+        private final RateLimiter shared;
+        private final KeyedBucketStore perKey;
+        private final LongAdder denied;
+        private final LongAdder deniedAllowed;
+
+        private Candidate(ShadowEntry entry, RateLimiter shared, KeyedBucketStore perKey, Candidate previous) {
+            this.entry = entry;
+            this.shared = shared;
+            this.perKey = perKey;
+            this.denied = previous == null ? new LongAdder() : previous.denied;
+            this.deniedAllowed = previous == null ? new LongAdder() : previous.deniedAllowed;
+        }
+
+        public String name() { return entry.name; }
+
+        public ShadowEntry entry() { return entry; }
+
+        /** Replayed requests this candidate would have denied. */
+        public long denied() { return denied.sum(); }
+
+        /** Replayed requests this candidate would have denied that the enforcing limit allowed. */
+        public long deniedAllowed() { return deniedAllowed.sum(); }
+
+        private void evaluate(String key, double permits, boolean actual) {
+            boolean allowed = perKey == null || key == null || key.isEmpty() ? shared.tryAcquire(permits) : perKey.tryAcquire(key, permits);
+            if (allowed) return;
+            denied.increment();
+            if (actual) deniedAllowed.increment();
+        }
+    }
+
+    private final String endpoint;
+    private final Candidate[] candidates;
+    private final ShadowEvaluator evaluator;
+    private final LongAdder evaluated;
+    private final LongAdder actualDenied;
+    private final LongAdder dropped;
+
+    private ShadowLimits(String endpoint, Candidate[] candidates, ShadowEvaluator evaluator, ShadowLimits previous) {
+        this.endpoint = endpoint;
+        this.candidates = candidates;
+        this.evaluator = evaluator;
+        this.evaluated = previous == null ? new LongAdder() : previous.evaluated;
+        this.actualDenied = previous == null ? new LongAdder() : previous.actualDenied;
+        this.dropped = previous == null ? new LongAdder() : previous.dropped;
+    }
+
+    /**
+     * Builds the candidates of {@code e}, reusing those of {@code previous} (the same endpoint before a reload)
+     * whose settings are unchanged; rejects candidates that cannot be built.
+     */
+    static ShadowLimits of(RateLimitEntry e, ShadowLimits previous, ShadowEvaluator evaluator) {
+        Map<String, Candidate> old = new HashMap<>();
+        if (previous != null) {
+            for (Candidate c : previous.candidates) old.put(c.name(), c);
+        }
+        Set<String> names = new HashSet<>();
+        List<Candidate> candidates = new ArrayList<>(e.shadow.size());
+        for (ShadowEntry s : e.shadow) {
+            if (s.name == null || s.name.isBlank() || ACTUAL.equals(s.name) || !names.add(s.name))
+                throw new IllegalArgumentException("Shadow limits need unique names other than '" + ACTUAL + "': " + e.endpoint);
+            Candidate reused = old.get(s.name);
+            candidates.add(reused != null && reused.entry.equals(s) ? reused : candidate(e.endpoint, s, evaluator, reused));
+        }
+        return new ShadowLimits(e.endpoint, candidates.toArray(Candidate[]::new), evaluator, previous);
+    }
+
+    private static Candidate candidate(String endpoint, ShadowEntry s, ShadowEvaluator evaluator, Candidate previous) {
+        Algorithm algorithm = s.algorithm == null ? Algorithm.TOKEN_BUCKET : s.algorithm;
+        if (s.perKey && algorithm != Algorithm.TOKEN_BUCKET && algorithm != Algorithm.GCRA)
+            throw new IllegalArgumentException("Per-key shadow limits are token buckets (or gcra): " + endpoint + " / " + s.name);
+        LocalTokenBucketRateLimiter.Config cfg;
+        try {
+            cfg = LocalTokenBucketRateLimiter.Config.newBuilder()
+                    .capacity(s.bucketSize).refillTokensPerSecond(s.refillRate).clock(evaluator.clock()).build();
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(ex.getMessage() + ": " + endpoint + " / " + s.name, ex);
+        }
+        RateLimiter shared = switch (algorithm) {
+            case TOKEN_BUCKET -> new PackedTokenBucketRateLimiter(cfg);
+            case GCRA -> new GcraRateLimiter(cfg);
+            case SLIDING_LOG -> new SlidingWindowLogRateLimiter(cfg);
+            case SLIDING_WINDOW -> new SlidingWindowCounterRateLimiter(cfg);
+        };
+        return new Candidate(s, shared, s.perKey ? new HeapKeyedBucketStore(cfg, s.maxKeys) : null, previous);
+    }
+
+    /** {@code limiter}, answering as before, with every decision also queued for the candidates. */
+    RateLimiter wrap(RateLimiter limiter, String key) {
+        return new ShadowedRateLimiter(limiter, this, key);
+    }
+
+    /** Queues one decision of the enforcing limiter; never blocks. */
+    void record(String key, double permits, boolean allowed) {
+        evaluator.offer(this, key, permits, allowed, System.nanoTime());
+    }
+
+    void countDropped() {
+        dropped.increment();
+    }
+
+    /** Replays one decision against every candidate; evaluator thread only. */
+    void evaluate(String key, double permits, boolean actual) {
+        evaluated.increment();
+        if (!actual) actualDenied.increment();
+        for (Candidate c : candidates) c.evaluate(key, permits, actual);
+    }
+
+    /** Sweeps fully refilled per-key candidate buckets; returns how many were dropped. */
+    long evictIdleKeys() {
+        long evicted = 0;
+        for (Candidate c : candidates) {
+            if (c.perKey != null) evicted += c.perKey.evictIdle();
+        }
+        return evicted;
+    }
+
+    public String endpoint() { return endpoint; }
+
+    public List<Candidate> candidates() { return List.of(candidates); }
+
+    /** Decisions replayed against the candidates so far. */
+    public long evaluated() { return evaluated.sum(); }
+
+    /** Replayed decisions the enforcing limit denied. */
+    public long actualDenied() { return actualDenied.sum(); }
+
+    /** Decisions not replayed because the evaluator's queue was full. */
+    public long dropped() { return dropped.sum(); }
+}
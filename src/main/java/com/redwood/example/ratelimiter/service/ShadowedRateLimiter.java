@@ -0,0 +1,65 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Queues every decision of a limiter for the endpoint's {@link ShadowLimits}; the decision itself is the
+ * delegate's, unchanged. Waiting acquires are queued once with their outcome, like {@link InstrumentedRateLimiter}
+ * counts them, and candidates judge them as an immediate acquire.
+ */
+final class ShadowedRateLimiter extends ForwardingRateLimiter {
+
+    private final ShadowLimits shadow;
+    private final String key;
+
+    ShadowedRateLimiter(RateLimiter delegate, ShadowLimits shadow, String key) {
+        super(delegate);
+        this.shadow = Objects.requireNonNull(shadow);
+        this.key = key;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) { return tryAcquire((double) permits); }
+
+    @Override
+    public boolean tryAcquire(double permits) {
+        boolean allowed = delegate.tryAcquire(permits);
+        shadow.record(key, permits, allowed);
+        return allowed;
+    }
+
+    /** Candidates judge the grant, or the whole request when nothing was granted. */
+    @Override
+    public long tryAcquireUpTo(long max) {
+        long taken = delegate.tryAcquireUpTo(max);
+        shadow.record(key, taken > 0 ? taken : max, taken > 0);
+        return taken;
+    }
+
+    @Override
+    public long reserve(int permits, long maxWaitNanos) {
+        long wait = delegate.reserve(permits, maxWaitNanos);
+        shadow.record(key, permits, wait >= 0);
+        return wait;
+    }
+
+    @Override
+    public boolean acquire(int permits, Duration timeout) throws InterruptedException {
+        boolean allowed = delegate.acquire(permits, timeout);
+        shadow.record(key, permits, allowed);
+        return allowed;
+    }
+
+    /** Returns the delegate's future so that cancelling it still refunds. */
+    @Override
+    public CompletableFuture<Boolean> acquireAsync(int permits, Duration timeout) {
+        CompletableFuture<Boolean> result = delegate.acquireAsync(permits, timeout);
+        result.thenAccept(allowed -> shadow.record(key, permits, allowed));
+        return result;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the controller methods directly against the bundled config.json
+ * (users: 3 tokens, logs: 6 tokens, global: 10 tokens).
+ */
+class ApiControllerTest {
+
+    private ApiController controller;
+
+    @BeforeEach
+    void setup() throws Exception {
+        controller = new ApiController(new RateLimiterConfiguration().rateLimiterRegistry());
+    }
+
+    @Test
+    void checkConsumesRequestedPermits() {
+        ResponseEntity<LimitResponse> ok = controller.check("/api/v2/logs", 4, null, null, null);
+        assertEquals(HttpStatus.OK, ok.getStatusCode());
+        assertEquals(2, ok.getBody().requestsRemaining());
+
+        ResponseEntity<LimitResponse> denied = controller.check("/api/v2/logs", 3, null, null, null);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, denied.getStatusCode());
+        assertFalse(denied.getBody().allowed());
+
+        assertThrows(ResponseStatusException.class, () -> controller.check("/api/v2/logs", 0, null, null, null));
+    }
+
+    /** Denials tell the caller how long to back off: 1 token short at 2/s is about half a second. */
+    @Test
+    void deniedCheckCarriesRetryAfter() {
+        controller.check("/api/v2/logs", 6, null, null, null);
+        ResponseEntity<LimitResponse> denied = controller.check("/api/v2/logs", 1, null, null, null);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, denied.getStatusCode());
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(denied.getBody().waitNanos());
+        assertTrue(waitMs > 400 && waitMs <= 500, "waitMs " + waitMs);
+        assertEquals("1", denied.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        ResponseEntity<LimitResponse> never = controller.check("/api/v2/logs", 7, null, null, null);
+        assertEquals(-1, never.getBody().waitNanos(), "More than the bucket holds");
+        assertNull(never.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    /** {@code weight} scales the cost of a check; a long-running request settles its reservation afterwards. */
+    @Test
+    void weightedCheckChargesFractionsAndSettlesTheReservation() {
+        ResponseEntity<Reservation> estimate = controller.reserve("/api/v2/logs", 1, null, "POST", 4.5);
+        assertEquals(HttpStatus.OK, estimate.getStatusCode());
+        assertEquals(4.5, estimate.getBody().cost());
+        assertEquals(1, estimate.getBody().requestsRemaining());
+        assertEquals(ApiController.RESERVATION_TTL_MS, estimate.getBody().expiresInMs());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, controller.check("/api/v2/logs", 1, null, null, 2.0).getStatusCode());
+
+        String id = estimate.getBody().reservationId();
+        LimitResponse settled = controller.settle(new SettleRequest(id, 1.25));
+        assertEquals(-3.25, settled.cost());
+        assertEquals(4, settled.requestsRemaining(), "1.5 + 3.25 tokens");
+
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class,
+                () -> controller.settle(new SettleRequest(id, 0))).getStatusCode(), "Settles once");
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class,
+                () -> controller.settle(new SettleRequest("forged", 0))).getStatusCode());
+        assertThrows(ResponseStatusException.class, () -> controller.check("/api/v2/logs", 1, null, null, 0.0));
+        assertEquals(ApiController.MIN_CHARGE, controller.check("/api/v2/logs", 1, null, null, 1e-12).getBody().cost(),
+                "No weight makes a check free");
+        assertThrows(ResponseStatusException.class, () -> controller.settle(new SettleRequest(id, -1)));
+        assertEquals(-1, controller.check("/api/v2/logs", 1, null, null, 1e300).getBody().waitNanos(), "Can never be granted");
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> controller.check("/api/v2/logs", 2, null, null, Double.MAX_VALUE)).getStatusCode());
+
+        ResponseEntity<Reservation> denied = controller.reserve("/api/v2/logs", 1, null, null, 5.0);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, denied.getStatusCode());
+        assertNull(denied.getBody().reservationId());
+    }
+
+    @Test
+    void checkByIdUsesTheBucketOfThePath() {
+        PathId logs = controller.registerPath("/api/v2/logs");
+        assertEquals(logs, controller.paths().stream().filter(p -> p.path().equals("/api/v2/logs")).findFirst().orElseThrow());
+        assertEquals(2, controller.checkId(logs.id(), 4, null, null, null).getBody().requestsRemaining());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, controller.check("/api/v2/logs", 3, null, null, null).getStatusCode());
+
+        ResponseStatusException unknown = assertThrows(ResponseStatusException.class, () -> controller.checkId(10_000, 1, null, null, null));
+        assertEquals(HttpStatus.NOT_FOUND, unknown.getStatusCode());
+    }
+
+    @Test
+    void checkWaitingQueuesInsteadOfDenying() {
+        controller.check("/api/v1/users", 3, null, null, null);
+
+        ResponseEntity<LimitResponse> tooShort = controller.checkWaiting("/api/v1/users", 1, null, null, null, 100).join();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, tooShort.getStatusCode(), "1 token at 1/s is ~1s away");
+
+        long start = System.nanoTime();
+        ResponseEntity<LimitResponse> waited = controller.checkWaiting("/api/v1/users", 1, null, null, null, 2_000).join();
+        assertEquals(HttpStatus.OK, waited.getStatusCode());
+        assertTrue(System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertThrows(ResponseStatusException.class, () -> controller.checkWaiting("/api/v1/users", 1, null, null, null, -1));
+    }
+
+    @Test
+    void batchDecidesEachItemIndependently() {
+        BatchCheckRequest request = new BatchCheckRequest(List.of(
+                new BatchCheckItem("/api/v1/users", 2, null, null, null),
+                new BatchCheckItem("/api/v1/users", 2, null, null, null),
+                new BatchCheckItem("/custom", null, null, null, null)), false);
+
+        ResponseEntity<BatchCheckResponse> response = controller.checkBatch(request);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        List<BatchCheckResult> results = response.getBody().results();
+        assertTrue(results.get(0).allowed());
+        assertFalse(results.get(1).allowed(), "Only 1 users token left");
+        assertTrue(results.get(2).allowed());
+        assertEquals(1, results.get(2).permits(), "Permits default to 1");
+        assertEquals(9, results.get(2).requestsRemaining());
+        assertFalse(response.getBody().allowed());
+    }
+
+    @Test
+    void allOrNothingBatchRollsBackEveryItem() {
+        BatchCheckRequest request = new BatchCheckRequest(List.of(
+                new BatchCheckItem("*", 5, null, null, null),
+                new BatchCheckItem("/api/v1/users", 4, null, null, null)), true);
+
+        ResponseEntity<BatchCheckResponse> response = controller.checkBatch(request);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertTrue(response.getBody().results().stream().noneMatch(BatchCheckResult::allowed));
+        assertEquals(10, response.getBody().results().get(0).requestsRemaining(), "Global permits refunded");
+    }
+}
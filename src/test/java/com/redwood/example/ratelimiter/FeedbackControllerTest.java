@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import com.redwood.example.ratelimiter.config.LimitModels.AdaptivePolicy;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the feedback endpoint against a config with one adaptive (aimd) rule of 100/s, min 10/s.
+ */
+class FeedbackControllerTest {
+
+    private RateLimiterRegistry registry;
+    private FeedbackController controller;
+
+    private static RateLimitEntry entry(String endpoint, double rate) {
+        RateLimitEntry e = new RateLimitEntry();
+        e.endpoint = endpoint;
+        e.refillRate = rate;
+        e.bucketSize = 10;
+        return e;
+    }
+
+    @BeforeEach
+    void setup() {
+        RateLimitEntry search = entry("/api/v1/search", 100);
+        search.adaptive = AdaptivePolicy.AIMD;
+        search.minRate = 10;
+        RateLimitFile file = new RateLimitFile();
+        file.limits = List.of(entry("*", 10), search);
+        registry = new RateLimiterRegistry(file);
+        controller = new FeedbackController(registry);
+    }
+
+    @Test
+    void reportsMoveTheRateOnTheNextInterval() {
+        AdaptiveLimit initial = new AdaptiveLimit("/api/v1/search", "aimd", 100, 10, 100);
+        assertEquals(List.of(initial), controller.limits());
+        assertEquals(initial, controller.report(new FeedbackReport("/api/v1/search", 10, 5, 12.5)), "Counted, not yet applied");
+
+        registry.adjustAdaptiveLimits();
+        assertEquals(70, controller.limits().get(0).refillPerSecond(), 1e-9, "50% errors: rate * 0.7");
+    }
+
+    @Test
+    void rejectsPathsWithoutAdaptiveLimitAndBadReports() {
+        ResponseStatusException fixed = assertThrows(ResponseStatusException.class,
+                () -> controller.report(new FeedbackReport("/other", null, null, null)));
+        assertEquals(HttpStatus.NOT_FOUND, fixed.getStatusCode());
+
+        ResponseStatusException bad = assertThrows(ResponseStatusException.class,
+                () -> controller.report(new FeedbackReport("/api/v1/search", 1, 2, null)));
+        assertEquals(HttpStatus.BAD_REQUEST, bad.getStatusCode());
+    }
+}
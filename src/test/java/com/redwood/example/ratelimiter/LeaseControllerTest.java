@@ -0,0 +1,73 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the lease endpoints directly against the bundled config.json
+ * (users: 3 tokens at 1/s, global: 10 tokens).
+ */
+class LeaseControllerTest {
+
+    private LeaseController controller;
+    private ApiController api;
+
+    @BeforeEach
+    void setup() throws Exception {
+        var registry = new RateLimiterConfiguration().rateLimiterRegistry();
+        controller = new LeaseController(registry, 5_000);
+        api = new ApiController(registry);
+    }
+
+    @Test
+    void termsDescribeTheBucketOfThePath() {
+        assertEquals(new LeaseTerms(3, 1, 5_000), controller.terms("/api/v1/users", null));
+        assertEquals(new LeaseTerms(10, 10, 5_000), controller.terms("/custom", null), "Unconfigured paths lease from '*'");
+    }
+
+    /** Leases debit the same bucket /api/check uses, and never more than it holds. */
+    @Test
+    void leasesDebitTheRegistryBucket() {
+        LeaseGrant first = controller.take(new LeaseRequest("/api/v1/users", null, 2));
+        assertEquals(new LeaseGrant(first.leaseId(), 2, 1, 5_000), first);
+        assertEquals(1, controller.take(new LeaseRequest("/api/v1/users", null, 5)).granted(), "Only what is left");
+        assertFalse(api.check("/api/v1/users", 1, null, null, null).getBody().allowed());
+        LeaseGrant dry = controller.take(new LeaseRequest("/api/v1/users", null, 1));
+        assertEquals(0, dry.granted());
+        assertNull(dry.leaseId());
+
+        assertEquals(2, controller.giveBack(new LeaseReturn(first.leaseId(), 2)).remaining());
+        assertTrue(api.check("/api/v1/users", 2, null, null, null).getBody().allowed());
+
+        assertThrows(ResponseStatusException.class, () -> controller.take(new LeaseRequest("/api/v1/users", null, 0)));
+    }
+
+    /** Returns only go back against their lease and never put back more than it granted. */
+    @Test
+    void returnsAreCappedAtTheLease() {
+        LeaseGrant lease = controller.take(new LeaseRequest("/api/v1/users", null, 2));
+        assertEquals(1, lease.remaining());
+
+        LeaseGrant back = controller.giveBack(new LeaseReturn(lease.leaseId(), 1));
+        assertEquals(-1, back.granted());
+        assertEquals(2, back.remaining());
+        LeaseGrant rest = controller.giveBack(new LeaseReturn(lease.leaseId(), 3));
+        assertEquals(-1, rest.granted(), "Only the other token");
+        assertEquals(3, rest.remaining());
+
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class,
+                () -> controller.giveBack(new LeaseReturn(lease.leaseId(), 1))).getStatusCode(), "Fully returned");
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class,
+                () -> controller.giveBack(new LeaseReturn("forged", 3))).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> controller.giveBack(new LeaseReturn(null, 3))).getStatusCode());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * (C) Copyright 2019-2025 Redwood Technology B.V., Houten, The Netherlands
+ */
+
+package com.redwood.example.ratelimiter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the reactive /api/check route against the bundled config.json
+ * (users: 3 tokens, logs: 6 tokens, global: 10 tokens), mirroring ApiControllerTest.
+ */
+class ReactiveCheckRouterTest {
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        client = WebTestClient.bindToRouterFunction(
+                new ReactiveCheckRouter().reactiveCheckRoute(new RateLimiterConfiguration().rateLimiterRegistry())).build();
+    }
+
+    @Test
+    void checkConsumesRequestedPermits() {
+        client.get().uri("/api/check?path=/api/v2/logs&permits=4").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.allowed").isEqualTo(true).jsonPath("$.requestsRemaining").isEqualTo(2);
+
+        client.get().uri("/api/check?path=/api/v2/logs&permits=3").exchange()
+                .expectStatus().isEqualTo(429)
+                .expectBody().jsonPath("$.allowed").isEqualTo(false);
+    }
+
+    @Test
+    void unknownPathUsesGlobalAndBadPermitsAreRejected() {
+        client.get().uri("/api/check?path=/custom").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.requestsRemaining").isEqualTo(9);
+
+        client.get().uri("/api/check?path=/custom&permits=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/check?path=/custom&permits=x").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void deniedCheckCarriesRetryAfter_andWaitMsQueues() {
+        client.get().uri("/api/check?path=/api/v1/users&permits=3").exchange().expectStatus().isOk();
+
+        client.get().uri("/api/check?path=/api/v1/users").exchange()
+                .expectStatus().isEqualTo(429)
+                .expectHeader().valueEquals("Retry-After", "1")
+                .expectBody().jsonPath("$.waitNanos").value(wait -> assertTrue(((Number) wait).longValue() > 0));
+
+        client.get().uri("/api/check?path=/api/v1/users&waitMs=2000").exchange()
+                .expectStatus().isOk();
+        client.get().uri("/api/check?path=/api/v1/users&waitMs=-1").exchange().expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,120 @@
+package com.redwood.example.ratelimiter.binary;
+
+import com.redwood.example.ratelimiter.binary.BinaryCheckClient.Decision;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips through a real loopback socket. Refill rates are tiny so that
+ * token counts do not move while a test runs.
+ */
+class BinaryCheckServerTest {
+
+    private RateLimiterRegistry registry;
+    private BinaryCheckServer server;
+
+    private static RateLimitEntry entry(String endpoint, long size) {
+        RateLimitEntry e = new RateLimitEntry();
+        e.endpoint = endpoint;
+        e.refillRate = 0.0001;
+        e.bucketSize = size;
+        return e;
+    }
+
+    @BeforeEach
+    void start() throws Exception {
+        RateLimitFile file = new RateLimitFile();
+        RateLimitEntry reports = entry("/api/v1/reports", 10);
+        reports.cost = 2.5;
+        file.limits = List.of(entry("*", 100), entry("/api/v1/users", 3), reports);
+        registry = new RateLimiterRegistry(file);
+        server = new BinaryCheckServer(registry, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void singleChecksConsumeTokens() throws Exception {
+        try (BinaryCheckClient client = new BinaryCheckClient("127.0.0.1", server.port())) {
+            assertEquals(new Decision(true, 1), client.check("/api/v1/users", 2));
+            assertEquals(new Decision(false, 1), client.check("/api/v1/users", 2));
+            assertEquals(new Decision(true, 99), client.check(null, 1), "Empty path hits the global limit");
+        }
+    }
+
+    /** Priced paths charge their cost per permit, by path and by ID alike. */
+    @Test
+    void checksChargeTheConfiguredCost() throws Exception {
+        try (BinaryCheckClient client = new BinaryCheckClient("127.0.0.1", server.port())) {
+            assertEquals(new Decision(true, 5), client.check("/api/v1/reports", 2));
+            assertEquals(new Decision(true, 2), client.check(registry.paths().id("/api/v1/reports"), 1));
+            assertEquals(new Decision(false, 2), client.check("/api/v1/reports", 2), "5 tokens of the 2.5 left");
+        }
+    }
+
+    @Test
+    void pipelinedRequestsAnsweredInOrder() throws Exception {
+        try (BinaryCheckClient client = new BinaryCheckClient("127.0.0.1", server.port())) {
+            List<Decision> decisions = client.checkAll(Collections.nCopies(5, "/api/v1/users"), 1);
+
+            assertEquals(5, decisions.size());
+            assertEquals(List.of(true, true, true, false, false), decisions.stream().map(Decision::allowed).toList());
+            assertEquals(0, decisions.get(4).remaining());
+        }
+    }
+
+    @Test
+    void largePipelineSpanningSeveralWindows() throws Exception {
+        try (BinaryCheckClient client = new BinaryCheckClient("127.0.0.1", server.port())) {
+            List<Decision> decisions = client.checkAll(Collections.nCopies(5000, "/unknown"), 1);
+            assertEquals(100, decisions.stream().filter(Decision::allowed).count(), "Global bucket holds 100");
+        }
+    }
+
+    @Test
+    void checksByIdShareTheBucketOfThePath() throws Exception {
+        int users = registry.paths().id("/api/v1/users");
+        try (BinaryCheckClient client = new BinaryCheckClient("127.0.0.1", server.port())) {
+            assertEquals(new Decision(true, 1), client.check(users, 2));
+            assertEquals(new Decision(false, 1), client.check("/api/v1/users", 2));
+            assertEquals(new Decision(true, 0), client.check(users, 1));
+            assertThrows(IllegalArgumentException.class, () -> client.check(registry.paths().size(), 1), "Unknown ID");
+            assertEquals(new Decision(true, 99), client.check(registry.register("/other"), 1));
+        }
+    }
+
+    @Test
+    void invalidPermitsAreRejectedWithoutClosingTheConnection() throws Exception {
+        try (BinaryCheckClient client = new BinaryCheckClient("127.0.0.1", server.port())) {
+            assertThrows(IllegalArgumentException.class, () -> client.check("/api/v1/users", 0));
+            assertTrue(client.check("/api/v1/users", 1).allowed(), "Connection still usable");
+        }
+    }
+
+    @Test
+    void oversizedFrameClosesTheConnection() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.port())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(BinaryProtocol.MAX_FRAME_BYTES + 1);
+            out.flush();
+            assertEquals(-1, new DataInputStream(socket.getInputStream()).read(), "Server hangs up");
+        }
+    }
+}
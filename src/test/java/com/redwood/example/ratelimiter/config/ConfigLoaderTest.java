@@ -1,11 +1,29 @@
 package com.redwood.example.ratelimiter.config;
 
+import com.redwood.example.ratelimiter.config.LimitModels.AdaptivePolicy;
+import com.redwood.example.ratelimiter.config.LimitModels.Algorithm;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
 import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
- * Verifies that ConfigLoader can successfully load and parse the built-in config.json file.
+ * Verifies that ConfigLoader can successfully load and parse the built-in config.json file,
+ * and reads a compiled config like the JSON it was compiled from.
  */
 class ConfigLoaderTest {
 
@@ -27,4 +45,62 @@ class ConfigLoaderTest {
 
         assertTrue(hasGlobal, "Should have a global '*' entry");
     }
-}
\ No newline at end of file
+
+    /** Every field survives compilation, including the ones equals ignores (parents, shadow). */
+    @Test
+    void compiledConfigReadsBackAsItsJson(@TempDir Path dir) throws Exception {
+        RateLimitEntry users = new RateLimitEntry();
+        users.endpoint = "/api/v1/users";
+        users.refillRate = 1.5;
+        users.bucketSize = 3;
+        users.algorithm = Algorithm.GCRA;
+        users.perKey = true;
+        users.maxKeys = 42;
+        users.adaptive = AdaptivePolicy.GRADIENT;
+        users.targetLatencyMs = 25;
+        users.parents = List.of("@tenant", "*");
+        users.cost = 0.5;
+        users.methodCosts = Map.of("POST", 2.5);
+        ShadowEntry halved = new ShadowEntry();
+        halved.name = "halved";
+        halved.refillRate = 0.75;
+        halved.bucketSize = 2;
+        halved.algorithm = Algorithm.SLIDING_WINDOW;
+        users.shadow = List.of(halved);
+        RateLimitFile original = new ConfigLoader().loadFromClasspathOrFile("config.json");
+        original.limits = List.of(original.limits.get(0), users);
+
+        Path bin = dir.resolve("config.bin");
+        try (OutputStream out = Files.newOutputStream(bin)) {
+            CompiledConfig.write(original, out);
+        }
+        RateLimitFile read = new ConfigLoader().loadFromClasspathOrFile(bin.toString());
+
+        assertEquals(original.limits, read.limits);
+        assertEquals(List.of("@tenant", "*"), read.limits.get(1).parents);
+        assertEquals(List.of(halved), read.limits.get(1).shadow);
+        assertEquals(0.5, read.limits.get(1).cost);
+        assertEquals(Map.of("POST", 2.5), read.limits.get(1).methodCosts);
+        assertNull(read.limits.get(0).adaptive);
+    }
+
+    @Test
+    void compiledConfigOfAnotherVersionIsRejected() throws Exception {
+        RateLimitFile file = new ConfigLoader().loadFromClasspathOrFile("config.json");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledConfig.write(file, out);
+        byte[] bytes = out.toByteArray();
+        bytes[7]++;
+        assertThrows(IOException.class, () -> CompiledConfig.read(new ByteArrayInputStream(bytes)));
+    }
+
+    /** Jackson binds the models reflectively, which a native image only allows for registered types. */
+    @Test
+    void nativeHintsCoverTheModels() {
+        RuntimeHints hints = new RuntimeHints();
+        new LimitModelsRuntimeHints().registerHints(hints, getClass().getClassLoader());
+        for (Class<?> model : List.of(RateLimitFile.class, RateLimitEntry.class, ShadowEntry.class, Algorithm.class, AdaptivePolicy.class))
+            assertTrue(RuntimeHintsPredicates.reflection().onType(model).test(hints), model.getSimpleName());
+        assertTrue(RuntimeHintsPredicates.resource().forResource("config.json").test(hints));
+    }
+}
@@ -0,0 +1,42 @@
+package com.redwood.example.ratelimiter.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that ConfigWatcher notices edits of the watched file and ignores its neighbours.
+ */
+class ConfigWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void firesOnChangeOfWatchedFileOnly() throws Exception {
+        Path config = Files.writeString(dir.resolve("config.json"), "{}");
+        CountDownLatch changes = new CountDownLatch(1);
+
+        try (ConfigWatcher watcher = new ConfigWatcher(config, 50, changes::countDown)) {
+            watcher.start();
+            Files.writeString(dir.resolve("other.json"), "{}");
+            assertFalse(changes.await(500, TimeUnit.MILLISECONDS), "Other files are ignored");
+
+            Files.writeString(config, "{\"limits\": []}");
+            assertTrue(changes.await(10, TimeUnit.SECONDS), "Edit of the config file triggers the callback");
+        }
+    }
+
+    @Test
+    void refusesMissingFile() {
+        ConfigWatcher watcher = new ConfigWatcher(dir.resolve("missing.json"), 50, () -> {});
+        assertThrows(IOException.class, watcher::start);
+    }
+}
@@ -0,0 +1,103 @@
+package com.redwood.example.ratelimiter.metrics;
+
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
+import com.redwood.example.ratelimiter.service.RateLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the per-endpoint meters against a SimpleMeterRegistry, including re-registration after a reload.
+ */
+class RateLimiterMetricsTest {
+
+    private static RateLimitEntry entry(String endpoint, long size, boolean perKey) {
+        RateLimitEntry e = new RateLimitEntry();
+        e.endpoint = endpoint;
+        e.bucketSize = size;
+        e.refillRate = 0.01;
+        e.perKey = perKey;
+        return e;
+    }
+
+    private static RateLimitFile file(RateLimitEntry... entries) {
+        RateLimitFile file = new RateLimitFile();
+        file.limits = List.of(entries);
+        return file;
+    }
+
+    @Test
+    void countsDecisionsPerEndpoint() {
+        RateLimiterRegistry registry = new RateLimiterRegistry(file(entry("*", 10, false), entry("/api/v1/users", 3, true)), true);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        new RateLimiterMetrics(registry, 1).bindTo(meters);
+
+        assertTrue(registry.getForPath("/api/v1/users").tryAcquire(2));
+        assertFalse(registry.getForPath("/api/v1/users").tryAcquire(2));
+        assertTrue(registry.getForPath("/api/v1/users", "tenant-a").tryAcquire(3), "Per-key buckets count into the endpoint");
+        assertTrue(registry.getForPath("/other").tryAcquire());
+
+        assertEquals(2, meters.get("ratelimiter.decisions").tags("endpoint", "/api/v1/users", "outcome", "allowed").functionCounter().count());
+        assertEquals(1, meters.get("ratelimiter.decisions").tags("endpoint", "/api/v1/users", "outcome", "denied").functionCounter().count());
+        assertEquals(1, meters.get("ratelimiter.decisions").tags("endpoint", "*", "outcome", "allowed").functionCounter().count());
+        assertEquals(1, meters.get("ratelimiter.tokens").tags("endpoint", "/api/v1/users").gauge().value(), 0.1);
+        assertEquals(1, meters.get("ratelimiter.keys").tags("endpoint", "/api/v1/users").gauge().value());
+        assertEquals(0, meters.get("ratelimiter.contention.failures").tags("endpoint", "*").functionCounter().count());
+        assertEquals(4, meters.get("ratelimiter.acquire.latency").timers().stream().mapToLong(t -> t.count()).sum(),
+                "Every acquire is timed when sampling 1 in 1");
+    }
+
+    /** Reloads keep counters of surviving endpoints, add meters for new ones and drop removed ones. */
+    @Test
+    void followsConfigReloads() {
+        RateLimiterRegistry registry = new RateLimiterRegistry(file(entry("*", 10, false), entry("/a", 3, false)), true);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        new RateLimiterMetrics(registry, 16).bindTo(meters);
+        assertTrue(registry.getForPath("/a").tryAcquire());
+
+        registry.reload(file(entry("*", 10, false), entry("/a", 6, false), entry("/b", 3, false)));
+
+        assertEquals(1, meters.get("ratelimiter.decisions").tags("endpoint", "/a", "outcome", "allowed").functionCounter().count(),
+                "Changed rule keeps counting into the same stats");
+        assertEquals(4, meters.get("ratelimiter.tokens").tags("endpoint", "/a").gauge().value(), 0.1, "Gauge follows the new, rescaled bucket");
+        assertNotNull(meters.find("ratelimiter.tokens").tags("endpoint", "/b").gauge());
+
+        registry.reload(file(entry("*", 10, false)));
+        assertNull(meters.find("ratelimiter.tokens").tags("endpoint", "/a").gauge());
+    }
+
+    /** Shadow meters follow the candidates, which a reload can change without touching the rule. */
+    @Test
+    void exportsShadowDenialsPerCandidate() throws Exception {
+        ShadowEntry tight = new ShadowEntry();
+        tight.name = "tight";
+        tight.bucketSize = 1;
+        tight.refillRate = 0.01;
+        RateLimitEntry users = entry("/api/v1/users", 3, false);
+        users.shadow = List.of(tight);
+        RateLimiterRegistry registry = new RateLimiterRegistry(file(entry("*", 10, false), users), true);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        new RateLimiterMetrics(registry, 16).bindTo(meters);
+
+        for (int i = 0; i < 4; i++) registry.getForPath("/api/v1/users").tryAcquire();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.shadow("/api/v1/users").evaluated() < 4 && System.nanoTime() < deadline) Thread.sleep(1);
+
+        assertEquals(4, meters.get("ratelimiter.shadow.requests").tags("endpoint", "/api/v1/users").functionCounter().count());
+        assertEquals(1, meters.get("ratelimiter.shadow.denied").tags("endpoint", "/api/v1/users", "limit", "actual").functionCounter().count());
+        assertEquals(3, meters.get("ratelimiter.shadow.denied").tags("endpoint", "/api/v1/users", "limit", "tight").functionCounter().count());
+        assertEquals(2, meters.get("ratelimiter.shadow.extra.denials").tags("endpoint", "/api/v1/users", "limit", "tight").functionCounter().count());
+        assertEquals(0, meters.get("ratelimiter.shadow.dropped").tags("endpoint", "/api/v1/users").functionCounter().count());
+
+        RateLimitEntry unshadowed = entry("/api/v1/users", 3, false);
+        registry.reload(file(entry("*", 10, false), unshadowed));
+        assertNull(meters.find("ratelimiter.shadow.denied").tags("limit", "tight").functionCounter());
+        assertNull(meters.find("ratelimiter.shadow.requests").functionCounter());
+    }
+}
@@ -0,0 +1,109 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.config.LimitModels.KeyStoreType;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips of BucketSnapshot: shared and per-key buckets, wall-clock refill and bad files.
+ * Rates are tiny so real time passing during the test never refills a whole token.
+ */
+class BucketSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong wallClock = new AtomicLong(1_000_000);
+
+    private RateLimitFile config(KeyStoreType keyStore) {
+        RateLimitEntry global = new RateLimitEntry();
+        global.endpoint = "*";
+        global.refillRate = 0.01;
+        global.bucketSize = 10;
+
+        RateLimitEntry users = new RateLimitEntry();
+        users.endpoint = "/api/v1/users";
+        users.refillRate = 0.01;
+        users.bucketSize = 3;
+        users.perKey = true;
+        users.keyStore = keyStore;
+
+        RateLimitFile file = new RateLimitFile();
+        file.limits = List.of(global, users);
+        return file;
+    }
+
+    private BucketSnapshot snapshot(RateLimiterRegistry registry) {
+        return new BucketSnapshot(registry, dir.resolve("buckets.snapshot"), wallClock::get);
+    }
+
+    private RateLimiterRegistry used(KeyStoreType keyStore) {
+        RateLimiterRegistry reg = new RateLimiterRegistry(config(keyStore));
+        assertTrue(reg.getForPath("/other").tryAcquire(5));
+        assertTrue(reg.getForPath("/api/v1/users").tryAcquire(2));
+        assertTrue(reg.getForPath("/api/v1/users", "tenant-a").tryAcquire(3));
+        assertTrue(reg.getForPath("/api/v1/users", "tenant-b").tryAcquire(1));
+        return reg;
+    }
+
+    @Test
+    void restoresSharedAndPerKeyBuckets() throws IOException {
+        assertEquals(new BucketSnapshot.Stats(2, 2), snapshot(used(KeyStoreType.HEAP)).save());
+
+        RateLimiterRegistry restarted = new RateLimiterRegistry(config(KeyStoreType.HEAP));
+        assertEquals(new BucketSnapshot.Stats(2, 2), snapshot(restarted).restore());
+
+        assertEquals(5, restarted.getForPath("/other").remaining());
+        assertEquals(1, restarted.getForPath("/api/v1/users").remaining());
+        assertEquals(0, restarted.getForPath("/api/v1/users", "tenant-a").remaining());
+        assertEquals(2, restarted.getForPath("/api/v1/users", "tenant-b").remaining());
+        assertEquals(3, restarted.getForPath("/api/v1/users", "tenant-c").remaining());
+    }
+
+    /** Off-heap stores only know key hashes; those restore into an off-heap store. */
+    @Test
+    void restoresOffHeapBucketsByHash() throws IOException {
+        snapshot(used(KeyStoreType.OFF_HEAP)).save();
+
+        RateLimiterRegistry restarted = new RateLimiterRegistry(config(KeyStoreType.OFF_HEAP));
+        assertEquals(2, snapshot(restarted).restore().buckets());
+        assertEquals(0, restarted.getForPath("/api/v1/users", "tenant-a").remaining());
+
+        RateLimiterRegistry onHeap = new RateLimiterRegistry(config(KeyStoreType.HEAP));
+        assertEquals(0, snapshot(onHeap).restore().buckets(), "Hashes cannot be mapped back to keys");
+    }
+
+    /** Wall time between save and restore is refilled at the configured rate. */
+    @Test
+    void refillsElapsedWallTime() throws IOException {
+        snapshot(used(KeyStoreType.HEAP)).save();
+
+        wallClock.addAndGet(200_000); // 200s at 0.01/s = 2 tokens
+        RateLimiterRegistry restarted = new RateLimiterRegistry(config(KeyStoreType.HEAP));
+        assertEquals(1, snapshot(restarted).restore().buckets(), "tenant-b is full again and skipped");
+
+        assertEquals(7, restarted.getForPath("/other").remaining());
+        assertEquals(3, restarted.getForPath("/api/v1/users").remaining());
+        assertEquals(2, restarted.getForPath("/api/v1/users", "tenant-a").remaining());
+    }
+
+    @Test
+    void missingFileRestoresNothingAndForeignFileIsRejected() throws IOException {
+        RateLimiterRegistry reg = new RateLimiterRegistry(config(KeyStoreType.HEAP));
+        assertEquals(new BucketSnapshot.Stats(0, 0), snapshot(reg).restore());
+
+        Files.writeString(dir.resolve("buckets.snapshot"), "not a snapshot");
+        assertThrows(IOException.class, () -> snapshot(reg).restore());
+        assertEquals(10, reg.getForPath("/other").remaining());
+    }
+}
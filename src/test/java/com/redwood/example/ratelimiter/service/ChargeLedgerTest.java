@@ -0,0 +1,53 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargeLedgerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final LocalTokenBucketRateLimiter bucket = new LocalTokenBucketRateLimiter(LocalTokenBucketRateLimiter.Config.newBuilder()
+            .capacity(10).refillTokensPerSecond(1).clock(now::get).build());
+
+    @Test
+    void returnsAreCappedAtWhatIsOutstanding() {
+        ChargeLedger ledger = new ChargeLedger(10, now::get);
+        assertTrue(bucket.tryAcquire(4));
+        String id = ledger.open(bucket, 4, 1_000);
+
+        assertEquals(3, ledger.giveBack(id, 3).tokens());
+        assertEquals(1, ledger.giveBack(id, 5).tokens(), "Only what is left");
+        assertNull(ledger.giveBack(id, 1), "Fully returned");
+        assertEquals(10, bucket.remaining());
+        assertNull(ledger.giveBack("forged", 1));
+    }
+
+    @Test
+    void settlingClosesTheCharge() {
+        ChargeLedger ledger = new ChargeLedger(10, now::get);
+        assertTrue(bucket.tryAcquire(4));
+        String id = ledger.open(bucket, 4, 1_000);
+
+        assertEquals(1, ledger.settle(id, 3).tokens(), "All but the used part");
+        assertNull(ledger.settle(id, 0), "Settled once");
+        assertNull(ledger.giveBack(id, 1));
+        assertEquals(7, bucket.remaining());
+    }
+
+    @Test
+    void expiredChargesStaySpentAndMakeRoom() {
+        ChargeLedger ledger = new ChargeLedger(1, now::get);
+        assertTrue(bucket.tryAcquire(4));
+        String id = ledger.open(bucket, 4, 1_000);
+        assertNull(ledger.open(bucket, 1, 1_000), "Full");
+
+        now.addAndGet(ChargeLedger.SWEEP_INTERVAL_NS);
+        assertNotNull(ledger.open(bucket, 1, 1_000), "Swept");
+        assertEquals(1, ledger.size());
+        assertNull(ledger.giveBack(id, 1));
+    }
+}
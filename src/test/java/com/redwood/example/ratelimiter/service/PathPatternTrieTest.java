@@ -0,0 +1,66 @@
+package com.redwood.example.ratelimiter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathPatternTrieTest {
+
+    private static PathPatternTrie<String> trie(String... patterns) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String p : patterns) map.put(p, p);
+        return PathPatternTrie.compile(map);
+    }
+
+    @Test
+    void singleSegmentWildcard() {
+        PathPatternTrie<String> t = trie("/api/v2/*/logs");
+
+        assertEquals("/api/v2/*/logs", t.match("/api/v2/tenant-a/logs"));
+        assertNull(t.match("/api/v2/logs"), "'*' needs exactly one segment");
+        assertNull(t.match("/api/v2/a/b/logs"), "'*' does not span segments");
+    }
+
+    @Test
+    void trailingGlobstarMatchesZeroOrMoreSegments() {
+        PathPatternTrie<String> t = trie("/api/v1/users/**");
+
+        assertEquals("/api/v1/users/**", t.match("/api/v1/users"));
+        assertEquals("/api/v1/users/**", t.match("/api/v1/users/123"));
+        assertEquals("/api/v1/users/**", t.match("/api/v1/users/123/orders/9"));
+        assertNull(t.match("/api/v1/usersx"));
+    }
+
+    @Test
+    void longestLiteralMatchWins() {
+        PathPatternTrie<String> t = trie("/api/**", "/api/v1/users/**", "/api/*/users/admin", "/api/v1/users/admin");
+
+        assertEquals("/api/v1/users/admin", t.match("/api/v1/users/admin"), "Literal beats everything");
+        assertEquals("/api/*/users/admin", t.match("/api/v9/users/admin"));
+        assertEquals("/api/v1/users/**", t.match("/api/v1/users/42"));
+        assertEquals("/api/**", t.match("/api/v2/logs"));
+    }
+
+    @Test
+    void backtracksFromLiteralToStarBranch() {
+        PathPatternTrie<String> t = trie("/api/v1/users", "/api/*/orders");
+
+        assertEquals("/api/*/orders", t.match("/api/v1/orders"), "Literal 'v1' branch has no 'orders' child");
+    }
+
+    @Test
+    void toleratesRepeatedAndTrailingSlashes() {
+        PathPatternTrie<String> t = trie("/api/v2/*/logs");
+        assertEquals("/api/v2/*/logs", t.match("//api/v2/x/logs/"));
+    }
+
+    @Test
+    void rejectsUnsupportedPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> trie("/api/**/logs"));
+        assertThrows(IllegalArgumentException.class, () -> trie("/api/user*"));
+        assertThrows(IllegalArgumentException.class, () -> trie("/api/*/x", "api/*/x/"));
+    }
+}
@@ -1,11 +1,27 @@
 package com.redwood.example.ratelimiter.service;
 
+import com.redwood.example.ratelimiter.config.LimitModels.AdaptivePolicy;
+import com.redwood.example.ratelimiter.config.LimitModels.Algorithm;
+import com.redwood.example.ratelimiter.config.LimitModels.LimiterMode;
 import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
 import com.redwood.example.ratelimiter.config.LimitModels.RateLimitFile;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
+import com.redwood.example.ratelimiter.ratelimit.GcraRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.HierarchicalRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.InMemoryTokenStore;
+import com.redwood.example.ratelimiter.ratelimit.LeasedRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.LocalTokenBucketRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.PackedTokenBucketRateLimiter;
 import com.redwood.example.ratelimiter.ratelimit.RateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowCounterRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.SlidingWindowLogRateLimiter;
+import com.redwood.example.ratelimiter.ratelimit.StripedTokenBucketRateLimiter;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -62,4 +78,465 @@ class RateLimiterRegistryTest {
         assertTrue(count <= 10, "Should not allow more than capacity (10)");
         assertEquals(g1.remaining(), g2.remaining(), "Shared state should match");
     }
-}
\ No newline at end of file
+
+    @Test
+    void buildsPackedLimiterWhenModeSelected() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).mode = LimiterMode.PACKED;
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        assertInstanceOf(PackedTokenBucketRateLimiter.class, reg.getForPath("/api/v1/users"));
+        assertInstanceOf(LocalTokenBucketRateLimiter.class, reg.getForPath("/api/v2/logs"), "Default mode stays atomic");
+    }
+
+    @Test
+    void buildsStripedGlobalWhenModeSelected() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(0).mode = LimiterMode.STRIPED;
+        file.limits.get(0).stripes = 4;
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        StripedTokenBucketRateLimiter global = assertInstanceOf(StripedTokenBucketRateLimiter.class, reg.getForPath("/unknown"));
+        assertEquals(4, global.stripes());
+        assertEquals(10, global.capacity(), "Aggregate capacity preserved");
+    }
+
+    @Test
+    void buildsAlgorithmSelectedPerEntry() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(0).algorithm = Algorithm.GCRA;
+        file.limits.get(1).algorithm = Algorithm.SLIDING_WINDOW;
+        file.limits.get(2).algorithm = Algorithm.SLIDING_LOG;
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        assertInstanceOf(GcraRateLimiter.class, reg.getForPath("/unknown"));
+        assertInstanceOf(SlidingWindowCounterRateLimiter.class, reg.getForPath("/api/v1/users"));
+        assertInstanceOf(SlidingWindowLogRateLimiter.class, reg.getForPath("/api/v2/logs"));
+
+        file.limits.get(1).mode = LimiterMode.PACKED;
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(file), "mode is a token bucket option");
+        file.limits.get(1).mode = LimiterMode.ATOMIC;
+        file.limits.get(1).perKey = true;
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(file), "per-key buckets are token buckets");
+    }
+
+    /** Two registries on one store act as two instances sharing the cluster-mode limit. */
+    @Test
+    void clusterRulesShareTheirLimitThroughTheStore() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).mode = LimiterMode.CLUSTER;
+        file.limits.get(1).leaseSize = 1;
+        file.limits.get(1).leaseWaitMs = 5_000;
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(file), "needs a store");
+
+        InMemoryTokenStore store = new InMemoryTokenStore();
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(file, false, store, false),
+                "lease-wait-ms would block a reactive or binary transport");
+        RateLimiterRegistry a = new RateLimiterRegistry(file, false, store);
+        RateLimiterRegistry b = new RateLimiterRegistry(file, false, store);
+        assertInstanceOf(LeasedRateLimiter.class, a.getForPath("/api/v1/users"));
+
+        int allowed = 0;
+        for (int i = 0; i < 6; i++) {
+            if ((i % 2 == 0 ? a : b).getForPath("/api/v1/users").tryAcquire()) allowed++;
+        }
+        assertEquals(3, allowed, "bucket of 3 shared by both instances");
+        assertEquals(6, a.getForPath("/api/v2/logs").remaining(), "other rules stay local");
+    }
+
+    /** A denial on a later limiter must hand back the permits taken from earlier ones. */
+    @Test
+    void tryAcquireAllRollsBackOnDenial() {
+        RateLimiterRegistry reg = new RateLimiterRegistry(sampleConfig());
+        RateLimiter users = reg.getForPath("/api/v1/users");
+        RateLimiter global = reg.getForPath("*");
+
+        int denied = RateLimiterRegistry.tryAcquireAll(List.of(global, users), new int[]{2, 5});
+        assertEquals(1, denied, "Users bucket (3) cannot grant 5");
+        assertEquals(10, global.remaining(), "Global permits refunded");
+        assertEquals(3, users.remaining(), "Users bucket untouched");
+
+        assertEquals(-1, RateLimiterRegistry.tryAcquireAll(List.of(users, global), new int[]{3, 2}));
+        assertEquals(0, users.remaining());
+        assertEquals(8, global.remaining());
+    }
+
+    /** Costs follow the rule a path resolves to and the method; repricing a rule keeps its bucket. */
+    @Test
+    void costsArePerRuleAndMethod() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(2).cost = 2.5;
+        file.limits.get(2).methodCosts = Map.of("post", 4.0);
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        assertEquals(2.5, reg.cost("/api/v2/logs", null));
+        assertEquals(2.5, reg.cost("/api/v2/logs", "GET"));
+        assertEquals(4.0, reg.cost("/api/v2/logs", "POST"));
+        assertEquals(4.0, reg.cost("/api/v2/logs", "post"));
+        assertEquals(1, reg.cost("/api/v1/users", "POST"), "unpriced rule");
+        assertEquals(1, reg.cost("/unknown", null), "global fallback");
+        int logsId = reg.register("/api/v2/logs");
+        assertEquals(2.5, reg.costForId(logsId, null));
+        assertEquals(4.0, reg.costForId(logsId, "POST"));
+        assertEquals(1, reg.costForId(reg.register("/unknown"), "POST"));
+
+        RateLimiter logs = reg.getForPath("/api/v2/logs");
+        assertTrue(logs.tryAcquire(reg.cost("/api/v2/logs", null)));
+        assertEquals(3.5, logs.available(), 1e-3);
+
+        RateLimitFile repriced = sampleConfig();
+        repriced.limits.get(2).cost = 0.5;
+        assertEquals(3, reg.reload(repriced).unchanged(), "cost is not part of the limiter");
+        assertSame(logs, reg.getForPath("/api/v2/logs"));
+        assertEquals(0.5, reg.cost("/api/v2/logs", "POST"));
+        assertEquals(0.5, reg.costForId(logsId, "POST"), "interned prices follow reloads");
+    }
+
+    @Test
+    void costsThatCanNeverBeChargedAreRejected() {
+        RateLimitFile aboveBucket = sampleConfig();
+        aboveBucket.limits.get(1).cost = 4;
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(aboveBucket));
+
+        RateLimitFile free = sampleConfig();
+        free.limits.get(1).methodCosts = Map.of("GET", 0.0);
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(free));
+
+        RateLimitFile scope = sampleConfig();
+        RateLimitEntry tenant = new RateLimitEntry();
+        tenant.endpoint = "@tenant";
+        tenant.refillRate = 5;
+        tenant.bucketSize = 5;
+        tenant.cost = 2;
+        scope.limits = List.of(scope.limits.get(0), scope.limits.get(1), tenant);
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(scope));
+    }
+
+    @Test
+    void tryAcquireAllChargesFractionalCosts() {
+        RateLimiterRegistry reg = new RateLimiterRegistry(sampleConfig());
+        RateLimiter users = reg.getForPath("/api/v1/users");
+        RateLimiter global = reg.getForPath("*");
+
+        assertEquals(1, RateLimiterRegistry.tryAcquireAll(List.of(global, users), new double[]{0.5, 3.5}));
+        assertEquals(10, global.available(), 1e-3, "Global refunded exactly");
+        assertEquals(-1, RateLimiterRegistry.tryAcquireAll(List.of(global, users), new double[]{0.5, 2.5}));
+        assertEquals(9.5, global.available(), 1e-3);
+        assertEquals(0.5, users.available(), 1e-3);
+    }
+
+    @Test
+    void wildcardRulesResolveToMostSpecificLimiter() {
+        RateLimitFile file = sampleConfig();
+        RateLimitEntry allUsers = new RateLimitEntry();
+        allUsers.endpoint = "/api/v1/users/**";
+        allUsers.refillRate = 1;
+        allUsers.bucketSize = 5;
+        RateLimitEntry tenantLogs = new RateLimitEntry();
+        tenantLogs.endpoint = "/api/v2/*/logs";
+        tenantLogs.refillRate = 1;
+        tenantLogs.bucketSize = 7;
+        file.limits = List.of(file.limits.get(0), file.limits.get(1), allUsers, tenantLogs);
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        assertEquals(3, reg.getForPath("/api/v1/users").capacity(), "Exact endpoint wins over '**'");
+        assertEquals(5, reg.getForPath("/api/v1/users/123").capacity());
+        assertEquals(7, reg.getForPath("/api/v2/acme/logs").capacity());
+        assertSame(reg.getForPath("/other"), reg.getForPath("/api/v2/acme/metrics"), "No match falls back to global");
+
+        // Resolved lookups are served from the cache and stay stable
+        assertSame(reg.getForPath("/api/v1/users/123"), reg.getForPath("/api/v1/users/123"));
+        assertSame(reg.getForPath("/api/v1/users/123"), reg.getForPath("/api/v1/users/456"), "One bucket per rule");
+    }
+
+    @Test
+    void perKeyRulesGiveEveryKeyItsOwnBucket() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).perKey = true;
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        assertTrue(reg.getForPath("/api/v1/users", "tenant-a").tryAcquire(3));
+        assertFalse(reg.getForPath("/api/v1/users", "tenant-a").tryAcquire());
+        assertTrue(reg.getForPath("/api/v1/users", "tenant-b").tryAcquire(3));
+        assertEquals(3, reg.getForPath("/api/v1/users").remaining(), "Callers without a key use the shared bucket");
+
+        // Keys are ignored for rules that are not per-key
+        assertSame(reg.getForPath("/api/v2/logs"), reg.getForPath("/api/v2/logs", "tenant-a"));
+        assertEquals(2, reg.ruleFor("/api/v1/users").perKey().size());
+    }
+
+    /** Users requests count against the endpoint, the caller's tenant scope and the global ceiling at once. */
+    @Test
+    void parentsAreAcquiredTogetherWithTheRule() {
+        RateLimitEntry tenant = new RateLimitEntry();
+        tenant.endpoint = "@tenant";
+        tenant.refillRate = 1;
+        tenant.bucketSize = 4;
+        tenant.perKey = true;
+        tenant.parents = List.of("*");
+        RateLimitFile file = sampleConfig();
+        file.limits = new ArrayList<>(file.limits);
+        file.limits.add(tenant);
+        file.limits.get(1).parents = List.of("@tenant");
+        file.limits.get(2).parents = List.of("@tenant");
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+
+        assertInstanceOf(HierarchicalRateLimiter.class, reg.getForPath("/api/v1/users", "acme"));
+        assertTrue(reg.getForPath("/api/v1/users", "acme").tryAcquire(3));
+        assertFalse(reg.getForPath("/api/v2/logs", "acme").tryAcquire(2), "Tenant acme has 1 token left");
+        assertEquals(6, reg.rule("/api/v2/logs").shared().remaining(), "Denial refunded the logs bucket");
+        assertTrue(reg.getForPath("/api/v2/logs", "globex").tryAcquire(2), "Other tenants have their own bucket");
+        assertEquals(5, reg.rule("*").shared().remaining(), "Every grant also counted globally");
+
+        assertSame(reg.getForPath("/api/v1/users"), reg.getForPath("/api/v1/users", null), "Keyless chains are shared");
+        assertSame(reg.rule("*").shared(), reg.getForPath("/unknown"), "Rules without parents stay plain");
+        assertSame(reg.rule("*"), reg.ruleFor("@tenant"), "Scopes are not matched against paths");
+        assertTrue(reg.rules().contains(reg.rule("@tenant")));
+
+        file.limits.get(1).parents = List.of("@missing");
+        assertThrows(IllegalArgumentException.class, () -> reg.reload(file), "unknown parent");
+        file.limits.get(1).parents = List.of("@tenant");
+        tenant.parents = List.of("/api/v1/users");
+        assertThrows(IllegalArgumentException.class, () -> reg.reload(file), "cycle");
+    }
+
+    /** Unchanged rules keep their limiters; changed ones start at the same fill level, scaled to the new capacity. */
+    @Test
+    void reloadCarriesBucketStateOver() {
+        RateLimiterRegistry reg = new RateLimiterRegistry(sampleConfig());
+        RateLimiter logs = reg.getForPath("/api/v2/logs");
+        assertTrue(reg.getForPath("/api/v1/users").tryAcquire(1));
+        assertTrue(logs.tryAcquire(3));
+
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).bucketSize = 6;
+        RateLimiterRegistry.ReloadResult result = reg.reload(file);
+
+        assertEquals(new RateLimiterRegistry.ReloadResult(2, 1, 0, 0, 0), result);
+        assertSame(logs, reg.getForPath("/api/v2/logs"), "Unchanged rule keeps its bucket");
+        assertEquals(3, logs.remaining());
+        RateLimiter users = reg.getForPath("/api/v1/users");
+        assertEquals(6, users.capacity());
+        assertEquals(4, users.remaining(), "2 of 3 tokens becomes 4 of 6");
+    }
+
+    @Test
+    void reloadCarriesPerKeyBucketsOver() {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).perKey = true;
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+        assertTrue(reg.getForPath("/api/v1/users", "tenant-a").tryAcquire(3));
+
+        RateLimitFile changed = sampleConfig();
+        changed.limits.get(1).perKey = true;
+        changed.limits.get(1).bucketSize = 6;
+        assertEquals(1, reg.reload(changed).keysCarriedOver());
+
+        assertEquals(0, reg.getForPath("/api/v1/users", "tenant-a").remaining(), "Exhausted key stays exhausted");
+        assertEquals(6, reg.getForPath("/api/v1/users", "tenant-b").remaining());
+    }
+
+    /** Added and removed rules take effect; an invalid file is rejected and the old rules keep serving. */
+    @Test
+    void reloadAddsRemovesAndRejectsInvalidConfig() {
+        RateLimiterRegistry reg = new RateLimiterRegistry(sampleConfig());
+
+        RateLimitFile file = sampleConfig();
+        RateLimitEntry search = new RateLimitEntry();
+        search.endpoint = "/api/v1/search/**";
+        search.refillRate = 1;
+        search.bucketSize = 2;
+        file.limits = List.of(file.limits.get(0), file.limits.get(1), search);
+        assertEquals(new RateLimiterRegistry.ReloadResult(2, 0, 1, 1, 0), reg.reload(file));
+        assertEquals(2, reg.getForPath("/api/v1/search/q").capacity());
+        assertEquals(10, reg.getForPath("/api/v2/logs").capacity(), "Removed rule falls back to global");
+
+        RateLimitFile noGlobal = sampleConfig();
+        noGlobal.limits = List.of(noGlobal.limits.get(1));
+        assertThrows(IllegalArgumentException.class, () -> reg.reload(noGlobal));
+        assertEquals(2, reg.getForPath("/api/v1/search/q").capacity(), "Current config stays active");
+    }
+
+    /** Configured endpoints are interned up front; IDs resolve like their paths and survive reloads. */
+    @Test
+    void internedPathsResolveByIdAndKeepTheirIds() {
+        RateLimiterRegistry reg = new RateLimiterRegistry(sampleConfig());
+        int users = reg.paths().id("/api/v1/users");
+        assertEquals(0, users);
+        assertEquals(users, reg.register("/api/v1/users"), "Registering again returns the same ID");
+        int other = reg.register("/not/configured");
+        assertEquals(2, other);
+        assertSame(reg.getForPath("/api/v1/users"), reg.getForId(users));
+        assertSame(reg.getForPath("/not/configured"), reg.getForId(other));
+        assertThrows(IllegalArgumentException.class, () -> reg.getForId(3));
+        assertThrows(IllegalArgumentException.class, () -> reg.register(" "));
+
+        byte[] raw = "GET /not/configured HTTP/1.1".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        assertEquals(other, reg.paths().find(raw, 4, 15));
+        assertEquals(-1, reg.paths().find(raw, 4, 14));
+
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).bucketSize = 6;
+        RateLimitEntry search = new RateLimitEntry();
+        search.endpoint = "/api/v1/search";
+        search.refillRate = 1;
+        search.bucketSize = 2;
+        file.limits = List.of(file.limits.get(0), file.limits.get(1), search);
+        reg.reload(file);
+
+        assertEquals(users, reg.paths().id("/api/v1/users"));
+        assertEquals(6, reg.getForId(users).capacity(), "ID resolves to the reloaded rule");
+        assertEquals(10, reg.getForId(reg.paths().id("/api/v2/logs")).capacity(), "Removed rule falls back to global");
+        assertEquals(3, reg.paths().id("/api/v1/search"));
+    }
+
+    /** AIMD: backs off multiplicatively on errors or slow calls, climbs back additively, always within bounds. */
+    @Test
+    void adaptiveRulesFollowFeedback() {
+        RateLimitFile file = sampleConfig();
+        RateLimitEntry logs = file.limits.get(2);
+        logs.adaptive = AdaptivePolicy.AIMD;
+        logs.refillRate = 100;
+        logs.minRate = 10;
+        logs.targetLatencyMs = 50;
+        logs.rateIncrease = 5;
+        logs.rateDecrease = 0.5;
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+        AdaptiveControl adaptive = reg.rule("/api/v2/logs").adaptive();
+        assertNull(reg.rule("/api/v1/users").adaptive());
+
+        reg.adjustAdaptiveLimits();
+        assertEquals(100, adaptive.rate(), "No feedback, no change");
+
+        adaptive.report(100, 20, 10);
+        reg.adjustAdaptiveLimits();
+        assertEquals(50, adaptive.rate(), 1e-9, "20% errors halve the rate");
+        adaptive.report(10, 0, 80);
+        reg.adjustAdaptiveLimits();
+        assertEquals(25, reg.getForPath("/api/v2/logs").refillPerSecond(), 1e-9, "Too slow halves it too");
+
+        adaptive.report(10, 0, 10);
+        reg.adjustAdaptiveLimits();
+        assertEquals(30, adaptive.rate(), 1e-9, "Healthy: +5/s");
+        for (int i = 0; i < 10; i++) {
+            adaptive.report(1, 1, Double.NaN);
+            reg.adjustAdaptiveLimits();
+        }
+        assertEquals(10, adaptive.rate(), 1e-9, "Never below min-rate");
+        for (int i = 0; i < 100; i++) {
+            adaptive.report(1, 0, Double.NaN);
+            reg.adjustAdaptiveLimits();
+        }
+        assertEquals(100, adaptive.rate(), 1e-9, "Never above max-rate (refill-rate by default)");
+        assertThrows(IllegalArgumentException.class, () -> adaptive.report(1, 2, 1));
+
+        // A reload that changes the entry keeps the rate the loop arrived at
+        adaptive.report(1, 1, Double.NaN);
+        reg.adjustAdaptiveLimits();
+        RateLimitFile changed = sampleConfig();
+        changed.limits.get(2).adaptive = AdaptivePolicy.GRADIENT;
+        changed.limits.get(2).refillRate = 100;
+        changed.limits.get(2).targetLatencyMs = 50;
+        reg.reload(changed);
+        AdaptiveControl gradient = reg.rule("/api/v2/logs").adaptive();
+        assertEquals(50, gradient.rate(), 1e-9);
+
+        gradient.report(10, 0, 100);
+        reg.adjustAdaptiveLimits();
+        assertEquals(37.5, gradient.rate(), 1e-9, "Twice the target latency: half way to half the rate");
+        gradient.report(10, 0, 25);
+        reg.adjustAdaptiveLimits();
+        assertEquals(56.25, gradient.rate(), 1e-9, "Half the target latency: half way to twice the rate");
+    }
+
+    @Test
+    void adaptiveRulesRejectSettingsTheyCannotApplyTo() {
+        for (java.util.function.Consumer<RateLimitEntry> invalid : List.<java.util.function.Consumer<RateLimitEntry>>of(
+                e -> e.perKey = true,
+                e -> e.mode = LimiterMode.STRIPED,
+                e -> e.algorithm = Algorithm.GCRA,
+                e -> e.rateDecrease = 1,
+                e -> e.minRate = 10 * e.refillRate + 1,
+                e -> e.adaptive = AdaptivePolicy.GRADIENT)) {
+            RateLimitFile file = sampleConfig();
+            file.limits.get(1).adaptive = AdaptivePolicy.AIMD;
+            file.limits.get(1).maxRate = 10;
+            invalid.accept(file.limits.get(1));
+            assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(file));
+        }
+    }
+
+    private static ShadowEntry candidate(String name, long size) {
+        ShadowEntry c = new ShadowEntry();
+        c.name = name;
+        c.bucketSize = size;
+        c.refillRate = 0.001;
+        return c;
+    }
+
+    private static void awaitEvaluated(ShadowLimits shadow, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shadow.evaluated() < expected && System.nanoTime() < deadline) Thread.sleep(1);
+        assertEquals(expected, shadow.evaluated());
+    }
+
+    /** Candidates see every decision of the endpoint and count what they would deny; the answers stay the enforcing limit's. */
+    @Test
+    void shadowLimitsCountWhatTheyWouldDeny() throws Exception {
+        RateLimitFile file = sampleConfig();
+        file.limits.get(1).shadow = List.of(candidate("tight", 1), candidate("loose", 10));
+        RateLimiterRegistry reg = new RateLimiterRegistry(file);
+        ShadowLimits shadow = reg.shadow("/api/v1/users");
+        assertNull(reg.shadow("/api/v2/logs"));
+
+        int allowed = 0;
+        for (int i = 0; i < 4; i++) if (reg.getForPath("/api/v1/users").tryAcquire()) allowed++;
+        if (reg.getForId(reg.paths().id("/api/v1/users"), "tenant-a").tryAcquire()) allowed++;
+        assertEquals(3, allowed, "Candidates do not change decisions");
+
+        awaitEvaluated(shadow, 5);
+        assertEquals(2, shadow.actualDenied());
+        ShadowLimits.Candidate tight = shadow.candidates().get(0);
+        ShadowLimits.Candidate loose = shadow.candidates().get(1);
+        assertEquals(4, tight.denied());
+        assertEquals(2, tight.deniedAllowed(), "Two of the three allowed requests would have been denied");
+        assertEquals(0, loose.denied());
+
+        // Changing one candidate rebuilds only that one; counts carry on
+        RateLimitFile changed = sampleConfig();
+        changed.limits.get(1).shadow = List.of(candidate("tight", 2), candidate("loose", 10));
+        reg.reload(changed);
+        ShadowLimits reloaded = reg.shadow("/api/v1/users");
+        assertSame(loose, reloaded.candidates().get(1));
+        assertNotSame(tight, reloaded.candidates().get(0));
+        reg.getForPath("/api/v1/users").tryAcquire();
+        awaitEvaluated(reloaded, 6);
+        assertEquals(3, reloaded.actualDenied(), "The enforcing bucket is kept: only the candidates changed");
+        assertEquals(4, reloaded.candidates().get(0).denied(), "The new 'tight' bucket starts full");
+        assertEquals(0, reloaded.candidates().get(1).denied());
+    }
+
+    @Test
+    void shadowLimitsRejectCandidatesTheyCannotBuild() {
+        RateLimitEntry scope = new RateLimitEntry();
+        scope.endpoint = "@tenant";
+        scope.refillRate = 1;
+        scope.bucketSize = 1;
+        ShadowEntry perKeyLog = candidate("log", 5);
+        perKeyLog.perKey = true;
+        perKeyLog.algorithm = Algorithm.SLIDING_LOG;
+        for (java.util.function.Consumer<RateLimitFile> invalid : List.<java.util.function.Consumer<RateLimitFile>>of(
+                f -> f.limits.get(1).shadow = List.of(candidate("a", 1), candidate("a", 2)),
+                f -> f.limits.get(1).shadow = List.of(candidate(ShadowLimits.ACTUAL, 1)),
+                f -> f.limits.get(1).shadow = List.of(candidate("empty", 0)),
+                f -> f.limits.get(1).shadow = List.of(perKeyLog),
+                f -> {
+                    scope.shadow = List.of(candidate("a", 1));
+                    f.limits = List.of(f.limits.get(0), f.limits.get(1), scope);
+                })) {
+            RateLimitFile file = sampleConfig();
+            invalid.accept(file);
+            assertThrows(IllegalArgumentException.class, () -> new RateLimiterRegistry(file));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.redwood.example.ratelimiter.service;
+
+import com.redwood.example.ratelimiter.config.LimitModels.RateLimitEntry;
+import com.redwood.example.ratelimiter.config.LimitModels.ShadowEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ShadowEvaluator driven by hand (no evaluator thread): a full queue drops instead of blocking, and candidates
+ * see the decision time of the request being replayed.
+ */
+class ShadowEvaluatorTest {
+
+    private static ShadowLimits shadow(ShadowEvaluator evaluator, long size, double rate) {
+        ShadowEntry c = new ShadowEntry();
+        c.name = "candidate";
+        c.bucketSize = size;
+        c.refillRate = rate;
+        RateLimitEntry e = new RateLimitEntry();
+        e.endpoint = "/api/v1/users";
+        e.shadow = List.of(c);
+        return ShadowLimits.of(e, null, evaluator);
+    }
+
+    @Test
+    void fullQueueDropsInsteadOfBlocking() {
+        ShadowEvaluator evaluator = new ShadowEvaluator(4);
+        ShadowLimits shadow = shadow(evaluator, 100, 1);
+        long now = System.nanoTime();
+        for (int i = 0; i < 6; i++) assertEquals(i < 4, evaluator.offer(shadow, null, 1, true, now));
+        assertEquals(2, shadow.dropped());
+
+        assertEquals(4, evaluator.drain());
+        assertEquals(0, evaluator.drain());
+        assertEquals(4, shadow.evaluated());
+        assertTrue(evaluator.offer(shadow, null, 1, false, now), "Drained slots are reused");
+        assertEquals(1, evaluator.drain());
+        assertEquals(1, shadow.actualDenied());
+    }
+
+    /** Refill follows the requests' timestamps however late they are replayed, and never goes back. */
+    @Test
+    void candidatesReplayAtDecisionTime() {
+        ShadowEvaluator evaluator = new ShadowEvaluator(16);
+        ShadowLimits shadow = shadow(evaluator, 1, 1);
+        ShadowLimits.Candidate candidate = shadow.candidates().get(0);
+        long t0 = System.nanoTime();
+        long second = TimeUnit.SECONDS.toNanos(1);
+
+        evaluator.offer(shadow, null, 1, true, t0);
+        evaluator.offer(shadow, null, 1, true, t0 + second / 2);
+        evaluator.offer(shadow, null, 1, true, t0 + second);
+        evaluator.offer(shadow, null, 1, true, t0 + second / 2);
+        evaluator.drain();
+        assertEquals(4, shadow.evaluated());
+        assertEquals(2, candidate.denied(), "One token per second: allowed at t0 and t0 + 1s only");
+        assertEquals(2, candidate.deniedAllowed());
+        assertEquals(t0 + second, evaluator.clock().nanoTime(), "An earlier timestamp replayed late does not turn the clock back");
+    }
+}